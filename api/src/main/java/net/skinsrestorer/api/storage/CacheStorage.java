@@ -22,6 +22,7 @@ import net.skinsrestorer.api.property.MojangSkinDataResult;
 
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Caches Name -> UUID to avoid spamming data providers and speed up skin fetching.
@@ -51,4 +52,13 @@ public interface CacheStorage {
      * @return The uuid of the player or empty if no such player exists
      */
     Optional<UUID> getUUID(String playerName, boolean allowExpired) throws DataRequestException;
+
+    /**
+     * Async variant of {@link #getUUID(String, boolean)}, runs on the SkinsRestorer storage executor.
+     * The future completes exceptionally with a {@link DataRequestException} if the lookup fails.
+     *
+     * @param playerName Player name to search for
+     * @return Future of the uuid of the player or empty if no such player exists
+     */
+    CompletableFuture<Optional<UUID>> getUUIDAsync(String playerName, boolean allowExpired);
 }
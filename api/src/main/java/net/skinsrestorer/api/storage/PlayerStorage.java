@@ -21,8 +21,11 @@ import net.skinsrestorer.api.exception.DataRequestException;
 import net.skinsrestorer.api.property.SkinIdentifier;
 import net.skinsrestorer.api.property.SkinProperty;
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * This interface is used to store and retrieve skin data for players.
@@ -38,6 +41,14 @@ public interface PlayerStorage {
      */
     Optional<SkinIdentifier> getSkinIdOfPlayer(UUID uuid);
 
+    /**
+     * Async variant of {@link #getSkinIdOfPlayer(UUID)}, runs on the SkinsRestorer storage executor.
+     *
+     * @param uuid Players UUID
+     * @return Future of the skin identifier of the player
+     */
+    CompletableFuture<Optional<SkinIdentifier>> getSkinIdOfPlayerAsync(UUID uuid);
+
     /**
      * Links a player to a skin identifier.
      *
@@ -61,6 +72,31 @@ public interface PlayerStorage {
      */
     Optional<SkinProperty> getSkinOfPlayer(UUID uuid);
 
+    /**
+     * Async variant of {@link #getSkinOfPlayer(UUID)}, runs on the SkinsRestorer storage executor.
+     *
+     * @param uuid Players UUID
+     * @return Future of the skin property of the player
+     */
+    CompletableFuture<Optional<SkinProperty>> getSkinOfPlayerAsync(UUID uuid);
+
+    /**
+     * Bulk variant of {@link #getSkinOfPlayer(UUID)}.
+     * Resolves the linked skins of many players using as few storage lookups as possible.
+     *
+     * @param uuids Players UUIDs
+     * @return The skin property of each player, players without a linked skin or with missing data are left out
+     */
+    Map<UUID, SkinProperty> getSkinsOfPlayers(Collection<UUID> uuids);
+
+    /**
+     * Async variant of {@link #getSkinsOfPlayers(Collection)}, runs on the SkinsRestorer storage executor.
+     *
+     * @param uuids Players UUIDs
+     * @return Future of the skin property of each player
+     */
+    CompletableFuture<Map<UUID, SkinProperty>> getSkinsOfPlayersAsync(Collection<UUID> uuids);
+
     /**
      * This method seeks out the skin that would be set on join and returns
      * the property containing all the skin data (Value and Signature).
@@ -85,6 +121,21 @@ public interface PlayerStorage {
         return getSkinIdForPlayer(uuid, playerName, false);
     }
 
+    /**
+     * Async variant of {@link #getSkinIdForPlayer(UUID, String, boolean)}, runs on the SkinsRestorer storage executor.
+     * The future completes exceptionally with a {@link DataRequestException} if a lookup fails.
+     *
+     * @see #getSkinIdForPlayer(UUID, String, boolean)
+     */
+    CompletableFuture<Optional<SkinIdentifier>> getSkinIdForPlayerAsync(UUID uuid, String playerName, boolean isOnlineMode);
+
+    /**
+     * @see #getSkinIdForPlayerAsync(UUID, String, boolean)
+     */
+    default CompletableFuture<Optional<SkinIdentifier>> getSkinIdForPlayerAsync(UUID uuid, String playerName) {
+        return getSkinIdForPlayerAsync(uuid, playerName, false);
+    }
+
     /**
      * @see #getSkinIdForPlayer(UUID, String, boolean)
      */
@@ -96,4 +147,19 @@ public interface PlayerStorage {
     default Optional<SkinProperty> getSkinForPlayer(UUID uuid, String playerName) throws DataRequestException {
         return getSkinForPlayer(uuid, playerName, false);
     }
+
+    /**
+     * Async variant of {@link #getSkinForPlayer(UUID, String, boolean)}, runs on the SkinsRestorer storage executor.
+     * The future completes exceptionally with a {@link DataRequestException} if a lookup fails.
+     *
+     * @see #getSkinForPlayer(UUID, String, boolean)
+     */
+    CompletableFuture<Optional<SkinProperty>> getSkinForPlayerAsync(UUID uuid, String playerName, boolean isOnlineMode);
+
+    /**
+     * @see #getSkinForPlayerAsync(UUID, String, boolean)
+     */
+    default CompletableFuture<Optional<SkinProperty>> getSkinForPlayerAsync(UUID uuid, String playerName) {
+        return getSkinForPlayerAsync(uuid, playerName, false);
+    }
 }
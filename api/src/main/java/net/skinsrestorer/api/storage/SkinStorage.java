@@ -24,6 +24,7 @@ import net.skinsrestorer.api.property.*;
 
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * There are three types of skins:
@@ -53,6 +54,15 @@ public interface SkinStorage {
      */
     Optional<SkinProperty> updatePlayerSkinData(UUID uuid) throws DataRequestException;
 
+    /**
+     * Async variant of {@link #updatePlayerSkinData(UUID)}, runs on the SkinsRestorer storage executor.
+     * The future completes exceptionally with a {@link DataRequestException} if the lookup fails.
+     *
+     * @param uuid Player UUID
+     * @return Future of the skin property containing the skin data
+     */
+    CompletableFuture<Optional<SkinProperty>> updatePlayerSkinDataAsync(UUID uuid);
+
     /**
      * Gets the skin data of a Mojang player by name using the UUID cache.
      * This will cache the UUID if it's not already cached and will cache the skin data.
@@ -64,6 +74,16 @@ public interface SkinStorage {
      */
     Optional<MojangSkinDataResult> getPlayerSkin(String playerName, boolean allowExpired) throws DataRequestException;
 
+    /**
+     * Async variant of {@link #getPlayerSkin(String, boolean)}, runs on the SkinsRestorer storage executor.
+     * The future completes exceptionally with a {@link DataRequestException} if the data could not be retrieved.
+     *
+     * @param playerName   Player name to search for
+     * @param allowExpired Allow expired data to be returned
+     * @return Future of the skin data of the player or empty if no such player exists
+     */
+    CompletableFuture<Optional<MojangSkinDataResult>> getPlayerSkinAsync(String playerName, boolean allowExpired);
+
     /**
      * Saves a player skin to the database.
      *
@@ -122,6 +142,14 @@ public interface SkinStorage {
      */
     Optional<InputDataResult> findSkinData(String input);
 
+    /**
+     * Async variant of {@link #findSkinData(String)}, runs on the SkinsRestorer storage executor.
+     *
+     * @param input Skin name/url
+     * @return Future of the InputDataResult object or empty if not found
+     */
+    CompletableFuture<Optional<InputDataResult>> findSkinDataAsync(String input);
+
     /**
      * Searches a skin in the database by name/url. If not found, it will try to generate it based on the detected type.
      *
@@ -131,6 +159,15 @@ public interface SkinStorage {
      */
     Optional<InputDataResult> findOrCreateSkinData(String input) throws DataRequestException, MineSkinException;
 
+    /**
+     * Async variant of {@link #findOrCreateSkinData(String)}, runs on the SkinsRestorer storage executor.
+     * The future completes exceptionally with a {@link DataRequestException} or {@link MineSkinException} if the skin could not be created.
+     *
+     * @param input Skin name/url
+     * @return Future of the InputDataResult object or empty if not found
+     */
+    CompletableFuture<Optional<InputDataResult>> findOrCreateSkinDataAsync(String input);
+
     /**
      * Searches a skin in the database by its skin identifier.
      *
@@ -139,6 +176,14 @@ public interface SkinStorage {
      */
     Optional<SkinProperty> getSkinDataByIdentifier(SkinIdentifier identifier);
 
+    /**
+     * Async variant of {@link #getSkinDataByIdentifier(SkinIdentifier)}, runs on the SkinsRestorer storage executor.
+     *
+     * @param identifier Skin identifier
+     * @return Future of the SkinProperty object or empty if not found
+     */
+    CompletableFuture<Optional<SkinProperty>> getSkinDataByIdentifierAsync(SkinIdentifier identifier);
+
     /**
      * Removes a skin from the database by its skin identifier.
      *
@@ -102,6 +102,8 @@ tasks {
         exclude("META-INF/SPONGEPO.SF", "META-INF/SPONGEPO.DSA", "META-INF/SPONGEPO.RSA")
         minimize() {
             exclude(dependency("org.mariadb.jdbc:mariadb-java-client"))
+            // Loads its native library by package name, so it is neither minimized nor relocated
+            exclude(dependency("org.xerial:sqlite-jdbc"))
             exclude(project(":skinsrestorer-api"))
         }
         configureRelocations()
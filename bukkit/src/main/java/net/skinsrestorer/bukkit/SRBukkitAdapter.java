@@ -35,6 +35,7 @@ import net.skinsrestorer.bukkit.utils.SkinApplyBukkitAdapter;
 import net.skinsrestorer.bukkit.wrapper.WrapperBukkit;
 import net.skinsrestorer.shared.commands.library.SRRegisterPayload;
 import net.skinsrestorer.shared.config.AdvancedConfig;
+import net.skinsrestorer.shared.gui.GUISkinPage;
 import net.skinsrestorer.shared.gui.SharedGUI;
 import net.skinsrestorer.shared.info.ClassInfo;
 import net.skinsrestorer.shared.info.Platform;
@@ -170,9 +171,9 @@ public class SRBukkitAdapter implements SRServerAdapter<JavaPlugin, CommandSende
     }
 
     @Override
-    public void openProxyGUI(SRPlayer player, int page, Map<String, String> skinList) {
+    public void openProxyGUI(SRPlayer player, int page, GUISkinPage skins) {
         Inventory inventory = injector.getSingleton(SkinsGUI.class)
-                .createGUI(injector.getSingleton(SharedGUI.ProxyGUIActions.class), player, page, skinList);
+                .createGUI(injector.getSingleton(SharedGUI.ProxyGUIActions.class), player, page, skins);
 
         runSyncToPlayer(player, () -> player.getAs(Player.class).openInventory(inventory));
     }
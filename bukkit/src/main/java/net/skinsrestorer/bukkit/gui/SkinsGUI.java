@@ -26,6 +26,7 @@ import net.skinsrestorer.api.PropertyUtils;
 import net.skinsrestorer.api.property.SkinProperty;
 import net.skinsrestorer.bukkit.wrapper.WrapperBukkit;
 import net.skinsrestorer.shared.gui.GUIManager;
+import net.skinsrestorer.shared.gui.GUISkinPage;
 import net.skinsrestorer.shared.gui.SharedGUI;
 import net.skinsrestorer.shared.listeners.event.ClickEventInfo;
 import net.skinsrestorer.shared.log.SRLogger;
@@ -96,7 +97,7 @@ public class SkinsGUI implements GUIManager<Inventory> {
         return itemStack;
     }
 
-    public Inventory createGUI(Consumer<ClickEventInfo> callback, SRForeign player, int page, Map<String, String> skinsList) {
+    public Inventory createGUI(Consumer<ClickEventInfo> callback, SRForeign player, int page, GUISkinPage skins) {
         SkinsGUIHolder instance = new SkinsGUIHolder(page, callback, wrapper);
         Inventory inventory = server.createInventory(instance, 54, ComponentHelper.convertJsonToLegacy(
                 locale.getMessageRequired(player, Message.SKINSMENU_TITLE_NEW,
@@ -109,7 +110,7 @@ public class SkinsGUI implements GUIManager<Inventory> {
         ItemStack next = createGlass(GlassType.NEXT, player, locale);
 
         int skinCount = 0;
-        for (Map.Entry<String, String> entry : skinsList.entrySet()) {
+        for (Map.Entry<String, String> entry : skins.getSkins().entrySet()) {
             if (skinCount >= SharedGUI.HEAD_COUNT_PER_PAGE) {
                 logger.warning("SkinsGUI: Skin count is more than 36, skipping...");
                 break;
@@ -147,8 +148,8 @@ public class SkinsGUI implements GUIManager<Inventory> {
         inventory.setItem(49, delete);
         inventory.setItem(50, delete);
 
-        // If the page is full, adding Next Page button.
-        if (page < 999 && inventory.firstEmpty() > 50) {
+        // If there is a next page, adding Next Page button.
+        if (skins.hasNext()) {
             inventory.setItem(51, next);
             inventory.setItem(52, next);
             inventory.setItem(53, next);
@@ -19,17 +19,16 @@ package net.skinsrestorer.bukkit.utils;
 
 import lombok.RequiredArgsConstructor;
 import net.skinsrestorer.api.property.SkinProperty;
-import net.skinsrestorer.bukkit.SRBukkitAdapter;
 import net.skinsrestorer.bukkit.SkinApplierBukkit;
 import net.skinsrestorer.shared.listeners.event.SRLoginProfileEvent;
 import org.bukkit.event.player.PlayerEvent;
 
 import javax.inject.Inject;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 @RequiredArgsConstructor(onConstructor_ = @Inject)
 public class EventWrapper {
-    private final SRBukkitAdapter plugin;
     private final SkinApplierBukkit skinApplier;
     private final SkinApplyBukkitAdapter applyAdapter;
 
@@ -61,8 +60,8 @@ public class EventWrapper {
             }
 
             @Override
-            public Void runAsync(Runnable runnable) {
-                plugin.runAsync(runnable);
+            public Void resumeWhenComplete(CompletableFuture<?> future) {
+                // The skin is applied to the online player once the future completes
                 return null;
             }
         };
@@ -31,6 +31,7 @@ import net.skinsrestorer.shared.listeners.event.SRLoginProfileEvent;
 
 import javax.inject.Inject;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 @RequiredArgsConstructor(onConstructor_ = @Inject)
 public class LoginListener implements Listener {
@@ -71,14 +72,10 @@ public class LoginListener implements Listener {
             }
 
             @Override
-            public Void runAsync(Runnable runnable) {
+            public Void resumeWhenComplete(CompletableFuture<?> future) {
                 event.registerIntent(plugin.getPluginInstance());
 
-                plugin.runAsync(() -> {
-                    runnable.run();
-
-                    event.completeIntent(plugin.getPluginInstance());
-                });
+                future.whenComplete((result, throwable) -> event.completeIntent(plugin.getPluginInstance()));
                 return null;
             }
         };
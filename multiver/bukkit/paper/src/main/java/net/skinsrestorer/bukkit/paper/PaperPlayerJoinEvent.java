@@ -28,6 +28,7 @@ import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
 
 import javax.inject.Inject;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 @RequiredArgsConstructor(onConstructor_ = @Inject)
 public class PaperPlayerJoinEvent implements Listener {
@@ -75,8 +76,9 @@ public class PaperPlayerJoinEvent implements Listener {
             }
 
             @Override
-            public Void runAsync(Runnable runnable) {
-                runnable.run();
+            public Void resumeWhenComplete(CompletableFuture<?> future) {
+                // Already on an async login thread, the profile must be set before we return
+                future.join();
                 return null;
             }
         };
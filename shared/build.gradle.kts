@@ -6,6 +6,7 @@ dependencies {
     implementation("org.mariadb.jdbc:mariadb-java-client:3.3.2") {
         exclude("com.github.waffle", "waffle-jna")
     }
+    implementation("org.xerial:sqlite-jdbc:3.45.1.0")
 
     implementation("net.kyori:adventure-api:4.16.0")
     implementation("net.kyori:adventure-text-serializer-gson:4.15.0")
@@ -46,6 +46,6 @@ public final class ProxyGUICommand {
 
         player.sendMessage(Message.SKINSMENU_OPEN);
 
-        proxyPlugin.sendPage(0, (SRProxyPlayer) player, skinStorage);
+        proxyPlugin.sendPage(0, "", (SRProxyPlayer) player, skinStorage);
     }
 }
@@ -39,13 +39,20 @@ import net.skinsrestorer.shared.commands.library.CommandManager;
 import net.skinsrestorer.shared.commands.library.annotations.*;
 import net.skinsrestorer.shared.config.DevConfig;
 import net.skinsrestorer.shared.connections.DumpService;
+import net.skinsrestorer.shared.connections.RequestLimiter;
 import net.skinsrestorer.shared.connections.ServiceCheckerService;
 import net.skinsrestorer.shared.exception.InitializeException;
 import net.skinsrestorer.shared.log.SRLogger;
 import net.skinsrestorer.shared.plugin.SRPlatformAdapter;
 import net.skinsrestorer.shared.plugin.SRPlugin;
 import net.skinsrestorer.shared.plugin.SRServerPlugin;
+import net.skinsrestorer.shared.storage.CacheStorageImpl;
+import net.skinsrestorer.shared.storage.SkinPurgeService;
 import net.skinsrestorer.shared.storage.SkinStorageImpl;
+import net.skinsrestorer.shared.storage.StorageExecutor;
+import net.skinsrestorer.shared.storage.adapter.AdapterReference;
+import net.skinsrestorer.shared.storage.adapter.cache.CachedStorageAdapter;
+import net.skinsrestorer.shared.storage.adapter.cache.SegmentedLRUCache;
 import net.skinsrestorer.shared.subjects.SRCommandSender;
 import net.skinsrestorer.shared.subjects.SRPlayer;
 import net.skinsrestorer.shared.subjects.messages.Message;
@@ -57,10 +64,9 @@ import net.skinsrestorer.shared.utils.ValidationUtil;
 import javax.inject.Inject;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.List;
-import java.util.Optional;
-import java.util.UUID;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
 
 @SuppressWarnings("unused")
 @CommandNames({"sr", "skinsrestorer"})
@@ -75,6 +81,7 @@ public final class SRCommand {
     private final PlayerStorage playerStorage;
     private final CacheStorage cacheStorage;
     private final SkinStorageImpl skinStorage;
+    private final SkinPurgeService skinPurgeService;
     private final SettingsManager settings;
     private final SRLogger logger;
     private final DumpService dumpService;
@@ -152,6 +159,40 @@ public final class SRCommand {
             sender.sendMessage(Message.ADMINCOMMAND_STATUS_SUMMARY_PROXYMODE, Placeholder.unparsed("proxy_mode", Boolean.toString(serverPlugin.isProxyMode())));
         }
 
+        CacheStorageImpl cacheStorageImpl = injector.getSingleton(CacheStorageImpl.class);
+        long executedLookups = skinStorage.getPlayerSkinFlight().getExecuted() + skinStorage.getProfileFlight().getExecuted()
+                + cacheStorageImpl.getUuidFlight().getExecuted();
+        long deduplicatedLookups = skinStorage.getPlayerSkinFlight().getDeduplicated() + skinStorage.getProfileFlight().getDeduplicated()
+                + cacheStorageImpl.getUuidFlight().getDeduplicated();
+        sender.sendMessage(Message.ADMINCOMMAND_STATUS_SUMMARY_LOOKUPS,
+                Placeholder.unparsed("executed", String.valueOf(executedLookups)),
+                Placeholder.unparsed("deduplicated", String.valueOf(deduplicatedLookups)));
+
+        if (injector.getSingleton(AdapterReference.class).get() instanceof CachedStorageAdapter cachedStorageAdapter) {
+            SegmentedLRUCache.Stats stats = cachedStorageAdapter.getStats();
+            sender.sendMessage(Message.ADMINCOMMAND_STATUS_SUMMARY_STORAGE_CACHE,
+                    Placeholder.unparsed("size", String.valueOf(stats.size())),
+                    Placeholder.unparsed("hits", String.valueOf(stats.hits())),
+                    Placeholder.unparsed("misses", String.valueOf(stats.misses())),
+                    Placeholder.unparsed("evictions", String.valueOf(stats.evictions())));
+        }
+
+        StorageExecutor.Stats executorStats = injector.getSingleton(StorageExecutor.class).getStats();
+        sender.sendMessage(Message.ADMINCOMMAND_STATUS_SUMMARY_STORAGE_EXECUTOR,
+                Placeholder.unparsed("active", String.valueOf(executorStats.active())),
+                Placeholder.unparsed("threads", String.valueOf(executorStats.threads())),
+                Placeholder.unparsed("queued", String.valueOf(executorStats.queued())),
+                Placeholder.unparsed("rejected", String.valueOf(executorStats.rejected())),
+                Placeholder.unparsed("wait", String.format(Locale.ROOT, "%.1f", executorStats.averageWaitMillis())));
+
+        injector.getSingleton(RequestLimiter.class).getStats().forEach((service, limitStats) ->
+                sender.sendMessage(Message.ADMINCOMMAND_STATUS_SUMMARY_REQUEST_LIMIT,
+                        Placeholder.unparsed("service", service.name()),
+                        Placeholder.unparsed("tokens", String.valueOf(limitStats.tokens())),
+                        Placeholder.unparsed("queued", String.valueOf(limitStats.queued())),
+                        Placeholder.unparsed("shed", String.valueOf(limitStats.shed())),
+                        Placeholder.unparsed("wait", String.format(Locale.ROOT, "%.1f", limitStats.averageWaitMillis()))));
+
         sender.sendMessage(Message.ADMINCOMMAND_STATUS_SUMMARY_COMMIT, Placeholder.unparsed("hash", BuildData.COMMIT_SHORT));
         sender.sendMessage(Message.ADMINCOMMAND_STATUS_SUMMARY_FINISHED);
         sender.sendMessage(breakLine);
@@ -281,9 +322,18 @@ public final class SRCommand {
     @Description(Message.HELP_SR_APPLY_SKIN_ALL)
     @CommandConditions("console-only")
     private void onApplySkinAll(SRCommandSender sender) {
-        for (SRPlayer player : adapter.getOnlinePlayers()) {
+        Collection<SRPlayer> players = adapter.getOnlinePlayers();
+
+        // Resolve all explicitly set skins at once, only the rest needs a lookup per player
+        Map<UUID, SkinProperty> setSkins = playerStorage.getSkinsOfPlayers(players.stream().map(SRPlayer::getUniqueId).toList());
+        for (SRPlayer player : players) {
             try {
-                skinApplier.applySkin(player.getAs(Object.class));
+                SkinProperty setSkin = setSkins.get(player.getUniqueId());
+                if (setSkin != null) {
+                    skinApplier.applySkin(player.getAs(Object.class), setSkin);
+                } else {
+                    skinApplier.applySkin(player.getAs(Object.class));
+                }
             } catch (DataRequestException ignored) {
                 sender.sendMessage(Message.ADMINCOMMAND_APPLYSKINALL_PLAYER_ERROR, Placeholder.unparsed("player", player.getName()));
             }
@@ -296,10 +346,23 @@ public final class SRCommand {
     @Description(Message.HELP_SR_PURGE_OLD_DATA)
     @CommandConditions("console-only")
     private void onPurgeOldData(SRCommandSender sender, int days) {
-        if (skinStorage.purgeOldSkins(days)) {
-            sender.sendMessage(Message.ADMINCOMMAND_PURGEOLDDATA_SUCCESS);
+        long targetPurgeTimestamp = Instant.now().minus(days, ChronoUnit.DAYS).getEpochSecond();
+        boolean started = skinPurgeService.start(targetPurgeTimestamp, new SkinPurgeService.PurgeListener() {
+            @Override
+            public void onComplete(int purged) {
+                sender.sendMessage(Message.ADMINCOMMAND_PURGEOLDDATA_SUCCESS, Placeholder.unparsed("count", String.valueOf(purged)));
+            }
+
+            @Override
+            public void onError() {
+                sender.sendMessage(Message.ADMINCOMMAND_PURGEOLDDATA_ERROR);
+            }
+        });
+
+        if (started) {
+            sender.sendMessage(Message.ADMINCOMMAND_PURGEOLDDATA_STARTED);
         } else {
-            sender.sendMessage(Message.ADMINCOMMAND_PURGEOLDDATA_ERROR);
+            sender.sendMessage(Message.ADMINCOMMAND_PURGEOLDDATA_RUNNING, Placeholder.unparsed("count", String.valueOf(skinPurgeService.getPurged())));
         }
     }
 
@@ -64,6 +64,7 @@ public class BrigadierCommand implements CommandWrapper {
                 i++;
             }
             logger.debug(String.format("Executing command %s with method parameters %s", method.getName(), Arrays.toString(parameters)));
+            // Handlers call the blocking storage API, which is fine off the main thread and keeps multi-step flows in order
             platform.runAsync(() -> {
                 try {
                     methodHandle.invokeWithArguments(parameters);
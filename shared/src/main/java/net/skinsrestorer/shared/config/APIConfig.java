@@ -30,4 +30,22 @@ public class APIConfig implements SettingsHolder {
             "[?] A key is not required, but recommended."
     })
     public static final Property<String> MINESKIN_API_KEY = newProperty("api.mineskinAPIKey", "key");
+    @Comment({
+            "Name and UUID lookups go to the healthiest of Ashcon, Mojang and MineTools first.",
+            "When enabled, the next service is asked as well if the first one answers slower than it usually does,",
+            "so its answer is ready if the first one fails.",
+            "[?] Makes lookups faster while a service is timing out, but sends more requests."
+    })
+    public static final Property<Boolean> HEDGE_REQUESTS = newProperty("api.hedgeRequests", false);
+    @Comment({
+            "Maximum requests per minute we send to each service, 0 means no limit.",
+            "All servers behind the same IP share the limits of Mojang, so keep the total of your network in mind.",
+            "Requests over the limit wait for their turn, logins first, or use another service."
+    })
+    public static final Property<Integer> RATE_LIMIT_MOJANG = newProperty("api.rateLimit.mojang", 60);
+    public static final Property<Integer> RATE_LIMIT_ASHCON = newProperty("api.rateLimit.ashcon", 120);
+    public static final Property<Integer> RATE_LIMIT_MINE_TOOLS = newProperty("api.rateLimit.mineTools", 60);
+    public static final Property<Integer> RATE_LIMIT_MINE_SKIN = newProperty("api.rateLimit.mineSkin", 0);
+    @Comment("How long a request waits for its turn before it is given up (in seconds).")
+    public static final Property<Integer> RATE_LIMIT_MAX_WAIT = newProperty("api.rateLimit.maxWait", 5);
 }
@@ -17,10 +17,14 @@
  */
 package net.skinsrestorer.shared.config;
 
+import ch.jalu.configme.Comment;
 import ch.jalu.configme.SettingsHolder;
 import ch.jalu.configme.configurationdata.CommentsConfiguration;
 import ch.jalu.configme.properties.Property;
 
+import java.util.List;
+
+import static ch.jalu.configme.properties.PropertyInitializer.newListProperty;
 import static ch.jalu.configme.properties.PropertyInitializer.newProperty;
 
 public class DatabaseConfig implements SettingsHolder {
@@ -33,6 +37,36 @@ public class DatabaseConfig implements SettingsHolder {
     public static final Property<Integer> MYSQL_MAX_POOL_SIZE = newProperty("database.maxPoolSize", 10);
     public static final Property<String> MYSQL_TABLE_PREFIX = newProperty("database.tablePrefix", "sr_");
     public static final Property<String> MYSQL_CONNECTION_OPTIONS = newProperty("database.connectionOptions", "sslMode=trust&serverTimezone=UTC");
+    @Comment({
+            "Read replicas of the database as host or host:port, all other settings are shared with the primary.",
+            "Player, skin and cache lookups are spread over the replicas, writes always go to the primary.",
+            "[?] Replicas that fail or fall behind are skipped and the primary is used instead."
+    })
+    public static final Property<List<String>> MYSQL_REPLICA_HOSTS = newListProperty("database.replicaHosts");
+    @Comment("Skip replicas that are more than this many seconds behind the primary.")
+    public static final Property<Integer> MYSQL_REPLICA_MAX_LAG_SECONDS = newProperty("database.replicaMaxLagSeconds", 5);
+    @Comment("After a player or skin was changed, read it from the primary for this many milliseconds, so the change is seen right away.")
+    public static final Property<Integer> MYSQL_REPLICA_READ_YOUR_WRITES_MILLIS = newProperty("database.replicaReadYourWritesMillis", 10000);
+    @Comment({
+            "How often to check the database for skins and players changed by other servers (in milliseconds).",
+            "Those entries are then removed from storage.memoryCache, so the change shows up on this server too.",
+            "[?] A value of 0 disables this, only do that if no other server uses the same database."
+    })
+    public static final Property<Integer> MYSQL_CHANGELOG_POLL_INTERVAL = newProperty("database.changelogPollInterval", 1000);
+    @Comment({
+            "Where skins are stored when MySQL is disabled.",
+            "FILE: one file per skin and player in the skins, players and cache folders.",
+            "EMBEDDED: a single append-only log in the embedded folder, recommended for a lot of skins.",
+            "SQLITE: a single skinsrestorer.db database file with the same tables as MySQL.",
+            "[?] Switching to EMBEDDED or SQLITE imports the existing files once, they are kept as a backup."
+    })
+    public static final Property<LocalStorageType> LOCAL_STORAGE_TYPE = newProperty(LocalStorageType.class, "database.localStorageType", LocalStorageType.FILE);
+    @Comment({
+            "Store skins and players of the local storage in a compact binary format instead of JSON.",
+            "Existing JSON entries stay readable and are converted when they are written again.",
+            "[!] Older SkinsRestorer versions can not read binary entries."
+    })
+    public static final Property<Boolean> BINARY_RECORDS = newProperty("database.binaryRecords", false);
 
     @Override
     public void registerComments(CommentsConfiguration conf) {
@@ -50,4 +84,10 @@ public class DatabaseConfig implements SettingsHolder {
                 "[!] If you're not using ssl, change sslMode=trust to sslMode=disable [!]"
         );
     }
+
+    public enum LocalStorageType {
+        FILE,
+        EMBEDDED,
+        SQLITE
+    }
 }
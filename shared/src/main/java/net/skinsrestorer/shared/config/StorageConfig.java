@@ -57,8 +57,45 @@ public class StorageConfig implements SettingsHolder {
             "[!] Lowering this value will increase the amount of requests which could be a problem on large servers."
     })
     public static final Property<Integer> SKIN_EXPIRES_AFTER = newProperty("storage.skinExpiresAfter", 15);
+    @Comment({
+            "When a stored player skin is expired, keep using it and fetch the new skin in the background.",
+            "Players wearing that skin get the new one applied once it has been fetched.",
+            "[?] Disabling this makes logins wait for Mojang whenever a skin is expired."
+    })
+    public static final Property<Boolean> REFRESH_SKINS_IN_BACKGROUND = newProperty("storage.refreshSkinsInBackground", true);
     @Comment("How long we should cache the UUIDs of players (in minutes).")
     public static final Property<Integer> UUID_EXPIRES_AFTER = newProperty("storage.uuidExpiresAfter", 60);
+    @Comment({
+            "Keep recently used skins and players in memory to avoid hitting the storage on every lookup.",
+            "[?] When sharing a MySQL database between multiple servers, changes made on another server",
+            "are picked up through database.changelogPollInterval."
+    })
+    public static final Property<Boolean> MEMORY_CACHE_ENABLED = newProperty("storage.memoryCache.enabled", true);
+    @Comment("Maximum amount of entries kept in memory.")
+    public static final Property<Integer> MEMORY_CACHE_MAX_ENTRIES = newProperty("storage.memoryCache.maxEntries", 10000);
+    @Comment("Time after which a cached entry is loaded from the storage again (in seconds).")
+    public static final Property<Integer> MEMORY_CACHE_EXPIRES_AFTER = newProperty("storage.memoryCache.expiresAfter", 60);
+    @Comment({
+            "Store players, player skins and cached uuids in batches instead of on every change.",
+            "Repeated changes of the same player within the flush interval are only stored once.",
+            "[!] Changes that are still pending are lost if the server crashes, they are stored on a normal shutdown."
+    })
+    public static final Property<Boolean> WRITE_BEHIND_ENABLED = newProperty("storage.writeBehind.enabled", false);
+    @Comment("How often pending changes are stored (in milliseconds).")
+    public static final Property<Integer> WRITE_BEHIND_FLUSH_INTERVAL = newProperty("storage.writeBehind.flushInterval", 2000);
+    @Comment("Store pending changes right away once this many are pending.")
+    public static final Property<Integer> WRITE_BEHIND_MAX_PENDING = newProperty("storage.writeBehind.maxPending", 500);
+    @Comment({
+            "Amount of threads that access the storage.",
+            "[?] A value of 0 uses database.maxPoolSize with MySQL and 4 otherwise."
+    })
+    public static final Property<Integer> EXECUTOR_THREADS = newProperty("storage.executor.threads", 0);
+    @Comment({
+            "Maximum amount of storage tasks waiting for a thread.",
+            "When the storage is too slow to keep up, commands and API calls fail instead of waiting forever.",
+            "[?] Logins are always queued."
+    })
+    public static final Property<Integer> EXECUTOR_MAX_QUEUED = newProperty("storage.executor.maxQueued", 1000);
 
     @Override
     public void registerComments(CommentsConfiguration conf) {
@@ -28,7 +28,7 @@ import net.skinsrestorer.api.property.SkinProperty;
 import net.skinsrestorer.api.property.SkinVariant;
 import net.skinsrestorer.shared.config.APIConfig;
 import net.skinsrestorer.shared.connections.http.HttpClient;
-import net.skinsrestorer.shared.connections.http.HttpResponse;
+import net.skinsrestorer.shared.connections.http.StreamedResponse;
 import net.skinsrestorer.shared.connections.responses.mineskin.MineSkinErrorDelayResponse;
 import net.skinsrestorer.shared.connections.responses.mineskin.MineSkinErrorResponse;
 import net.skinsrestorer.shared.connections.responses.mineskin.MineSkinUrlResponse;
@@ -36,6 +36,7 @@ import net.skinsrestorer.shared.exception.DataRequestExceptionShared;
 import net.skinsrestorer.shared.exception.MineSkinExceptionShared;
 import net.skinsrestorer.shared.log.SRLogLevel;
 import net.skinsrestorer.shared.log.SRLogger;
+import net.skinsrestorer.shared.storage.StorageExecutor;
 import net.skinsrestorer.shared.subjects.messages.Message;
 import net.skinsrestorer.shared.subjects.messages.SkinsRestorerLocale;
 import net.skinsrestorer.shared.utils.MetricsCounter;
@@ -51,6 +52,7 @@ import java.time.Instant;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -70,11 +72,13 @@ public class MineSkinAPIImpl implements MineSkinAPI {
     private final SettingsManager settings;
     private final SkinsRestorerLocale locale;
     private final HttpClient httpClient;
+    private final RequestLimiter requestLimiter;
 
     @Override
     public MineSkinResponse genSkin(String imageUrl, @Nullable SkinVariant skinVariant) throws DataRequestException, MineSkinException {
         String resultUrl = imageUrl.startsWith(NAMEMC_SKIN_URL) ? NAMEMC_IMG_URL.replace("%s", imageUrl.substring(24)) : imageUrl; // Fix NameMC skins
         AtomicInteger retryAttempts = new AtomicInteger(0);
+        StorageExecutor.Priority priority = StorageExecutor.currentPriority();
 
         do {
             try {
@@ -89,7 +93,7 @@ public class MineSkinAPIImpl implements MineSkinAPI {
                     } catch (InterruptedException e) {
                         throw new RuntimeException(e);
                     }
-                }, executorService).join();
+                }, task -> executorService.execute(StorageExecutor.withPriority(priority, task))).join();
 
                 if (optional.isPresent()) {
                     return optional.get();
@@ -113,20 +117,46 @@ public class MineSkinAPIImpl implements MineSkinAPI {
     private Optional<MineSkinResponse> genSkinInternal(String imageUrl, @Nullable SkinVariant skinVariant) throws DataRequestException, MineSkinException, IOException, InterruptedException {
         String skinVariantString = skinVariant != null ? "&variant=" + skinVariant.name().toLowerCase(Locale.ROOT) : "";
 
-        HttpResponse response = queryURL("url=" + URLEncoder.encode(imageUrl, StandardCharsets.UTF_8) + skinVariantString);
-        logger.debug("MineSkinAPI: Response: " + response);
+        int statusCode;
+        Object body;
+        try (StreamedResponse response = queryURL("url=" + URLEncoder.encode(imageUrl, StandardCharsets.UTF_8) + skinVariantString)) {
+            logger.debug("MineSkinAPI: Response: " + response);
+            statusCode = response.statusCode();
+            body = switch (statusCode) {
+                case 200 -> response.getBodyAs(MineSkinUrlResponse.class);
+                case 500, 400, 403 -> response.getBodyAs(MineSkinErrorResponse.class);
+                case 429 -> response.getBodyAs(MineSkinErrorDelayResponse.class);
+                default -> null;
+            };
+        }
+
+        // Closed before waiting for a retry, so the wait does not hold a connection
+        return handleResponse(statusCode, body, imageUrl, skinVariant);
+    }
 
-        switch (response.statusCode()) {
+    /**
+     * @param body the decoded body matching the status code, null if the body was empty
+     */
+    private Optional<MineSkinResponse> handleResponse(int statusCode, @Nullable Object body, String imageUrl, @Nullable SkinVariant skinVariant) throws MineSkinException, InterruptedException {
+        switch (statusCode) {
             case 200 -> {
-                MineSkinUrlResponse urlResponse = response.getBodyAs(MineSkinUrlResponse.class);
+                if (!(body instanceof MineSkinUrlResponse urlResponse) || urlResponse.getData() == null || urlResponse.getData().getTexture() == null) {
+                    logger.debug("[ERROR] MineSkin Failed! No skin data in response: (Image URL: " + imageUrl + ")");
+                    throw new MineSkinExceptionShared(Message.ERROR_MS_API_FAILED);
+                }
+
                 SkinProperty property = SkinProperty.of(urlResponse.getData().getTexture().getValue(),
                         urlResponse.getData().getTexture().getSignature());
                 return Optional.of(MineSkinResponse.of(property, urlResponse.getIdStr(),
                         skinVariant, PropertyUtils.getSkinVariant(property)));
             }
             case 500, 400 -> {
-                MineSkinErrorResponse errorResponse = response.getBodyAs(MineSkinErrorResponse.class);
-                String error = errorResponse.getErrorCode();
+                String error = body instanceof MineSkinErrorResponse errorResponse ? errorResponse.getErrorCode() : null;
+                if (error == null) {
+                    logger.debug("[ERROR] MineSkin Failed! No error code: (Image URL: " + imageUrl + ") " + statusCode);
+                    throw new MineSkinExceptionShared(Message.ERROR_MS_API_FAILED);
+                }
+
                 logger.debug(String.format("[ERROR] MineSkin Failed! Reason: %s Image URL: %s", error, imageUrl));
                 // try again
                 return switch (error) {
@@ -140,10 +170,9 @@ public class MineSkinAPIImpl implements MineSkinAPI {
                 };
             }
             case 403 -> {
-                MineSkinErrorResponse apiErrorResponse = response.getBodyAs(MineSkinErrorResponse.class);
-                String errorCode2 = apiErrorResponse.getErrorCode();
-                String error2 = apiErrorResponse.getError();
-                if (errorCode2.equals("invalid_api_key")) {
+                String errorCode2 = body instanceof MineSkinErrorResponse apiErrorResponse ? apiErrorResponse.getErrorCode() : null;
+                String error2 = body instanceof MineSkinErrorResponse apiErrorResponse ? Objects.requireNonNullElse(apiErrorResponse.getError(), "") : "";
+                if ("invalid_api_key".equals(errorCode2)) {
                     logger.severe("[ERROR] MineSkin API key is not invalid! Reason: " + error2);
                     switch (error2) {
                         case "Invalid API Key" ->
@@ -163,32 +192,33 @@ public class MineSkinAPIImpl implements MineSkinAPI {
                 throw new MineSkinExceptionShared(Message.ERROR_MS_UNKNOWN);
             }
             case 429 -> {
-                MineSkinErrorDelayResponse errorDelayResponse = response.getBodyAs(MineSkinErrorDelayResponse.class);
+                MineSkinErrorDelayResponse errorDelayResponse = body instanceof MineSkinErrorDelayResponse delayResponse ? delayResponse : null;
                 // If "Too many requests"
-                if (errorDelayResponse.getDelay() != null) {
+                if (errorDelayResponse != null && errorDelayResponse.getDelay() != null) {
                     TimeUnit.SECONDS.sleep(errorDelayResponse.getDelay());
-                } else if (errorDelayResponse.getNextRequest() != null) {
+                } else if (errorDelayResponse != null && errorDelayResponse.getNextRequest() != null) {
                     Instant nextRequestInstant = Instant.ofEpochSecond(errorDelayResponse.getNextRequest());
                     int delay = (int) Duration.between(Instant.now(), nextRequestInstant).getSeconds();
 
                     if (delay > 0) {
                         TimeUnit.SECONDS.sleep(delay);
                     }
-                } else { // Should normally not happen
+                } else { // Should normally not happen, or the body was empty
                     TimeUnit.SECONDS.sleep(2);
                 }
 
                 return Optional.empty(); // try again after nextRequest
             }
             default -> {
-                logger.debug("[ERROR] MineSkin Failed! Unknown error: (Image URL: " + imageUrl + ") " + response.statusCode());
+                logger.debug("[ERROR] MineSkin Failed! Unknown error: (Image URL: " + imageUrl + ") " + statusCode);
                 throw new MineSkinExceptionShared(Message.ERROR_MS_API_FAILED);
             }
         }
     }
 
-    private HttpResponse queryURL(String query) throws IOException {
+    private StreamedResponse queryURL(String query) throws DataRequestException, IOException {
         for (int i = 0; true; i++) { // try 3 times, if server not responding
+            requestLimiter.acquire(MetricsCounter.Service.MINE_SKIN);
             try {
                 metricsCounter.increment(MetricsCounter.Service.MINE_SKIN);
 
@@ -198,7 +228,7 @@ public class MineSkinAPIImpl implements MineSkinAPI {
                     headers.put("Authorization", String.format("Bearer %s", apiKey));
                 }
 
-                return httpClient.execute(
+                return httpClient.executeStreaming(
                         MINESKIN_ENDPOINT,
                         new HttpClient.RequestBody(query, HttpClient.HttpType.FORM),
                         HttpClient.HttpType.JSON,
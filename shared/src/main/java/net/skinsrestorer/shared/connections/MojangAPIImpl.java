@@ -17,13 +17,14 @@
  */
 package net.skinsrestorer.shared.connections;
 
+import com.google.gson.Gson;
 import lombok.RequiredArgsConstructor;
 import net.skinsrestorer.api.connections.MojangAPI;
 import net.skinsrestorer.api.exception.DataRequestException;
 import net.skinsrestorer.api.property.MojangSkinDataResult;
 import net.skinsrestorer.api.property.SkinProperty;
 import net.skinsrestorer.shared.connections.http.HttpClient;
-import net.skinsrestorer.shared.connections.http.HttpResponse;
+import net.skinsrestorer.shared.connections.http.StreamedResponse;
 import net.skinsrestorer.shared.connections.responses.AshconResponse;
 import net.skinsrestorer.shared.connections.responses.profile.MineToolsProfileResponse;
 import net.skinsrestorer.shared.connections.responses.profile.MojangProfileResponse;
@@ -34,20 +35,24 @@ import net.skinsrestorer.shared.exception.DataRequestExceptionShared;
 import net.skinsrestorer.shared.log.SRLogger;
 import net.skinsrestorer.shared.plugin.SRPlugin;
 import net.skinsrestorer.shared.utils.MetricsCounter;
+import net.skinsrestorer.shared.utils.MicroBatcher;
 import net.skinsrestorer.shared.utils.UUIDUtils;
 import net.skinsrestorer.shared.utils.ValidationUtil;
+import org.jetbrains.annotations.Nullable;
 
 import javax.inject.Inject;
 import java.io.IOException;
 import java.net.URI;
-import java.util.Collections;
-import java.util.Optional;
-import java.util.UUID;
+import java.util.*;
 
 @RequiredArgsConstructor(onConstructor_ = @Inject)
 public class MojangAPIImpl implements MojangAPI {
     private static final String ASHCON = "https://api.ashcon.app/mojang/v2/user/%uuidOrName%";
     private static final String UUID_MOJANG = "https://api.mojang.com/users/profiles/minecraft/%playerName%";
+    private static final URI UUID_MOJANG_BULK = URI.create("https://api.minecraftservices.com/minecraft/profile/lookup/bulk/byname");
+    private static final int UUID_MOJANG_BULK_MAX = 10;
+    private static final int UUID_MOJANG_BULK_WINDOW_MILLIS = 20;
+    private static final Gson GSON = new Gson();
     private static final String UUID_MINETOOLS = "https://api.minetools.eu/uuid/%playerName%";
     private static final String PROFILE_MOJANG = "https://sessionserver.mojang.com/session/minecraft/profile/%uuid%?unsigned=false";
     private static final String PROFILE_MINETOOLS = "https://api.minetools.eu/profile/%uuid%";
@@ -56,6 +61,10 @@ public class MojangAPIImpl implements MojangAPI {
     private final SRLogger logger;
     private final SRPlugin plugin;
     private final HttpClient httpClient;
+    private final ProviderRouter providerRouter;
+    private final RequestLimiter requestLimiter;
+    private final MicroBatcher<String, Optional<UUID>, DataRequestException> uuidBatcher =
+            new MicroBatcher<>(UUID_MOJANG_BULK_MAX, UUID_MOJANG_BULK_WINDOW_MILLIS, this::getUUIDsMojang);
 
     @Override
     public Optional<MojangSkinDataResult> getSkin(String playerName) throws DataRequestException {
@@ -63,18 +72,19 @@ public class MojangAPIImpl implements MojangAPI {
             return Optional.empty();
         }
 
-        try {
-            return getDataAshcon(playerName);
-        } catch (DataRequestException e) {
-            logger.debug(e);
-            Optional<UUID> uuidResult = getUUIDStartMojang(playerName);
-            if (uuidResult.isEmpty()) {
-                return Optional.empty();
-            }
+        return providerRouter.route(List.of(
+                new ProviderRouter.Provider<>(MetricsCounter.Service.ASHCON, () -> getDataAshcon(playerName)),
+                new ProviderRouter.Provider<>(MetricsCounter.Service.MOJANG, () -> getSkin(playerName, getUUIDMojangBatched(playerName), this::getProfileMojang)),
+                new ProviderRouter.Provider<>(MetricsCounter.Service.MINE_TOOLS, () -> getSkin(playerName, getUUIDMineTools(playerName), this::getProfileMineTools))
+        ));
+    }
 
-            return getProfileStartMojang(uuidResult.get()).flatMap(propertyResponse ->
-                    Optional.of(MojangSkinDataResult.of(uuidResult.get(), propertyResponse)));
+    private Optional<MojangSkinDataResult> getSkin(String playerName, Optional<UUID> uuidResult, ProfileLookup profileLookup) throws DataRequestException {
+        if (uuidResult.isEmpty()) {
+            return Optional.empty();
         }
+
+        return profileLookup.get(uuidResult.get()).map(property -> MojangSkinDataResult.of(uuidResult.get(), property));
     }
 
     /**
@@ -88,26 +98,19 @@ public class MojangAPIImpl implements MojangAPI {
             return Optional.empty();
         }
 
-        try {
-            return getDataAshcon(playerName).map(MojangSkinDataResult::getUniqueId);
-        } catch (DataRequestException e) {
-            logger.debug(e);
-            return getUUIDStartMojang(playerName);
-        }
-    }
-
-    private Optional<UUID> getUUIDStartMojang(String playerName) throws DataRequestException {
-        try {
-            return getUUIDMojang(playerName);
-        } catch (DataRequestException e) {
-            logger.debug(e);
-            return getUUIDMineTools(playerName);
-        }
+        // Mojang first, the bulk endpoint resolves the names of many joining players at once
+        return providerRouter.route(List.of(
+                new ProviderRouter.Provider<>(MetricsCounter.Service.MOJANG, () -> getUUIDMojangBatched(playerName)),
+                new ProviderRouter.Provider<>(MetricsCounter.Service.ASHCON, () -> getDataAshcon(playerName).map(MojangSkinDataResult::getUniqueId)),
+                new ProviderRouter.Provider<>(MetricsCounter.Service.MINE_TOOLS, () -> getUUIDMineTools(playerName))
+        ));
     }
 
     protected Optional<MojangSkinDataResult> getDataAshcon(String uuidOrName) throws DataRequestException {
-        HttpResponse httpResponse = readURL(URI.create(ASHCON.replace("%uuidOrName%", uuidOrName)), MetricsCounter.Service.ASHCON);
-        AshconResponse response = httpResponse.getBodyAs(AshconResponse.class);
+        AshconResponse response = readURL(URI.create(ASHCON.replace("%uuidOrName%", uuidOrName)), MetricsCounter.Service.ASHCON, AshconResponse.class).body();
+        if (response == null) {
+            throw new DataRequestExceptionShared("Ashcon returned no body");
+        }
 
         if (response.getCode() == 404) {
             return Optional.empty();
@@ -145,13 +148,13 @@ public class MojangAPIImpl implements MojangAPI {
     }
 
     public Optional<UUID> getUUIDMojang(String playerName) throws DataRequestException {
-        HttpResponse httpResponse = readURL(URI.create(UUID_MOJANG.replace("%playerName%", playerName)), MetricsCounter.Service.MOJANG);
+        JsonResponse<MojangUUIDResponse> httpResponse = readURL(URI.create(UUID_MOJANG.replace("%playerName%", playerName)), MetricsCounter.Service.MOJANG, MojangUUIDResponse.class);
 
-        if (httpResponse.statusCode() == 204 || httpResponse.statusCode() == 404 || httpResponse.body().isEmpty()) {
+        MojangUUIDResponse response = httpResponse.body();
+        if (httpResponse.statusCode() == 204 || httpResponse.statusCode() == 404 || response == null) {
             return Optional.empty();
         }
 
-        MojangUUIDResponse response = httpResponse.getBodyAs(MojangUUIDResponse.class);
         if (response.getError() != null) {
             throw new DataRequestExceptionShared("Mojang error: " + response.getError());
         }
@@ -160,9 +163,43 @@ public class MojangAPIImpl implements MojangAPI {
                 .map(UUIDUtils::convertToDashed);
     }
 
+    /**
+     * Resolves the name together with other names looked up at the same time.
+     */
+    private Optional<UUID> getUUIDMojangBatched(String playerName) throws DataRequestException {
+        return uuidBatcher.get(playerName.toLowerCase(Locale.ROOT));
+    }
+
+    private Map<String, Optional<UUID>> getUUIDsMojang(Set<String> playerNames) throws DataRequestException {
+        JsonResponse<MojangUUIDResponse[]> httpResponse = readURL(UUID_MOJANG_BULK, MetricsCounter.Service.MOJANG, 5_000,
+                new HttpClient.RequestBody(GSON.toJson(playerNames), HttpClient.HttpType.JSON), MojangUUIDResponse[].class);
+        if (httpResponse.statusCode() != 200) {
+            throw new DataRequestExceptionShared("Mojang bulk lookup failed with status " + httpResponse.statusCode());
+        }
+
+        // Names without a profile are left out of the response
+        Map<String, Optional<UUID>> result = new HashMap<>();
+        for (String playerName : playerNames) {
+            result.put(playerName, Optional.empty());
+        }
+
+        MojangUUIDResponse[] responses = httpResponse.body();
+        if (responses != null) {
+            for (MojangUUIDResponse response : responses) {
+                if (response.getName() != null && response.getId() != null) {
+                    result.put(response.getName().toLowerCase(Locale.ROOT), Optional.of(UUIDUtils.convertToDashed(response.getId())));
+                }
+            }
+        }
+
+        return result;
+    }
+
     protected Optional<UUID> getUUIDMineTools(String playerName) throws DataRequestException {
-        HttpResponse httpResponse = readURL(URI.create(UUID_MINETOOLS.replace("%playerName%", playerName)), MetricsCounter.Service.MINE_TOOLS, 10_000);
-        MineToolsUUIDResponse response = httpResponse.getBodyAs(MineToolsUUIDResponse.class);
+        MineToolsUUIDResponse response = readURL(URI.create(UUID_MINETOOLS.replace("%playerName%", playerName)), MetricsCounter.Service.MINE_TOOLS, 10_000, MineToolsUUIDResponse.class).body();
+        if (response == null) {
+            throw new DataRequestExceptionShared("MineTools returned no body");
+        }
 
         if (response.getStatus() != null && response.getStatus().equals("ERR")) {
             throw new DataRequestExceptionShared("MineTools error: " + response.getStatus());
@@ -173,27 +210,16 @@ public class MojangAPIImpl implements MojangAPI {
     }
 
     public Optional<SkinProperty> getProfile(UUID uuid) throws DataRequestException {
-        try {
-            return getDataAshcon(uuid.toString().replace("-", "")).map(MojangSkinDataResult::getSkinProperty);
-        } catch (DataRequestException e) {
-            logger.debug(e);
-            return getProfileStartMojang(uuid);
-        }
-    }
-
-    private Optional<SkinProperty> getProfileStartMojang(UUID uuid) throws DataRequestException {
-        try {
-            return getProfileMojang(uuid);
-        } catch (DataRequestException e) {
-            logger.debug(e);
-            return getProfileMineTools(uuid);
-        }
+        return providerRouter.route(List.of(
+                new ProviderRouter.Provider<>(MetricsCounter.Service.ASHCON, () -> getDataAshcon(UUIDUtils.convertToNoDashes(uuid)).map(MojangSkinDataResult::getSkinProperty)),
+                new ProviderRouter.Provider<>(MetricsCounter.Service.MOJANG, () -> getProfileMojang(uuid)),
+                new ProviderRouter.Provider<>(MetricsCounter.Service.MINE_TOOLS, () -> getProfileMineTools(uuid))
+        ));
     }
 
     public Optional<SkinProperty> getProfileMojang(UUID uuid) throws DataRequestException {
-        HttpResponse httpResponse = readURL(URI.create(PROFILE_MOJANG.replace("%uuid%", UUIDUtils.convertToNoDashes(uuid))), MetricsCounter.Service.MOJANG);
-        MojangProfileResponse response = httpResponse.getBodyAs(MojangProfileResponse.class);
-        if (response.getProperties() == null) {
+        MojangProfileResponse response = readURL(URI.create(PROFILE_MOJANG.replace("%uuid%", UUIDUtils.convertToNoDashes(uuid))), MetricsCounter.Service.MOJANG, MojangProfileResponse.class).body();
+        if (response == null || response.getProperties() == null) {
             return Optional.empty();
         }
 
@@ -206,9 +232,8 @@ public class MojangAPIImpl implements MojangAPI {
     }
 
     protected Optional<SkinProperty> getProfileMineTools(UUID uuid) throws DataRequestException {
-        HttpResponse httpResponse = readURL(URI.create(PROFILE_MINETOOLS.replace("%uuid%", UUIDUtils.convertToNoDashes(uuid))), MetricsCounter.Service.MINE_TOOLS, 10_000);
-        MineToolsProfileResponse response = httpResponse.getBodyAs(MineToolsProfileResponse.class);
-        if (response.getRaw() == null) {
+        MineToolsProfileResponse response = readURL(URI.create(PROFILE_MINETOOLS.replace("%uuid%", UUIDUtils.convertToNoDashes(uuid))), MetricsCounter.Service.MINE_TOOLS, 10_000, MineToolsProfileResponse.class).body();
+        if (response == null || response.getRaw() == null) {
             return Optional.empty();
         }
 
@@ -225,26 +250,51 @@ public class MojangAPIImpl implements MojangAPI {
         return Optional.of(SkinProperty.of(property.getValue(), property.getSignature()));
     }
 
-    private HttpResponse readURL(URI uri, MetricsCounter.Service service) throws DataRequestException {
-        return readURL(uri, service, 5_000);
+    private <T> JsonResponse<T> readURL(URI uri, MetricsCounter.Service service, Class<T> type) throws DataRequestException {
+        return readURL(uri, service, 5_000, type);
     }
 
-    private HttpResponse readURL(URI uri, MetricsCounter.Service service, int timeout) throws DataRequestException {
+    private <T> JsonResponse<T> readURL(URI uri, MetricsCounter.Service service, int timeout, Class<T> type) throws DataRequestException {
+        return readURL(uri, service, timeout, null, type);
+    }
+
+    /**
+     * Sends the request and decodes the JSON body while it arrives.
+     */
+    private <T> JsonResponse<T> readURL(URI uri, MetricsCounter.Service service, int timeout,
+                                        @Nullable HttpClient.RequestBody body, Class<T> type) throws DataRequestException {
+        requestLimiter.acquire(service);
         metricsCounter.increment(service);
 
-        try {
-            return httpClient.execute(
-                    uri,
-                    null,
-                    HttpClient.HttpType.JSON,
-                    plugin.getUserAgent(),
-                    HttpClient.HttpMethod.GET,
-                    Collections.emptyMap(),
-                    timeout
-            );
+        try (StreamedResponse response = httpClient.executeStreaming(
+                uri,
+                body,
+                HttpClient.HttpType.JSON,
+                plugin.getUserAgent(),
+                body == null ? HttpClient.HttpMethod.GET : HttpClient.HttpMethod.POST,
+                Collections.emptyMap(),
+                timeout
+        )) {
+            if (response.statusCode() == 429) {
+                requestLimiter.penalize(service);
+                throw new DataRequestExceptionShared("Rate limited by " + service);
+            }
+
+            T decoded = response.statusCode() == 204 ? null : response.getBodyAs(type);
+            return new JsonResponse<>(response.statusCode(), decoded);
         } catch (IOException e) {
             logger.debug("Error while reading URL: " + uri, e);
             throw new DataRequestExceptionShared(e);
         }
     }
+
+    /**
+     * @param body the decoded body, null if the body was empty
+     */
+    private record JsonResponse<T>(int statusCode, @Nullable T body) {
+    }
+
+    private interface ProfileLookup {
+        Optional<SkinProperty> get(UUID uuid) throws DataRequestException;
+    }
 }
@@ -0,0 +1,381 @@
+/*
+ * SkinsRestorer
+ * Copyright (C) 2024  SkinsRestorer Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.skinsrestorer.shared.connections;
+
+import ch.jalu.configme.SettingsManager;
+import lombok.RequiredArgsConstructor;
+import net.skinsrestorer.api.exception.DataRequestException;
+import net.skinsrestorer.shared.config.APIConfig;
+import net.skinsrestorer.shared.exception.DataRequestExceptionShared;
+import net.skinsrestorer.shared.log.SRLogger;
+import net.skinsrestorer.shared.storage.StorageExecutor;
+import net.skinsrestorer.shared.utils.MetricsCounter;
+
+import javax.inject.Inject;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Picks the order in which equivalent lookup providers are tried.
+ * Every provider keeps its recent latency and error rate, healthy and fast providers are tried first.
+ * A provider that keeps failing is skipped for a while (its circuit is open), after that a single
+ * lookup checks whether it works again. Optionally a second provider is started in the background
+ * when the first one takes longer than it usually does, so its answer is ready if the first one fails.
+ */
+@RequiredArgsConstructor(onConstructor_ = @Inject)
+public class ProviderRouter {
+    private static final long WINDOW_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    private static final int WINDOW_SIZE = 50;
+    private static final int FAILURES_TO_OPEN = 5;
+    private static final int MIN_SAMPLES_FOR_ERROR_RATE = 10;
+    private static final double ERROR_RATE_TO_OPEN = 0.5;
+    private static final long OPEN_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    private static final long MIN_HEDGE_DELAY_MILLIS = 200;
+    private static final long MAX_HEDGE_DELAY_MILLIS = 3000;
+    private static final long DEFAULT_HEDGE_DELAY_MILLIS = 1000;
+    private static final int HEDGE_THREADS = 4;
+    private final Map<MetricsCounter.Service, ProviderHealth> health = new EnumMap<>(MetricsCounter.Service.class);
+    private final AtomicInteger threadCounter = new AtomicInteger();
+    private final ScheduledThreadPoolExecutor hedgeExecutor = createHedgeExecutor(threadCounter);
+    private final SettingsManager settings;
+    private final SRLogger logger;
+
+    private static ScheduledThreadPoolExecutor createHedgeExecutor(AtomicInteger threadCounter) {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(HEDGE_THREADS, r -> {
+            Thread t = new Thread(r);
+            t.setName("SkinsRestorer-Hedge-" + threadCounter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        executor.setKeepAliveTime(60, TimeUnit.SECONDS);
+        executor.allowCoreThreadTimeOut(true);
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    /**
+     * Runs the lookup on the providers in order of their health until one of them answers.
+     *
+     * @param providers the providers in their preferred order, used while there is no data about them yet
+     * @return the answer of the first provider that did not fail
+     * @throws DataRequestException the failure of the last provider, if all of them failed
+     */
+    public <T> T route(List<Provider<T>> providers) throws DataRequestException {
+        List<Provider<T>> ordered = order(providers);
+        if (ordered.size() > 1 && settings.getProperty(APIConfig.HEDGE_REQUESTS)) {
+            return routeHedged(ordered);
+        }
+
+        DataRequestException lastError = null;
+        Iterator<Provider<T>> remaining = ordered.iterator();
+        Provider<T> provider;
+        while ((provider = next(remaining)) != null) {
+            try {
+                return run(provider);
+            } catch (DataRequestException e) {
+                logger.debug(e);
+                lastError = e;
+            }
+        }
+
+        throw lastError != null ? lastError : new DataRequestExceptionShared("All providers are unavailable");
+    }
+
+    /**
+     * Runs the first provider on this thread and the next one on the bounded hedge pool once the first is slower than usual.
+     * Hedges that can't start before the first provider is done are dropped.
+     */
+    private <T> T routeHedged(List<Provider<T>> ordered) throws DataRequestException {
+        Iterator<Provider<T>> remaining = ordered.iterator();
+        Provider<T> first = next(remaining);
+        if (first == null) {
+            throw new DataRequestExceptionShared("All providers are unavailable");
+        }
+
+        Hedge<T> hedge = new Hedge<>();
+        ScheduledFuture<?> trigger = hedgeExecutor.schedule(StorageExecutor.withPriority(StorageExecutor.currentPriority(), () -> {
+            Provider<T> provider;
+            synchronized (hedge) {
+                if (hedge.closed || (provider = next(remaining)) == null) {
+                    return;
+                }
+
+                hedge.started = true;
+            }
+
+            try {
+                hedge.result.complete(run(provider));
+            } catch (DataRequestException e) {
+                hedge.result.completeExceptionally(e);
+            } catch (RuntimeException e) {
+                hedge.result.completeExceptionally(new DataRequestExceptionShared(e));
+            }
+        }), healthOf(first.service()).hedgeDelayMillis(), TimeUnit.MILLISECONDS);
+
+        DataRequestException lastError;
+        try {
+            T result = run(first);
+            hedge.close();
+            trigger.cancel(false);
+            return result;
+        } catch (DataRequestException e) {
+            logger.debug(e);
+            lastError = e;
+        }
+
+        boolean hedgeStarted = hedge.close();
+        trigger.cancel(false);
+        if (hedgeStarted) {
+            try {
+                return hedge.result.get();
+            } catch (ExecutionException e) {
+                logger.debug(e.getCause());
+                lastError = (DataRequestException) e.getCause();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new DataRequestExceptionShared(e);
+            }
+        }
+
+        // Nobody else touches the iterator once the hedge is closed
+        Provider<T> provider;
+        while ((provider = next(remaining)) != null) {
+            try {
+                return run(provider);
+            } catch (DataRequestException e) {
+                logger.debug(e);
+                lastError = e;
+            }
+        }
+
+        throw lastError;
+    }
+
+    /**
+     * @return the next provider whose circuit allows a lookup, or null if none is left
+     */
+    private <T> Provider<T> next(Iterator<Provider<T>> remaining) {
+        while (remaining.hasNext()) {
+            Provider<T> provider = remaining.next();
+            if (healthOf(provider.service()).tryAcquire()) {
+                return provider;
+            }
+        }
+
+        return null;
+    }
+
+    private <T> T run(Provider<T> provider) throws DataRequestException {
+        ProviderHealth providerHealth = healthOf(provider.service());
+        long start = System.nanoTime();
+        try {
+            T result = provider.lookup().get();
+            providerHealth.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), false);
+            return result;
+        } catch (RequestLimiter.LimitExceededException e) {
+            // Our own budget, says nothing about the health of the provider
+            providerHealth.release();
+            throw e;
+        } catch (DataRequestException | RuntimeException e) {
+            providerHealth.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), true);
+            throw e;
+        }
+    }
+
+    private <T> List<Provider<T>> order(List<Provider<T>> providers) {
+        long now = System.currentTimeMillis();
+        List<Provider<T>> available = new ArrayList<>();
+        for (Provider<T> provider : providers) {
+            if (healthOf(provider.service()).isAvailable(now)) {
+                available.add(provider);
+            }
+        }
+
+        if (available.isEmpty()) {
+            // Trying them anyway beats failing every lookup until a circuit closes again
+            for (Provider<T> provider : providers) {
+                healthOf(provider.service()).reset();
+            }
+            return providers;
+        }
+
+        // Stable sort, so providers without data keep their preferred order
+        available.sort(Comparator.comparingDouble(provider -> healthOf(provider.service()).score(now)));
+        return available;
+    }
+
+    private ProviderHealth healthOf(MetricsCounter.Service service) {
+        synchronized (health) {
+            return health.computeIfAbsent(service, s -> new ProviderHealth());
+        }
+    }
+
+    public record Provider<T>(MetricsCounter.Service service, Lookup<T> lookup) {
+    }
+
+    public interface Lookup<T> {
+        T get() throws DataRequestException;
+    }
+
+    /**
+     * The background lookup of a hedged route, guarded by its own monitor.
+     */
+    private static class Hedge<T> {
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private boolean closed;
+        private boolean started;
+
+        /**
+         * Keeps the hedge from starting.
+         *
+         * @return whether it started already
+         */
+        synchronized boolean close() {
+            closed = true;
+            return started;
+        }
+    }
+
+    /**
+     * Lookups of the last {@link #WINDOW_MILLIS} and the circuit of one provider.
+     */
+    private static class ProviderHealth {
+        private final long[] times = new long[WINDOW_SIZE];
+        private final long[] latencies = new long[WINDOW_SIZE];
+        private final boolean[] failures = new boolean[WINDOW_SIZE];
+        private int next;
+        private int consecutiveFailures;
+        private long openUntil;
+        private boolean trialRunning;
+
+        synchronized void record(long latencyMillis, boolean failed) {
+            long now = System.currentTimeMillis();
+            if (trialRunning) {
+                trialRunning = false;
+                if (!failed) {
+                    // Works again, older failures no longer say anything about it
+                    reset();
+                }
+            }
+
+            times[next] = now;
+            latencies[next] = latencyMillis;
+            failures[next] = failed;
+            next = (next + 1) % WINDOW_SIZE;
+
+            consecutiveFailures = failed ? consecutiveFailures + 1 : 0;
+            if (failed && (consecutiveFailures >= FAILURES_TO_OPEN || openedByErrorRate(now))) {
+                openUntil = now + OPEN_MILLIS;
+            }
+        }
+
+        private boolean openedByErrorRate(long now) {
+            int samples = 0;
+            int failed = 0;
+            for (int i = 0; i < WINDOW_SIZE; i++) {
+                if (isRecent(i, now)) {
+                    samples++;
+                    if (failures[i]) {
+                        failed++;
+                    }
+                }
+            }
+
+            return samples >= MIN_SAMPLES_FOR_ERROR_RATE && failed >= samples * ERROR_RATE_TO_OPEN;
+        }
+
+        synchronized void release() {
+            trialRunning = false;
+        }
+
+        synchronized boolean isAvailable(long now) {
+            return now >= openUntil && !trialRunning;
+        }
+
+        /**
+         * @return whether a lookup may run, once the circuit was open only a single trial lookup is allowed
+         */
+        synchronized boolean tryAcquire() {
+            if (openUntil == 0) {
+                return true;
+            }
+
+            if (System.currentTimeMillis() < openUntil || trialRunning) {
+                return false;
+            }
+
+            trialRunning = true;
+            return true;
+        }
+
+        synchronized void reset() {
+            Arrays.fill(times, 0);
+            consecutiveFailures = 0;
+            openUntil = 0;
+        }
+
+        /**
+         * @return lower is better, the average latency weighted by the error rate, 0 without data
+         */
+        synchronized double score(long now) {
+            int samples = 0;
+            int failed = 0;
+            long totalLatency = 0;
+            for (int i = 0; i < WINDOW_SIZE; i++) {
+                if (isRecent(i, now)) {
+                    samples++;
+                    totalLatency += latencies[i];
+                    if (failures[i]) {
+                        failed++;
+                    }
+                }
+            }
+
+            if (samples == 0) {
+                return 0;
+            }
+
+            double errorRate = (double) failed / samples;
+            return (double) totalLatency / samples * (1 + 4 * errorRate) + errorRate * 1000;
+        }
+
+        synchronized long hedgeDelayMillis() {
+            long now = System.currentTimeMillis();
+            long[] recent = new long[WINDOW_SIZE];
+            int samples = 0;
+            for (int i = 0; i < WINDOW_SIZE; i++) {
+                if (isRecent(i, now) && !failures[i]) {
+                    recent[samples++] = latencies[i];
+                }
+            }
+
+            if (samples == 0) {
+                return DEFAULT_HEDGE_DELAY_MILLIS;
+            }
+
+            Arrays.sort(recent, 0, samples);
+            long p95 = recent[Math.min(samples - 1, (int) Math.ceil(samples * 0.95) - 1)];
+            return Math.max(MIN_HEDGE_DELAY_MILLIS, Math.min(MAX_HEDGE_DELAY_MILLIS, p95));
+        }
+
+        private boolean isRecent(int index, long now) {
+            return times[index] != 0 && now - times[index] < WINDOW_MILLIS;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * SkinsRestorer
+ * Copyright (C) 2024  SkinsRestorer Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.skinsrestorer.shared.connections;
+
+import ch.jalu.configme.SettingsManager;
+import ch.jalu.configme.properties.Property;
+import lombok.RequiredArgsConstructor;
+import net.skinsrestorer.shared.config.APIConfig;
+import net.skinsrestorer.shared.exception.DataRequestExceptionShared;
+import net.skinsrestorer.shared.storage.StorageExecutor;
+import net.skinsrestorer.shared.utils.MetricsCounter;
+
+import javax.inject.Inject;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps outbound requests within a budget per service, so a join storm does not get
+ * the shared IP of the network rate limited.
+ * <p>
+ * Every service has a token bucket refilled with its configured requests per minute,
+ * it can burst up to ten seconds worth of requests.
+ * Requests waiting for a token are served by {@link StorageExecutor#currentPriority()},
+ * logins first. Background requests never wait, they are dropped if no token is free.
+ */
+@RequiredArgsConstructor(onConstructor_ = @Inject)
+public class RequestLimiter {
+    private static final long BURST_MILLIS = TimeUnit.SECONDS.toMillis(10);
+    private final Map<MetricsCounter.Service, Bucket> buckets = new EnumMap<>(MetricsCounter.Service.class);
+    private final AtomicLong sequence = new AtomicLong();
+    private final SettingsManager settings;
+
+    private static Property<Integer> budgetOf(MetricsCounter.Service service) {
+        return switch (service) {
+            case MOJANG -> APIConfig.RATE_LIMIT_MOJANG;
+            case ASHCON -> APIConfig.RATE_LIMIT_ASHCON;
+            case MINE_TOOLS -> APIConfig.RATE_LIMIT_MINE_TOOLS;
+            case MINE_SKIN -> APIConfig.RATE_LIMIT_MINE_SKIN;
+        };
+    }
+
+    /**
+     * Takes a token for a request to the service, waiting for one if needed.
+     *
+     * @throws LimitExceededException if no token became free in time, the request must not be sent
+     */
+    public void acquire(MetricsCounter.Service service) throws LimitExceededException {
+        int perMinute = settings.getProperty(budgetOf(service));
+        if (perMinute <= 0) {
+            return;
+        }
+
+        StorageExecutor.Priority priority = StorageExecutor.currentPriority();
+        long maxWaitMillis = priority == StorageExecutor.Priority.BACKGROUND ? 0 : TimeUnit.SECONDS.toMillis(settings.getProperty(APIConfig.RATE_LIMIT_MAX_WAIT));
+        bucketOf(service).acquire(perMinute, new Waiter(priority, sequence.getAndIncrement()), maxWaitMillis);
+    }
+
+    /**
+     * Empties the bucket of the service, used once it answered that we send too many requests.
+     */
+    public void penalize(MetricsCounter.Service service) {
+        bucketOf(service).drain();
+    }
+
+    public Map<MetricsCounter.Service, Stats> getStats() {
+        Map<MetricsCounter.Service, Stats> stats = new EnumMap<>(MetricsCounter.Service.class);
+        synchronized (buckets) {
+            buckets.forEach((service, bucket) -> stats.put(service, bucket.snapshot()));
+        }
+
+        return stats;
+    }
+
+    private Bucket bucketOf(MetricsCounter.Service service) {
+        synchronized (buckets) {
+            return buckets.computeIfAbsent(service, s -> new Bucket());
+        }
+    }
+
+    /**
+     * @param waitNanos time granted requests spent waiting for their token
+     */
+    public record Stats(int tokens, int queued, long granted, long shed, long waitNanos) {
+        /**
+         * @return the average time granted requests waited for their token, in milliseconds
+         */
+        public double averageWaitMillis() {
+            return granted == 0 ? 0 : waitNanos / (granted * 1_000_000D);
+        }
+    }
+
+    public static class LimitExceededException extends DataRequestExceptionShared {
+        public LimitExceededException(String message) {
+            super(message);
+        }
+    }
+
+    private record Waiter(StorageExecutor.Priority priority, long sequence) implements Comparable<Waiter> {
+        @Override
+        public int compareTo(Waiter other) {
+            int byPriority = priority.compareTo(other.priority);
+            return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    private static class Bucket {
+        private final PriorityQueue<Waiter> waiters = new PriorityQueue<>();
+        private final LongAdder granted = new LongAdder();
+        private final LongAdder shed = new LongAdder();
+        private final LongAdder waitNanos = new LongAdder();
+        private double tokens = Double.NaN;
+        private long lastRefill;
+
+        private synchronized void acquire(int perMinute, Waiter waiter, long maxWaitMillis) throws LimitExceededException {
+            long start = System.nanoTime();
+            long deadline = start + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+            waiters.add(waiter);
+            try {
+                while (true) {
+                    refill(perMinute);
+                    if (waiters.peek() == waiter && tokens >= 1) {
+                        tokens--;
+                        granted.increment();
+                        waitNanos.add(System.nanoTime() - start);
+                        return;
+                    }
+
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        shed.increment();
+                        throw new LimitExceededException("Request budget exhausted");
+                    }
+
+                    long untilNextToken = (long) Math.ceil((1 - Math.min(tokens, 1)) * 60_000 / perMinute);
+                    TimeUnit.NANOSECONDS.timedWait(this, Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(Math.max(1, untilNextToken))));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                shed.increment();
+                throw new LimitExceededException("Interrupted while waiting for request budget");
+            } finally {
+                waiters.remove(waiter);
+                // The next waiter may be able to take a token now
+                notifyAll();
+            }
+        }
+
+        private void refill(int perMinute) {
+            long now = System.currentTimeMillis();
+            double capacity = Math.max(1, perMinute * BURST_MILLIS / 60_000D);
+            if (Double.isNaN(tokens)) {
+                tokens = capacity;
+            } else {
+                tokens = Math.min(capacity, tokens + (now - lastRefill) * perMinute / 60_000D);
+            }
+
+            lastRefill = now;
+        }
+
+        private synchronized void drain() {
+            tokens = 0;
+            lastRefill = System.currentTimeMillis();
+        }
+
+        private synchronized Stats snapshot() {
+            return new Stats(Double.isNaN(tokens) ? 0 : (int) tokens, waiters.size(), granted.sum(), shed.sum(), waitNanos.sum());
+        }
+    }
+}
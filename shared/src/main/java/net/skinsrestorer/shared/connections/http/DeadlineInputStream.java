@@ -0,0 +1,152 @@
+/*
+ * SkinsRestorer
+ * Copyright (C) 2024  SkinsRestorer Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.skinsrestorer.shared.connections.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads a response body as it arrives, failing reads once the deadline of the exchange has passed.
+ * Requests one chunk at a time, so a slow reader does not buffer the whole body.
+ */
+class DeadlineInputStream extends InputStream implements Flow.Subscriber<List<ByteBuffer>> {
+    private static final List<ByteBuffer> END = Collections.unmodifiableList(new ArrayList<>());
+    private final BlockingQueue<List<ByteBuffer>> chunks = new LinkedBlockingQueue<>();
+    private final long deadlineNanos;
+    private volatile Flow.Subscription subscription;
+    private volatile Throwable error;
+    private volatile boolean closed;
+    private Iterator<ByteBuffer> current = Collections.emptyIterator();
+    private ByteBuffer buffer;
+    private boolean finished;
+
+    DeadlineInputStream(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        if (closed) {
+            subscription.cancel();
+        } else {
+            subscription.request(1);
+        }
+    }
+
+    @Override
+    public void onNext(List<ByteBuffer> item) {
+        chunks.add(item);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        error = throwable;
+        chunks.add(END);
+    }
+
+    @Override
+    public void onComplete() {
+        chunks.add(END);
+    }
+
+    @Override
+    public int read() throws IOException {
+        ByteBuffer next = nextBuffer();
+        return next == null ? -1 : next.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, b.length);
+        if (len == 0) {
+            return 0;
+        }
+
+        ByteBuffer next = nextBuffer();
+        if (next == null) {
+            return -1;
+        }
+
+        int read = Math.min(len, next.remaining());
+        next.get(b, off, read);
+        return read;
+    }
+
+    private ByteBuffer nextBuffer() throws IOException {
+        while (buffer == null || !buffer.hasRemaining()) {
+            if (current.hasNext()) {
+                buffer = current.next();
+                continue;
+            }
+
+            if (finished) {
+                return null;
+            }
+
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+
+            List<ByteBuffer> next;
+            try {
+                next = chunks.poll(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while reading the response");
+            }
+
+            if (next == null) {
+                close();
+                throw new HttpTimeoutException("Response body did not arrive in time");
+            }
+
+            if (next == END) {
+                finished = true;
+                Throwable cause = error;
+                if (cause != null) {
+                    throw cause instanceof IOException ioException ? ioException : new IOException(cause);
+                }
+
+                return null;
+            }
+
+            current = next.iterator();
+            subscription.request(1);
+        }
+
+        return buffer;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        Flow.Subscription s = subscription;
+        if (s != null) {
+            s.cancel();
+        }
+    }
+}
@@ -24,97 +24,297 @@ import net.skinsrestorer.shared.config.AdvancedConfig;
 import net.skinsrestorer.shared.log.SRLogger;
 
 import javax.inject.Inject;
-import javax.net.ssl.HttpsURLConnection;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
+import java.io.InterruptedIOException;
 import java.net.URI;
-import java.net.URL;
+import java.net.http.HttpRequest;
+import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
 
+/**
+ * Sends HTTPS requests through one shared {@link java.net.http.HttpClient}, so connections are kept alive
+ * and reused, and hosts that support HTTP/2 get all requests multiplexed over a single connection.
+ * Requests to the same host beyond {@link #MAX_REQUESTS_PER_HOST} wait for a free slot instead of opening more connections.
+ */
 @RequiredArgsConstructor(onConstructor_ = @Inject)
 public class HttpClient {
+    private static final int MAX_REQUESTS_PER_HOST = 8;
+    private static final int THREADS = 4;
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10);
     private final SRLogger logger;
     private final SettingsManager settings;
+    private final AtomicInteger threadCounter = new AtomicInteger();
+    private final ExecutorService executorService = Executors.newFixedThreadPool(THREADS, r -> {
+        Thread t = new Thread(r);
+        t.setName("SkinsRestorer-HTTP-" + threadCounter.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+    private final Map<String, HostLimit> hostLimits = new ConcurrentHashMap<>();
+    private final java.net.http.HttpClient client = java.net.http.HttpClient.newBuilder()
+            .version(java.net.http.HttpClient.Version.HTTP_2)
+            .followRedirects(java.net.http.HttpClient.Redirect.NORMAL)
+            .connectTimeout(CONNECT_TIMEOUT)
+            .executor(executorService)
+            .build();
 
+    /**
+     * Blocking variant of {@link #executeAsync(URI, RequestBody, HttpType, String, HttpMethod, Map, int)}.
+     */
     public HttpResponse execute(URI uri, RequestBody requestBody, HttpType accepts,
                                 String userAgent, HttpMethod method,
                                 Map<String, String> headers, int timeout) throws IOException {
-        if (settings.getProperty(AdvancedConfig.NO_CONNECTIONS)) {
-            throw new IOException("Connections are disabled.");
+        try {
+            return executeAsync(uri, requestBody, accepts, userAgent, method, headers, timeout).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for " + uri);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Sends the request once a slot for its host is free.
+     *
+     * @param timeout milliseconds until the response has to be complete, including the wait for a slot
+     * @return the response, or a future failed with an {@link IOException}
+     */
+    public CompletableFuture<HttpResponse> executeAsync(URI uri, RequestBody requestBody, HttpType accepts,
+                                                        String userAgent, HttpMethod method,
+                                                        Map<String, String> headers, int timeout) {
+        HttpRequest httpRequest;
+        try {
+            httpRequest = buildRequest(uri, requestBody, accepts, userAgent, method, headers, timeout, false);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
         }
 
+        HostLimit hostLimit = hostLimits.computeIfAbsent(uri.getHost(), host -> new HostLimit());
+        CompletableFuture<HttpResponse> future = new CompletableFuture<>();
+        // The request timeout only covers the wait for the headers, this one covers the queue and the body as well
+        failAfterTimeout(future, uri, timeout);
+        hostLimit.run(() -> {
+            if (future.isDone()) {
+                // Timed out while waiting for a slot
+                return future;
+            }
+
+            long start = System.currentTimeMillis();
+            CompletableFuture<java.net.http.HttpResponse<String>> exchange = client.sendAsync(httpRequest, java.net.http.HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+            exchange.whenComplete((response, throwable) -> {
+                if (throwable != null) {
+                    Throwable cause = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+                    future.completeExceptionally(cause instanceof IOException ? cause : new IOException(cause));
+                    return;
+                }
+
+                HttpResponse result = new HttpResponse(response.statusCode(), response.body(), response.headers().map());
+                logger.debug("Response body: " + result.body()
+                        .replace("\n", "")
+                        .replace("\r", ""));
+                logger.debug("Response code: " + result.statusCode() + " (" + response.version() + ")");
+                logger.debug("Request took " + (System.currentTimeMillis() - start) + "ms.");
+                future.complete(result);
+            });
+            // Abort a stalled exchange, the slot is released with the future
+            future.whenComplete((result, throwable) -> exchange.cancel(true));
+            return future;
+        });
+
+        return future;
+    }
+
+    private static void failAfterTimeout(CompletableFuture<?> future, URI uri, int timeout) {
+        CompletableFuture.delayedExecutor(timeout, TimeUnit.MILLISECONDS).execute(() ->
+                future.completeExceptionally(new HttpTimeoutException("Request to " + uri + " did not complete within " + timeout + "ms")));
+    }
+
+    /**
+     * Sends the request and returns as soon as the response headers arrived, the body is read by the caller.
+     * Asks for a gzip compressed body, which is decompressed while it is read.
+     *
+     * @param timeout milliseconds until the response has to be read completely, reads fail after that
+     * @return the response, which has to be closed
+     */
+    public StreamedResponse executeStreaming(URI uri, RequestBody requestBody, HttpType accepts,
+                                             String userAgent, HttpMethod method,
+                                             Map<String, String> headers, int timeout) throws IOException {
+        HttpRequest httpRequest = buildRequest(uri, requestBody, accepts, userAgent, method, headers, timeout, true);
+        HostLimit hostLimit = hostLimits.computeIfAbsent(uri.getHost(), host -> new HostLimit());
+        CompletableFuture<java.net.http.HttpResponse<Flow.Publisher<List<ByteBuffer>>>> future = new CompletableFuture<>();
+        // Keeps the host slot until the caller is done reading
+        CompletableFuture<Void> released = new CompletableFuture<>();
+        DeadlineInputStream stream = new DeadlineInputStream(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout));
         long start = System.currentTimeMillis();
-        URL url = uri.toURL();
+        failAfterTimeout(future, uri, timeout);
+        // At the deadline the exchange is aborted and the slot given back, even if the caller still holds the response
+        CompletableFuture.delayedExecutor(timeout, TimeUnit.MILLISECONDS).execute(() -> {
+            stream.close();
+            released.complete(null);
+        });
+        hostLimit.run(() -> {
+            if (future.isDone()) {
+                // Timed out while waiting for a slot
+                released.complete(null);
+                return released;
+            }
+
+            CompletableFuture<java.net.http.HttpResponse<Flow.Publisher<List<ByteBuffer>>>> exchange =
+                    client.sendAsync(httpRequest, java.net.http.HttpResponse.BodyHandlers.ofPublisher());
+            exchange.whenComplete((response, throwable) -> {
+                if (throwable != null) {
+                    Throwable cause = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+                    future.completeExceptionally(cause instanceof IOException ? cause : new IOException(cause));
+                } else {
+                    future.complete(response);
+                }
+            });
+            future.whenComplete((response, throwable) -> {
+                if (throwable != null) {
+                    exchange.cancel(true);
+                    released.complete(null);
+                }
+            });
+            return released;
+        });
+
+        java.net.http.HttpResponse<Flow.Publisher<List<ByteBuffer>>> response;
+        try {
+            response = future.get();
+        } catch (InterruptedException e) {
+            future.completeExceptionally(e);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for " + uri);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+
+            throw new IOException(e.getCause());
+        }
+
+        response.body().subscribe(stream);
+        logger.debug("Response code: " + response.statusCode() + " (" + response.version() + ")");
+        logger.debug("Request took " + (System.currentTimeMillis() - start) + "ms.");
+        InputStream body = stream;
+        try {
+            if (response.headers().firstValue("Content-Encoding").filter("gzip"::equalsIgnoreCase).isPresent()) {
+                body = new GZIPInputStream(body);
+            }
+        } catch (IOException e) {
+            closeQuietly(body);
+            released.complete(null);
+            throw e;
+        }
+
+        return new StreamedResponse(response.statusCode(), response.headers().map(), body, () -> released.complete(null));
+    }
+
+    private HttpRequest buildRequest(URI uri, RequestBody requestBody, HttpType accepts,
+                                     String userAgent, HttpMethod method,
+                                     Map<String, String> headers, int timeout, boolean gzip) throws IOException {
+        if (settings.getProperty(AdvancedConfig.NO_CONNECTIONS)) {
+            throw new IOException("Connections are disabled.");
+        }
 
         // Ensure we're never sending a request to a non-HTTPS URL.
-        if (!url.getProtocol().equals("https")) {
+        if (!"https".equals(uri.getScheme())) {
             throw new IOException("Only HTTPS is supported.");
         }
 
-        logger.debug("Sending " + method + " request to " + url + " with body: " + requestBody);
+        logger.debug("Sending " + method + " request to " + uri + " with body: " + requestBody);
 
-        HttpsURLConnection connection = (HttpsURLConnection) url.openConnection();
-        connection.setRequestMethod(method.name());
-        connection.setConnectTimeout(timeout);
-        connection.setReadTimeout(timeout);
-        connection.setDoInput(true);
-        connection.setUseCaches(false);
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri)
+                .timeout(Duration.ofMillis(timeout))
+                .header("Accept", accepts.getContentType())
+                .header("User-Agent", userAgent);
 
-        connection.setRequestProperty("Accept", accepts.getContentType());
-        connection.setRequestProperty("User-Agent", userAgent);
+        if (gzip) {
+            request.header("Accept-Encoding", "gzip");
+        }
 
         for (Map.Entry<String, String> header : headers.entrySet()) {
-            connection.setRequestProperty(header.getKey(), header.getValue());
+            request.header(header.getKey(), header.getValue());
         }
 
-        connection.setDoOutput(requestBody != null);
         if (requestBody != null) {
-            connection.setRequestProperty("Content-Type", requestBody.type().getContentType());
-
-            byte[] body = requestBody.body().getBytes(StandardCharsets.UTF_8);
-            connection.setFixedLengthStreamingMode(body.length);
-            try (OutputStream output = connection.getOutputStream()) {
-                output.write(body);
-            }
+            request.header("Content-Type", requestBody.type().getContentType());
+            request.method(method.name(), HttpRequest.BodyPublishers.ofString(requestBody.body(), StandardCharsets.UTF_8));
+        } else {
+            request.method(method.name(), HttpRequest.BodyPublishers.noBody());
         }
 
-        connection.connect();
-
-        InputStream is;
         try {
-            is = connection.getInputStream();
-        } catch (IOException e) {
-            logger.debug("Failed to get input stream, falling back to error stream.", e);
-            is = connection.getErrorStream();
+            return request.build();
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e);
         }
+    }
 
-        if (is == null) {
-            throw new IOException("Failed to get input stream.");
+    private static void closeQuietly(InputStream stream) {
+        try {
+            stream.close();
+        } catch (IOException ignored) {
+            // Only releasing the connection
         }
+    }
+
+    public void shutdown() {
+        executorService.shutdownNow();
+    }
+
+    /**
+     * Limits the requests in flight to one host, the others wait in order.
+     */
+    private static class HostLimit {
+        private final Queue<Supplier<CompletableFuture<?>>> waiting = new ArrayDeque<>();
+        private int running;
 
-        ByteArrayOutputStream byteData = new ByteArrayOutputStream();
-        byte[] buffer = new byte[4096];
-        int read;
-        while ((read = is.read(buffer)) != -1) {
-            byteData.write(buffer, 0, read);
+        void run(Supplier<CompletableFuture<?>> request) {
+            synchronized (this) {
+                if (running >= MAX_REQUESTS_PER_HOST) {
+                    waiting.add(request);
+                    return;
+                }
+
+                running++;
+            }
+
+            start(request);
         }
 
-        HttpResponse response = new HttpResponse(
-                connection.getResponseCode(),
-                byteData.toString(StandardCharsets.UTF_8),
-                connection.getHeaderFields()
-        );
+        private void start(Supplier<CompletableFuture<?>> request) {
+            request.get().whenComplete((ignored, throwable) -> release());
+        }
 
-        logger.debug("Response body: " + response.body()
-                .replace("\n", "")
-                .replace("\r", ""));
-        logger.debug("Response code: " + response.statusCode());
-        logger.debug("Request took " + (System.currentTimeMillis() - start) + "ms.");
+        private void release() {
+            Supplier<CompletableFuture<?>> next;
+            synchronized (this) {
+                next = waiting.poll();
+                if (next == null) {
+                    running--;
+                    return;
+                }
+            }
 
-        return response;
+            start(next);
+        }
     }
 
     public enum HttpMethod {
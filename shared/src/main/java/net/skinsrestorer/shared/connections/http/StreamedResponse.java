@@ -0,0 +1,94 @@
+/*
+ * SkinsRestorer
+ * Copyright (C) 2024  SkinsRestorer Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.skinsrestorer.shared.connections.http;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import net.skinsrestorer.api.exception.DataRequestException;
+import net.skinsrestorer.shared.exception.DataRequestExceptionShared;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A response whose body is decoded while it arrives, without buffering it into a String first.
+ * Only the fields declared by the target class are kept, everything else is skipped by the reader.
+ * Must be closed, the host slot of the request is held until then.
+ */
+public class StreamedResponse implements AutoCloseable {
+    private static final Gson GSON = new Gson();
+    private final int statusCode;
+    private final Map<String, List<String>> headers;
+    private final InputStream body;
+    private final Runnable onClose;
+    private boolean consumed;
+
+    StreamedResponse(int statusCode, Map<String, List<String>> headers, InputStream body, Runnable onClose) {
+        this.statusCode = statusCode;
+        this.headers = headers;
+        this.body = body;
+        this.onClose = onClose;
+    }
+
+    public int statusCode() {
+        return statusCode;
+    }
+
+    public Map<String, List<String>> headers() {
+        return headers;
+    }
+
+    /**
+     * Decodes the body, can only be called once.
+     *
+     * @return the decoded body, or null if the body is empty
+     */
+    public <T> T getBodyAs(Class<T> clazz) throws DataRequestException {
+        if (consumed) {
+            throw new IllegalStateException("Body was already read");
+        }
+
+        consumed = true;
+        try (JsonReader reader = new JsonReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            return GSON.fromJson(reader, clazz);
+        } catch (JsonParseException | IOException e) {
+            throw new DataRequestExceptionShared(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            body.close();
+        } catch (IOException ignored) {
+            // Nothing left to read from it anyway
+        } finally {
+            onClose.run();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "StreamedResponse[statusCode=" + statusCode + "]";
+    }
+}
@@ -20,9 +20,8 @@ package net.skinsrestorer.shared.gui;
 import net.skinsrestorer.shared.listeners.event.ClickEventInfo;
 import net.skinsrestorer.shared.subjects.SRForeign;
 
-import java.util.Map;
 import java.util.function.Consumer;
 
 public interface GUIManager<T> {
-    T createGUI(Consumer<ClickEventInfo> callback, SRForeign player, int page, Map<String, String> skins);
+    T createGUI(Consumer<ClickEventInfo> callback, SRForeign player, int page, GUISkinPage skins);
 }
@@ -0,0 +1,64 @@
+/*
+ * SkinsRestorer
+ * Copyright (C) 2024  SkinsRestorer Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.skinsrestorer.shared.gui;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Remembers the cursor of every GUI page a player has opened.
+ * Pages are keyset paginated, so a page can only be reached by paging to it, and going back needs the earlier cursors.
+ */
+public class GUIPageCursors {
+    private static final int MAX_TRACKED_PLAYERS = 1000;
+    private static final String FIRST_PAGE = "";
+    private final Map<UUID, List<String>> cursors = new LinkedHashMap<>(16, 0.75F, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<UUID, List<String>> eldest) {
+            return size() > MAX_TRACKED_PLAYERS;
+        }
+    };
+
+    /**
+     * @return the cursor to load the page with, empty if the player never reached that page
+     */
+    public synchronized Optional<String> getCursor(UUID playerId, int page) {
+        if (page <= 0) {
+            return Optional.of(FIRST_PAGE);
+        }
+
+        List<String> playerCursors = cursors.get(playerId);
+        return playerCursors != null && page < playerCursors.size() ? Optional.of(playerCursors.get(page)) : Optional.empty();
+    }
+
+    /**
+     * Stores where the page after {@code page} starts, forgetting all later pages since they may have shifted.
+     */
+    public synchronized void setNextCursor(UUID playerId, int page, @Nullable String nextCursor) {
+        List<String> playerCursors = cursors.computeIfAbsent(playerId, k -> new ArrayList<>(List.of(FIRST_PAGE)));
+        if (page >= playerCursors.size()) {
+            return;
+        }
+
+        playerCursors.subList(page + 1, playerCursors.size()).clear();
+        if (nextCursor != null) {
+            playerCursors.add(nextCursor);
+        }
+    }
+}
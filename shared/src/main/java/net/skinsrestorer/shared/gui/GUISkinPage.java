@@ -0,0 +1,104 @@
+/*
+ * SkinsRestorer
+ * Copyright (C) 2024  SkinsRestorer Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.skinsrestorer.shared.gui;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import net.skinsrestorer.api.property.SkinType;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * One page of skins for the skins GUI, sorted by name.
+ * The next page continues after {@link #getNextCursor()} instead of at an offset,
+ * so every page costs the same no matter how deep it is.
+ */
+@Getter
+@RequiredArgsConstructor(staticName = "of")
+public class GUISkinPage {
+    /**
+     * Display name to texture value, at most {@link SharedGUI#HEAD_COUNT_PER_PAGE} entries.
+     */
+    private final Map<String, String> skins;
+    /**
+     * Opaque cursor of the next page, null if this is the last page.
+     */
+    @Nullable
+    private final String nextCursor;
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+
+    /**
+     * Builds a page from sorted entries, fetch one more than {@link SharedGUI#HEAD_COUNT_PER_PAGE}
+     * so the page knows whether there is a next one.
+     */
+    public static <T> GUISkinPage fromEntries(List<T> entries, Function<T, String> displayName,
+                                              Function<T, String> value, Function<T, Cursor> cursor) {
+        Map<String, String> skins = new LinkedHashMap<>();
+        int count = Math.min(entries.size(), SharedGUI.HEAD_COUNT_PER_PAGE);
+        for (T entry : entries.subList(0, count)) {
+            skins.put(displayName.apply(entry), value.apply(entry));
+        }
+
+        String nextCursor = entries.size() > SharedGUI.HEAD_COUNT_PER_PAGE ? cursor.apply(entries.get(count - 1)).encode() : null;
+        return new GUISkinPage(skins, nextCursor);
+    }
+
+    /**
+     * Position in the sorted skin list, the last entry of a page.
+     *
+     * @param name the sort key, usually the display name
+     * @param type either {@link SkinType#PLAYER} or {@link SkinType#CUSTOM}
+     * @param key  the unique key of the skin, breaks ties between equal names
+     */
+    public record Cursor(String name, SkinType type, String key) {
+        public String encode() {
+            String raw = type.name() + '\n' + name + '\n' + key;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        /**
+         * @return the cursor, or empty if it is null or was not created by {@link #encode()}
+         */
+        public static Optional<Cursor> decode(@Nullable String cursor) {
+            if (cursor == null || cursor.isEmpty()) {
+                return Optional.empty();
+            }
+
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\n", 3);
+                if (parts.length != 3) {
+                    return Optional.empty();
+                }
+
+                return Optional.of(new Cursor(parts[1], SkinType.valueOf(parts[0]), parts[2]));
+            } catch (IllegalArgumentException e) {
+                return Optional.empty();
+            }
+        }
+    }
+}
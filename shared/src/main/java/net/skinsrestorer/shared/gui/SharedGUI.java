@@ -23,25 +23,30 @@ import net.skinsrestorer.shared.listeners.event.ClickEventInfo;
 import net.skinsrestorer.shared.plugin.SRServerAdapter;
 import net.skinsrestorer.shared.storage.SkinStorageImpl;
 import net.skinsrestorer.shared.subjects.SRCommandSender;
-import net.skinsrestorer.shared.subjects.SRForeign;
+import net.skinsrestorer.shared.subjects.SRPlayer;
 import net.skinsrestorer.shared.subjects.SRServerPlayer;
 
 import javax.inject.Inject;
+import java.util.Optional;
 import java.util.function.Consumer;
 
 @RequiredArgsConstructor(onConstructor_ = @Inject)
 public class SharedGUI {
     public static final int HEAD_COUNT_PER_PAGE = 36;
     private final SkinStorageImpl skinStorage;
+    private final GUIPageCursors pageCursors;
 
-    public <T> T createGUI(GUIManager<T> manager, Consumer<ClickEventInfo> callback, SRForeign player, int page) {
-        if (page > 999) {
-            page = 999;
+    public <T> T createGUI(GUIManager<T> manager, Consumer<ClickEventInfo> callback, SRPlayer player, int page) {
+        Optional<String> cursor = pageCursors.getCursor(player.getUniqueId(), page);
+        if (cursor.isEmpty()) {
+            // The cursor was forgotten, start over at the first page
+            page = 0;
         }
 
-        int skinNumber = HEAD_COUNT_PER_PAGE * page;
+        GUISkinPage skins = skinStorage.getGUISkins(cursor.orElse(null));
+        pageCursors.setNextCursor(player.getUniqueId(), page, skins.getNextCursor());
 
-        return manager.createGUI(callback, player, page, skinStorage.getGUISkins(skinNumber));
+        return manager.createGUI(callback, player, page, skins);
     }
 
     @RequiredArgsConstructor(onConstructor_ = @Inject)
@@ -70,6 +75,7 @@ public class SharedGUI {
     @RequiredArgsConstructor(onConstructor_ = @Inject)
     public static class ProxyGUIActions implements Consumer<ClickEventInfo> {
         private final SRServerAdapter<?, ?> adapter;
+        private final GUIPageCursors pageCursors;
 
         @Override
         public void accept(ClickEventInfo event) {
@@ -91,10 +97,17 @@ public class SharedGUI {
                     }));
                     player.closeInventory();
                 }
-                case GREEN_PANE -> adapter.runAsync(() ->
-                        adapter.requestSkinsFromProxy(event.player(), event.currentPage() + 1));
-                case YELLOW_PANE -> adapter.runAsync(() ->
-                        adapter.requestSkinsFromProxy(event.player(), event.currentPage() - 1));
+                case GREEN_PANE -> adapter.runAsync(() -> requestPage(player, event.currentPage() + 1));
+                case YELLOW_PANE -> adapter.runAsync(() -> requestPage(player, event.currentPage() - 1));
+            }
+        }
+
+        private void requestPage(SRServerPlayer player, int page) {
+            Optional<String> cursor = pageCursors.getCursor(player.getUniqueId(), page);
+            if (cursor.isEmpty()) {
+                adapter.requestSkinsFromProxy(player, 0, "");
+            } else {
+                adapter.requestSkinsFromProxy(player, page, cursor.get());
             }
         }
     }
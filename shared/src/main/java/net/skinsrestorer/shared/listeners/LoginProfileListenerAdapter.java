@@ -26,11 +26,15 @@ import net.skinsrestorer.shared.config.AdvancedConfig;
 import net.skinsrestorer.shared.config.LoginConfig;
 import net.skinsrestorer.shared.listeners.event.SRLoginProfileEvent;
 import net.skinsrestorer.shared.log.SRLogger;
+import net.skinsrestorer.shared.plugin.SRPlatformAdapter;
+import net.skinsrestorer.shared.storage.StorageExecutor;
 import net.skinsrestorer.shared.storage.adapter.AdapterReference;
 import net.skinsrestorer.shared.storage.adapter.StorageAdapter;
 
 import javax.inject.Inject;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @RequiredArgsConstructor(onConstructor_ = @Inject)
 public final class LoginProfileListenerAdapter<R> {
@@ -38,6 +42,7 @@ public final class LoginProfileListenerAdapter<R> {
     private final PlayerStorage playerStorage;
     private final SRLogger logger;
     private final AdapterReference adapterReference;
+    private final SRPlatformAdapter<?, ?> adapter;
 
     public R handleLogin(SRLoginProfileEvent<R> event) {
         logger.debug("Handling login for " + event.getPlayerName() + " (" + event.getPlayerUniqueId() + ")");
@@ -45,27 +50,45 @@ public final class LoginProfileListenerAdapter<R> {
             return null;
         }
 
-        return event.runAsync(() -> {
+        // Deliberately not getSkinForPlayerAsync, which runs on the storage executor. The Mojang lookup behind it
+        // is blocking (provider hedging, rate limit waits, streamed decoding), so it would park a storage thread
+        // for a whole round trip. The platform's async pool takes that wait, and the login is only resumed
+        // through resumeWhenComplete, so no event thread blocks on it.
+        CompletableFuture<Optional<SkinProperty>> lookup = new CompletableFuture<>();
+        adapter.runAsync(StorageExecutor.withPriority(StorageExecutor.Priority.LOGIN, () -> {
             try {
-                handleAsync(event).ifPresent(event::setResultProperty);
-            } catch (DataRequestException e) {
-                logger.debug(e);
+                migrateLegacyPlayer(event);
+                lookup.complete(playerStorage.getSkinForPlayer(event.getPlayerUniqueId(), event.getPlayerName(), event.hasOnlineProperties()));
+            } catch (Throwable t) {
+                lookup.completeExceptionally(t);
             }
-        });
+        }));
+
+        CompletableFuture<Void> future = lookup
+                .thenAccept(property -> property.ifPresent(event::setResultProperty))
+                .exceptionally(t -> {
+                    Throwable cause = t instanceof CompletionException ? t.getCause() : t;
+                    if (cause instanceof DataRequestException) {
+                        logger.debug(cause);
+                    } else {
+                        logger.severe("Failed to handle login of " + event.getPlayerName(), cause);
+                    }
+                    return null;
+                });
+
+        return event.resumeWhenComplete(future);
     }
 
     private boolean handleSync(SRLoginProfileEvent<R> event) {
         return settings.getProperty(AdvancedConfig.DISABLE_ON_JOIN_SKINS) || (settings.getProperty(LoginConfig.NO_SKIN_IF_LOGIN_CANCELED) && event.isCancelled());
     }
 
-    private Optional<SkinProperty> handleAsync(SRLoginProfileEvent<R> event) throws DataRequestException {
+    private void migrateLegacyPlayer(SRLoginProfileEvent<R> event) {
         try {
             adapterReference.get().migrateLegacyPlayer(event.getPlayerName(), event.getPlayerUniqueId());
         } catch (StorageAdapter.StorageException e) {
             logger.severe("There was a bug while migrating a legacy player to the new format, " +
                     "contact us on discord and provide this error message:", e);
         }
-
-        return playerStorage.getSkinForPlayer(event.getPlayerUniqueId(), event.getPlayerName(), event.hasOnlineProperties());
     }
 }
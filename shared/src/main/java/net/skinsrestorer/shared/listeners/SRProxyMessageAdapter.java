@@ -64,9 +64,10 @@ public final class SRProxyMessageAdapter {
 
             SRProxyPlayer player = optional.get();
             switch (subChannel) {
-                case "getSkins" -> {
-                    int page = Math.min(in.readInt(), 999);
-                    proxyPlugin.sendPage(page, player, skinStorage);
+                case "getSkinsV2" -> {
+                    int page = in.readInt();
+                    String cursor = in.readUTF();
+                    proxyPlugin.sendPage(page, cursor, player, skinStorage);
                 }
                 case "clearSkin" -> commandManager.executeCommand(player, "skin clear");
                 case "setSkin" -> {
@@ -20,6 +20,8 @@ package net.skinsrestorer.shared.listeners;
 import lombok.RequiredArgsConstructor;
 import net.skinsrestorer.api.property.SkinProperty;
 import net.skinsrestorer.shared.api.SharedSkinApplier;
+import net.skinsrestorer.shared.gui.GUIPageCursors;
+import net.skinsrestorer.shared.gui.GUISkinPage;
 import net.skinsrestorer.shared.listeners.event.SRServerMessageEvent;
 import net.skinsrestorer.shared.plugin.SRServerAdapter;
 import net.skinsrestorer.shared.subjects.SRPlayer;
@@ -36,6 +38,7 @@ import java.util.Optional;
 public final class SRServerMessageAdapter {
     private final SRServerAdapter<?, ?> plugin;
     private final SharedSkinApplier<Object> skinApplier;
+    private final GUIPageCursors pageCursors;
 
     public void handlePluginMessage(SRServerMessageEvent event) {
         if (!event.getChannel().equals("sr:messagechannel")) {
@@ -47,13 +50,14 @@ public final class SRServerMessageAdapter {
         try {
             String subChannel = in.readUTF();
 
-            if (subChannel.equalsIgnoreCase("returnSkinsV3")) {
+            if (subChannel.equalsIgnoreCase("returnSkinsV4")) {
                 Optional<SRPlayer> player = plugin.getPlayer(in.readUTF());
                 if (player.isEmpty()) {
                     return;
                 }
 
                 int page = in.readInt();
+                String nextCursor = in.readUTF();
 
                 short len = in.readShort();
                 byte[] msgBytes = new byte[len];
@@ -61,7 +65,10 @@ public final class SRServerMessageAdapter {
 
                 Map<String, String> skinList = MessageProtocolUtil.convertToMap(msgBytes);
 
-                plugin.openProxyGUI(player.get(), page, skinList);
+                GUISkinPage skins = GUISkinPage.of(skinList, nextCursor.isEmpty() ? null : nextCursor);
+                pageCursors.setNextCursor(player.get().getUniqueId(), page, skins.getNextCursor());
+
+                plugin.openProxyGUI(player.get(), page, skins);
             } else if (subChannel.equalsIgnoreCase("SkinUpdateV2")) {
                 skinApplier.applySkin(event.getPlayer().getAs(Object.class),
                         SkinProperty.of(in.readUTF(), in.readUTF()));
@@ -20,6 +20,7 @@ package net.skinsrestorer.shared.listeners.event;
 import net.skinsrestorer.api.property.SkinProperty;
 
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 public interface SRLoginProfileEvent<R> {
     boolean hasOnlineProperties();
@@ -32,5 +33,9 @@ public interface SRLoginProfileEvent<R> {
 
     void setResultProperty(SkinProperty property);
 
-    R runAsync(Runnable runnable);
+    /**
+     * Holds back the login until the future has completed.
+     * Platforms that call the listener on a thread that may block just wait for the future.
+     */
+    R resumeWhenComplete(CompletableFuture<?> future);
 }
@@ -45,18 +45,30 @@ import net.skinsrestorer.shared.config.*;
 import net.skinsrestorer.shared.connections.MineSkinAPIImpl;
 import net.skinsrestorer.shared.connections.MojangAPIImpl;
 import net.skinsrestorer.shared.connections.ServiceCheckerService;
+import net.skinsrestorer.shared.connections.http.HttpClient;
 import net.skinsrestorer.shared.exception.InitializeException;
 import net.skinsrestorer.shared.floodgate.FloodgateUtil;
 import net.skinsrestorer.shared.log.SRChatColor;
 import net.skinsrestorer.shared.log.SRLogger;
 import net.skinsrestorer.shared.storage.CacheStorageImpl;
 import net.skinsrestorer.shared.storage.CooldownStorage;
+import net.skinsrestorer.shared.storage.PlayerSkinRefresher;
 import net.skinsrestorer.shared.storage.PlayerStorageImpl;
+import net.skinsrestorer.shared.storage.SkinPurgeService;
 import net.skinsrestorer.shared.storage.SkinStorageImpl;
+import net.skinsrestorer.shared.storage.StorageExecutor;
 import net.skinsrestorer.shared.storage.adapter.AdapterReference;
+import net.skinsrestorer.shared.storage.adapter.LimitedStorageAdapter;
+import net.skinsrestorer.shared.storage.adapter.StorageAdapter;
+import net.skinsrestorer.shared.storage.adapter.cache.CachedStorageAdapter;
+import net.skinsrestorer.shared.storage.adapter.cache.InvalidationTransport;
+import net.skinsrestorer.shared.storage.adapter.cache.WriteBehindStorageAdapter;
+import net.skinsrestorer.shared.storage.adapter.embedded.EmbeddedAdapter;
 import net.skinsrestorer.shared.storage.adapter.file.FileAdapter;
 import net.skinsrestorer.shared.storage.adapter.mysql.MySQLAdapter;
 import net.skinsrestorer.shared.storage.adapter.mysql.MySQLProvider;
+import net.skinsrestorer.shared.storage.adapter.sqlite.SQLiteAdapter;
+import net.skinsrestorer.shared.storage.adapter.sqlite.SQLiteProvider;
 import net.skinsrestorer.shared.subjects.SRPlayer;
 import net.skinsrestorer.shared.subjects.SRProxyPlayer;
 import net.skinsrestorer.shared.subjects.messages.Message;
@@ -98,6 +110,8 @@ public class SRPlugin {
     private boolean outdated = false;
     @Getter
     private boolean updaterInitialized = false;
+    private InvalidationTransport invalidationTransport;
+    private WriteBehindStorageAdapter writeBehindAdapter;
 
     public SRPlugin(Injector injector, Path dataFolder) {
         injector.register(SRPlugin.class, this);
@@ -289,6 +303,7 @@ public class SRPlugin {
         SkinStorageImpl skinStorage = injector.getSingleton(SkinStorageImpl.class);
         SettingsManager settings = injector.getSingleton(SettingsManager.class);
         try {
+            StorageAdapter storageAdapter;
             if (settings.getProperty(DatabaseConfig.MYSQL_ENABLED)) {
                 MySQLProvider mySQLProvider = injector.getSingleton(MySQLProvider.class);
 
@@ -300,13 +315,68 @@ public class SRPlugin {
 
                 logger.info("Connected to MySQL!");
 
-                injector.getSingleton(AdapterReference.class).setAdapter(adapter);
+                storageAdapter = adapter;
+            } else if (settings.getProperty(DatabaseConfig.LOCAL_STORAGE_TYPE) == DatabaseConfig.LocalStorageType.EMBEDDED) {
+                EmbeddedAdapter adapter = injector.getSingleton(EmbeddedAdapter.class);
+
+                adapter.init();
+
+                storageAdapter = adapter;
+            } else if (settings.getProperty(DatabaseConfig.LOCAL_STORAGE_TYPE) == DatabaseConfig.LocalStorageType.SQLITE) {
+                injector.getSingleton(SQLiteProvider.class).initPool();
+
+                SQLiteAdapter adapter = injector.getSingleton(SQLiteAdapter.class);
+
+                adapter.init();
+
+                storageAdapter = adapter;
             } else {
-                injector.getSingleton(AdapterReference.class).setAdapter(injector.getSingleton(FileAdapter.class));
+                storageAdapter = injector.getSingleton(FileAdapter.class);
+            }
+
+            if (invalidationTransport != null) {
+                invalidationTransport.close();
+                invalidationTransport = null;
+            }
+
+            if (writeBehindAdapter != null) {
+                writeBehindAdapter.close();
+                writeBehindAdapter = null;
+            }
+
+            StorageAdapter backingAdapter = storageAdapter;
+            // Synchronous callers share the limit of the storage executor
+            storageAdapter = new LimitedStorageAdapter(storageAdapter, injector.getSingleton(StorageExecutor.class));
+            if (settings.getProperty(StorageConfig.WRITE_BEHIND_ENABLED)) {
+                writeBehindAdapter = new WriteBehindStorageAdapter(storageAdapter, logger,
+                        settings.getProperty(StorageConfig.WRITE_BEHIND_FLUSH_INTERVAL),
+                        settings.getProperty(StorageConfig.WRITE_BEHIND_MAX_PENDING));
+                storageAdapter = writeBehindAdapter;
+            }
+
+            if (settings.getProperty(StorageConfig.MEMORY_CACHE_ENABLED)) {
+                CachedStorageAdapter cachedAdapter = new CachedStorageAdapter(storageAdapter,
+                        settings.getProperty(StorageConfig.MEMORY_CACHE_MAX_ENTRIES),
+                        settings.getProperty(StorageConfig.MEMORY_CACHE_EXPIRES_AFTER));
+
+                int pollInterval = settings.getProperty(DatabaseConfig.MYSQL_CHANGELOG_POLL_INTERVAL);
+                if (backingAdapter instanceof MySQLAdapter mySQLAdapter && settings.getProperty(DatabaseConfig.MYSQL_ENABLED) && pollInterval > 0) {
+                    invalidationTransport = mySQLAdapter.createChangelogTransport(pollInterval);
+                    cachedAdapter.listen(invalidationTransport);
+                }
+
+                storageAdapter = cachedAdapter;
             }
 
+            injector.getSingleton(AdapterReference.class).setAdapter(storageAdapter);
+
+            injector.getSingleton(SkinPurgeService.class).resumeIfPending();
+
             // Preload default skins
-            adapter.runAsync(skinStorage::preloadDefaultSkins);
+            injector.getSingleton(StorageExecutor.class).supplyAsync(StorageExecutor.Priority.BACKGROUND, () -> {
+                skinStorage.preloadDefaultSkins();
+                return null;
+            });
         } catch (SQLException e) {
             logger.severe("§cCan't connect to MySQL! Disabling SkinsRestorer.", e);
             throw new InitializeException(e);
@@ -477,5 +547,53 @@ public class SRPlugin {
     public void shutdown() {
         adapter.shutdownCleanup();
         shutdownHooks.forEach(Runnable::run);
+
+        SkinPurgeService skinPurgeService = injector.getIfAvailable(SkinPurgeService.class);
+        if (skinPurgeService != null) {
+            skinPurgeService.shutdown();
+        }
+
+        PlayerSkinRefresher skinRefresher = injector.getIfAvailable(PlayerSkinRefresher.class);
+        if (skinRefresher != null) {
+            skinRefresher.shutdown();
+        }
+
+        HttpClient httpClient = injector.getIfAvailable(HttpClient.class);
+        if (httpClient != null) {
+            httpClient.shutdown();
+        }
+
+        StorageExecutor storageExecutor = injector.getIfAvailable(StorageExecutor.class);
+        if (storageExecutor != null && !storageExecutor.shutdown()) {
+            logger.warning("Storage tasks did not finish in time, some changes may not have been saved.");
+        }
+
+        if (writeBehindAdapter != null) {
+            writeBehindAdapter.close();
+        }
+
+        EmbeddedAdapter embeddedAdapter = injector.getIfAvailable(EmbeddedAdapter.class);
+        if (embeddedAdapter != null) {
+            embeddedAdapter.close();
+        }
+
+        FileAdapter fileAdapter = injector.getIfAvailable(FileAdapter.class);
+        if (fileAdapter != null) {
+            fileAdapter.close();
+        }
+
+        if (invalidationTransport != null) {
+            invalidationTransport.close();
+        }
+
+        MySQLProvider mySQLProvider = injector.getIfAvailable(MySQLProvider.class);
+        if (mySQLProvider != null) {
+            mySQLProvider.shutdown();
+        }
+
+        SQLiteProvider sqLiteProvider = injector.getIfAvailable(SQLiteProvider.class);
+        if (sqLiteProvider != null) {
+            sqLiteProvider.shutdown();
+        }
     }
 }
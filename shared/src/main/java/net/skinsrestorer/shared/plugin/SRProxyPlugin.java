@@ -20,6 +20,7 @@ package net.skinsrestorer.shared.plugin;
 import lombok.RequiredArgsConstructor;
 import net.skinsrestorer.api.property.SkinProperty;
 import net.skinsrestorer.shared.exception.InitializeException;
+import net.skinsrestorer.shared.gui.GUISkinPage;
 import net.skinsrestorer.shared.log.SRLogger;
 import net.skinsrestorer.shared.storage.SkinStorageImpl;
 import net.skinsrestorer.shared.subjects.SRProxyPlayer;
@@ -36,18 +37,18 @@ public class SRProxyPlugin {
     private final SRLogger logger;
     private final SRPlugin plugin;
 
-    public void sendPage(int page, SRProxyPlayer player, SkinStorageImpl skinStorage) {
-        int skinNumber = 36 * page;
-
-        byte[] ba = MessageProtocolUtil.convertToByteArray(skinStorage.getGUISkins(skinNumber));
+    public void sendPage(int page, String cursor, SRProxyPlayer player, SkinStorageImpl skinStorage) {
+        GUISkinPage skins = skinStorage.getGUISkins(cursor);
+        byte[] ba = MessageProtocolUtil.convertToByteArray(skins.getSkins());
 
         ByteArrayOutputStream b = new ByteArrayOutputStream();
         DataOutputStream out = new DataOutputStream(b);
 
         try {
-            out.writeUTF("returnSkinsV3");
+            out.writeUTF("returnSkinsV4");
             out.writeUTF(player.getName());
             out.writeInt(page);
+            out.writeUTF(skins.hasNext() ? skins.getNextCursor() : "");
 
             out.writeShort(ba.length);
             out.write(ba);
@@ -17,13 +17,13 @@
  */
 package net.skinsrestorer.shared.plugin;
 
+import net.skinsrestorer.shared.gui.GUISkinPage;
 import net.skinsrestorer.shared.subjects.SRPlayer;
 import net.skinsrestorer.shared.utils.IOExceptionConsumer;
 
 import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
-import java.util.Map;
 import java.util.Optional;
 
 public interface SRServerAdapter<P, C> extends SRPlatformAdapter<P, C> {
@@ -35,15 +35,19 @@ public interface SRServerAdapter<P, C> extends SRPlatformAdapter<P, C> {
 
     void openServerGUI(SRPlayer player, int page);
 
-    void openProxyGUI(SRPlayer player, int page, Map<String, String> skinList);
+    void openProxyGUI(SRPlayer player, int page, GUISkinPage skins);
 
     Optional<SRPlayer> getPlayer(String name);
 
-    default void requestSkinsFromProxy(SRPlayer player, int page) {
+    /**
+     * @param cursor the cursor of the requested page, empty for the first page
+     */
+    default void requestSkinsFromProxy(SRPlayer player, int page, String cursor) {
         sendToMessageChannel(player, out -> {
-            out.writeUTF("getSkins");
+            out.writeUTF("getSkinsV2");
             out.writeUTF(player.getName());
             out.writeInt(page);
+            out.writeUTF(cursor);
         });
     }
 
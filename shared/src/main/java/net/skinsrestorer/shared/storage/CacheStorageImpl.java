@@ -19,6 +19,7 @@ package net.skinsrestorer.shared.storage;
 
 import ch.jalu.configme.SettingsManager;
 import ch.jalu.injector.Injector;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import net.skinsrestorer.api.exception.DataRequestException;
 import net.skinsrestorer.api.property.MojangSkinDataResult;
@@ -32,11 +33,14 @@ import net.skinsrestorer.shared.storage.adapter.AdapterReference;
 import net.skinsrestorer.shared.storage.adapter.StorageAdapter;
 import net.skinsrestorer.shared.storage.model.cache.MojangCacheData;
 import net.skinsrestorer.shared.utils.SRHelpers;
+import net.skinsrestorer.shared.utils.SingleFlight;
 import net.skinsrestorer.shared.utils.ValidationUtil;
 
 import javax.inject.Inject;
+import java.util.Locale;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 @RequiredArgsConstructor(onConstructor_ = @Inject)
 public class CacheStorageImpl implements CacheStorage {
@@ -45,6 +49,9 @@ public class CacheStorageImpl implements CacheStorage {
     private final SettingsManager settings;
     private final AdapterReference adapterReference;
     private final Injector injector;
+    private final StorageExecutor storageExecutor;
+    @Getter
+    private final SingleFlight<UUIDKey, Optional<UUID>, DataRequestException> uuidFlight = new SingleFlight<>();
 
     @Override
     public Optional<MojangSkinDataResult> getSkin(String playerName, boolean allowExpired) throws DataRequestException {
@@ -57,6 +64,16 @@ public class CacheStorageImpl implements CacheStorage {
             return Optional.empty();
         }
 
+        // Concurrent lookups of the same name share one Mojang request and one storage write
+        return uuidFlight.execute(new UUIDKey(playerName.toLowerCase(Locale.ROOT), allowExpired), () -> fetchUUID(playerName, allowExpired));
+    }
+
+    @Override
+    public CompletableFuture<Optional<UUID>> getUUIDAsync(String playerName, boolean allowExpired) {
+        return storageExecutor.supplyAsync(() -> getUUID(playerName, allowExpired));
+    }
+
+    private Optional<UUID> fetchUUID(String playerName, boolean allowExpired) throws DataRequestException {
         try {
             Optional<MojangCacheData> stored = getCachedData(playerName, allowExpired);
             if (stored.isPresent()) {
@@ -95,4 +112,7 @@ public class CacheStorageImpl implements CacheStorage {
         int expiresAfter = settings.getProperty(StorageConfig.UUID_EXPIRES_AFTER);
         return expiresAfter <= 0 || SRHelpers.getEpochSecond() - epochSecond <= expiresAfter;
     }
+
+    private record UUIDKey(String playerName, boolean allowExpired) {
+    }
 }
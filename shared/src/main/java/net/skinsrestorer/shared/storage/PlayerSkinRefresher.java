@@ -0,0 +1,123 @@
+/*
+ * SkinsRestorer
+ * Copyright (C) 2024  SkinsRestorer Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.skinsrestorer.shared.storage;
+
+import ch.jalu.injector.Injector;
+import lombok.RequiredArgsConstructor;
+import net.skinsrestorer.api.PropertyUtils;
+import net.skinsrestorer.api.property.SkinIdentifier;
+import net.skinsrestorer.api.property.SkinProperty;
+import net.skinsrestorer.shared.api.SharedSkinApplier;
+import net.skinsrestorer.shared.log.SRLogger;
+import net.skinsrestorer.shared.plugin.SRPlatformAdapter;
+import net.skinsrestorer.shared.subjects.SRPlayer;
+
+import javax.inject.Inject;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Refreshes expired player skins in the background while the stored skin keeps being served.
+ */
+@RequiredArgsConstructor(onConstructor_ = @Inject)
+public class PlayerSkinRefresher {
+    private static final int MAX_THREADS = 2;
+    private static final int MAX_QUEUED = 256;
+    private final ThreadPoolExecutor executor = createExecutor();
+    private final Set<UUID> refreshing = ConcurrentHashMap.newKeySet();
+    private final SRLogger logger;
+    private final SRPlatformAdapter<?, ?> adapter;
+    private final Injector injector;
+
+    private static ThreadPoolExecutor createExecutor() {
+        AtomicInteger threadCounter = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS,
+                30, TimeUnit.SECONDS, new ArrayBlockingQueue<>(MAX_QUEUED), r -> {
+            Thread t = new Thread(r);
+            t.setName("SkinsRestorer-SkinRefresh-" + threadCounter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Schedules a refresh of the skin of a player, unless one is already pending for that player.
+     *
+     * @param uuid      UUID of the premium player the skin belongs to
+     * @param oldSkin   The skin that is currently stored and served
+     * @param refresher Fetches and stores the new skin
+     */
+    public void scheduleRefresh(UUID uuid, SkinProperty oldSkin, Callable<Optional<SkinProperty>> refresher) {
+        if (!refreshing.add(uuid)) {
+            return;
+        }
+
+        try {
+            executor.execute(StorageExecutor.withPriority(StorageExecutor.Priority.BACKGROUND, () -> {
+                try {
+                    Optional<SkinProperty> newSkin = refresher.call();
+                    if (newSkin.isPresent() && !newSkin.get().equals(oldSkin)) {
+                        applyToOnlinePlayers(uuid, newSkin.get());
+                    }
+                } catch (Exception e) {
+                    logger.debug("Failed to refresh skin of " + uuid, e);
+                } finally {
+                    refreshing.remove(uuid);
+                }
+            }));
+        } catch (RejectedExecutionException e) {
+            refreshing.remove(uuid);
+            logger.debug("Skin refresh queue is full, skipping refresh of " + uuid);
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void applyToOnlinePlayers(UUID uuid, SkinProperty property) {
+        SharedSkinApplier<Object> skinApplier = injector.getIfAvailable(SharedSkinApplier.class);
+        if (skinApplier == null) {
+            return;
+        }
+
+        PlayerStorageImpl playerStorage = injector.getSingleton(PlayerStorageImpl.class);
+        SkinIdentifier identifier = SkinIdentifier.ofPlayer(uuid);
+        String profileName = PropertyUtils.getSkinProfileData(property).getProfileName();
+        Collection<SRPlayer> onlinePlayers = adapter.getOnlinePlayers();
+        // One lookup for all online players instead of one per player
+        Map<UUID, SkinIdentifier> setSkins = playerStorage.getSkinIdsOfPlayers(
+                onlinePlayers.stream().map(SRPlayer::getUniqueId).toList());
+        for (SRPlayer player : onlinePlayers) {
+            // Players without a set skin use the skin of the premium account with their name
+            Optional<SkinIdentifier> setSkin = Optional.ofNullable(setSkins.get(player.getUniqueId()));
+            if (setSkin.map(identifier::equals).orElseGet(() -> player.getUniqueId().equals(uuid)
+                    || player.getName().equalsIgnoreCase(profileName))) {
+                skinApplier.applySkin(player.getAs(Object.class), property);
+            }
+        }
+    }
+}
@@ -24,6 +24,7 @@ import net.skinsrestorer.api.property.InputDataResult;
 import net.skinsrestorer.api.property.MojangSkinDataResult;
 import net.skinsrestorer.api.property.SkinIdentifier;
 import net.skinsrestorer.api.property.SkinProperty;
+import net.skinsrestorer.api.property.SkinType;
 import net.skinsrestorer.api.storage.PlayerStorage;
 import net.skinsrestorer.shared.config.LoginConfig;
 import net.skinsrestorer.shared.config.StorageConfig;
@@ -32,12 +33,12 @@ import net.skinsrestorer.shared.log.SRLogger;
 import net.skinsrestorer.shared.storage.adapter.AdapterReference;
 import net.skinsrestorer.shared.storage.adapter.StorageAdapter;
 import net.skinsrestorer.shared.storage.model.player.PlayerData;
+import net.skinsrestorer.shared.storage.model.skin.PlayerSkinData;
 import net.skinsrestorer.shared.utils.SRHelpers;
 
 import javax.inject.Inject;
-import java.util.List;
-import java.util.Optional;
-import java.util.UUID;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 @RequiredArgsConstructor(onConstructor_ = @Inject)
 public class PlayerStorageImpl implements PlayerStorage {
@@ -45,6 +46,7 @@ public class PlayerStorageImpl implements PlayerStorage {
     private final SkinStorageImpl skinStorage;
     private final SRLogger logger;
     private final AdapterReference adapterReference;
+    private final StorageExecutor storageExecutor;
 
     @Override
     public Optional<SkinIdentifier> getSkinIdOfPlayer(UUID uuid) {
@@ -62,6 +64,30 @@ public class PlayerStorageImpl implements PlayerStorage {
         return Optional.empty();
     }
 
+    /**
+     * Looks up the set skins of many players at once, players without a set skin are left out.
+     */
+    public Map<UUID, SkinIdentifier> getSkinIdsOfPlayers(Collection<UUID> uuids) {
+        try {
+            Map<UUID, SkinIdentifier> result = new HashMap<>();
+            for (PlayerData data : adapterReference.get().getPlayerData(uuids).values()) {
+                if (data.getSkinIdentifier() != null) {
+                    result.put(data.getUniqueId(), data.getSkinIdentifier());
+                }
+            }
+
+            return result;
+        } catch (StorageAdapter.StorageException e) {
+            e.printStackTrace();
+            return Map.of();
+        }
+    }
+
+    @Override
+    public CompletableFuture<Optional<SkinIdentifier>> getSkinIdOfPlayerAsync(UUID uuid) {
+        return storageExecutor.supplyAsync(() -> getSkinIdOfPlayer(uuid));
+    }
+
     @Override
     public void setSkinIdOfPlayer(UUID uuid, SkinIdentifier identifier) {
         try {
@@ -99,16 +125,71 @@ public class PlayerStorageImpl implements PlayerStorage {
         return getSkinIdOfPlayer(uuid).flatMap(skinStorage::getSkinDataByIdentifier);
     }
 
+    @Override
+    public CompletableFuture<Optional<SkinProperty>> getSkinOfPlayerAsync(UUID uuid) {
+        return storageExecutor.supplyAsync(() -> getSkinOfPlayer(uuid));
+    }
+
+    @Override
+    public Map<UUID, SkinProperty> getSkinsOfPlayers(Collection<UUID> uuids) {
+        try {
+            Map<UUID, PlayerData> playerData = adapterReference.get().getPlayerData(uuids);
+
+            // Player skins are the most common, so fetch them all at once
+            Set<UUID> playerSkinIds = new HashSet<>();
+            for (PlayerData data : playerData.values()) {
+                SkinIdentifier identifier = data.getSkinIdentifier();
+                if (identifier != null && identifier.getSkinType() == SkinType.PLAYER) {
+                    playerSkinIds.add(UUID.fromString(identifier.getIdentifier()));
+                }
+            }
+            Map<UUID, PlayerSkinData> playerSkins = adapterReference.get().getPlayerSkinData(playerSkinIds);
+
+            Map<UUID, SkinProperty> result = new HashMap<>();
+            for (PlayerData data : playerData.values()) {
+                SkinIdentifier identifier = data.getSkinIdentifier();
+                if (identifier == null) {
+                    continue;
+                }
+
+                Optional<SkinProperty> property = identifier.getSkinType() == SkinType.PLAYER ?
+                        Optional.ofNullable(playerSkins.get(UUID.fromString(identifier.getIdentifier()))).map(PlayerSkinData::getProperty) :
+                        skinStorage.getSkinDataByIdentifier(identifier);
+                property.ifPresent(skinProperty -> result.put(data.getUniqueId(), skinProperty));
+            }
+
+            return result;
+        } catch (StorageAdapter.StorageException e) {
+            e.printStackTrace();
+            return Map.of();
+        }
+    }
+
+    @Override
+    public CompletableFuture<Map<UUID, SkinProperty>> getSkinsOfPlayersAsync(Collection<UUID> uuids) {
+        return storageExecutor.supplyAsync(() -> getSkinsOfPlayers(uuids));
+    }
+
     @Override
     public Optional<SkinIdentifier> getSkinIdForPlayer(UUID uuid, String playerName, boolean isOnlineMode) throws DataRequestException {
         return getSkinForPlayerResult(uuid, playerName, isOnlineMode, false).map(SkinForResult::identifier);
     }
 
+    @Override
+    public CompletableFuture<Optional<SkinIdentifier>> getSkinIdForPlayerAsync(UUID uuid, String playerName, boolean isOnlineMode) {
+        return storageExecutor.supplyAsync(() -> getSkinIdForPlayer(uuid, playerName, isOnlineMode));
+    }
+
     @Override
     public Optional<SkinProperty> getSkinForPlayer(UUID uuid, String playerName, boolean isOnlineMode) throws DataRequestException {
         return getSkinForPlayerResult(uuid, playerName, isOnlineMode, true).map(SkinForResult::property);
     }
 
+    @Override
+    public CompletableFuture<Optional<SkinProperty>> getSkinForPlayerAsync(UUID uuid, String playerName, boolean isOnlineMode) {
+        return storageExecutor.supplyAsync(() -> getSkinForPlayer(uuid, playerName, isOnlineMode));
+    }
+
     private Optional<SkinForResult> getSkinForPlayerResult(UUID uuid, String playerName, boolean isOnlineMode, boolean requireProperty) throws DataRequestException {
         Optional<SkinIdentifier> setSkin = getSkinIdOfPlayer(uuid);
 
@@ -0,0 +1,159 @@
+/*
+ * SkinsRestorer
+ * Copyright (C) 2024  SkinsRestorer Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.skinsrestorer.shared.storage;
+
+import lombok.RequiredArgsConstructor;
+import net.skinsrestorer.shared.log.SRLogger;
+import net.skinsrestorer.shared.plugin.SRPlugin;
+import net.skinsrestorer.shared.storage.adapter.AdapterReference;
+import net.skinsrestorer.shared.storage.adapter.StorageAdapter;
+
+import javax.inject.Inject;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Purges old player skins in small batches on a background thread, pausing between batches
+ * so the storage stays responsive. A purge interrupted by a shutdown continues on the next start.
+ */
+@RequiredArgsConstructor(onConstructor_ = @Inject)
+public class SkinPurgeService {
+    private static final int BATCH_SIZE = 500;
+    private static final long BATCH_DELAY_MILLIS = 250;
+    private static final int PROGRESS_INTERVAL = 20;
+    private static final String STATE_FILE = "purge.txt";
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicInteger purged = new AtomicInteger();
+    private final AdapterReference adapterReference;
+    private final SRPlugin plugin;
+    private final SRLogger logger;
+    private volatile boolean stopped;
+
+    /**
+     * Starts purging all player skins with a timestamp before {@code targetPurgeTimestamp}.
+     *
+     * @return false if a purge is already running
+     */
+    public boolean start(long targetPurgeTimestamp, PurgeListener listener) {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+
+        purged.set(0);
+        stopped = false;
+        try {
+            Files.writeString(getStateFile(), String.valueOf(targetPurgeTimestamp));
+        } catch (IOException e) {
+            logger.warning("Failed to save purge state, it will not be resumed after a restart", e);
+        }
+
+        // Queued behind login and command lookups, a purge can wait
+        Thread thread = new Thread(StorageExecutor.withPriority(StorageExecutor.Priority.BACKGROUND,
+                () -> run(targetPurgeTimestamp, listener)), "SkinsRestorer-Purge");
+        thread.setDaemon(true);
+        thread.start();
+        return true;
+    }
+
+    /**
+     * Continues a purge that was interrupted by a shutdown.
+     */
+    public void resumeIfPending() {
+        Path stateFile = getStateFile();
+        if (!Files.exists(stateFile)) {
+            return;
+        }
+
+        long targetPurgeTimestamp;
+        try {
+            targetPurgeTimestamp = Long.parseLong(Files.readString(stateFile).trim());
+        } catch (IOException | NumberFormatException e) {
+            logger.warning("Failed to read purge state", e);
+            return;
+        }
+
+        if (start(targetPurgeTimestamp, new PurgeListener() {
+            @Override
+            public void onComplete(int purged) {
+                logger.info(String.format("Resumed purge finished, purged %d old skins.", purged));
+            }
+
+            @Override
+            public void onError() {
+            }
+        })) {
+            logger.info("Resuming purge of old skins...");
+        }
+    }
+
+    private void run(long targetPurgeTimestamp, PurgeListener listener) {
+        try {
+            int batches = 0;
+            while (!stopped) {
+                int removed = adapterReference.get().purgeStoredOldSkins(targetPurgeTimestamp, BATCH_SIZE);
+                int total = purged.addAndGet(removed);
+                if (removed < BATCH_SIZE) {
+                    Files.deleteIfExists(getStateFile());
+                    listener.onComplete(total);
+                    return;
+                }
+
+                if (++batches % PROGRESS_INTERVAL == 0) {
+                    logger.info(String.format("Purged %d old skins so far...", total));
+                }
+
+                Thread.sleep(BATCH_DELAY_MILLIS);
+            }
+        } catch (StorageAdapter.StorageException | IOException e) {
+            logger.warning("Failed to purge old skins", e);
+            listener.onError();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            running.set(false);
+        }
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    public int getPurged() {
+        return purged.get();
+    }
+
+    /**
+     * Stops the running purge after the current batch, it continues on the next start.
+     */
+    public void shutdown() {
+        stopped = true;
+    }
+
+    private Path getStateFile() {
+        return plugin.getDataFolder().resolve(STATE_FILE);
+    }
+
+    public interface PurgeListener {
+        void onComplete(int purged);
+
+        void onError();
+    }
+}
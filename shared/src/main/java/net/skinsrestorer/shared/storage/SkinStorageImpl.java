@@ -30,18 +30,20 @@ import net.skinsrestorer.api.storage.SkinStorage;
 import net.skinsrestorer.shared.config.StorageConfig;
 import net.skinsrestorer.shared.connections.MineSkinAPIImpl;
 import net.skinsrestorer.shared.connections.MojangAPIImpl;
+import net.skinsrestorer.shared.gui.GUISkinPage;
 import net.skinsrestorer.shared.log.SRLogger;
 import net.skinsrestorer.shared.storage.adapter.AdapterReference;
 import net.skinsrestorer.shared.storage.adapter.StorageAdapter;
 import net.skinsrestorer.shared.storage.model.cache.MojangCacheData;
 import net.skinsrestorer.shared.storage.model.skin.*;
 import net.skinsrestorer.shared.utils.SRHelpers;
+import net.skinsrestorer.shared.utils.SingleFlight;
 import net.skinsrestorer.shared.utils.ValidationUtil;
+import org.jetbrains.annotations.Nullable;
 
 import javax.inject.Inject;
-import java.time.Instant;
-import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
 @RequiredArgsConstructor(onConstructor_ = @Inject)
@@ -52,6 +54,12 @@ public class SkinStorageImpl implements SkinStorage {
     private final MineSkinAPIImpl mineSkinAPI;
     private final SettingsManager settings;
     private final AdapterReference adapterReference;
+    private final PlayerSkinRefresher skinRefresher;
+    private final StorageExecutor storageExecutor;
+    @Getter
+    private final SingleFlight<UUID, Optional<SkinProperty>, DataRequestException> profileFlight = new SingleFlight<>();
+    @Getter
+    private final SingleFlight<PlayerSkinKey, Optional<MojangSkinDataResult>, DataRequestException> playerSkinFlight = new SingleFlight<>();
 
     public void preloadDefaultSkins() {
         if (!settings.getProperty(StorageConfig.DEFAULT_SKINS_ENABLED)) {
@@ -82,10 +90,19 @@ public class SkinStorageImpl implements SkinStorage {
 
     @Override
     public Optional<SkinProperty> updatePlayerSkinData(UUID uuid) throws DataRequestException {
-        return updatePlayerSkinData(uuid, mojangAPI::getProfileMojang, false, true);
+        return profileFlight.execute(uuid, () -> updatePlayerSkinData(uuid, mojangAPI::getProfileMojang, false, true));
+    }
+
+    @Override
+    public CompletableFuture<Optional<SkinProperty>> updatePlayerSkinDataAsync(UUID uuid) {
+        return storageExecutor.supplyAsync(() -> updatePlayerSkinData(uuid));
     }
 
     private Optional<SkinProperty> updatePlayerSkinData(UUID uuid, ProfileGetter profileGetter, boolean skipDbLookup, boolean ignoreExpiry) throws DataRequestException {
+        return updatePlayerSkinData(uuid, profileGetter, skipDbLookup, ignoreExpiry, false);
+    }
+
+    private Optional<SkinProperty> updatePlayerSkinData(UUID uuid, ProfileGetter profileGetter, boolean skipDbLookup, boolean ignoreExpiry, boolean allowRefreshInBackground) throws DataRequestException {
         try {
             Optional<PlayerSkinData> optionalData = skipDbLookup ? Optional.empty() : adapterReference.get().getPlayerSkinData(uuid);
             Optional<SkinProperty> currentSkin = optionalData.map(PlayerSkinData::getProperty);
@@ -96,6 +113,11 @@ public class SkinStorageImpl implements SkinStorage {
                 if (!ignoreExpiry && !isPlayerSkinExpired(currentSkinData.getTimestamp())) {
                     // We have valid data, let's return it
                     return currentSkin;
+                } else if (!ignoreExpiry && allowRefreshInBackground && settings.getProperty(StorageConfig.REFRESH_SKINS_IN_BACKGROUND)) {
+                    // Serve the expired skin and fetch the new one without blocking the caller
+                    skinRefresher.scheduleRefresh(uuid, currentSkinData.getProperty(), () ->
+                            profileFlight.execute(uuid, () -> updatePlayerSkinData(uuid, profileGetter, false, true)));
+                    return currentSkin;
                 } else {
                     timestamp = PropertyUtils.getSkinProfileData(currentSkinData.getProperty()).getTimestamp();
                 }
@@ -125,11 +147,22 @@ public class SkinStorageImpl implements SkinStorage {
         return getPlayerSkin(playerName, allowExpired, false);
     }
 
+    @Override
+    public CompletableFuture<Optional<MojangSkinDataResult>> getPlayerSkinAsync(String playerName, boolean allowExpired) {
+        return storageExecutor.supplyAsync(() -> getPlayerSkin(playerName, allowExpired));
+    }
+
     private Optional<MojangSkinDataResult> getPlayerSkin(String playerName, boolean allowExpired, boolean skipDbLookup) throws DataRequestException {
         if (ValidationUtil.invalidMojangUsername(playerName)) {
             return Optional.empty();
         }
 
+        // Concurrent lookups of the same name share one Mojang request and one storage write
+        return playerSkinFlight.execute(new PlayerSkinKey(playerName.toLowerCase(Locale.ROOT), allowExpired, skipDbLookup),
+                () -> fetchPlayerSkin(playerName, allowExpired, skipDbLookup));
+    }
+
+    private Optional<MojangSkinDataResult> fetchPlayerSkin(String playerName, boolean allowExpired, boolean skipDbLookup) throws DataRequestException {
         try {
             Optional<MojangCacheData> cached = cacheStorage.getCachedData(playerName, allowExpired);
             if (cached.isPresent()) {
@@ -141,7 +174,7 @@ public class SkinStorageImpl implements SkinStorage {
                 }
 
                 UUID uuid = optionalUUID.get();
-                return updatePlayerSkinData(uuid, mojangAPI::getProfile, skipDbLookup, false)
+                return updatePlayerSkinData(uuid, mojangAPI::getProfile, skipDbLookup, false, true)
                         .map(skinProperty -> MojangSkinDataResult.of(uuid, skinProperty));
             }
 
@@ -184,8 +217,8 @@ public class SkinStorageImpl implements SkinStorage {
         adapterReference.get().setCustomSkinData(skinName, CustomSkinData.of(skinName, textures));
     }
 
-    public Map<String, String> getGUISkins(int offset) {
-        return adapterReference.get().getStoredGUISkins(offset);
+    public GUISkinPage getGUISkins(@Nullable String cursor) {
+        return adapterReference.get().getStoredGUISkins(cursor);
     }
 
     @Override
@@ -235,6 +268,11 @@ public class SkinStorageImpl implements SkinStorage {
         return Optional.empty();
     }
 
+    @Override
+    public CompletableFuture<Optional<InputDataResult>> findSkinDataAsync(String input) {
+        return storageExecutor.supplyAsync(() -> findSkinData(input));
+    }
+
     @Override
     public Optional<InputDataResult> findOrCreateSkinData(String input) throws DataRequestException, MineSkinException {
         Optional<InputDataResult> skinData = findSkinData(input);
@@ -256,6 +294,11 @@ public class SkinStorageImpl implements SkinStorage {
         }
     }
 
+    @Override
+    public CompletableFuture<Optional<InputDataResult>> findOrCreateSkinDataAsync(String input) {
+        return storageExecutor.supplyAsync(() -> findOrCreateSkinData(input));
+    }
+
     @Override
     public Optional<SkinProperty> getSkinDataByIdentifier(SkinIdentifier identifier) {
         try {
@@ -284,6 +327,11 @@ public class SkinStorageImpl implements SkinStorage {
         }
     }
 
+    @Override
+    public CompletableFuture<Optional<SkinProperty>> getSkinDataByIdentifierAsync(SkinIdentifier identifier) {
+        return storageExecutor.supplyAsync(() -> getSkinDataByIdentifier(identifier));
+    }
+
     @Override
     public void removeSkinData(SkinIdentifier identifier) {
         switch (identifier.getSkinType()) {
@@ -313,18 +361,6 @@ public class SkinStorageImpl implements SkinStorage {
         return expiryDate <= now;
     }
 
-    public boolean purgeOldSkins(int days) {
-        long targetPurgeTimestamp = Instant.now().minus(days, ChronoUnit.DAYS).getEpochSecond();
-
-        try {
-            adapterReference.get().purgeStoredOldSkins(targetPurgeTimestamp);
-            return true; // TODO: Do better than true/false return
-        } catch (StorageAdapter.StorageException e) {
-            e.printStackTrace();
-            return false;
-        }
-    }
-
     private Optional<InputDataResult> findCustomHardcodedSkin(String input) {
         Optional<HardcodedSkins> hardCodedSkin = Arrays.stream(HardcodedSkins.values()).filter(t -> t.name().equalsIgnoreCase(input)).findAny();
         return hardCodedSkin.map(hardcodedSkins ->
@@ -352,6 +388,9 @@ public class SkinStorageImpl implements SkinStorage {
         }
     }
 
+    private record PlayerSkinKey(String playerName, boolean allowExpired, boolean skipDbLookup) {
+    }
+
     private interface ProfileGetter {
         Optional<SkinProperty> getProfile(UUID uuid) throws DataRequestException;
     }
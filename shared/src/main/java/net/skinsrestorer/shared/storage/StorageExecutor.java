@@ -0,0 +1,329 @@
+/*
+ * SkinsRestorer
+ * Copyright (C) 2024  SkinsRestorer Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.skinsrestorer.shared.storage;
+
+import ch.jalu.configme.SettingsManager;
+import net.skinsrestorer.shared.config.DatabaseConfig;
+import net.skinsrestorer.shared.config.StorageConfig;
+import net.skinsrestorer.shared.utils.SingleFlight;
+
+import javax.inject.Inject;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs blocking storage and data provider work off platform threads.
+ * Backs the {@code *Async} methods of the storage API.
+ * <p>
+ * The number of workers matches the database connection pool, so queries never wait for a connection.
+ * Queued tasks run by {@link Priority}, and once the queue is full new tasks are rejected
+ * instead of piling up behind a slow database.
+ * <p>
+ * Storage calls made outside of this executor, for example by the synchronous API or commands,
+ * share its limit through {@link #limit(SingleFlight.Call)}, so at most as many calls as there are
+ * workers reach the storage at once.
+ */
+public class StorageExecutor {
+    private static final int LOCAL_STORAGE_THREADS = 4;
+    private static final ThreadLocal<Priority> CURRENT_PRIORITY = new ThreadLocal<>();
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+    private final AtomicInteger threadCounter = new AtomicInteger();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final Map<Priority, LaneStats> lanes = new EnumMap<>(Priority.class);
+    private final int threads;
+    private final int maxQueued;
+    private final ThreadPoolExecutor executorService;
+    private final PriorityQueue<PermitWaiter> permitWaiters = new PriorityQueue<>();
+    private final ThreadLocal<int[]> heldPermits = ThreadLocal.withInitial(() -> new int[1]);
+    private int freePermits;
+
+    @Inject
+    public StorageExecutor(SettingsManager settings) {
+        int configuredThreads = settings.getProperty(StorageConfig.EXECUTOR_THREADS);
+        if (configuredThreads > 0) {
+            this.threads = configuredThreads;
+        } else if (settings.getProperty(DatabaseConfig.MYSQL_ENABLED)) {
+            this.threads = settings.getProperty(DatabaseConfig.MYSQL_MAX_POOL_SIZE);
+        } else {
+            this.threads = LOCAL_STORAGE_THREADS;
+        }
+
+        this.maxQueued = settings.getProperty(StorageConfig.EXECUTOR_MAX_QUEUED);
+        this.freePermits = threads;
+        for (Priority priority : Priority.values()) {
+            lanes.put(priority, new LaneStats());
+        }
+
+        this.executorService = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<>(), r -> {
+            Thread t = new Thread(r);
+            t.setName("SkinsRestorer-Storage-" + threadCounter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Runs the task on the storage executor with {@link Priority#COMMAND} priority.
+     *
+     * @see #supplyAsync(Priority, Callable)
+     */
+    public <T> CompletableFuture<T> supplyAsync(Callable<T> task) {
+        return supplyAsync(Priority.COMMAND, task);
+    }
+
+    /**
+     * Runs the task on the storage executor.
+     * Exceptions thrown by the task complete the returned future exceptionally as they are.
+     * If the queue is full, the future completes with a {@link RejectedExecutionException},
+     * logins are always queued because they can not be retried later.
+     */
+    public <T> CompletableFuture<T> supplyAsync(Priority priority, Callable<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        LaneStats lane = lanes.get(priority);
+        if (priority != Priority.LOGIN && queued.get() >= maxQueued) {
+            lane.rejected.increment();
+            future.completeExceptionally(new RejectedExecutionException("Storage queue is full"));
+            return future;
+        }
+
+        queued.incrementAndGet();
+        lane.queued.incrementAndGet();
+        try {
+            executorService.execute(new QueuedTask(priority, sequence.getAndIncrement(), System.nanoTime(), () -> {
+                try {
+                    future.complete(task.call());
+                } catch (Throwable t) {
+                    future.completeExceptionally(t);
+                }
+            }));
+        } catch (RejectedExecutionException e) {
+            queued.decrementAndGet();
+            lane.queued.decrementAndGet();
+            lane.rejected.increment();
+            future.completeExceptionally(e);
+        }
+
+        return future;
+    }
+
+    /**
+     * @return the priority of the task running on this thread, {@link Priority#COMMAND} outside of prioritized tasks
+     */
+    public static Priority currentPriority() {
+        Priority priority = CURRENT_PRIORITY.get();
+        return priority == null ? Priority.COMMAND : priority;
+    }
+
+    /**
+     * Lets work handed to another thread keep the priority it was started with.
+     *
+     * @return a task that runs the given task with {@link #currentPriority()} returning the priority
+     */
+    public static Runnable withPriority(Priority priority, Runnable task) {
+        return () -> {
+            Priority previous = CURRENT_PRIORITY.get();
+            CURRENT_PRIORITY.set(priority);
+            try {
+                task.run();
+            } finally {
+                if (previous == null) {
+                    CURRENT_PRIORITY.remove();
+                } else {
+                    CURRENT_PRIORITY.set(previous);
+                }
+            }
+        };
+    }
+
+    /**
+     * Runs a storage call on this thread once one of the permits shared by all storage calls is free.
+     * Waiting calls get a permit by {@link #currentPriority()}, nested calls reuse the permit of the outer one.
+     */
+    public <T, E extends Exception> T limit(SingleFlight.Call<T, E> call) throws E {
+        int[] held = heldPermits.get();
+        if (held[0] > 0) {
+            return call.call();
+        }
+
+        acquirePermit();
+        held[0]++;
+        try {
+            return call.call();
+        } finally {
+            held[0]--;
+            releasePermit();
+        }
+    }
+
+    private void acquirePermit() {
+        PermitWaiter waiter = new PermitWaiter(currentPriority(), sequence.getAndIncrement());
+        boolean interrupted = false;
+        synchronized (permitWaiters) {
+            permitWaiters.add(waiter);
+            while (permitWaiters.peek() != waiter || freePermits == 0) {
+                try {
+                    permitWaiters.wait();
+                } catch (InterruptedException e) {
+                    // Storage calls can not be cancelled halfway, keep waiting and restore the flag afterwards
+                    interrupted = true;
+                }
+            }
+
+            permitWaiters.poll();
+            freePermits--;
+            // The next waiter may take another free permit
+            permitWaiters.notifyAll();
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void releasePermit() {
+        synchronized (permitWaiters) {
+            freePermits++;
+            permitWaiters.notifyAll();
+        }
+    }
+
+    public Stats getStats() {
+        Map<Priority, LaneSnapshot> snapshots = new EnumMap<>(Priority.class);
+        lanes.forEach((priority, lane) -> snapshots.put(priority, lane.snapshot()));
+        return new Stats(threads, executorService.getActiveCount(), queued.get(), snapshots);
+    }
+
+    /**
+     * Stops accepting tasks and waits a bounded time for queued and running ones,
+     * so their writes still reach the storage before it is closed.
+     *
+     * @return whether all tasks finished in time
+     */
+    public boolean shutdown() {
+        executorService.shutdown();
+        try {
+            return executorService.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Queued tasks of a higher priority run first, tasks of the same priority in submission order.
+     */
+    public enum Priority {
+        /**
+         * A player is waiting to join.
+         */
+        LOGIN,
+        /**
+         * A player or the API is waiting for the result.
+         */
+        COMMAND,
+        /**
+         * Nobody is waiting, for example preloading and maintenance.
+         */
+        BACKGROUND
+    }
+
+    public record Stats(int threads, int active, int queued, Map<Priority, LaneSnapshot> lanes) {
+        public long rejected() {
+            return lanes.values().stream().mapToLong(LaneSnapshot::rejected).sum();
+        }
+
+        public long completed() {
+            return lanes.values().stream().mapToLong(LaneSnapshot::completed).sum();
+        }
+
+        /**
+         * @return the average time tasks waited in the queue before they started, in milliseconds
+         */
+        public double averageWaitMillis() {
+            long completed = completed();
+            return completed == 0 ? 0 : lanes.values().stream().mapToLong(LaneSnapshot::waitNanos).sum() / (completed * 1_000_000D);
+        }
+    }
+
+    public record LaneSnapshot(int queued, long completed, long rejected, long waitNanos, long runNanos, long maxWaitNanos) {
+    }
+
+    private static class LaneStats {
+        private final AtomicInteger queued = new AtomicInteger();
+        private final LongAdder completed = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder waitNanos = new LongAdder();
+        private final LongAdder runNanos = new LongAdder();
+        private final AtomicLong maxWaitNanos = new AtomicLong();
+
+        private LaneSnapshot snapshot() {
+            return new LaneSnapshot(queued.get(), completed.sum(), rejected.sum(), waitNanos.sum(), runNanos.sum(), maxWaitNanos.get());
+        }
+    }
+
+    private record PermitWaiter(Priority priority, long sequence) implements Comparable<PermitWaiter> {
+        @Override
+        public int compareTo(PermitWaiter other) {
+            int byPriority = priority.compareTo(other.priority);
+            return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    private class QueuedTask implements Runnable, Comparable<QueuedTask> {
+        private final Priority priority;
+        private final long sequence;
+        private final long queuedAt;
+        private final Runnable task;
+
+        private QueuedTask(Priority priority, long sequence, long queuedAt, Runnable task) {
+            this.priority = priority;
+            this.sequence = sequence;
+            this.queuedAt = queuedAt;
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            LaneStats lane = lanes.get(priority);
+            long startedAt = System.nanoTime();
+            queued.decrementAndGet();
+            lane.queued.decrementAndGet();
+            long waited = startedAt - queuedAt;
+            lane.waitNanos.add(waited);
+            lane.maxWaitNanos.accumulateAndGet(waited, Math::max);
+            try {
+                withPriority(priority, task).run();
+            } finally {
+                lane.runNanos.add(System.nanoTime() - startedAt);
+                lane.completed.increment();
+            }
+        }
+
+        @Override
+        public int compareTo(QueuedTask other) {
+            int byPriority = priority.compareTo(other.priority);
+            return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * SkinsRestorer
+ * Copyright (C) 2024  SkinsRestorer Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.skinsrestorer.shared.storage.adapter;
+
+import net.skinsrestorer.api.property.SkinVariant;
+import net.skinsrestorer.shared.gui.GUISkinPage;
+import net.skinsrestorer.shared.storage.StorageExecutor;
+import net.skinsrestorer.shared.storage.model.cache.MojangCacheData;
+import net.skinsrestorer.shared.storage.model.player.LegacyPlayerData;
+import net.skinsrestorer.shared.storage.model.player.PlayerData;
+import net.skinsrestorer.shared.storage.model.skin.*;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Passes every call to another {@link StorageAdapter} through {@link StorageExecutor#limit(net.skinsrestorer.shared.utils.SingleFlight.Call)},
+ * so callers on any thread share the limit of the storage executor.
+ */
+public class LimitedStorageAdapter implements StorageAdapter {
+    private final StorageAdapter delegate;
+    private final StorageExecutor executor;
+
+    public LimitedStorageAdapter(StorageAdapter delegate, StorageExecutor executor) {
+        this.delegate = delegate;
+        this.executor = executor;
+    }
+
+    public StorageAdapter getDelegate() {
+        return delegate;
+    }
+
+    private void run(Runnable call) {
+        executor.limit(() -> {
+            call.run();
+            return null;
+        });
+    }
+
+    @Override
+    public void init() {
+        run(delegate::init);
+    }
+
+    @Override
+    public Optional<PlayerData> getPlayerData(UUID uuid) throws StorageException {
+        return executor.limit(() -> delegate.getPlayerData(uuid));
+    }
+
+    @Override
+    public void setPlayerData(UUID uuid, PlayerData data) {
+        run(() -> delegate.setPlayerData(uuid, data));
+    }
+
+    @Override
+    public Map<UUID, PlayerData> getPlayerData(Collection<UUID> uuids) throws StorageException {
+        return executor.limit(() -> delegate.getPlayerData(uuids));
+    }
+
+    @Override
+    public Optional<PlayerSkinData> getPlayerSkinData(UUID uuid) throws StorageException {
+        return executor.limit(() -> delegate.getPlayerSkinData(uuid));
+    }
+
+    @Override
+    public Map<UUID, PlayerSkinData> getPlayerSkinData(Collection<UUID> uuids) throws StorageException {
+        return executor.limit(() -> delegate.getPlayerSkinData(uuids));
+    }
+
+    @Override
+    public void removePlayerSkinData(UUID uuid) {
+        run(() -> delegate.removePlayerSkinData(uuid));
+    }
+
+    @Override
+    public void setPlayerSkinData(UUID uuid, PlayerSkinData skinData) {
+        run(() -> delegate.setPlayerSkinData(uuid, skinData));
+    }
+
+    @Override
+    public void setPlayerSkinData(Collection<PlayerSkinData> skinData) {
+        run(() -> delegate.setPlayerSkinData(skinData));
+    }
+
+    @Override
+    public Optional<URLSkinData> getURLSkinData(String url, SkinVariant skinVariant) throws StorageException {
+        return executor.limit(() -> delegate.getURLSkinData(url, skinVariant));
+    }
+
+    @Override
+    public void removeURLSkinData(String url, SkinVariant skinVariant) {
+        run(() -> delegate.removeURLSkinData(url, skinVariant));
+    }
+
+    @Override
+    public void setURLSkinData(String url, URLSkinData skinData) {
+        run(() -> delegate.setURLSkinData(url, skinData));
+    }
+
+    @Override
+    public Optional<URLIndexData> getURLSkinIndex(String url) throws StorageException {
+        return executor.limit(() -> delegate.getURLSkinIndex(url));
+    }
+
+    @Override
+    public void removeURLSkinIndex(String url) {
+        run(() -> delegate.removeURLSkinIndex(url));
+    }
+
+    @Override
+    public void setURLSkinIndex(String url, URLIndexData skinData) {
+        run(() -> delegate.setURLSkinIndex(url, skinData));
+    }
+
+    @Override
+    public Optional<CustomSkinData> getCustomSkinData(String skinName) throws StorageException {
+        return executor.limit(() -> delegate.getCustomSkinData(skinName));
+    }
+
+    @Override
+    public void removeCustomSkinData(String skinName) {
+        run(() -> delegate.removeCustomSkinData(skinName));
+    }
+
+    @Override
+    public void setCustomSkinData(String skinName, CustomSkinData skinData) {
+        run(() -> delegate.setCustomSkinData(skinName, skinData));
+    }
+
+    @Override
+    public Optional<LegacySkinData> getLegacySkinData(String skinName) throws StorageException {
+        return executor.limit(() -> delegate.getLegacySkinData(skinName));
+    }
+
+    @Override
+    public void removeLegacySkinData(String skinName) {
+        run(() -> delegate.removeLegacySkinData(skinName));
+    }
+
+    @Override
+    public Optional<LegacyPlayerData> getLegacyPlayerData(String playerName) throws StorageException {
+        return executor.limit(() -> delegate.getLegacyPlayerData(playerName));
+    }
+
+    @Override
+    public void removeLegacyPlayerData(String playerName) {
+        run(() -> delegate.removeLegacyPlayerData(playerName));
+    }
+
+    @Override
+    public GUISkinPage getStoredGUISkins(@Nullable String cursor) {
+        return executor.limit(() -> delegate.getStoredGUISkins(cursor));
+    }
+
+    @Override
+    public int purgeStoredOldSkins(long targetPurgeTimestamp, int limit) throws StorageException {
+        return executor.limit(() -> delegate.purgeStoredOldSkins(targetPurgeTimestamp, limit));
+    }
+
+    @Override
+    public Optional<MojangCacheData> getCachedUUID(String playerName) throws StorageException {
+        return executor.limit(() -> delegate.getCachedUUID(playerName));
+    }
+
+    @Override
+    public void setCachedUUID(String playerName, MojangCacheData mojangCacheData) {
+        run(() -> delegate.setCachedUUID(playerName, mojangCacheData));
+    }
+
+    @Override
+    public void migrateLegacyPlayer(String playerName, UUID uuid) throws StorageException {
+        executor.limit(() -> {
+            delegate.migrateLegacyPlayer(playerName, uuid);
+            return null;
+        });
+    }
+
+    @Override
+    public boolean isLegacyCustomSkinTimestamp(long timestamp) {
+        return delegate.isLegacyCustomSkinTimestamp(timestamp);
+    }
+}
@@ -20,14 +20,14 @@ package net.skinsrestorer.shared.storage.adapter;
 import net.skinsrestorer.api.property.SkinIdentifier;
 import net.skinsrestorer.api.property.SkinType;
 import net.skinsrestorer.api.property.SkinVariant;
+import net.skinsrestorer.shared.gui.GUISkinPage;
 import net.skinsrestorer.shared.storage.model.cache.MojangCacheData;
 import net.skinsrestorer.shared.storage.model.player.LegacyPlayerData;
 import net.skinsrestorer.shared.storage.model.player.PlayerData;
 import net.skinsrestorer.shared.storage.model.skin.*;
+import org.jetbrains.annotations.Nullable;
 
-import java.util.Map;
-import java.util.Optional;
-import java.util.UUID;
+import java.util.*;
 
 public interface StorageAdapter {
     void init();
@@ -36,12 +36,45 @@ public interface StorageAdapter {
 
     void setPlayerData(UUID uuid, PlayerData data);
 
+    /**
+     * Looks up the data of multiple players at once. Players without data are missing from the result.
+     */
+    default Map<UUID, PlayerData> getPlayerData(Collection<UUID> uuids) throws StorageException {
+        Map<UUID, PlayerData> result = new HashMap<>();
+        for (UUID uuid : uuids) {
+            getPlayerData(uuid).ifPresent(data -> result.put(uuid, data));
+        }
+
+        return result;
+    }
+
     Optional<PlayerSkinData> getPlayerSkinData(UUID uuid) throws StorageException;
 
+    /**
+     * Looks up the skins of multiple players at once. Players without a stored skin are missing from the result.
+     */
+    default Map<UUID, PlayerSkinData> getPlayerSkinData(Collection<UUID> uuids) throws StorageException {
+        Map<UUID, PlayerSkinData> result = new HashMap<>();
+        for (UUID uuid : uuids) {
+            getPlayerSkinData(uuid).ifPresent(data -> result.put(uuid, data));
+        }
+
+        return result;
+    }
+
     void removePlayerSkinData(UUID uuid);
 
     void setPlayerSkinData(UUID uuid, PlayerSkinData skinData);
 
+    /**
+     * Stores the skins of multiple players at once, each under its own unique id.
+     */
+    default void setPlayerSkinData(Collection<PlayerSkinData> skinData) {
+        for (PlayerSkinData data : skinData) {
+            setPlayerSkinData(data.getUniqueId(), data);
+        }
+    }
+
     Optional<URLSkinData> getURLSkinData(String url, SkinVariant skinVariant) throws StorageException;
 
     void removeURLSkinData(String url, SkinVariant skinVariant);
@@ -68,9 +101,18 @@ public interface StorageAdapter {
 
     void removeLegacyPlayerData(String playerName);
 
-    Map<String, String> getStoredGUISkins(int offset);
-
-    void purgeStoredOldSkins(long targetPurgeTimestamp) throws StorageException;
+    /**
+     * @param cursor the {@link GUISkinPage#getNextCursor()} of the previous page, or null for the first page
+     */
+    GUISkinPage getStoredGUISkins(@Nullable String cursor);
+
+    /**
+     * Removes up to {@code limit} player skins with a timestamp before {@code targetPurgeTimestamp}.
+     * Skins with a timestamp of 0 are never removed.
+     *
+     * @return the number of removed skins, less than {@code limit} once there is nothing left to purge
+     */
+    int purgeStoredOldSkins(long targetPurgeTimestamp, int limit) throws StorageException;
 
     Optional<MojangCacheData> getCachedUUID(String playerName) throws StorageException;
 
@@ -0,0 +1,71 @@
+/*
+ * SkinsRestorer
+ * Copyright (C) 2024  SkinsRestorer Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.skinsrestorer.shared.storage.adapter;
+
+import java.util.*;
+
+/**
+ * In-memory index of player skins by their timestamp, so expired skins can be found without reading every skin.
+ * Skins with a timestamp of 0 never expire and are not indexed.
+ */
+public class TimestampIndex {
+    private final Map<String, Long> timestamps = new HashMap<>();
+    private final NavigableSet<Entry> entries = new TreeSet<>(Comparator.comparingLong(Entry::timestamp)
+            .thenComparing(Entry::key));
+
+    public synchronized void put(String key, long timestamp) {
+        remove(key);
+        if (timestamp == 0L) {
+            return;
+        }
+
+        timestamps.put(key, timestamp);
+        entries.add(new Entry(key, timestamp));
+    }
+
+    public synchronized void remove(String key) {
+        Long previous = timestamps.remove(key);
+        if (previous != null) {
+            entries.remove(new Entry(key, previous));
+        }
+    }
+
+    /**
+     * Returns up to {@code limit} keys with a timestamp before {@code targetTimestamp}, oldest first.
+     */
+    public synchronized List<String> getOlderThan(long targetTimestamp, int limit) {
+        List<String> keys = new ArrayList<>();
+        for (Entry entry : entries) {
+            if (entry.timestamp() >= targetTimestamp || keys.size() >= limit) {
+                break;
+            }
+
+            keys.add(entry.key());
+        }
+
+        return keys;
+    }
+
+    public synchronized void clear() {
+        timestamps.clear();
+        entries.clear();
+    }
+
+    private record Entry(String key, long timestamp) {
+    }
+}
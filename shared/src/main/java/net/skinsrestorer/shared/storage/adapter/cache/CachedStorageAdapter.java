@@ -0,0 +1,304 @@
+/*
+ * SkinsRestorer
+ * Copyright (C) 2024  SkinsRestorer Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.skinsrestorer.shared.storage.adapter.cache;
+
+import net.skinsrestorer.api.property.SkinVariant;
+import net.skinsrestorer.shared.gui.GUISkinPage;
+import net.skinsrestorer.shared.storage.adapter.StorageAdapter;
+import net.skinsrestorer.shared.storage.model.cache.MojangCacheData;
+import net.skinsrestorer.shared.storage.model.player.LegacyPlayerData;
+import net.skinsrestorer.shared.storage.model.player.PlayerData;
+import net.skinsrestorer.shared.storage.model.skin.*;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps recently used lookups of another {@link StorageAdapter} in memory.
+ * Missing entries are cached as well, every write or removal invalidates the affected key.
+ */
+public class CachedStorageAdapter implements StorageAdapter {
+    private final StorageAdapter delegate;
+    private final SegmentedLRUCache<CacheKey, Optional<?>> cache;
+    private volatile @Nullable InvalidationTransport transport;
+
+    public CachedStorageAdapter(StorageAdapter delegate, int maxSize, int expireAfterSeconds) {
+        this.delegate = delegate;
+        this.cache = new SegmentedLRUCache<>(maxSize, TimeUnit.SECONDS.toNanos(expireAfterSeconds));
+    }
+
+    public StorageAdapter getDelegate() {
+        return delegate;
+    }
+
+    public SegmentedLRUCache.Stats getStats() {
+        return cache.getStats();
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Evicts the changes other servers made to the shared storage, and publishes the changes of this server.
+     */
+    public void listen(InvalidationTransport transport) {
+        this.transport = transport;
+        transport.start(this::invalidate);
+    }
+
+    /**
+     * Evicts an entry that was changed by another server.
+     */
+    public void invalidate(Invalidation invalidation) {
+        if (invalidation.isAll()) {
+            cache.invalidateIf(key -> key.type() == invalidation.type());
+        } else {
+            cache.invalidate(keyOf(invalidation));
+        }
+    }
+
+    private void evict(Invalidation invalidation) {
+        invalidate(invalidation);
+
+        InvalidationTransport current = transport;
+        if (current != null) {
+            current.publish(invalidation);
+        }
+    }
+
+    @Override
+    public void init() {
+        delegate.init();
+    }
+
+    @Override
+    public Optional<PlayerData> getPlayerData(UUID uuid) throws StorageException {
+        // PlayerData is mutable, so never hand out the cached instance itself
+        return this.<PlayerData>load(new CacheKey(Invalidation.Type.PLAYER, uuid), () -> delegate.getPlayerData(uuid))
+                .map(data -> PlayerData.of(data.getUniqueId(), data.getSkinIdentifier()));
+    }
+
+    @Override
+    public Map<UUID, PlayerData> getPlayerData(Collection<UUID> uuids) throws StorageException {
+        Map<UUID, PlayerData> result = new HashMap<>();
+        this.<PlayerData>loadAll(Invalidation.Type.PLAYER, uuids, delegate::getPlayerData)
+                .forEach((uuid, data) -> result.put(uuid, PlayerData.of(data.getUniqueId(), data.getSkinIdentifier())));
+        return result;
+    }
+
+    @Override
+    public void setPlayerData(UUID uuid, PlayerData data) {
+        delegate.setPlayerData(uuid, data);
+        evict(Invalidation.player(uuid));
+    }
+
+    @Override
+    public Optional<PlayerSkinData> getPlayerSkinData(UUID uuid) throws StorageException {
+        return load(new CacheKey(Invalidation.Type.PLAYER_SKIN, uuid), () -> delegate.getPlayerSkinData(uuid));
+    }
+
+    @Override
+    public Map<UUID, PlayerSkinData> getPlayerSkinData(Collection<UUID> uuids) throws StorageException {
+        return loadAll(Invalidation.Type.PLAYER_SKIN, uuids, delegate::getPlayerSkinData);
+    }
+
+    @Override
+    public void removePlayerSkinData(UUID uuid) {
+        delegate.removePlayerSkinData(uuid);
+        evict(Invalidation.playerSkin(uuid));
+    }
+
+    @Override
+    public void setPlayerSkinData(UUID uuid, PlayerSkinData skinData) {
+        delegate.setPlayerSkinData(uuid, skinData);
+        evict(Invalidation.playerSkin(uuid));
+    }
+
+    @Override
+    public void setPlayerSkinData(Collection<PlayerSkinData> skinData) {
+        delegate.setPlayerSkinData(skinData);
+        for (PlayerSkinData data : skinData) {
+            evict(Invalidation.playerSkin(data.getUniqueId()));
+        }
+    }
+
+    @Override
+    public Optional<URLSkinData> getURLSkinData(String url, SkinVariant skinVariant) throws StorageException {
+        return load(keyOf(Invalidation.urlSkin(url, skinVariant)), () -> delegate.getURLSkinData(url, skinVariant));
+    }
+
+    @Override
+    public void removeURLSkinData(String url, SkinVariant skinVariant) {
+        delegate.removeURLSkinData(url, skinVariant);
+        evict(Invalidation.urlSkin(url, skinVariant));
+    }
+
+    @Override
+    public void setURLSkinData(String url, URLSkinData skinData) {
+        delegate.setURLSkinData(url, skinData);
+        evict(Invalidation.urlSkin(url, skinData.getSkinVariant()));
+    }
+
+    @Override
+    public Optional<URLIndexData> getURLSkinIndex(String url) throws StorageException {
+        return load(keyOf(Invalidation.urlIndex(url)), () -> delegate.getURLSkinIndex(url));
+    }
+
+    @Override
+    public void removeURLSkinIndex(String url) {
+        delegate.removeURLSkinIndex(url);
+        evict(Invalidation.urlIndex(url));
+    }
+
+    @Override
+    public void setURLSkinIndex(String url, URLIndexData skinData) {
+        delegate.setURLSkinIndex(url, skinData);
+        evict(Invalidation.urlIndex(url));
+    }
+
+    @Override
+    public Optional<CustomSkinData> getCustomSkinData(String skinName) throws StorageException {
+        return load(keyOf(Invalidation.customSkin(skinName)), () -> delegate.getCustomSkinData(skinName));
+    }
+
+    @Override
+    public void removeCustomSkinData(String skinName) {
+        delegate.removeCustomSkinData(skinName);
+        evict(Invalidation.customSkin(skinName));
+    }
+
+    @Override
+    public void setCustomSkinData(String skinName, CustomSkinData skinData) {
+        delegate.setCustomSkinData(skinName, skinData);
+        evict(Invalidation.customSkin(skinName));
+    }
+
+    @Override
+    public Optional<LegacySkinData> getLegacySkinData(String skinName) throws StorageException {
+        return delegate.getLegacySkinData(skinName);
+    }
+
+    @Override
+    public void removeLegacySkinData(String skinName) {
+        delegate.removeLegacySkinData(skinName);
+    }
+
+    @Override
+    public Optional<LegacyPlayerData> getLegacyPlayerData(String playerName) throws StorageException {
+        return delegate.getLegacyPlayerData(playerName);
+    }
+
+    @Override
+    public void removeLegacyPlayerData(String playerName) {
+        delegate.removeLegacyPlayerData(playerName);
+    }
+
+    @Override
+    public GUISkinPage getStoredGUISkins(@Nullable String cursor) {
+        return delegate.getStoredGUISkins(cursor);
+    }
+
+    @Override
+    public int purgeStoredOldSkins(long targetPurgeTimestamp, int limit) throws StorageException {
+        try {
+            return delegate.purgeStoredOldSkins(targetPurgeTimestamp, limit);
+        } finally {
+            evict(Invalidation.all(Invalidation.Type.PLAYER_SKIN));
+        }
+    }
+
+    @Override
+    public Optional<MojangCacheData> getCachedUUID(String playerName) throws StorageException {
+        return load(keyOf(Invalidation.mojangCache(playerName)), () -> delegate.getCachedUUID(playerName));
+    }
+
+    @Override
+    public void setCachedUUID(String playerName, MojangCacheData mojangCacheData) {
+        delegate.setCachedUUID(playerName, mojangCacheData);
+        evict(Invalidation.mojangCache(playerName));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> Optional<T> load(CacheKey key, Loader<T> loader) throws StorageException {
+        Optional<?> cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return (Optional<T>) cached;
+        }
+
+        long stamp = cache.getStamp(key);
+        Optional<T> loaded = loader.load();
+        cache.put(key, loaded, stamp);
+        return loaded;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> Map<UUID, T> loadAll(Invalidation.Type type, Collection<UUID> uuids, BulkLoader<T> loader) throws StorageException {
+        Map<UUID, T> result = new HashMap<>();
+        Set<UUID> missing = new HashSet<>();
+        for (UUID uuid : uuids) {
+            Optional<?> cached = cache.getIfPresent(new CacheKey(type, uuid));
+            if (cached == null) {
+                missing.add(uuid);
+            } else {
+                ((Optional<T>) cached).ifPresent(data -> result.put(uuid, data));
+            }
+        }
+
+        if (missing.isEmpty()) {
+            return result;
+        }
+
+        Map<UUID, Long> stamps = new HashMap<>();
+        for (UUID uuid : missing) {
+            stamps.put(uuid, cache.getStamp(new CacheKey(type, uuid)));
+        }
+
+        Map<UUID, T> loaded = loader.load(missing);
+        for (UUID uuid : missing) {
+            T data = loaded.get(uuid);
+            cache.put(new CacheKey(type, uuid), Optional.ofNullable(data), stamps.get(uuid));
+            if (data != null) {
+                result.put(uuid, data);
+            }
+        }
+
+        return result;
+    }
+
+    private static CacheKey keyOf(Invalidation invalidation) {
+        // Players are cached by their uuid, bulk lookups build those keys without going through a string
+        if (invalidation.type() == Invalidation.Type.PLAYER || invalidation.type() == Invalidation.Type.PLAYER_SKIN) {
+            return new CacheKey(invalidation.type(), UUID.fromString(invalidation.key()));
+        }
+
+        return new CacheKey(invalidation.type(), invalidation.key());
+    }
+
+    private record CacheKey(Invalidation.Type type, Object key) {
+    }
+
+    private interface Loader<T> {
+        Optional<T> load() throws StorageException;
+    }
+
+    private interface BulkLoader<T> {
+        Map<UUID, T> load(Collection<UUID> uuids) throws StorageException;
+    }
+}
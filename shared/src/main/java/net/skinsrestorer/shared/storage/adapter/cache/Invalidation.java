@@ -0,0 +1,101 @@
+/*
+ * SkinsRestorer
+ * Copyright (C) 2024  SkinsRestorer Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.skinsrestorer.shared.storage.adapter.cache;
+
+import net.skinsrestorer.api.property.SkinVariant;
+import net.skinsrestorer.shared.storage.model.skin.CustomSkinData;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * A stored entry that changed and has to be evicted from every cache.
+ * The key uses the same normalized form the {@link CachedStorageAdapter} caches the entry under.
+ */
+public record Invalidation(Type type, String key) {
+    public static Invalidation player(UUID uuid) {
+        return new Invalidation(Type.PLAYER, uuid.toString());
+    }
+
+    public static Invalidation playerSkin(UUID uuid) {
+        return new Invalidation(Type.PLAYER_SKIN, uuid.toString());
+    }
+
+    public static Invalidation urlSkin(String url, SkinVariant skinVariant) {
+        return new Invalidation(Type.URL_SKIN, url + "|" + skinVariant.name());
+    }
+
+    public static Invalidation urlIndex(String url) {
+        return new Invalidation(Type.URL_INDEX, url);
+    }
+
+    public static Invalidation customSkin(String skinName) {
+        return new Invalidation(Type.CUSTOM_SKIN, CustomSkinData.sanitizeCustomSkinName(skinName));
+    }
+
+    public static Invalidation mojangCache(String playerName) {
+        return new Invalidation(Type.MOJANG_CACHE, playerName.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Every entry of the type, for example after a purge.
+     */
+    public static Invalidation all(Type type) {
+        return new Invalidation(type, "");
+    }
+
+    public boolean isAll() {
+        return key.isEmpty();
+    }
+
+    public enum Type {
+        PLAYER(1),
+        PLAYER_SKIN(2),
+        URL_SKIN(3),
+        URL_INDEX(4),
+        CUSTOM_SKIN(5),
+        MOJANG_CACHE(6);
+
+        private final int id;
+
+        Type(int id) {
+            this.id = id;
+        }
+
+        /**
+         * @return the stable id stored in the database
+         */
+        public int getId() {
+            return id;
+        }
+
+        /**
+         * @return the type, or null if it was written by a newer version
+         */
+        public static @Nullable Type fromId(int id) {
+            for (Type type : values()) {
+                if (type.id == id) {
+                    return type;
+                }
+            }
+
+            return null;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * SkinsRestorer
+ * Copyright (C) 2024  SkinsRestorer Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.skinsrestorer.shared.storage.adapter.cache;
+
+import java.util.function.Consumer;
+
+/**
+ * Delivers changes made by other servers sharing the same storage, so their entries can be evicted from the local cache.
+ */
+public interface InvalidationTransport {
+    /**
+     * Starts delivering changes of other servers to the listener, on a thread of the transport.
+     */
+    void start(Consumer<Invalidation> listener);
+
+    /**
+     * Called for every change made by this server.
+     * Transports where the storage itself records changes, like the database changelog, ignore it,
+     * a messaging based transport sends it to the other servers.
+     */
+    default void publish(Invalidation invalidation) {
+    }
+
+    void close();
+}
@@ -0,0 +1,168 @@
+/*
+ * SkinsRestorer
+ * Copyright (C) 2024  SkinsRestorer Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.skinsrestorer.shared.storage.adapter.cache;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Size and TTL bounded segmented LRU cache.
+ * New entries enter a probation segment and are promoted to the protected segment once they are hit again,
+ * so a burst of one-off lookups can't push out entries that are used repeatedly.
+ */
+public class SegmentedLRUCache<K, V> {
+    private static final int STAMP_STRIPES = 64;
+    private final Map<K, Entry<V>> probation = new LinkedHashMap<>(16, 0.75F, true);
+    private final Map<K, Entry<V>> protectedSegment = new LinkedHashMap<>(16, 0.75F, true);
+    private final int maxSize;
+    private final int maxProtectedSize;
+    private final long expireAfterNanos;
+    // Invalidating a key only discards loads of keys in its stripe, bulk invalidations discard all loads
+    private final long[] stripeStamps = new long[STAMP_STRIPES];
+    private long globalStamp;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public SegmentedLRUCache(int maxSize, long expireAfterNanos) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+
+        this.maxSize = maxSize;
+        this.maxProtectedSize = Math.max(1, (int) (maxSize * 0.8));
+        this.expireAfterNanos = expireAfterNanos;
+    }
+
+    public synchronized @Nullable V getIfPresent(K key) {
+        long now = System.nanoTime();
+        Entry<V> entry = protectedSegment.get(key);
+        if (entry != null) {
+            if (entry.isExpired(now)) {
+                protectedSegment.remove(key);
+                misses++;
+                return null;
+            }
+
+            hits++;
+            return entry.value();
+        }
+
+        entry = probation.remove(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+
+        if (entry.isExpired(now)) {
+            misses++;
+            return null;
+        }
+
+        // Second hit, promote to the protected segment
+        protectedSegment.put(key, entry);
+        if (protectedSegment.size() > maxProtectedSize) {
+            Iterator<Map.Entry<K, Entry<V>>> iterator = protectedSegment.entrySet().iterator();
+            Map.Entry<K, Entry<V>> eldest = iterator.next();
+            iterator.remove();
+            probation.put(eldest.getKey(), eldest.getValue());
+        }
+
+        hits++;
+        return entry.value();
+    }
+
+    /**
+     * Returns a stamp that has to be passed to {@link #put(Object, Object, long)}.
+     * Take it before loading a value, so a value loaded before an invalidation of the key will not be cached.
+     *
+     * @return the current invalidation stamp of the key
+     */
+    public synchronized long getStamp(K key) {
+        // Both parts only grow, so the sum changes whenever one of them does
+        return globalStamp + stripeStamps[stripe(key)];
+    }
+
+    public synchronized void put(K key, V value, long loadStamp) {
+        if (loadStamp != getStamp(key)) {
+            return;
+        }
+
+        Entry<V> entry = new Entry<>(value, System.nanoTime() + expireAfterNanos);
+        if (protectedSegment.containsKey(key)) {
+            protectedSegment.put(key, entry);
+            return;
+        }
+
+        probation.put(key, entry);
+        evictIfNeeded();
+    }
+
+    public synchronized void invalidate(K key) {
+        stripeStamps[stripe(key)]++;
+        probation.remove(key);
+        protectedSegment.remove(key);
+    }
+
+    public synchronized void invalidateIf(Predicate<K> predicate) {
+        globalStamp++;
+        probation.keySet().removeIf(predicate);
+        protectedSegment.keySet().removeIf(predicate);
+    }
+
+    public synchronized void invalidateAll() {
+        globalStamp++;
+        probation.clear();
+        protectedSegment.clear();
+    }
+
+    public synchronized int size() {
+        return probation.size() + protectedSegment.size();
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(hits, misses, evictions, size());
+    }
+
+    private static int stripe(Object key) {
+        return Math.floorMod(key.hashCode(), STAMP_STRIPES);
+    }
+
+    private void evictIfNeeded() {
+        while (size() > maxSize) {
+            Map<K, Entry<V>> segment = probation.isEmpty() ? protectedSegment : probation;
+            Iterator<Map.Entry<K, Entry<V>>> iterator = segment.entrySet().iterator();
+            iterator.next();
+            iterator.remove();
+            evictions++;
+        }
+    }
+
+    public record Stats(long hits, long misses, long evictions, int size) {
+    }
+
+    private record Entry<V>(V value, long expiresAt) {
+        private boolean isExpired(long now) {
+            return now - expiresAt >= 0;
+        }
+    }
+}
@@ -0,0 +1,305 @@
+/*
+ * SkinsRestorer
+ * Copyright (C) 2024  SkinsRestorer Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.skinsrestorer.shared.storage.adapter.cache;
+
+import net.skinsrestorer.api.property.SkinVariant;
+import net.skinsrestorer.shared.gui.GUISkinPage;
+import net.skinsrestorer.shared.log.SRLogger;
+import net.skinsrestorer.shared.storage.adapter.StorageAdapter;
+import net.skinsrestorer.shared.storage.model.cache.MojangCacheData;
+import net.skinsrestorer.shared.storage.model.player.LegacyPlayerData;
+import net.skinsrestorer.shared.storage.model.player.PlayerData;
+import net.skinsrestorer.shared.storage.model.skin.*;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Buffers writes of players, player skins and cached uuids to another {@link StorageAdapter}.
+ * Repeated writes of the same key only store the latest one, pending writes are stored in batches
+ * on a timer or once too many are pending. Reads see pending writes, everything else is passed through.
+ */
+public class WriteBehindStorageAdapter implements StorageAdapter {
+    private final StorageAdapter delegate;
+    private final SRLogger logger;
+    private final int maxPending;
+    private final Map<UUID, PlayerData> players = new ConcurrentHashMap<>();
+    private final Map<UUID, PlayerSkinData> playerSkins = new ConcurrentHashMap<>();
+    private final Map<String, PendingUUID> cachedUUIDs = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final ScheduledExecutorService flusher;
+
+    public WriteBehindStorageAdapter(StorageAdapter delegate, SRLogger logger, int flushIntervalMillis, int maxPending) {
+        this.delegate = delegate;
+        this.logger = logger;
+        this.maxPending = maxPending;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "SkinsRestorer-WriteBehind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushSafely, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public StorageAdapter getDelegate() {
+        return delegate;
+    }
+
+    public int getPending() {
+        return players.size() + playerSkins.size() + cachedUUIDs.size();
+    }
+
+    /**
+     * Stores all pending writes. A write is only removed from the buffer after it was stored,
+     * so reads never fall back to the old data in between.
+     */
+    public synchronized void flush() {
+        for (Map.Entry<UUID, PlayerData> entry : new ArrayList<>(players.entrySet())) {
+            delegate.setPlayerData(entry.getKey(), entry.getValue());
+            players.remove(entry.getKey(), entry.getValue());
+        }
+
+        if (!playerSkins.isEmpty()) {
+            Map<UUID, PlayerSkinData> skins = new HashMap<>(playerSkins);
+            delegate.setPlayerSkinData(skins.values());
+            skins.forEach(playerSkins::remove);
+        }
+
+        for (Map.Entry<String, PendingUUID> entry : new ArrayList<>(cachedUUIDs.entrySet())) {
+            delegate.setCachedUUID(entry.getValue().playerName(), entry.getValue().data());
+            cachedUUIDs.remove(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Stops the timer and stores everything that is still pending.
+     */
+    public void close() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        flush();
+    }
+
+    private void flushSafely() {
+        flushScheduled.set(false);
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            logger.severe("Failed to store buffered writes", e);
+        }
+    }
+
+    private void written() {
+        if (flusher.isShutdown()) {
+            // Closed, so nothing else would store it
+            flush();
+        } else if (getPending() >= maxPending && flushScheduled.compareAndSet(false, true)) {
+            flusher.execute(this::flushSafely);
+        }
+    }
+
+    @Override
+    public void init() {
+        delegate.init();
+    }
+
+    @Override
+    public Optional<PlayerData> getPlayerData(UUID uuid) throws StorageException {
+        PlayerData pending = players.get(uuid);
+        if (pending != null) {
+            return Optional.of(copy(pending));
+        }
+
+        return delegate.getPlayerData(uuid);
+    }
+
+    @Override
+    public Map<UUID, PlayerData> getPlayerData(Collection<UUID> uuids) throws StorageException {
+        Map<UUID, PlayerData> result = new HashMap<>(delegate.getPlayerData(uuids));
+        for (UUID uuid : uuids) {
+            PlayerData pending = players.get(uuid);
+            if (pending != null) {
+                result.put(uuid, copy(pending));
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public void setPlayerData(UUID uuid, PlayerData data) {
+        // PlayerData is mutable, the caller may change it before it is stored
+        players.put(uuid, copy(data));
+        written();
+    }
+
+    @Override
+    public Optional<PlayerSkinData> getPlayerSkinData(UUID uuid) throws StorageException {
+        PlayerSkinData pending = playerSkins.get(uuid);
+        if (pending != null) {
+            return Optional.of(pending);
+        }
+
+        return delegate.getPlayerSkinData(uuid);
+    }
+
+    @Override
+    public Map<UUID, PlayerSkinData> getPlayerSkinData(Collection<UUID> uuids) throws StorageException {
+        Map<UUID, PlayerSkinData> result = new HashMap<>(delegate.getPlayerSkinData(uuids));
+        for (UUID uuid : uuids) {
+            PlayerSkinData pending = playerSkins.get(uuid);
+            if (pending != null) {
+                result.put(uuid, pending);
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public synchronized void removePlayerSkinData(UUID uuid) {
+        // Synchronized with flush, so a pending write can not be stored after the removal
+        playerSkins.remove(uuid);
+        delegate.removePlayerSkinData(uuid);
+    }
+
+    @Override
+    public void setPlayerSkinData(UUID uuid, PlayerSkinData skinData) {
+        playerSkins.put(uuid, skinData);
+        written();
+    }
+
+    @Override
+    public void setPlayerSkinData(Collection<PlayerSkinData> skinData) {
+        for (PlayerSkinData data : skinData) {
+            playerSkins.put(data.getUniqueId(), data);
+        }
+        written();
+    }
+
+    @Override
+    public Optional<URLSkinData> getURLSkinData(String url, SkinVariant skinVariant) throws StorageException {
+        return delegate.getURLSkinData(url, skinVariant);
+    }
+
+    @Override
+    public void removeURLSkinData(String url, SkinVariant skinVariant) {
+        delegate.removeURLSkinData(url, skinVariant);
+    }
+
+    @Override
+    public void setURLSkinData(String url, URLSkinData skinData) {
+        delegate.setURLSkinData(url, skinData);
+    }
+
+    @Override
+    public Optional<URLIndexData> getURLSkinIndex(String url) throws StorageException {
+        return delegate.getURLSkinIndex(url);
+    }
+
+    @Override
+    public void removeURLSkinIndex(String url) {
+        delegate.removeURLSkinIndex(url);
+    }
+
+    @Override
+    public void setURLSkinIndex(String url, URLIndexData skinData) {
+        delegate.setURLSkinIndex(url, skinData);
+    }
+
+    @Override
+    public Optional<CustomSkinData> getCustomSkinData(String skinName) throws StorageException {
+        return delegate.getCustomSkinData(skinName);
+    }
+
+    @Override
+    public void removeCustomSkinData(String skinName) {
+        delegate.removeCustomSkinData(skinName);
+    }
+
+    @Override
+    public void setCustomSkinData(String skinName, CustomSkinData skinData) {
+        delegate.setCustomSkinData(skinName, skinData);
+    }
+
+    @Override
+    public Optional<LegacySkinData> getLegacySkinData(String skinName) throws StorageException {
+        return delegate.getLegacySkinData(skinName);
+    }
+
+    @Override
+    public void removeLegacySkinData(String skinName) {
+        delegate.removeLegacySkinData(skinName);
+    }
+
+    @Override
+    public Optional<LegacyPlayerData> getLegacyPlayerData(String playerName) throws StorageException {
+        return delegate.getLegacyPlayerData(playerName);
+    }
+
+    @Override
+    public void removeLegacyPlayerData(String playerName) {
+        delegate.removeLegacyPlayerData(playerName);
+    }
+
+    @Override
+    public GUISkinPage getStoredGUISkins(@Nullable String cursor) {
+        // The GUI pages through the stored skins, so pending skins have to be stored first
+        flush();
+        return delegate.getStoredGUISkins(cursor);
+    }
+
+    @Override
+    public int purgeStoredOldSkins(long targetPurgeTimestamp, int limit) throws StorageException {
+        flush();
+        return delegate.purgeStoredOldSkins(targetPurgeTimestamp, limit);
+    }
+
+    @Override
+    public Optional<MojangCacheData> getCachedUUID(String playerName) throws StorageException {
+        PendingUUID pending = cachedUUIDs.get(playerName.toLowerCase(Locale.ROOT));
+        if (pending != null) {
+            return Optional.of(pending.data());
+        }
+
+        return delegate.getCachedUUID(playerName);
+    }
+
+    @Override
+    public void setCachedUUID(String playerName, MojangCacheData mojangCacheData) {
+        cachedUUIDs.put(playerName.toLowerCase(Locale.ROOT), new PendingUUID(playerName, mojangCacheData));
+        written();
+    }
+
+    private static PlayerData copy(PlayerData data) {
+        return PlayerData.of(data.getUniqueId(), data.getSkinIdentifier());
+    }
+
+    private record PendingUUID(String playerName, MojangCacheData data) {
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * SkinsRestorer
+ * Copyright (C) 2024  SkinsRestorer Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.skinsrestorer.shared.storage.adapter.codec;
+
+import net.skinsrestorer.api.property.SkinProperty;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Reads the fields of a binary record straight from a (possibly direct) {@link ByteBuffer}.
+ */
+public class BinaryRecordReader {
+    private final ByteBuffer buffer;
+
+    BinaryRecordReader(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    public int readByte() {
+        return buffer.get() & 0xFF;
+    }
+
+    public long readVarLong() {
+        long zigzag = 0;
+        int shift = 0;
+        byte b;
+        do {
+            if (shift >= 64) {
+                throw new IllegalStateException("Malformed varint");
+            }
+
+            b = buffer.get();
+            zigzag |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    private int readLength() {
+        long length = readVarLong();
+        if (length > buffer.remaining()) {
+            throw new IllegalStateException("Length exceeds record: " + length);
+        }
+
+        return (int) length;
+    }
+
+    public byte[] readBytes() {
+        byte[] bytes = new byte[readLength()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    public String readString() {
+        long length = readVarLong();
+        if (length == -1) {
+            return null;
+        }
+
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalStateException("Length exceeds record: " + length);
+        }
+
+        if (buffer.hasArray()) {
+            String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), (int) length, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + (int) length);
+            return value;
+        }
+
+        ByteBuffer slice = buffer.slice();
+        slice.limit((int) length);
+        buffer.position(buffer.position() + (int) length);
+        return StandardCharsets.UTF_8.decode(slice).toString();
+    }
+
+    public UUID readUUID() {
+        if (readByte() == 0) {
+            return null;
+        }
+
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+
+    public <E extends Enum<E>> E readEnum(Class<E> enumClass) {
+        int ordinal = readByte();
+        if (ordinal == 0) {
+            return null;
+        }
+
+        E[] values = enumClass.getEnumConstants();
+        if (ordinal > values.length) {
+            throw new IllegalStateException("Unknown " + enumClass.getSimpleName() + " ordinal: " + ordinal);
+        }
+
+        return values[ordinal - 1];
+    }
+
+    public SkinProperty readProperty() {
+        return SkinProperty.of(readBase64(), readBase64());
+    }
+
+    private String readBase64() {
+        int encoding = readByte();
+        return switch (encoding) {
+            case RecordCodec.TEXTURE_DECODED -> Base64.getEncoder().encodeToString(readBytes());
+            case RecordCodec.TEXTURE_RAW -> readString();
+            default -> throw new IllegalStateException("Unknown texture encoding: " + encoding);
+        };
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * SkinsRestorer
+ * Copyright (C) 2024  SkinsRestorer Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.skinsrestorer.shared.storage.adapter.codec;
+
+import net.skinsrestorer.api.property.SkinProperty;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Writes the fields of a binary record, see {@link RecordCodec} for the layout.
+ */
+public class BinaryRecordWriter {
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream(1024);
+
+    BinaryRecordWriter(RecordCodec.RecordType type) {
+        out.write(RecordCodec.BINARY_MAGIC);
+        out.write(RecordCodec.BINARY_VERSION);
+        out.write(type.getTag());
+    }
+
+    public BinaryRecordWriter writeByte(int value) {
+        out.write(value);
+        return this;
+    }
+
+    public BinaryRecordWriter writeVarLong(long value) {
+        // Zigzag encoding keeps small negative values like -1 short
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            out.write((int) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+
+        out.write((int) zigzag);
+        return this;
+    }
+
+    public BinaryRecordWriter writeBytes(byte[] bytes) {
+        writeVarLong(bytes.length);
+        out.write(bytes, 0, bytes.length);
+        return this;
+    }
+
+    public BinaryRecordWriter writeString(String value) {
+        if (value == null) {
+            return writeVarLong(-1);
+        }
+
+        return writeBytes(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public BinaryRecordWriter writeUUID(UUID uuid) {
+        if (uuid == null) {
+            return writeByte(0);
+        }
+
+        writeByte(1);
+        writeLong(uuid.getMostSignificantBits());
+        writeLong(uuid.getLeastSignificantBits());
+        return this;
+    }
+
+    private void writeLong(long value) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            out.write((int) (value >>> shift));
+        }
+    }
+
+    public BinaryRecordWriter writeEnum(Enum<?> value) {
+        // Zero is reserved for null, the order of the API enums is part of the format
+        return writeByte(value == null ? 0 : value.ordinal() + 1);
+    }
+
+    public BinaryRecordWriter writeProperty(SkinProperty property) {
+        writeBase64(property.getValue());
+        writeBase64(property.getSignature());
+        return this;
+    }
+
+    /**
+     * Stores base64 as its decoded bytes, which is a quarter smaller.
+     */
+    private void writeBase64(String value) {
+        byte[] decoded = RecordCodec.decodeCanonicalBase64(value);
+        if (decoded != null) {
+            writeByte(RecordCodec.TEXTURE_DECODED);
+            writeBytes(decoded);
+        } else {
+            writeByte(RecordCodec.TEXTURE_RAW);
+            writeString(value);
+        }
+    }
+
+    byte[] toByteArray() {
+        return out.toByteArray();
+    }
+}
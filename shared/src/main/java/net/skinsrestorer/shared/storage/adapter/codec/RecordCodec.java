@@ -0,0 +1,269 @@
+/*
+ * SkinsRestorer
+ * Copyright (C) 2024  SkinsRestorer Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.skinsrestorer.shared.storage.adapter.codec;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import net.skinsrestorer.api.property.SkinIdentifier;
+import net.skinsrestorer.api.property.SkinProperty;
+import net.skinsrestorer.api.property.SkinType;
+import net.skinsrestorer.api.property.SkinVariant;
+import net.skinsrestorer.shared.storage.adapter.file.model.cache.MojangCacheFile;
+import net.skinsrestorer.shared.storage.adapter.file.model.player.LegacyPlayerFile;
+import net.skinsrestorer.shared.storage.adapter.file.model.player.PlayerFile;
+import net.skinsrestorer.shared.storage.adapter.file.model.skin.*;
+import net.skinsrestorer.shared.storage.model.cache.MojangCacheData;
+import net.skinsrestorer.shared.storage.model.player.LegacyPlayerData;
+import net.skinsrestorer.shared.storage.model.player.PlayerData;
+import net.skinsrestorer.shared.storage.model.skin.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Encodes stored records either as the JSON file models or as a compact binary format.
+ * Decoding detects the format from the first byte, so both formats can be mixed in one storage.
+ * <p>
+ * Binary layout: {@code [byte magic][byte version][byte type tag][fields...]}.
+ * Numbers are zigzag varints, UUIDs two longs, and textures and signatures are stored base64 decoded.
+ */
+public class RecordCodec<T> {
+    static final int BINARY_MAGIC = 0xB5; // Never the first byte of a JSON document
+    static final int BINARY_VERSION = 1;
+    static final int TEXTURE_DECODED = 0;
+    static final int TEXTURE_RAW = 1;
+    private static final Gson GSON = new GsonBuilder().disableHtmlEscaping().create();
+    private static final ThreadLocal<ByteBuffer> READ_BUFFER = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(4096));
+
+    public static final RecordCodec<PlayerData> PLAYER = new RecordCodec<>(RecordType.PLAYER,
+            PlayerFile.class, PlayerFile::fromPlayerData, PlayerFile::toPlayerData,
+            (writer, data) -> {
+                writer.writeUUID(data.getUniqueId());
+                SkinIdentifier identifier = data.getSkinIdentifier();
+                if (identifier == null) {
+                    writer.writeByte(0);
+                } else {
+                    writer.writeByte(1)
+                            .writeString(identifier.getIdentifier())
+                            .writeEnum(identifier.getSkinVariant())
+                            .writeEnum(identifier.getSkinType());
+                }
+            },
+            reader -> PlayerData.of(reader.readUUID(), reader.readByte() == 0 ? null :
+                    SkinIdentifier.of(reader.readString(), reader.readEnum(SkinVariant.class), reader.readEnum(SkinType.class))));
+    public static final RecordCodec<PlayerSkinData> PLAYER_SKIN = new RecordCodec<>(RecordType.PLAYER_SKIN,
+            PlayerSkinFile.class, PlayerSkinFile::fromPlayerSkinData, PlayerSkinFile::toPlayerSkinData,
+            (writer, data) -> writer.writeUUID(data.getUniqueId())
+                    .writeString(data.getLastKnownName())
+                    .writeProperty(data.getProperty())
+                    .writeVarLong(data.getTimestamp()),
+            reader -> PlayerSkinData.of(reader.readUUID(), reader.readString(), reader.readProperty(), reader.readVarLong()));
+    public static final RecordCodec<URLSkinData> URL_SKIN = new RecordCodec<>(RecordType.URL_SKIN,
+            URLSkinFile.class, URLSkinFile::fromURLSkinData, URLSkinFile::toURLSkinData,
+            (writer, data) -> writer.writeString(data.getUrl())
+                    .writeString(data.getMineSkinId())
+                    .writeProperty(data.getProperty())
+                    .writeEnum(data.getSkinVariant()),
+            reader -> URLSkinData.of(reader.readString(), reader.readString(), reader.readProperty(), reader.readEnum(SkinVariant.class)));
+    public static final RecordCodec<URLIndexData> URL_INDEX = new RecordCodec<>(RecordType.URL_INDEX,
+            URLIndexFile.class, URLIndexFile::fromURLIndexData, URLIndexFile::toURLIndexData,
+            (writer, data) -> writer.writeString(data.getUrl())
+                    .writeEnum(data.getSkinVariant()),
+            reader -> URLIndexData.of(reader.readString(), reader.readEnum(SkinVariant.class)));
+    public static final RecordCodec<CustomSkinData> CUSTOM_SKIN = new RecordCodec<>(RecordType.CUSTOM_SKIN,
+            CustomSkinFile.class, CustomSkinFile::fromCustomSkinData, CustomSkinFile::toCustomSkinData,
+            (writer, data) -> writer.writeString(data.getSkinName())
+                    .writeProperty(data.getProperty()),
+            reader -> CustomSkinData.of(reader.readString(), reader.readProperty()));
+    public static final RecordCodec<LegacySkinData> LEGACY_SKIN = new RecordCodec<>(RecordType.LEGACY_SKIN,
+            LegacySkinFile.class, LegacySkinFile::fromLegacySkinData, LegacySkinFile::toLegacySkinData,
+            (writer, data) -> writer.writeString(data.getSkinName())
+                    .writeProperty(data.getProperty()),
+            reader -> LegacySkinData.of(reader.readString(), reader.readProperty()));
+    public static final RecordCodec<LegacyPlayerData> LEGACY_PLAYER = new RecordCodec<>(RecordType.LEGACY_PLAYER,
+            LegacyPlayerFile.class, LegacyPlayerFile::fromLegacyPlayerData, LegacyPlayerFile::toLegacyPlayerData,
+            (writer, data) -> writer.writeString(data.getPlayerName())
+                    .writeString(data.getSkinName()),
+            reader -> LegacyPlayerData.of(reader.readString(), reader.readString()));
+    public static final RecordCodec<MojangCacheData> MOJANG_CACHE = new RecordCodec<>(RecordType.MOJANG_CACHE,
+            MojangCacheFile.class, MojangCacheFile::fromMojangCacheData, MojangCacheFile::toCacheData,
+            (writer, data) -> writer.writeUUID(data.getUniqueId().orElse(null))
+                    .writeVarLong(data.getTimestamp()),
+            reader -> MojangCacheData.of(reader.readUUID(), reader.readVarLong()));
+    public static final RecordCodec<SkinProperty> TEXTURE = new RecordCodec<>(RecordType.TEXTURE,
+            TextureFile.class, TextureFile::fromProperty, TextureFile::toProperty,
+            BinaryRecordWriter::writeProperty,
+            BinaryRecordReader::readProperty);
+
+    private final RecordType type;
+    private final Function<T, Object> toJsonModel;
+    private final Function<String, T> fromJson;
+    private final BiConsumer<BinaryRecordWriter, T> binaryWriter;
+    private final Function<BinaryRecordReader, T> binaryReader;
+
+    private <F> RecordCodec(RecordType type, Class<F> jsonModel, Function<T, F> toJsonModel, Function<F, T> fromJsonModel,
+                            BiConsumer<BinaryRecordWriter, T> binaryWriter, Function<BinaryRecordReader, T> binaryReader) {
+        this.type = type;
+        this.toJsonModel = toJsonModel::apply;
+        this.fromJson = json -> fromJsonModel.apply(GSON.fromJson(json, jsonModel));
+        this.binaryWriter = binaryWriter;
+        this.binaryReader = binaryReader;
+    }
+
+    public byte[] encode(T data, boolean binary) {
+        if (!binary) {
+            return GSON.toJson(toJsonModel.apply(data)).getBytes(StandardCharsets.UTF_8);
+        }
+
+        BinaryRecordWriter writer = new BinaryRecordWriter(type);
+        binaryWriter.accept(writer, data);
+        return writer.toByteArray();
+    }
+
+    public T decode(byte[] bytes) {
+        return decode(ByteBuffer.wrap(bytes));
+    }
+
+    public T decode(ByteBuffer buffer) {
+        if (!buffer.hasRemaining() || (buffer.get(buffer.position()) & 0xFF) != BINARY_MAGIC) {
+            return fromJson.apply(StandardCharsets.UTF_8.decode(buffer).toString());
+        }
+
+        BinaryRecordReader reader = new BinaryRecordReader(buffer);
+        reader.readByte(); // Magic
+        int version = reader.readByte();
+        if (version > BINARY_VERSION) {
+            throw new IllegalStateException("Record was written by a newer version: " + version);
+        }
+
+        int tag = reader.readByte();
+        if (tag != type.getTag()) {
+            throw new IllegalStateException("Expected record type " + type + " but got tag " + tag);
+        }
+
+        return binaryReader.apply(reader);
+    }
+
+    /**
+     * Reads and decodes a whole file through a reused direct buffer.
+     */
+    public T decode(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Record file too large: " + file.getFileName());
+            }
+
+            ByteBuffer buffer = READ_BUFFER.get();
+            if (buffer.capacity() < size) {
+                buffer = ByteBuffer.allocateDirect(Integer.highestOneBit((int) size) << 1);
+                READ_BUFFER.set(buffer);
+            }
+
+            buffer.clear();
+            buffer.limit((int) size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    break;
+                }
+            }
+
+            buffer.flip();
+            return decode(buffer);
+        }
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public enum RecordType {
+        PLAYER(1),
+        PLAYER_SKIN(2),
+        URL_SKIN(3),
+        URL_INDEX(4),
+        CUSTOM_SKIN(5),
+        LEGACY_SKIN(6),
+        LEGACY_PLAYER(7),
+        MOJANG_CACHE(8),
+        TEXTURE(9);
+
+        private final int tag;
+    }
+
+    /**
+     * Encodes a texture or signature for a binary column, using the same encoding as binary records:
+     * one encoding byte followed by the decoded base64, or by the raw string if it is not canonical base64.
+     */
+    public static byte[] encodeTexture(String value) {
+        byte[] decoded = decodeCanonicalBase64(value);
+        byte[] payload = decoded != null ? decoded : value.getBytes(StandardCharsets.UTF_8);
+        byte[] result = new byte[payload.length + 1];
+        result[0] = (byte) (decoded != null ? TEXTURE_DECODED : TEXTURE_RAW);
+        System.arraycopy(payload, 0, result, 1, payload.length);
+        return result;
+    }
+
+    public static String decodeTexture(byte[] data) {
+        return switch (data[0]) {
+            case TEXTURE_DECODED -> Base64.getEncoder().encodeToString(Arrays.copyOfRange(data, 1, data.length));
+            case TEXTURE_RAW -> new String(data, 1, data.length - 1, StandardCharsets.UTF_8);
+            default -> throw new IllegalStateException("Unknown texture encoding: " + data[0]);
+        };
+    }
+
+    /**
+     * SHA-256 of the texture value and signature, which identifies a texture in content addressed storage.
+     */
+    public static byte[] hashTexture(SkinProperty property) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(property.getValue().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0); // Never part of base64, so value and signature can not shift into each other
+            digest.update(property.getSignature().getBytes(StandardCharsets.UTF_8));
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return the decoded bytes, or null if the value would not encode back to the exact same string,
+     * since the signature is only valid for the original string
+     */
+    static byte[] decodeCanonicalBase64(String value) {
+        byte[] decoded;
+        try {
+            decoded = Base64.getDecoder().decode(value);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+
+        return Base64.getEncoder().encodeToString(decoded).equals(value) ? decoded : null;
+    }
+}
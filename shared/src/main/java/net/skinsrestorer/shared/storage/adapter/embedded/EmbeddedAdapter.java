@@ -0,0 +1,360 @@
+/*
+ * SkinsRestorer
+ * Copyright (C) 2024  SkinsRestorer Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.skinsrestorer.shared.storage.adapter.embedded;
+
+import ch.jalu.configme.SettingsManager;
+import lombok.Getter;
+import net.skinsrestorer.api.property.SkinType;
+import net.skinsrestorer.api.property.SkinVariant;
+import net.skinsrestorer.shared.config.DatabaseConfig;
+import net.skinsrestorer.shared.config.GUIConfig;
+import net.skinsrestorer.shared.gui.GUISkinPage;
+import net.skinsrestorer.shared.gui.SharedGUI;
+import net.skinsrestorer.shared.log.SRLogger;
+import net.skinsrestorer.shared.plugin.SRPlugin;
+import net.skinsrestorer.shared.storage.adapter.StorageAdapter;
+import net.skinsrestorer.shared.storage.adapter.codec.RecordCodec;
+import net.skinsrestorer.shared.storage.adapter.file.GUISkinIndex;
+import net.skinsrestorer.shared.storage.model.cache.MojangCacheData;
+import net.skinsrestorer.shared.storage.model.player.LegacyPlayerData;
+import net.skinsrestorer.shared.storage.model.player.PlayerData;
+import net.skinsrestorer.shared.storage.model.skin.*;
+import org.jetbrains.annotations.Nullable;
+
+import javax.inject.Inject;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Keeps all data in a single {@link LogStore} instead of one file per entry.
+ * Values are encoded with the same {@link RecordCodec} the {@link net.skinsrestorer.shared.storage.adapter.file.FileAdapter} uses.
+ * GUI pages and purges are served from a {@link GUISkinIndex} next to the segments, like the file storage does.
+ */
+public class EmbeddedAdapter implements StorageAdapter {
+    private static final long MAX_SEGMENT_SIZE = 16L * 1024 * 1024;
+    private static final byte PLAYER = 1;
+    private static final byte PLAYER_SKIN = 2;
+    private static final byte URL_SKIN = 3;
+    private static final byte URL_INDEX = 4;
+    private static final byte CUSTOM_SKIN = 5;
+    private static final byte LEGACY_SKIN = 6;
+    private static final byte LEGACY_PLAYER = 7;
+    private static final byte MOJANG_CACHE = 8;
+    private final Path dataFolder;
+    private final SettingsManager settings;
+    private final boolean binaryRecords;
+    private final SRLogger logger;
+    @Getter
+    private final LogStore store;
+    private final GUISkinIndex guiIndex;
+    private boolean opened;
+
+    @Inject
+    public EmbeddedAdapter(SRPlugin plugin, SettingsManager settings, SRLogger logger) {
+        this.dataFolder = plugin.getDataFolder();
+        this.settings = settings;
+        this.logger = logger;
+        this.binaryRecords = settings.getProperty(DatabaseConfig.BINARY_RECORDS);
+        this.store = new LogStore(dataFolder.resolve("embedded"), MAX_SEGMENT_SIZE, logger);
+        this.guiIndex = new GUISkinIndex(dataFolder.resolve("embedded").resolve("gui.index"), logger);
+    }
+
+    @Override
+    public synchronized void init() {
+        if (opened) {
+            return;
+        }
+
+        try {
+            store.open();
+            opened = true;
+            loadGUIIndex();
+
+            new FileStoreImporter(dataFolder, dataFolder.resolve("embedded").resolve("imported.txt"), this, store::flush, logger).importIfNeeded();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public synchronized void close() {
+        if (!opened) {
+            return;
+        }
+
+        opened = false;
+        try {
+            store.close();
+        } catch (IOException e) {
+            logger.warning("Failed to close embedded storage", e);
+            return;
+        }
+
+        // Only marked clean once the skins it indexes are on disk
+        guiIndex.close();
+    }
+
+    private <T> Optional<T> read(byte namespace, String key, RecordCodec<T> codec) throws StorageException {
+        try {
+            Optional<byte[]> value = store.get(namespace, key);
+            if (value.isEmpty()) {
+                return Optional.empty();
+            }
+
+            return Optional.of(codec.decode(value.get()));
+        } catch (Exception e) {
+            throw new StorageException(e);
+        }
+    }
+
+    private <T> void write(byte namespace, String key, RecordCodec<T> codec, T data, String description) {
+        try {
+            store.put(namespace, key, codec.encode(data, binaryRecords));
+        } catch (IOException e) {
+            logger.warning("Failed to save " + description, e);
+        }
+    }
+
+    private void delete(byte namespace, String key, String description) {
+        try {
+            store.delete(namespace, key);
+        } catch (IOException e) {
+            logger.warning("Failed to remove " + description, e);
+        }
+    }
+
+    @Override
+    public Optional<PlayerData> getPlayerData(UUID uuid) throws StorageException {
+        return read(PLAYER, uuid.toString(), RecordCodec.PLAYER);
+    }
+
+    @Override
+    public void setPlayerData(UUID uuid, PlayerData data) {
+        write(PLAYER, uuid.toString(), RecordCodec.PLAYER, data, "player data for " + uuid);
+    }
+
+    @Override
+    public Optional<PlayerSkinData> getPlayerSkinData(UUID uuid) throws StorageException {
+        return read(PLAYER_SKIN, uuid.toString(), RecordCodec.PLAYER_SKIN);
+    }
+
+    @Override
+    public void removePlayerSkinData(UUID uuid) {
+        delete(PLAYER_SKIN, uuid.toString(), "player skin data for " + uuid);
+        guiIndex.remove(SkinType.PLAYER, uuid.toString());
+    }
+
+    @Override
+    public void setPlayerSkinData(UUID uuid, PlayerSkinData skinData) {
+        write(PLAYER_SKIN, uuid.toString(), RecordCodec.PLAYER_SKIN, skinData, "player skin data for " + uuid);
+        guiIndex.put(toGUIEntry(skinData));
+    }
+
+    @Override
+    public Optional<URLSkinData> getURLSkinData(String url, SkinVariant skinVariant) throws StorageException {
+        return read(URL_SKIN, urlSkinKey(url, skinVariant), RecordCodec.URL_SKIN);
+    }
+
+    @Override
+    public void removeURLSkinData(String url, SkinVariant skinVariant) {
+        delete(URL_SKIN, urlSkinKey(url, skinVariant), "URL skin data for " + url);
+    }
+
+    @Override
+    public void setURLSkinData(String url, URLSkinData skinData) {
+        write(URL_SKIN, urlSkinKey(url, skinData.getSkinVariant()), RecordCodec.URL_SKIN, skinData, "URL skin data for " + url);
+    }
+
+    @Override
+    public Optional<URLIndexData> getURLSkinIndex(String url) throws StorageException {
+        return read(URL_INDEX, url, RecordCodec.URL_INDEX);
+    }
+
+    @Override
+    public void removeURLSkinIndex(String url) {
+        delete(URL_INDEX, url, "URL skin index for " + url);
+    }
+
+    @Override
+    public void setURLSkinIndex(String url, URLIndexData skinData) {
+        write(URL_INDEX, url, RecordCodec.URL_INDEX, skinData, "URL skin index for " + url);
+    }
+
+    @Override
+    public Optional<CustomSkinData> getCustomSkinData(String skinName) throws StorageException {
+        skinName = CustomSkinData.sanitizeCustomSkinName(skinName);
+        return read(CUSTOM_SKIN, skinName, RecordCodec.CUSTOM_SKIN);
+    }
+
+    @Override
+    public void removeCustomSkinData(String skinName) {
+        skinName = CustomSkinData.sanitizeCustomSkinName(skinName);
+        delete(CUSTOM_SKIN, skinName, "custom skin data for " + skinName);
+        guiIndex.remove(SkinType.CUSTOM, skinName);
+    }
+
+    @Override
+    public void setCustomSkinData(String skinName, CustomSkinData skinData) {
+        skinName = CustomSkinData.sanitizeCustomSkinName(skinName);
+        write(CUSTOM_SKIN, skinName, RecordCodec.CUSTOM_SKIN, skinData, "custom skin data for " + skinName);
+        guiIndex.put(toGUIEntry(skinName, skinData));
+    }
+
+    @Override
+    public Optional<LegacySkinData> getLegacySkinData(String skinName) throws StorageException {
+        skinName = sanitizeLegacySkinName(skinName);
+        return read(LEGACY_SKIN, skinName, RecordCodec.LEGACY_SKIN);
+    }
+
+    @Override
+    public void removeLegacySkinData(String skinName) {
+        skinName = sanitizeLegacySkinName(skinName);
+        delete(LEGACY_SKIN, skinName, "legacy skin data for " + skinName);
+    }
+
+    protected void setLegacySkinData(LegacySkinData skinData) {
+        String skinName = sanitizeLegacySkinName(skinData.getSkinName());
+        write(LEGACY_SKIN, skinName, RecordCodec.LEGACY_SKIN, skinData, "legacy skin data for " + skinName);
+    }
+
+    @Override
+    public Optional<LegacyPlayerData> getLegacyPlayerData(String playerName) throws StorageException {
+        playerName = sanitizeLegacyPlayerName(playerName);
+        return read(LEGACY_PLAYER, playerName, RecordCodec.LEGACY_PLAYER);
+    }
+
+    @Override
+    public void removeLegacyPlayerData(String playerName) {
+        playerName = sanitizeLegacyPlayerName(playerName);
+        delete(LEGACY_PLAYER, playerName, "legacy player data for " + playerName);
+    }
+
+    protected void setLegacyPlayerData(LegacyPlayerData playerData) {
+        String playerName = sanitizeLegacyPlayerName(playerData.getPlayerName());
+        write(LEGACY_PLAYER, playerName, RecordCodec.LEGACY_PLAYER, playerData, "legacy player data for " + playerName);
+    }
+
+    @Override
+    public GUISkinPage getStoredGUISkins(@Nullable String cursor) {
+        boolean customEnabled = settings.getProperty(GUIConfig.CUSTOM_GUI_ENABLED);
+        boolean customOnly = settings.getProperty(GUIConfig.CUSTOM_GUI_ONLY);
+        // One more than fits on a page, so the GUI knows whether there is a next page
+        int limit = SharedGUI.HEAD_COUNT_PER_PAGE + 1;
+        GUISkinIndex.Entry after = GUISkinPage.Cursor.decode(cursor)
+                .map(c -> new GUISkinIndex.Entry(c.key(), c.type(), c.name(), null, 0L))
+                .orElse(null);
+
+        List<GUISkinIndex.Entry> entries;
+        if (customEnabled && customOnly) {
+            List<GUISkinIndex.Entry> customSkins = new ArrayList<>();
+            settings.getProperty(GUIConfig.CUSTOM_GUI_SKINS)
+                    .stream()
+                    .map(CustomSkinData::sanitizeCustomSkinName)
+                    .distinct() // No duplicates
+                    .forEach(skinName -> guiIndex.get(SkinType.CUSTOM, skinName).ifPresent(customSkins::add));
+            customSkins.sort(GUISkinIndex.ORDER);
+
+            entries = customSkins.stream()
+                    .filter(entry -> after == null || GUISkinIndex.ORDER.compare(entry, after) > 0)
+                    .limit(limit)
+                    .toList();
+        } else {
+            entries = guiIndex.getPage(!customEnabled, after, limit);
+        }
+
+        return GUISkinPage.fromEntries(entries, GUISkinIndex.Entry::displayName, GUISkinIndex.Entry::value,
+                entry -> new GUISkinPage.Cursor(entry.displayName(), entry.type(), entry.name()));
+    }
+
+    private void loadGUIIndex() {
+        if (guiIndex.load()) {
+            return;
+        }
+
+        logger.info("Building GUI skin index...");
+        List<GUISkinIndex.Entry> entries = new ArrayList<>();
+        for (String key : store.keys(PLAYER_SKIN)) {
+            try {
+                read(PLAYER_SKIN, key, RecordCodec.PLAYER_SKIN).ifPresent(skinData -> entries.add(toGUIEntry(skinData)));
+            } catch (StorageException e) {
+                logger.warning("Failed to index player skin " + key, e);
+            }
+        }
+
+        for (String key : store.keys(CUSTOM_SKIN)) {
+            try {
+                read(CUSTOM_SKIN, key, RecordCodec.CUSTOM_SKIN).ifPresent(skinData -> entries.add(toGUIEntry(key, skinData)));
+            } catch (StorageException e) {
+                logger.warning("Failed to index custom skin " + key, e);
+            }
+        }
+
+        guiIndex.rebuild(entries);
+        logger.info(String.format("GUI skin index built with %d skins.", entries.size()));
+    }
+
+    private GUISkinIndex.Entry toGUIEntry(PlayerSkinData skinData) {
+        return new GUISkinIndex.Entry(skinData.getUniqueId().toString(), SkinType.PLAYER,
+                skinData.getLastKnownName(), skinData.getProperty().getValue(), skinData.getTimestamp());
+    }
+
+    private GUISkinIndex.Entry toGUIEntry(String skinName, CustomSkinData skinData) {
+        return new GUISkinIndex.Entry(skinName, SkinType.CUSTOM, skinName, skinData.getProperty().getValue(), 0L);
+    }
+
+    @Override
+    public int purgeStoredOldSkins(long targetPurgeTimestamp, int limit) throws StorageException {
+        List<String> expired = guiIndex.getExpiredPlayerSkins(targetPurgeTimestamp, limit);
+        for (String key : expired) {
+            try {
+                store.delete(PLAYER_SKIN, key);
+                guiIndex.remove(SkinType.PLAYER, key);
+            } catch (IOException e) {
+                throw new StorageException(e);
+            }
+        }
+
+        return expired.size();
+    }
+
+    @Override
+    public Optional<MojangCacheData> getCachedUUID(String playerName) throws StorageException {
+        return read(MOJANG_CACHE, playerName, RecordCodec.MOJANG_CACHE);
+    }
+
+    @Override
+    public void setCachedUUID(String playerName, MojangCacheData mojangCacheData) {
+        write(MOJANG_CACHE, playerName, RecordCodec.MOJANG_CACHE, mojangCacheData, "cached UUID for " + playerName);
+    }
+
+    private String urlSkinKey(String url, SkinVariant skinVariant) {
+        return skinVariant.name() + ":" + url;
+    }
+
+    private String sanitizeLegacyPlayerName(String playerName) {
+        // The use of #toLowerCase() instead of #toLowerCase(Locale.ROOT) is intentional
+        // This is because the legacy player names used this incorrect way of lowercasing
+        return playerName.toLowerCase();
+    }
+
+    private String sanitizeLegacySkinName(String skinName) {
+        // The use of #toLowerCase() instead of #toLowerCase(Locale.ROOT) is intentional
+        // This is because the legacy skin names used this incorrect way of lowercasing
+        return skinName.toLowerCase();
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * SkinsRestorer
+ * Copyright (C) 2024  SkinsRestorer Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.skinsrestorer.shared.storage.adapter.embedded;
+
+import net.skinsrestorer.shared.log.SRLogger;
+import net.skinsrestorer.shared.storage.adapter.StorageAdapter;
+import net.skinsrestorer.shared.storage.adapter.codec.RecordCodec;
+import net.skinsrestorer.shared.storage.adapter.file.ShardedFileLayout;
+import net.skinsrestorer.shared.storage.adapter.file.TextureStore;
+import net.skinsrestorer.shared.storage.model.player.PlayerData;
+import net.skinsrestorer.shared.storage.model.skin.CustomSkinData;
+import net.skinsrestorer.shared.storage.model.skin.PlayerSkinData;
+import net.skinsrestorer.shared.storage.model.skin.URLIndexData;
+import net.skinsrestorer.shared.storage.model.skin.URLSkinData;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * One-shot import of the folder layout written by the {@link net.skinsrestorer.shared.storage.adapter.file.FileAdapter}.
+ * Both the flat and the sharded layout are read. The old files are left in place,
+ * a marker file makes sure the import only runs once.
+ */
+public class FileStoreImporter {
+    private final Path dataFolder;
+    private final Path markerFile;
+    private final StorageAdapter adapter;
+    private final Flushable flushable;
+    private final SRLogger logger;
+    private final ShardedFileLayout layout;
+    private final TextureStore textureStore;
+    private int imported;
+    private int failed;
+
+    /**
+     * @param flushable persists the imported data before the marker file is written
+     */
+    public FileStoreImporter(Path dataFolder, Path markerFile, StorageAdapter adapter, Flushable flushable, SRLogger logger) {
+        this.dataFolder = dataFolder;
+        this.markerFile = markerFile;
+        this.adapter = adapter;
+        this.flushable = flushable;
+        this.logger = logger;
+        this.layout = new ShardedFileLayout(dataFolder, logger);
+        this.textureStore = new TextureStore(dataFolder.resolve("textures"), layout, false, logger);
+    }
+
+    public void importIfNeeded() throws IOException {
+        if (Files.exists(markerFile)) {
+            return;
+        }
+
+        Path skinsFolder = dataFolder.resolve("skins");
+        Path playersFolder = dataFolder.resolve("players");
+        Path cacheFolder = dataFolder.resolve("cache");
+        Path legacyFolder = dataFolder.resolve("legacy");
+        if (Files.exists(skinsFolder) || Files.exists(playersFolder) || Files.exists(cacheFolder) || Files.exists(legacyFolder)) {
+            logger.info("Importing file storage...");
+
+            importFiles(playersFolder, "player", (name, file) -> {
+                PlayerData data = RecordCodec.PLAYER.decode(file);
+                adapter.setPlayerData(data.getUniqueId(), data);
+            });
+            importFiles(skinsFolder, "playerskin", (name, file) -> {
+                PlayerSkinData data = RecordCodec.PLAYER_SKIN.decode(file);
+                adapter.setPlayerSkinData(data.getUniqueId(), PlayerSkinData.of(data.getUniqueId(), data.getLastKnownName(),
+                        textureStore.resolve(data.getProperty()), data.getTimestamp()));
+            });
+            importFiles(skinsFolder, "customskin", (name, file) -> {
+                CustomSkinData data = RecordCodec.CUSTOM_SKIN.decode(file);
+                adapter.setCustomSkinData(data.getSkinName(), CustomSkinData.of(data.getSkinName(),
+                        textureStore.resolve(data.getProperty())));
+            });
+            importFiles(skinsFolder, "urlskin", (name, file) -> {
+                URLSkinData data = RecordCodec.URL_SKIN.decode(file);
+                adapter.setURLSkinData(data.getUrl(), URLSkinData.of(data.getUrl(), data.getMineSkinId(),
+                        textureStore.resolve(data.getProperty()), data.getSkinVariant()));
+            });
+            importFiles(skinsFolder, "urlindex", (name, file) -> {
+                URLIndexData data = RecordCodec.URL_INDEX.decode(file);
+                adapter.setURLSkinIndex(data.getUrl(), data);
+            });
+            importFiles(cacheFolder, "mojangcache", (name, file) ->
+                    adapter.setCachedUUID(name, RecordCodec.MOJANG_CACHE.decode(file)));
+            // Only the embedded storage can hold the data of older versions, the other adapters read it from where it was
+            if (adapter instanceof EmbeddedAdapter embeddedAdapter) {
+                importFiles(legacyFolder.resolve("skins"), "legacyskin", (name, file) ->
+                        embeddedAdapter.setLegacySkinData(RecordCodec.LEGACY_SKIN.decode(file)));
+                importFiles(legacyFolder.resolve("players"), "legacyplayer", (name, file) ->
+                        embeddedAdapter.setLegacyPlayerData(RecordCodec.LEGACY_PLAYER.decode(file)));
+            }
+
+            flushable.flush();
+            logger.info(String.format("Imported %d entries from the file storage (%d failed). The old files were kept and can be deleted.",
+                    imported, failed));
+        }
+
+        Files.writeString(markerFile, "Delete this file to import the file storage again.");
+    }
+
+    private void importFiles(Path folder, String extension, FileImport fileImport) {
+        if (!Files.isDirectory(folder)) {
+            return;
+        }
+
+        try {
+            for (Path path : layout.list(folder, extension)) {
+                String fileName = path.getFileName().toString();
+                try {
+                    fileImport.run(fileName.substring(0, fileName.length() - extension.length() - 1), path);
+                    imported++;
+                } catch (Exception e) {
+                    failed++;
+                    logger.warning("Failed to import " + fileName, e);
+                }
+            }
+        } catch (IOException e) {
+            logger.warning("Failed to import files from " + folder.getFileName(), e);
+        }
+    }
+
+    private interface FileImport {
+        void run(String name, Path file) throws IOException;
+    }
+}
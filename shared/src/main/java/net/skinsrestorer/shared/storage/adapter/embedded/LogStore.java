@@ -0,0 +1,669 @@
+/*
+ * SkinsRestorer
+ * Copyright (C) 2024  SkinsRestorer Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.skinsrestorer.shared.storage.adapter.embedded;
+
+import net.skinsrestorer.shared.log.SRLogger;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only key value store made of segment files and an in-memory hash index.
+ * <p>
+ * Every write appends a record to the active segment. Full segments are sealed and memory-mapped,
+ * and a background task rewrites the live records of all sealed segments into one compacted segment
+ * once most of their bytes are dead. A crash can at most leave a torn record at the end of a segment,
+ * which is dropped again when the store is opened.
+ * <p>
+ * Record layout: {@code [int body length][int crc32 of body][byte op][byte namespace][short key length][key][value]}
+ */
+public class LogStore implements Closeable {
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String COMPACT_SUFFIX = ".compact";
+    private static final int SEGMENT_MAGIC = 0x53524C47; // "SRLG"
+    private static final byte SEGMENT_VERSION = 1;
+    private static final byte FLAG_COMPACTED = 1;
+    private static final int SEGMENT_HEADER_SIZE = 6;
+    private static final int RECORD_PREFIX_SIZE = 8;
+    private static final int BODY_HEADER_SIZE = 4;
+    private static final byte OP_PUT = 0;
+    private static final byte OP_DELETE = 1;
+    private static final double COMPACTION_DEAD_RATIO = 0.5;
+
+    private final Path directory;
+    private final long maxSegmentSize;
+    private final SRLogger logger;
+    private final Map<Key, Location> index = new ConcurrentHashMap<>();
+    private final NavigableMap<Integer, Segment> segments = new ConcurrentSkipListMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object compactionLock = new Object();
+    private ScheduledExecutorService maintenance;
+    private Segment active;
+    private boolean dirty;
+    private boolean closed;
+
+    public LogStore(Path directory, long maxSegmentSize, SRLogger logger) {
+        this.directory = directory;
+        this.maxSegmentSize = maxSegmentSize;
+        this.logger = logger;
+    }
+
+    private static Path segmentPath(Path directory, int id, String suffix) {
+        return directory.resolve(String.format("%s%06d%s", SEGMENT_PREFIX, id, suffix));
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException();
+            }
+
+            position += read;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static ByteBuffer encode(byte op, byte namespace, byte[] key, byte[] value) {
+        int bodyLength = BODY_HEADER_SIZE + key.length + value.length;
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_PREFIX_SIZE + bodyLength);
+        buffer.putInt(bodyLength);
+        buffer.putInt(0); // CRC placeholder
+        buffer.put(op);
+        buffer.put(namespace);
+        buffer.putShort((short) key.length);
+        buffer.put(key);
+        buffer.put(value);
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), RECORD_PREFIX_SIZE, bodyLength);
+        buffer.putInt(4, (int) crc.getValue());
+
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Opens the store, recovering the index from the segments on disk.
+     */
+    public void open() throws IOException {
+        lock.writeLock().lock();
+        try {
+            Files.createDirectories(directory);
+            recover();
+            closed = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        maintenance = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "SkinsRestorer-LogStore");
+            thread.setDaemon(true);
+            return thread;
+        });
+        maintenance.scheduleWithFixedDelay(() -> {
+            try {
+                flush();
+            } catch (IOException e) {
+                logger.warning("Failed to flush embedded storage", e);
+            }
+        }, 1, 1, TimeUnit.SECONDS);
+        maintenance.scheduleWithFixedDelay(() -> {
+            try {
+                if (needsCompaction()) {
+                    compact();
+                }
+            } catch (IOException e) {
+                logger.warning("Failed to compact embedded storage", e);
+            }
+        }, 1, 1, TimeUnit.MINUTES);
+    }
+
+    private void recover() throws IOException {
+        // Leftovers of an interrupted compaction, the segments it read from are still intact
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + COMPACT_SUFFIX)) {
+            for (Path path : stream) {
+                Files.delete(path);
+            }
+        }
+
+        NavigableMap<Integer, Path> files = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                String fileName = path.getFileName().toString();
+                String id = fileName.substring(SEGMENT_PREFIX.length(), fileName.length() - SEGMENT_SUFFIX.length());
+                try {
+                    files.put(Integer.parseInt(id), path);
+                } catch (NumberFormatException e) {
+                    logger.warning("Ignoring unknown file in embedded storage: " + fileName);
+                }
+            }
+        }
+
+        // A compacted segment contains every live record of the segments before it
+        for (Map.Entry<Integer, Path> entry : files.descendingMap().entrySet()) {
+            if (readFlags(entry.getValue()) == FLAG_COMPACTED) {
+                for (Path superseded : files.headMap(entry.getKey()).values()) {
+                    Files.delete(superseded);
+                }
+
+                files = files.tailMap(entry.getKey(), true);
+                break;
+            }
+        }
+
+        Segment last = null;
+        for (Map.Entry<Integer, Path> entry : files.entrySet()) {
+            Segment segment = new Segment(entry.getKey(), entry.getValue(), FileChannel.open(entry.getValue(),
+                    StandardOpenOption.READ, StandardOpenOption.WRITE));
+            segments.put(segment.id, segment);
+            // Compacted segments are complete before they are renamed into place
+            scan(segment, entry.getKey().equals(files.lastKey()) && readFlags(entry.getValue()) != FLAG_COMPACTED);
+
+            if (last != null) {
+                seal(last);
+            }
+
+            last = segment;
+        }
+
+        if (last == null) {
+            active = createSegment(0, (byte) 0);
+        } else if (readFlags(last.path) == FLAG_COMPACTED || last.size >= maxSegmentSize) {
+            seal(last);
+            active = createSegment(last.id + 2, (byte) 0);
+        } else {
+            active = last;
+        }
+    }
+
+    private byte readFlags(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < SEGMENT_HEADER_SIZE) {
+                return 0;
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE);
+            readFully(channel, header, 0);
+            header.flip();
+            if (header.getInt() != SEGMENT_MAGIC) {
+                throw new IOException("Not a segment file: " + path.getFileName());
+            }
+
+            header.get(); // Version
+            return header.get();
+        }
+    }
+
+    /**
+     * Indexes the records of a segment. Only the segment that was last written to can have a torn record
+     * at its end, which is dropped. Damage in any other segment is reported and left on disk.
+     */
+    private void scan(Segment segment, boolean lastWritten) throws IOException {
+        FileChannel channel = segment.channel();
+        long size = channel.size();
+        if (size < SEGMENT_HEADER_SIZE) {
+            if (!lastWritten) {
+                logger.severe(String.format("Embedded storage segment %s is damaged, skipping it", segment.path.getFileName()));
+                segment.size = size;
+                return;
+            }
+
+            // Crashed right after creating the segment
+            channel.truncate(0);
+            writeHeader(channel, (byte) 0);
+            segment.size = SEGMENT_HEADER_SIZE;
+            return;
+        }
+
+        long position = SEGMENT_HEADER_SIZE;
+        ByteBuffer prefix = ByteBuffer.allocate(RECORD_PREFIX_SIZE);
+        CRC32 crc = new CRC32();
+        while (position + RECORD_PREFIX_SIZE <= size) {
+            prefix.clear();
+            readFully(channel, prefix, position);
+            prefix.flip();
+
+            int bodyLength = prefix.getInt();
+            int expectedCrc = prefix.getInt();
+            if (bodyLength < BODY_HEADER_SIZE || position + RECORD_PREFIX_SIZE + bodyLength > size) {
+                break;
+            }
+
+            int recordLength = RECORD_PREFIX_SIZE + bodyLength;
+            ByteBuffer body = ByteBuffer.allocate(bodyLength);
+            readFully(channel, body, position + RECORD_PREFIX_SIZE);
+            crc.reset();
+            crc.update(body.array());
+            body.flip();
+            body.position(2);
+            int keyLength = Short.toUnsignedInt(body.getShort());
+            if ((int) crc.getValue() != expectedCrc || keyLength > body.remaining()) {
+                if (lastWritten) {
+                    break;
+                }
+
+                // The length still lines up, so only this record is lost
+                logger.severe(String.format("Skipping damaged record at offset %d of embedded storage segment %s",
+                        position, segment.path.getFileName()));
+                segment.deadBytes += recordLength;
+                position += recordLength;
+                continue;
+            }
+
+            byte op = body.get(0);
+            byte namespace = body.get(1);
+            Key key = new Key(namespace, new String(body.array(), BODY_HEADER_SIZE, keyLength, StandardCharsets.UTF_8));
+            Location previous;
+            if (op == OP_PUT) {
+                previous = index.put(key, new Location(segment.id, position, recordLength));
+            } else {
+                previous = index.remove(key);
+                segment.deadBytes += recordLength;
+            }
+
+            if (previous != null) {
+                segments.get(previous.segmentId()).deadBytes += previous.length();
+            }
+
+            position += recordLength;
+        }
+
+        if (position < size) {
+            if (!lastWritten) {
+                // Without a valid length the following records can't be found, they are dropped by the next compaction
+                logger.severe(String.format("Embedded storage segment %s is damaged, ignoring its last %d bytes",
+                        segment.path.getFileName(), size - position));
+                segment.deadBytes += size - position;
+                segment.size = size;
+                return;
+            }
+
+            logger.warning(String.format("Dropping %d bytes of incomplete data at the end of %s",
+                    size - position, segment.path.getFileName()));
+            channel.truncate(position);
+            channel.force(true);
+        }
+
+        segment.size = position;
+    }
+
+    private void writeHeader(FileChannel channel, byte flags) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE);
+        header.putInt(SEGMENT_MAGIC);
+        header.put(SEGMENT_VERSION);
+        header.put(flags);
+        header.flip();
+        writeFully(channel, header, 0);
+    }
+
+    private Segment createSegment(int id, byte flags) throws IOException {
+        Path path = segmentPath(directory, id, SEGMENT_SUFFIX);
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        writeHeader(channel, flags);
+
+        Segment segment = new Segment(id, path, channel);
+        segment.size = SEGMENT_HEADER_SIZE;
+        segments.put(id, segment);
+        return segment;
+    }
+
+    private void seal(Segment segment) throws IOException {
+        segment.channel().force(true);
+        // Mappings are limited to 2GB, larger compacted segments are read through the channel instead
+        if (segment.size <= Integer.MAX_VALUE) {
+            segment.mapped = segment.channel().map(FileChannel.MapMode.READ_ONLY, 0, segment.size);
+        }
+    }
+
+    public Optional<byte[]> get(byte namespace, String key) throws IOException {
+        lock.readLock().lock();
+        try {
+            ensureOpen();
+            Location location = index.get(new Key(namespace, key));
+            if (location == null) {
+                return Optional.empty();
+            }
+
+            ByteBuffer record = readRecord(segments.get(location.segmentId()), location);
+            record.position(RECORD_PREFIX_SIZE + 2);
+            int keyLength = Short.toUnsignedInt(record.getShort());
+            record.position(record.position() + keyLength);
+
+            byte[] value = new byte[record.remaining()];
+            record.get(value);
+            return Optional.of(value);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private ByteBuffer readRecord(Segment segment, Location location) throws IOException {
+        if (segment.mapped != null) {
+            ByteBuffer view = segment.mapped.duplicate();
+            view.position((int) location.offset());
+            view.limit((int) location.offset() + location.length());
+            return view.slice();
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(location.length());
+        readFully(segment.channel(), buffer, location.offset());
+        buffer.flip();
+        return buffer;
+    }
+
+    public boolean contains(byte namespace, String key) {
+        return index.containsKey(new Key(namespace, key));
+    }
+
+    /**
+     * Returns a snapshot of all keys currently stored in the namespace.
+     */
+    public List<String> keys(byte namespace) {
+        List<String> keys = new ArrayList<>();
+        for (Key key : index.keySet()) {
+            if (key.namespace() == namespace) {
+                keys.add(key.key());
+            }
+        }
+
+        return keys;
+    }
+
+    public void put(byte namespace, String key, byte[] value) throws IOException {
+        append(OP_PUT, namespace, key, value);
+    }
+
+    public void delete(byte namespace, String key) throws IOException {
+        if (!index.containsKey(new Key(namespace, key))) {
+            return;
+        }
+
+        append(OP_DELETE, namespace, key, new byte[0]);
+    }
+
+    private void append(byte op, byte namespace, String key, byte[] value) throws IOException {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        if (keyBytes.length > 0xFFFF) {
+            throw new IllegalArgumentException("Key too long: " + key);
+        }
+
+        ByteBuffer record = encode(op, namespace, keyBytes, value);
+        int recordLength = record.remaining();
+
+        lock.writeLock().lock();
+        try {
+            ensureOpen();
+            if (active.size + recordLength > maxSegmentSize && active.size > SEGMENT_HEADER_SIZE) {
+                roll();
+            }
+
+            long offset = active.size;
+            writeFully(active.channel(), record, offset);
+            active.size += recordLength;
+            dirty = true;
+
+            Key indexKey = new Key(namespace, key);
+            Location previous;
+            if (op == OP_PUT) {
+                previous = index.put(indexKey, new Location(active.id, offset, recordLength));
+            } else {
+                previous = index.remove(indexKey);
+                active.deadBytes += recordLength;
+            }
+
+            if (previous != null) {
+                segments.get(previous.segmentId()).deadBytes += previous.length();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void roll() throws IOException {
+        seal(active);
+        // Leave a gap in the ids, so a compacted segment can be placed in front of the new active segment
+        active = createSegment(active.id + 2, (byte) 0);
+    }
+
+    /**
+     * Forces all appended records to disk.
+     */
+    public void flush() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (closed || !dirty) {
+                return;
+            }
+
+            active.channel().force(false);
+            dirty = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean needsCompaction() {
+        lock.readLock().lock();
+        try {
+            if (closed) {
+                return false;
+            }
+
+            long total = 0;
+            long dead = 0;
+            for (Segment segment : segments.values()) {
+                total += segment.size - SEGMENT_HEADER_SIZE;
+                dead += segment.deadBytes;
+            }
+
+            return dead > 0 && dead >= total * COMPACTION_DEAD_RATIO;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Rewrites the live records of all sealed segments into a single compacted segment.
+     * Reads and writes continue while the records are copied, only the final swap blocks them.
+     */
+    public void compact() throws IOException {
+        synchronized (compactionLock) {
+            List<Segment> sealed;
+            int targetId;
+            lock.writeLock().lock();
+            try {
+                ensureOpen();
+                roll();
+                sealed = new ArrayList<>(segments.headMap(active.id).values());
+                targetId = active.id - 1;
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            if (sealed.isEmpty()) {
+                return;
+            }
+
+            Set<Integer> sealedIds = new HashSet<>();
+            for (Segment segment : sealed) {
+                sealedIds.add(segment.id);
+            }
+
+            Path tempPath = segmentPath(directory, targetId, COMPACT_SUFFIX);
+            Map<Key, Location[]> moved = new HashMap<>();
+            long position = SEGMENT_HEADER_SIZE;
+            try (FileChannel out = FileChannel.open(tempPath, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                writeHeader(out, FLAG_COMPACTED);
+                for (Map.Entry<Key, Location> entry : index.entrySet()) {
+                    Location location = entry.getValue();
+                    if (!sealedIds.contains(location.segmentId())) {
+                        continue;
+                    }
+
+                    writeFully(out, readRecord(segments.get(location.segmentId()), location), position);
+                    moved.put(entry.getKey(), new Location[]{location, new Location(targetId, position, location.length())});
+                    position += location.length();
+                }
+
+                out.force(true);
+            }
+
+            lock.writeLock().lock();
+            try {
+                Path targetPath = segmentPath(directory, targetId, SEGMENT_SUFFIX);
+                Files.move(tempPath, targetPath, StandardCopyOption.ATOMIC_MOVE);
+
+                Segment compacted = new Segment(targetId, targetPath, FileChannel.open(targetPath,
+                        StandardOpenOption.READ, StandardOpenOption.WRITE));
+                compacted.size = position;
+                for (Map.Entry<Key, Location[]> entry : moved.entrySet()) {
+                    Location[] locations = entry.getValue();
+                    // Records overwritten while copying stay dead in the compacted segment
+                    if (!index.replace(entry.getKey(), locations[0], locations[1])) {
+                        compacted.deadBytes += locations[1].length();
+                    }
+                }
+
+                seal(compacted);
+                segments.put(targetId, compacted);
+
+                for (Segment segment : sealed) {
+                    segments.remove(segment.id);
+                    segment.close();
+                    try {
+                        Files.delete(segment.path);
+                    } catch (IOException e) {
+                        // Still mapped on some platforms, the compacted segment supersedes it on the next start
+                        logger.debug("Could not delete compacted segment " + segment.path.getFileName(), e);
+                    }
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed || active == null) {
+            throw new IOException("Embedded storage is closed");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (maintenance != null) {
+            // Interrupting the maintenance thread would close the channel it is using
+            maintenance.shutdown();
+        }
+
+        synchronized (compactionLock) {
+            lock.writeLock().lock();
+            try {
+                if (closed) {
+                    return;
+                }
+
+                closed = true;
+                if (active != null) {
+                    active.channel().force(true);
+                }
+
+                for (Segment segment : segments.values()) {
+                    segment.close();
+                }
+
+                segments.clear();
+                index.clear();
+                active = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    private record Key(byte namespace, String key) {
+    }
+
+    private record Location(int segmentId, long offset, int length) {
+    }
+
+    private static class Segment {
+        private final int id;
+        private final Path path;
+        private FileChannel channel;
+        private MappedByteBuffer mapped;
+        private boolean closed;
+        private long size;
+        private long deadBytes;
+
+        private Segment(int id, Path path, FileChannel channel) {
+            this.id = id;
+            this.path = path;
+            this.channel = channel;
+        }
+
+        /**
+         * An interrupted thread closes the channel for every user, so it is reopened on demand.
+         */
+        private synchronized FileChannel channel() throws IOException {
+            if (!channel.isOpen() && !closed) {
+                channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            }
+
+            return channel;
+        }
+
+        private synchronized void close() throws IOException {
+            closed = true;
+            mapped = null;
+            channel.close();
+        }
+    }
+}
@@ -18,50 +18,53 @@
 package net.skinsrestorer.shared.storage.adapter.file;
 
 import ch.jalu.configme.SettingsManager;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import net.skinsrestorer.api.property.SkinProperty;
 import net.skinsrestorer.api.property.SkinType;
 import net.skinsrestorer.api.property.SkinVariant;
+import net.skinsrestorer.shared.config.DatabaseConfig;
 import net.skinsrestorer.shared.config.GUIConfig;
+import net.skinsrestorer.shared.gui.GUISkinPage;
 import net.skinsrestorer.shared.gui.SharedGUI;
 import net.skinsrestorer.shared.log.SRLogger;
 import net.skinsrestorer.shared.plugin.SRPlugin;
 import net.skinsrestorer.shared.storage.adapter.StorageAdapter;
-import net.skinsrestorer.shared.storage.adapter.file.model.cache.MojangCacheFile;
-import net.skinsrestorer.shared.storage.adapter.file.model.player.LegacyPlayerFile;
-import net.skinsrestorer.shared.storage.adapter.file.model.player.PlayerFile;
-import net.skinsrestorer.shared.storage.adapter.file.model.skin.*;
+import net.skinsrestorer.shared.storage.adapter.codec.RecordCodec;
 import net.skinsrestorer.shared.storage.model.cache.MojangCacheData;
 import net.skinsrestorer.shared.storage.model.player.LegacyPlayerData;
 import net.skinsrestorer.shared.storage.model.player.PlayerData;
 import net.skinsrestorer.shared.storage.model.skin.*;
 import net.skinsrestorer.shared.utils.SRHelpers;
+import org.jetbrains.annotations.Nullable;
 
 import javax.inject.Inject;
 import java.io.IOException;
-import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
-import java.nio.file.attribute.UserDefinedFileAttributeView;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
-import java.util.stream.Stream;
 
 public class FileAdapter implements StorageAdapter {
-    private static final String LAST_KNOW_NAME_ATTRIBUTE = "sr_last_known_name";
+    private static final PropertyReader PLAYER_SKIN_REFERENCE = path -> RecordCodec.PLAYER_SKIN.decode(path).getProperty();
+    private static final PropertyReader URL_SKIN_REFERENCE = path -> RecordCodec.URL_SKIN.decode(path).getProperty();
+    private static final PropertyReader CUSTOM_SKIN_REFERENCE = path -> RecordCodec.CUSTOM_SKIN.decode(path).getProperty();
     private static final Pattern UUID_REGEX = Pattern.compile("^[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}$");
     private final Path skinsFolder;
     private final Path playersFolder;
     private final Path cacheFolder;
     private final Path legacyFolder;
     private final SettingsManager settings;
-    private final Gson gson = new GsonBuilder().disableHtmlEscaping().create();
     private final SRLogger logger;
+    private final GUISkinIndex guiIndex;
+    private final boolean binaryRecords;
+    private final ShardedFileLayout layout;
+    private final TextureStore textureStore;
+    private boolean initialized;
 
     @Inject
     public FileAdapter(SRPlugin plugin, SettingsManager settings, SRLogger logger) {
@@ -72,15 +75,18 @@ public class FileAdapter implements StorageAdapter {
         this.legacyFolder = dataFolder.resolve("legacy");
         this.settings = settings;
         this.logger = logger;
+        this.binaryRecords = settings.getProperty(DatabaseConfig.BINARY_RECORDS);
+        this.guiIndex = new GUISkinIndex(skinsFolder.resolve("gui.index"), logger);
+        this.layout = new ShardedFileLayout(dataFolder, logger);
+        this.textureStore = new TextureStore(dataFolder.resolve("textures"), layout, binaryRecords, logger);
         try {
             migrate(dataFolder);
         } catch (IOException e) {
             throw new IllegalStateException(e);
         }
-        init();
     }
 
-    private static String hashSHA256(String input) {
+    static String hashSHA256(String input) {
         try {
             MessageDigest digest = MessageDigest.getInstance("SHA-256");
             byte[] hash = digest.digest(input.getBytes(StandardCharsets.UTF_8));
@@ -111,12 +117,27 @@ public class FileAdapter implements StorageAdapter {
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
+
+        if (!initialized) {
+            initialized = true;
+            loadGUIIndex();
+            loadTextureReferences();
+            layout.migrateAsync(skinsFolder, playersFolder, cacheFolder);
+        }
+    }
+
+    public void close() {
+        guiIndex.close();
+        textureStore.close();
     }
 
     private void migrate(Path dataFolder) throws IOException {
         SRHelpers.renameFile(dataFolder, "Skins", "skins");
         SRHelpers.renameFile(dataFolder, "Players", "players");
 
+        // The GUI index has to be loaded before migrated skins are added to it
+        init();
+
         migrateSkins();
         migratePlayers();
     }
@@ -153,7 +174,7 @@ public class FileAdapter implements StorageAdapter {
 
                     LegacyPlayerData legacyPlayerData = LegacyPlayerData.of(playerName, skinName);
 
-                    Files.writeString(legacyPlayerFile, gson.toJson(LegacyPlayerFile.fromLegacyPlayerData(legacyPlayerData)));
+                    Files.write(legacyPlayerFile, RecordCodec.LEGACY_PLAYER.encode(legacyPlayerData, binaryRecords));
 
                     Files.deleteIfExists(path);
                 } catch (Exception e) {
@@ -204,7 +225,7 @@ public class FileAdapter implements StorageAdapter {
                     } else {
                         LegacySkinData legacySkinData = LegacySkinData.of(skinName, skinProperty);
 
-                        Files.writeString(legacySkinFile, gson.toJson(LegacySkinFile.fromLegacySkinData(legacySkinData)));
+                        Files.write(legacySkinFile, RecordCodec.LEGACY_SKIN.encode(legacySkinData, binaryRecords));
                     }
 
                     Files.deleteIfExists(path);
@@ -223,30 +244,30 @@ public class FileAdapter implements StorageAdapter {
 
     @Override
     public Optional<PlayerData> getPlayerData(UUID uuid) throws StorageException {
-        Path playerFile = resolvePlayerFile(uuid);
+        Path playerFile = layout.locate(resolvePlayerFile(uuid));
 
         if (!Files.exists(playerFile)) {
             return Optional.empty();
         }
 
         try {
-            String json = Files.readString(playerFile);
-            PlayerFile file = gson.fromJson(json, PlayerFile.class);
-
-            return Optional.of(file.toPlayerData());
+            return Optional.of(RecordCodec.PLAYER.decode(playerFile));
         } catch (Exception e) {
             throw new StorageException(e);
         }
     }
 
+    @Override
+    public Map<UUID, PlayerData> getPlayerData(Collection<UUID> uuids) throws StorageException {
+        return readParallel(uuids, this::getPlayerData);
+    }
+
     @Override
     public void setPlayerData(UUID uuid, PlayerData data) {
         Path playerFile = resolvePlayerFile(uuid);
 
         try {
-            PlayerFile file = PlayerFile.fromPlayerData(data);
-
-            Files.writeString(playerFile, gson.toJson(file));
+            layout.write(playerFile, RecordCodec.PLAYER.encode(data, binaryRecords));
         } catch (IOException e) {
             logger.warning("Failed to save player data for " + uuid, e);
         }
@@ -254,29 +275,31 @@ public class FileAdapter implements StorageAdapter {
 
     @Override
     public Optional<PlayerSkinData> getPlayerSkinData(UUID uuid) throws StorageException {
-        Path skinFile = resolvePlayerSkinFile(uuid);
+        Path skinFile = layout.locate(resolvePlayerSkinFile(uuid));
 
         if (!Files.exists(skinFile)) {
             return Optional.empty();
         }
 
         try {
-            String json = Files.readString(skinFile);
-
-            PlayerSkinFile file = gson.fromJson(json, PlayerSkinFile.class);
-
-            return Optional.of(file.toPlayerSkinData());
+            return Optional.of(resolveTexture(RecordCodec.PLAYER_SKIN.decode(skinFile)));
         } catch (Exception e) {
             throw new StorageException(e);
         }
     }
 
+    @Override
+    public Map<UUID, PlayerSkinData> getPlayerSkinData(Collection<UUID> uuids) throws StorageException {
+        return readParallel(uuids, this::getPlayerSkinData);
+    }
+
     @Override
     public void removePlayerSkinData(UUID uuid) {
         Path skinFile = resolvePlayerSkinFile(uuid);
 
         try {
-            Files.deleteIfExists(skinFile);
+            deleteSkin(skinFile, PLAYER_SKIN_REFERENCE);
+            guiIndex.remove(SkinType.PLAYER, uuid.toString());
         } catch (IOException e) {
             logger.warning("Failed to remove player skin data for " + uuid, e);
         }
@@ -287,12 +310,9 @@ public class FileAdapter implements StorageAdapter {
         Path skinFile = resolvePlayerSkinFile(uuid);
 
         try {
-            PlayerSkinFile file = PlayerSkinFile.fromPlayerSkinData(skinData);
-
-            Files.writeString(skinFile, gson.toJson(file));
-
-            UserDefinedFileAttributeView view = Files.getFileAttributeView(skinFile, UserDefinedFileAttributeView.class);
-            view.write(LAST_KNOW_NAME_ATTRIBUTE, StandardCharsets.UTF_8.encode(skinData.getLastKnownName()));
+            writeSkin(skinFile, PLAYER_SKIN_REFERENCE, skinData.getProperty(), reference -> RecordCodec.PLAYER_SKIN.encode(
+                    PlayerSkinData.of(skinData.getUniqueId(), skinData.getLastKnownName(), reference, skinData.getTimestamp()), binaryRecords));
+            guiIndex.put(toGUIEntry(skinData));
         } catch (IOException e) {
             logger.warning("Failed to save player skin data for " + uuid, e);
         }
@@ -300,18 +320,16 @@ public class FileAdapter implements StorageAdapter {
 
     @Override
     public Optional<URLSkinData> getURLSkinData(String url, SkinVariant skinVariant) throws StorageException {
-        Path skinFile = resolveURLSkinFile(url, skinVariant);
+        Path skinFile = layout.locate(resolveURLSkinFile(url, skinVariant));
 
         if (!Files.exists(skinFile)) {
             return Optional.empty();
         }
 
         try {
-            String json = Files.readString(skinFile);
-
-            URLSkinFile file = gson.fromJson(json, URLSkinFile.class);
-
-            return Optional.of(file.toURLSkinData());
+            URLSkinData skinData = RecordCodec.URL_SKIN.decode(skinFile);
+            return Optional.of(URLSkinData.of(skinData.getUrl(), skinData.getMineSkinId(),
+                    textureStore.resolve(skinData.getProperty()), skinData.getSkinVariant()));
         } catch (Exception e) {
             throw new StorageException(e);
         }
@@ -322,7 +340,7 @@ public class FileAdapter implements StorageAdapter {
         Path skinFile = resolveURLSkinFile(url, skinVariant);
 
         try {
-            Files.deleteIfExists(skinFile);
+            deleteSkin(skinFile, URL_SKIN_REFERENCE);
         } catch (IOException e) {
             logger.warning("Failed to remove URL skin data for " + url, e);
         }
@@ -333,9 +351,8 @@ public class FileAdapter implements StorageAdapter {
         Path skinFile = resolveURLSkinFile(url, skinData.getSkinVariant());
 
         try {
-            URLSkinFile file = URLSkinFile.fromURLSkinData(skinData);
-
-            Files.writeString(skinFile, gson.toJson(file));
+            writeSkin(skinFile, URL_SKIN_REFERENCE, skinData.getProperty(), reference -> RecordCodec.URL_SKIN.encode(
+                    URLSkinData.of(skinData.getUrl(), skinData.getMineSkinId(), reference, skinData.getSkinVariant()), binaryRecords));
         } catch (IOException e) {
             logger.warning("Failed to save URL skin data for " + url, e);
         }
@@ -343,18 +360,14 @@ public class FileAdapter implements StorageAdapter {
 
     @Override
     public Optional<URLIndexData> getURLSkinIndex(String url) throws StorageException {
-        Path skinFile = resolveURLSkinIndexFile(url);
+        Path skinFile = layout.locate(resolveURLSkinIndexFile(url));
 
         if (!Files.exists(skinFile)) {
             return Optional.empty();
         }
 
         try {
-            String json = Files.readString(skinFile);
-
-            URLIndexFile file = gson.fromJson(json, URLIndexFile.class);
-
-            return Optional.of(file.toURLIndexData());
+            return Optional.of(RecordCodec.URL_INDEX.decode(skinFile));
         } catch (Exception e) {
             throw new StorageException(e);
         }
@@ -365,7 +378,7 @@ public class FileAdapter implements StorageAdapter {
         Path skinFile = resolveURLSkinIndexFile(url);
 
         try {
-            Files.deleteIfExists(skinFile);
+            layout.delete(skinFile);
         } catch (IOException e) {
             logger.warning("Failed to remove URL skin index for " + url, e);
         }
@@ -376,9 +389,7 @@ public class FileAdapter implements StorageAdapter {
         Path skinFile = resolveURLSkinIndexFile(url);
 
         try {
-            URLIndexFile file = URLIndexFile.fromURLIndexData(skinData);
-
-            Files.writeString(skinFile, gson.toJson(file));
+            layout.write(skinFile, RecordCodec.URL_INDEX.encode(skinData, binaryRecords));
         } catch (IOException e) {
             logger.warning("Failed to save URL skin index for " + url, e);
         }
@@ -387,18 +398,14 @@ public class FileAdapter implements StorageAdapter {
     @Override
     public Optional<CustomSkinData> getCustomSkinData(String skinName) throws StorageException {
         skinName = CustomSkinData.sanitizeCustomSkinName(skinName);
-        Path skinFile = resolveCustomSkinFile(skinName);
+        Path skinFile = layout.locate(resolveCustomSkinFile(skinName));
 
         if (!Files.exists(skinFile)) {
             return Optional.empty();
         }
 
         try {
-            String json = Files.readString(skinFile);
-
-            CustomSkinFile file = gson.fromJson(json, CustomSkinFile.class);
-
-            return Optional.of(file.toCustomSkinData());
+            return Optional.of(resolveTexture(RecordCodec.CUSTOM_SKIN.decode(skinFile)));
         } catch (Exception e) {
             throw new StorageException(e);
         }
@@ -410,7 +417,8 @@ public class FileAdapter implements StorageAdapter {
         Path skinFile = resolveCustomSkinFile(skinName);
 
         try {
-            Files.deleteIfExists(skinFile);
+            deleteSkin(skinFile, CUSTOM_SKIN_REFERENCE);
+            guiIndex.remove(SkinType.CUSTOM, skinName);
         } catch (IOException e) {
             logger.warning("Failed to remove custom skin data for " + skinName, e);
         }
@@ -422,9 +430,9 @@ public class FileAdapter implements StorageAdapter {
         Path skinFile = resolveCustomSkinFile(skinName);
 
         try {
-            CustomSkinFile file = CustomSkinFile.fromCustomSkinData(skinData);
-
-            Files.writeString(skinFile, gson.toJson(file));
+            writeSkin(skinFile, CUSTOM_SKIN_REFERENCE, skinData.getProperty(), reference -> RecordCodec.CUSTOM_SKIN.encode(
+                    CustomSkinData.of(skinData.getSkinName(), reference), binaryRecords));
+            guiIndex.put(toGUIEntry(skinName, skinData));
         } catch (IOException e) {
             logger.warning("Failed to save custom skin data for " + skinName, e);
         }
@@ -440,11 +448,7 @@ public class FileAdapter implements StorageAdapter {
         }
 
         try {
-            String json = Files.readString(skinFile);
-
-            LegacySkinFile file = gson.fromJson(json, LegacySkinFile.class);
-
-            return Optional.of(file.toLegacySkinData());
+            return Optional.of(RecordCodec.LEGACY_SKIN.decode(skinFile));
         } catch (Exception e) {
             throw new StorageException(e);
         }
@@ -472,11 +476,7 @@ public class FileAdapter implements StorageAdapter {
         }
 
         try {
-            String json = Files.readString(legacyFile);
-
-            LegacyPlayerFile file = gson.fromJson(json, LegacyPlayerFile.class);
-
-            return Optional.of(file.toLegacyPlayerData());
+            return Optional.of(RecordCodec.LEGACY_PLAYER.decode(legacyFile));
         } catch (Exception e) {
             throw new StorageException(e);
         }
@@ -495,166 +495,191 @@ public class FileAdapter implements StorageAdapter {
     }
 
     @Override
-    public Map<String, String> getStoredGUISkins(int offset) {
-        Map<String, String> list = new LinkedHashMap<>();
-
-        Map<String, GUIFileData> files = getGUIFilesSorted(offset);
+    public GUISkinPage getStoredGUISkins(@Nullable String cursor) {
+        boolean customEnabled = settings.getProperty(GUIConfig.CUSTOM_GUI_ENABLED);
+        boolean customOnly = settings.getProperty(GUIConfig.CUSTOM_GUI_ONLY);
+        // One more than fits on a page, so the GUI knows whether there is a next page
+        int limit = SharedGUI.HEAD_COUNT_PER_PAGE + 1;
+        GUISkinIndex.Entry after = GUISkinPage.Cursor.decode(cursor)
+                .map(c -> new GUISkinIndex.Entry(c.key(), c.type(), c.name(), null, 0L))
+                .orElse(null);
+
+        List<GUISkinIndex.Entry> entries;
+        if (customEnabled && customOnly) {
+            List<GUISkinIndex.Entry> customSkins = new ArrayList<>();
+            settings.getProperty(GUIConfig.CUSTOM_GUI_SKINS)
+                    .stream()
+                    .map(CustomSkinData::sanitizeCustomSkinName)
+                    .distinct() // No duplicates
+                    .forEach(skinName -> guiIndex.get(SkinType.CUSTOM, skinName).ifPresent(customSkins::add));
+            customSkins.sort(GUISkinIndex.ORDER);
+
+            entries = customSkins.stream()
+                    .filter(entry -> after == null || GUISkinIndex.ORDER.compare(entry, after) > 0)
+                    .limit(limit)
+                    .toList();
+        } else {
+            entries = guiIndex.getPage(!customEnabled, after, limit);
+        }
+
+        return GUISkinPage.fromEntries(entries, GUISkinIndex.Entry::displayName, GUISkinIndex.Entry::value,
+                entry -> new GUISkinPage.Cursor(entry.displayName(), entry.type(), entry.name()));
+    }
+
+    private void loadGUIIndex() {
+        if (guiIndex.load()) {
+            return;
+        }
 
-        for (Map.Entry<String, GUIFileData> entry : files.entrySet()) {
-            GUIFileData data = entry.getValue();
-            String fileName = data.fileName();
-            try {
-                Optional<SkinProperty> skinProperty;
-                SkinType skinType = data.skinType();
-                if (skinType == SkinType.PLAYER) {
-                    skinProperty = getPlayerSkinData(UUID.fromString(fileName))
-                            .map(PlayerSkinData::getProperty);
-                } else if (skinType == SkinType.CUSTOM) {
-                    skinProperty = getCustomSkinData(fileName)
-                            .map(CustomSkinData::getProperty);
-                } else {
-                    throw new IllegalStateException("Unknown skin type: " + skinType);
+        logger.info("Building GUI skin index...");
+        List<GUISkinIndex.Entry> entries = new ArrayList<>();
+        try {
+            List<Path> files = new ArrayList<>(layout.list(skinsFolder, "playerskin"));
+            files.addAll(layout.list(skinsFolder, "customskin"));
+            for (Path path : files) {
+                try {
+                    if (path.getFileName().toString().endsWith(".playerskin")) {
+                        entries.add(toGUIEntry(resolveTexture(RecordCodec.PLAYER_SKIN.decode(path))));
+                    } else {
+                        CustomSkinData skinData = resolveTexture(RecordCodec.CUSTOM_SKIN.decode(path));
+                        entries.add(toGUIEntry(skinData.getSkinName(), skinData));
+                    }
+                } catch (Exception e) {
+                    logger.warning("Failed to index skin file: " + path.getFileName(), e);
                 }
-
-                skinProperty.ifPresent(property -> list.put(entry.getKey(), property.getValue()));
-            } catch (StorageException e) {
-                logger.warning("Failed to load skin data for " + fileName, e);
             }
+        } catch (IOException e) {
+            logger.warning("Failed to build GUI skin index", e);
         }
 
-        return list;
+        guiIndex.rebuild(entries);
+        logger.info(String.format("GUI skin index built with %d skins.", entries.size()));
     }
 
-    private Map<String, GUIFileData> getGUIFilesSorted(int offset) {
-        boolean customEnabled = settings.getProperty(GUIConfig.CUSTOM_GUI_ENABLED);
-        boolean customOnly = settings.getProperty(GUIConfig.CUSTOM_GUI_ONLY);
-        List<String> customSkins = settings.getProperty(GUIConfig.CUSTOM_GUI_SKINS)
-                .stream()
-                .map(s -> s.toLowerCase(Locale.ROOT))
-                .distinct() // No duplicates
-                .toList();
-
-        Map<String, GUIFileData> files = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
-        try (Stream<Path> stream = Files.walk(skinsFolder, 1)) {
-            int skinIndex = 0;
-            for (Path path : (Iterable<Path>) stream::iterator) {
-                if (Files.isDirectory(path)) {
-                    continue;
-                }
-
-                String fileName = path.getFileName().toString();
-                int lastDotIndex = fileName.lastIndexOf(".");
-                if (lastDotIndex == -1) {
-                    continue;
-                }
-
-                String extension = fileName.substring(lastDotIndex + 1);
-                String name = fileName.substring(0, lastDotIndex);
-
-                boolean isPlayerSkin = extension.equals("playerskin");
-                boolean isCustomSkin = extension.equals("customskin");
-
-                // Only allow player skins and custom skins
-                if (!isPlayerSkin && !isCustomSkin) {
-                    continue;
-                }
-
-                // No player skins if custom skins only
-                if (isPlayerSkin && customEnabled && customOnly) {
-                    continue;
-                }
+    private GUISkinIndex.Entry toGUIEntry(PlayerSkinData skinData) {
+        return new GUISkinIndex.Entry(skinData.getUniqueId().toString(), SkinType.PLAYER,
+                skinData.getLastKnownName(), skinData.getProperty().getValue(), skinData.getTimestamp());
+    }
 
-                // Do not allow custom skins if not enabled
-                if (isCustomSkin && !customEnabled) {
-                    continue;
-                }
+    private GUISkinIndex.Entry toGUIEntry(String skinName, CustomSkinData skinData) {
+        return new GUISkinIndex.Entry(skinName, SkinType.CUSTOM, skinName, skinData.getProperty().getValue(), 0L);
+    }
 
-                // Only allow specific custom skins if enabled
-                if (customEnabled && customOnly && !customSkins.contains(name.toLowerCase(Locale.ROOT))) {
-                    continue;
-                }
+    @Override
+    public int purgeStoredOldSkins(long targetPurgeTimestamp, int limit) throws StorageException {
+        List<String> expired = guiIndex.getExpiredPlayerSkins(targetPurgeTimestamp, limit);
+        for (String uuid : expired) {
+            try {
+                deleteSkin(resolvePlayerSkinFile(UUID.fromString(uuid)), PLAYER_SKIN_REFERENCE);
+                guiIndex.remove(SkinType.PLAYER, uuid);
+            } catch (IOException e) {
+                throw new StorageException(e);
+            }
+        }
 
-                // We offset only valid skin files
-                if (skinIndex < offset) {
-                    skinIndex++;
-                    continue;
-                }
+        try {
+            // Only visits textures whose last reference was dropped
+            textureStore.sweep();
+        } catch (IOException e) {
+            throw new StorageException(e);
+        }
 
-                GUIFileData data = new GUIFileData(name, path, isPlayerSkin ? SkinType.PLAYER : SkinType.CUSTOM);
-                if (isPlayerSkin) {
-                    getLastKnownName(path)
-                            .ifPresent(lastKnownName -> files.put(lastKnownName, data));
-                } else {
-                    files.put(name, data);
-                }
+        return expired.size();
+    }
 
-                // We got max skins now, stop
-                if (skinIndex++ >= offset + SharedGUI.HEAD_COUNT_PER_PAGE) {
-                    break;
-                }
+    /**
+     * Writes a skin record and moves its texture reference over from the record it replaces.
+     * The old record is read under the same lock as the write, so concurrent writes can't release the same reference twice.
+     */
+    private void writeSkin(Path skinFile, PropertyReader previousReader, SkinProperty property, RecordEncoder encoder) throws IOException {
+        synchronized (layout.lockFor(skinFile)) {
+            Optional<SkinProperty> previous = readReference(skinFile, previousReader);
+            SkinProperty reference = textureStore.store(property);
+            try {
+                layout.write(skinFile, encoder.encode(reference));
+            } catch (IOException | RuntimeException e) {
+                textureStore.release(reference);
+                throw e;
             }
-        } catch (IOException e) {
-            logger.warning("Failed to load GUI files", e);
+
+            previous.ifPresent(textureStore::release);
         }
+    }
 
-        return files;
+    private void deleteSkin(Path skinFile, PropertyReader reader) throws IOException {
+        synchronized (layout.lockFor(skinFile)) {
+            Optional<SkinProperty> previous = readReference(skinFile, reader);
+            layout.delete(skinFile);
+            previous.ifPresent(textureStore::release);
+        }
     }
 
-    private Optional<String> getLastKnownName(Path path) {
-        try {
-            UserDefinedFileAttributeView view = Files.getFileAttributeView(path, UserDefinedFileAttributeView.class);
-            if (!view.list().contains(LAST_KNOW_NAME_ATTRIBUTE)) {
-                return Optional.empty();
-            }
+    private Optional<SkinProperty> readReference(Path skinFile, PropertyReader reader) {
+        Path file = layout.locate(skinFile);
+        if (!Files.exists(file)) {
+            return Optional.empty();
+        }
 
-            ByteBuffer buffer = ByteBuffer.allocate(view.size(LAST_KNOW_NAME_ATTRIBUTE));
-            view.read(LAST_KNOW_NAME_ATTRIBUTE, buffer);
-            buffer.flip();
-            return Optional.of(StandardCharsets.UTF_8.decode(buffer).toString());
-        } catch (IOException e) {
-            logger.warning("Failed to load last known name for " + path.getFileName(), e);
+        try {
+            return Optional.of(reader.read(file));
+        } catch (IOException | RuntimeException e) {
+            // The texture is kept around until the references are rebuilt, which is safer than removing a used one
+            logger.warning("Failed to read texture reference of skin file: " + file.getFileName(), e);
             return Optional.empty();
         }
     }
 
-    @Override
-    public void purgeStoredOldSkins(long targetPurgeTimestamp) throws StorageException {
-        List<Path> files = new ArrayList<>();
-        try (DirectoryStream<Path> stream = Files.newDirectoryStream(skinsFolder, "*.playerskin")) {
-            stream.forEach(files::add);
-        } catch (IOException e) {
-            throw new StorageException(e);
+    private void loadTextureReferences() {
+        if (textureStore.loadReferences()) {
+            return;
         }
 
-        for (Path file : files) {
-            try {
-                String json = Files.readString(file);
+        logger.info("Counting texture references...");
+        Map<String, Integer> counts = new HashMap<>();
+        try {
+            countTextureReferences("playerskin", PLAYER_SKIN_REFERENCE, counts);
+            countTextureReferences("urlskin", URL_SKIN_REFERENCE, counts);
+            countTextureReferences("customskin", CUSTOM_SKIN_REFERENCE, counts);
+
+            textureStore.rebuildReferences(counts);
+        } catch (IOException | RuntimeException e) {
+            // A record that can not be read may still reference a texture, so nothing is removed until the next start
+            logger.warning("Failed to count texture references, unused textures are kept", e);
+            return;
+        }
 
-                PlayerSkinFile skinFile = gson.fromJson(json, PlayerSkinFile.class);
+        logger.info(String.format("Counted references of %d textures.", counts.size()));
+    }
 
-                if (skinFile.getTimestamp() != 0L && skinFile.getTimestamp() < targetPurgeTimestamp) {
-                    Files.deleteIfExists(file);
-                }
-            } catch (Exception e) {
-                throw new StorageException(e);
+    private void countTextureReferences(String extension, PropertyReader reader, Map<String, Integer> counts) throws IOException {
+        for (Path path : layout.list(skinsFolder, extension)) {
+            try {
+                TextureStore.referencedHash(reader.read(path)).ifPresent(hash -> counts.merge(hash, 1, Integer::sum));
+            } catch (NoSuchFileException e) {
+                // Removed in the meantime
             }
         }
     }
 
+    private PlayerSkinData resolveTexture(PlayerSkinData skinData) throws IOException {
+        return PlayerSkinData.of(skinData.getUniqueId(), skinData.getLastKnownName(),
+                textureStore.resolve(skinData.getProperty()), skinData.getTimestamp());
+    }
+
+    private CustomSkinData resolveTexture(CustomSkinData skinData) throws IOException {
+        return CustomSkinData.of(skinData.getSkinName(), textureStore.resolve(skinData.getProperty()));
+    }
+
     @Override
     public Optional<MojangCacheData> getCachedUUID(String playerName) throws StorageException {
-        Path cacheFile = resolveCacheFile(playerName);
+        Path cacheFile = layout.locate(resolveCacheFile(playerName));
 
         if (!Files.exists(cacheFile)) {
             return Optional.empty();
         }
 
         try {
-            String json = Files.readString(cacheFile);
-
-            MojangCacheFile file = gson.fromJson(json, MojangCacheFile.class);
-
-            return Optional.of(file.toCacheData());
+            return Optional.of(RecordCodec.MOJANG_CACHE.decode(cacheFile));
         } catch (Exception e) {
             throw new StorageException(e);
         }
@@ -665,16 +690,32 @@ public class FileAdapter implements StorageAdapter {
         Path cacheFile = resolveCacheFile(playerName);
 
         try {
-            MojangCacheFile file = MojangCacheFile.fromMojangCacheData(mojangCacheData);
-
-            Files.writeString(cacheFile, gson.toJson(file));
+            layout.write(cacheFile, RecordCodec.MOJANG_CACHE.encode(mojangCacheData, binaryRecords));
         } catch (IOException e) {
             logger.warning("Failed to save cached UUID for " + playerName, e);
         }
     }
 
+    private <T> Map<UUID, T> readParallel(Collection<UUID> uuids, UUIDFileReader<T> reader) throws StorageException {
+        Map<UUID, T> result = new ConcurrentHashMap<>();
+        try {
+            // Each file is independent, so reading them concurrently hides the per-file latency
+            new HashSet<>(uuids).parallelStream().forEach(uuid -> {
+                try {
+                    reader.read(uuid).ifPresent(data -> result.put(uuid, data));
+                } catch (StorageException e) {
+                    throw new UncheckedStorageException(e);
+                }
+            });
+        } catch (UncheckedStorageException e) {
+            throw e.getCause();
+        }
+
+        return new HashMap<>(result);
+    }
+
     private Path resolveCustomSkinFile(String skinName) {
-        return skinsFolder.resolve(skinName + ".customskin");
+        return layout.resolve(skinsFolder, skinName + ".customskin");
     }
 
     private Path resolveLegacySkinFile(String skinName) {
@@ -682,19 +723,19 @@ public class FileAdapter implements StorageAdapter {
     }
 
     private Path resolveURLSkinFile(String url, SkinVariant skinVariant) {
-        return skinsFolder.resolve(hashSHA256(url) + "_" + skinVariant.name() + ".urlskin");
+        return layout.resolve(skinsFolder, hashSHA256(url) + "_" + skinVariant.name() + ".urlskin");
     }
 
     private Path resolveURLSkinIndexFile(String url) {
-        return skinsFolder.resolve(hashSHA256(url) + ".urlindex");
+        return layout.resolve(skinsFolder, hashSHA256(url) + ".urlindex");
     }
 
     private Path resolvePlayerSkinFile(UUID uuid) {
-        return skinsFolder.resolve(uuid + ".playerskin");
+        return layout.resolve(skinsFolder, uuid + ".playerskin");
     }
 
     private Path resolvePlayerFile(UUID uuid) {
-        return playersFolder.resolve(uuid + ".player");
+        return layout.resolve(playersFolder, uuid + ".player");
     }
 
     private Path resolveLegacyPlayerFile(String name) {
@@ -702,7 +743,7 @@ public class FileAdapter implements StorageAdapter {
     }
 
     private Path resolveCacheFile(String name) {
-        return cacheFolder.resolve(name + ".mojangcache");
+        return layout.resolve(cacheFolder, name + ".mojangcache");
     }
 
     private String sanitizeLegacyPlayerName(String playerName) {
@@ -717,6 +758,26 @@ public class FileAdapter implements StorageAdapter {
         return skinName.toLowerCase();
     }
 
-    private record GUIFileData(String fileName, Path path, SkinType skinType) {
+    private interface PropertyReader {
+        SkinProperty read(Path file) throws IOException;
+    }
+
+    private interface RecordEncoder {
+        byte[] encode(SkinProperty reference);
+    }
+
+    private interface UUIDFileReader<T> {
+        Optional<T> read(UUID uuid) throws StorageException;
+    }
+
+    private static class UncheckedStorageException extends RuntimeException {
+        private UncheckedStorageException(StorageException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized StorageException getCause() {
+            return (StorageException) super.getCause();
+        }
     }
 }
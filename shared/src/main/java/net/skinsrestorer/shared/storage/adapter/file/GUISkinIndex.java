@@ -0,0 +1,374 @@
+/*
+ * SkinsRestorer
+ * Copyright (C) 2024  SkinsRestorer Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.skinsrestorer.shared.storage.adapter.file;
+
+import net.skinsrestorer.api.property.SkinType;
+import net.skinsrestorer.shared.log.SRLogger;
+import net.skinsrestorer.shared.storage.adapter.TimestampIndex;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Sorted index of all skins that can show up in the GUI, so pages can be served without scanning the skins folder.
+ * It also keeps the timestamps of player skins, so old skins can be purged without reading every skin.
+ * <p>
+ * The index is kept in memory as sorted lists and persisted as a journal of changes.
+ * The journal is rewritten as a compact snapshot once it contains a lot of outdated records.
+ * <p>
+ * The journal is written after the skin itself, so a crash in between leaves it behind the skins.
+ * A marker file is created by {@link #close()} and removed on load, the index is only trusted if the marker was there.
+ */
+public class GUISkinIndex {
+    private static final int MAGIC = 0x53524749; // "SRGI"
+    private static final int FORMAT_VERSION = 2;
+    private static final byte OP_PUT = 0;
+    private static final byte OP_REMOVE = 1;
+    private static final int MIN_COMPACT_RECORDS = 1000;
+    public static final Comparator<Entry> ORDER = Comparator.comparing(Entry::displayName, String.CASE_INSENSITIVE_ORDER)
+            .thenComparing(Entry::type)
+            .thenComparing(Entry::name);
+    private final Path indexFile;
+    private final Path cleanMarker;
+    private final SRLogger logger;
+    private final Map<Key, Entry> entries = new HashMap<>();
+    private final List<Entry> allSkins = new ArrayList<>();
+    private final List<Entry> playerSkins = new ArrayList<>();
+    private final TimestampIndex timestamps = new TimestampIndex();
+    private DataOutputStream journal;
+    private int journalRecords;
+    private boolean markedClean;
+
+    public GUISkinIndex(Path indexFile, SRLogger logger) {
+        this.indexFile = indexFile;
+        this.cleanMarker = indexFile.resolveSibling(indexFile.getFileName() + ".clean");
+        this.logger = logger;
+    }
+
+    private static void insert(List<Entry> list, Entry entry) {
+        int index = Collections.binarySearch(list, entry, ORDER);
+        list.add(index < 0 ? -index - 1 : index, entry);
+    }
+
+    private static void remove(List<Entry> list, Entry entry) {
+        int index = Collections.binarySearch(list, entry, ORDER);
+        if (index >= 0) {
+            list.remove(index);
+        }
+    }
+
+    private static byte typeId(SkinType type) {
+        return switch (type) {
+            case PLAYER -> 0;
+            case CUSTOM -> 1;
+            default -> throw new IllegalArgumentException("Skin type not shown in GUI: " + type);
+        };
+    }
+
+    private static SkinType fromTypeId(byte id) throws IOException {
+        return switch (id) {
+            case 0 -> SkinType.PLAYER;
+            case 1 -> SkinType.CUSTOM;
+            default -> throw new IOException("Unknown skin type id: " + id);
+        };
+    }
+
+    /**
+     * Loads the index from disk.
+     *
+     * @return false if there is no usable index yet and it needs to be rebuilt
+     */
+    public synchronized boolean load() {
+        boolean clean;
+        try {
+            // Until the next clean close, a crash may leave the index behind the skins
+            clean = Files.deleteIfExists(cleanMarker);
+        } catch (IOException e) {
+            logger.warning("Failed to update GUI skin index", e);
+            return false;
+        }
+
+        if (!clean) {
+            if (Files.exists(indexFile)) {
+                logger.info("GUI skin index was not closed cleanly, rebuilding it...");
+            }
+
+            return false;
+        }
+
+        if (!Files.exists(indexFile)) {
+            return false;
+        }
+
+        int records = 0;
+        boolean truncated = false;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                return false;
+            }
+
+            while (true) {
+                byte op;
+                try {
+                    op = in.readByte();
+                } catch (EOFException e) {
+                    break;
+                }
+
+                try {
+                    SkinType type = fromTypeId(in.readByte());
+                    String name = in.readUTF();
+                    if (op == OP_PUT) {
+                        applyPut(new Entry(name, type, in.readUTF(), in.readUTF(), in.readLong()));
+                    } else {
+                        applyRemove(type, name);
+                    }
+
+                    records++;
+                } catch (EOFException e) {
+                    // Record torn by a crash, everything before it is intact
+                    truncated = true;
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            logger.warning("Failed to load GUI skin index, rebuilding it", e);
+            clear();
+            return false;
+        }
+
+        journalRecords = records;
+        if (truncated || needsCompaction()) {
+            writeSnapshot();
+        }
+
+        return true;
+    }
+
+    /**
+     * Replaces the whole index, used when there is no index on disk yet.
+     */
+    public synchronized void rebuild(Collection<Entry> newEntries) {
+        clear();
+        for (Entry entry : newEntries) {
+            applyPut(entry);
+        }
+
+        writeSnapshot();
+    }
+
+    public synchronized void put(Entry entry) {
+        applyPut(entry);
+        append(OP_PUT, entry.type(), entry.name(), entry);
+    }
+
+    public synchronized void remove(SkinType type, String name) {
+        if (applyRemove(type, name)) {
+            append(OP_REMOVE, type, name, null);
+        }
+    }
+
+    public synchronized Optional<Entry> get(SkinType type, String name) {
+        return Optional.ofNullable(entries.get(new Key(type, name)));
+    }
+
+    /**
+     * Returns up to {@code limit} skins sorted after {@code after}, sorted by their display name.
+     *
+     * @param playerSkinsOnly whether custom skins should be left out
+     * @param after           the last entry of the previous page, does not need to exist anymore
+     */
+    public synchronized List<Entry> getPage(boolean playerSkinsOnly, @Nullable Entry after, int limit) {
+        List<Entry> list = playerSkinsOnly ? playerSkins : allSkins;
+        int from = 0;
+        if (after != null) {
+            int index = Collections.binarySearch(list, after, ORDER);
+            from = index >= 0 ? index + 1 : -index - 1;
+        }
+
+        int to = Math.min(from + limit, list.size());
+        return new ArrayList<>(list.subList(from, to));
+    }
+
+    /**
+     * Returns up to {@code limit} UUIDs of player skins with a timestamp before {@code targetTimestamp}.
+     */
+    public List<String> getExpiredPlayerSkins(long targetTimestamp, int limit) {
+        return timestamps.getOlderThan(targetTimestamp, limit);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Closes the journal and marks the index as up to date with the skins.
+     */
+    public synchronized void close() {
+        closeJournal();
+        try {
+            Files.createDirectories(cleanMarker.getParent());
+            Files.write(cleanMarker, new byte[0]);
+            markedClean = true;
+        } catch (IOException e) {
+            logger.warning("Failed to close GUI skin index", e);
+        }
+    }
+
+    private void closeJournal() {
+        if (journal == null) {
+            return;
+        }
+
+        try {
+            journal.close();
+        } catch (IOException e) {
+            logger.warning("Failed to close GUI skin index", e);
+        }
+
+        journal = null;
+    }
+
+    private void clearCleanMarker() {
+        if (!markedClean) {
+            return;
+        }
+
+        try {
+            Files.deleteIfExists(cleanMarker);
+            markedClean = false;
+        } catch (IOException e) {
+            logger.warning("Failed to update GUI skin index", e);
+        }
+    }
+
+    private void applyPut(Entry entry) {
+        Entry previous = entries.put(new Key(entry.type(), entry.name()), entry);
+        if (previous != null) {
+            removeSorted(previous);
+        }
+
+        insert(allSkins, entry);
+        if (entry.type() == SkinType.PLAYER) {
+            insert(playerSkins, entry);
+            timestamps.put(entry.name(), entry.timestamp());
+        }
+    }
+
+    private boolean applyRemove(SkinType type, String name) {
+        Entry previous = entries.remove(new Key(type, name));
+        if (previous == null) {
+            return false;
+        }
+
+        removeSorted(previous);
+        return true;
+    }
+
+    private void removeSorted(Entry entry) {
+        remove(allSkins, entry);
+        if (entry.type() == SkinType.PLAYER) {
+            remove(playerSkins, entry);
+            timestamps.remove(entry.name());
+        }
+    }
+
+    private void clear() {
+        entries.clear();
+        allSkins.clear();
+        playerSkins.clear();
+        timestamps.clear();
+    }
+
+    private boolean needsCompaction() {
+        return journalRecords > MIN_COMPACT_RECORDS && journalRecords > entries.size() * 2;
+    }
+
+    private void append(byte op, SkinType type, String name, Entry entry) {
+        clearCleanMarker();
+        if (needsCompaction() || !Files.exists(indexFile)) {
+            writeSnapshot();
+            return;
+        }
+
+        try {
+            if (journal == null) {
+                journal = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(indexFile,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+            }
+
+            writeRecord(journal, op, type, name, entry);
+            journal.flush();
+            journalRecords++;
+        } catch (IOException e) {
+            logger.warning("Failed to update GUI skin index", e);
+        }
+    }
+
+    private void writeSnapshot() {
+        clearCleanMarker();
+        closeJournal();
+
+        Path tempFile = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            for (Entry entry : allSkins) {
+                writeRecord(out, OP_PUT, entry.type(), entry.name(), entry);
+            }
+        } catch (IOException e) {
+            logger.warning("Failed to write GUI skin index", e);
+            return;
+        }
+
+        try {
+            Files.move(tempFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            journalRecords = entries.size();
+        } catch (IOException e) {
+            logger.warning("Failed to write GUI skin index", e);
+        }
+    }
+
+    private void writeRecord(DataOutputStream out, byte op, SkinType type, String name, Entry entry) throws IOException {
+        out.writeByte(op);
+        out.writeByte(typeId(type));
+        out.writeUTF(name);
+        if (op == OP_PUT) {
+            out.writeUTF(entry.displayName());
+            out.writeUTF(entry.value());
+            out.writeLong(entry.timestamp());
+        }
+    }
+
+    /**
+     * @param name        file name of the skin, the uuid for player skins and the skin name for custom skins
+     * @param displayName name shown in the GUI
+     * @param value       texture value of the skin
+     * @param timestamp   timestamp of player skins, 0 for custom skins
+     */
+    public record Entry(String name, SkinType type, String displayName, String value, long timestamp) {
+    }
+
+    private record Key(SkinType type, String name) {
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * SkinsRestorer
+ * Copyright (C) 2024  SkinsRestorer Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.skinsrestorer.shared.storage.adapter.file;
+
+import net.skinsrestorer.shared.log.SRLogger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Spreads files over two levels of sub folders named after a hex prefix, e.g. {@code skins/ab/cd/abcd....playerskin}.
+ * The prefix is taken from the file name when it already starts with hex (UUIDs and URL hashes),
+ * otherwise from the SHA-256 of the file name.
+ * <p>
+ * Files of the old flat layout are moved in the background. Until that is done, lookups fall back to the flat layout.
+ * Writes, deletes and moves of a file hold the same lock, so a move never replaces a file that was just written.
+ */
+public class ShardedFileLayout {
+    private static final Pattern HEX_PREFIX = Pattern.compile("^[0-9a-f]{4}");
+    private static final String MIGRATED_EXTENSIONS = "*.{playerskin,customskin,urlskin,urlindex,player,mojangcache}";
+    private static final int MAX_DEPTH = 3;
+    private static final int LOCK_COUNT = 64;
+    private final Path markerFile;
+    private final SRLogger logger;
+    private final Object[] locks = new Object[LOCK_COUNT];
+    private volatile boolean flatFilesPending = true;
+
+    public ShardedFileLayout(Path dataFolder, SRLogger logger) {
+        this.markerFile = dataFolder.resolve("sharded-layout.txt");
+        this.logger = logger;
+        for (int i = 0; i < LOCK_COUNT; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * @param file the sharded path of the file
+     * @return the lock held while the file is written, deleted or moved, callers may hold it to read and write the file atomically
+     */
+    public Object lockFor(Path file) {
+        return locks[Math.floorMod(file.hashCode(), LOCK_COUNT)];
+    }
+
+    public Path resolve(Path folder, String fileName) {
+        String baseName = fileName.substring(0, fileName.lastIndexOf('.'));
+        String key = HEX_PREFIX.matcher(baseName).find() ? baseName : FileAdapter.hashSHA256(baseName);
+        return folder.resolve(key.substring(0, 2)).resolve(key.substring(2, 4)).resolve(fileName);
+    }
+
+    /**
+     * Returns the path the file currently exists at, which is the flat path while it was not migrated yet.
+     */
+    public Path locate(Path file) {
+        if (!flatFilesPending || Files.exists(file)) {
+            return file;
+        }
+
+        Path flatFile = flatPath(file);
+        return Files.exists(flatFile) ? flatFile : file;
+    }
+
+    public void write(Path file, byte[] content) throws IOException {
+        synchronized (lockFor(file)) {
+            try {
+                Files.write(file, content);
+            } catch (NoSuchFileException e) {
+                Files.createDirectories(file.getParent());
+                Files.write(file, content);
+            }
+
+            if (flatFilesPending) {
+                Files.deleteIfExists(flatPath(file));
+            }
+        }
+    }
+
+    public void delete(Path file) throws IOException {
+        synchronized (lockFor(file)) {
+            if (flatFilesPending) {
+                Files.deleteIfExists(flatPath(file));
+            }
+
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Lists all files with the given extension in both the sharded and the flat layout.
+     */
+    public List<Path> list(Path folder, String extension) throws IOException {
+        String suffix = "." + extension;
+        try (Stream<Path> stream = Files.find(folder, MAX_DEPTH, (path, attributes) ->
+                attributes.isRegularFile() && path.getFileName().toString().endsWith(suffix))) {
+            return stream.toList();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Moves all files of the flat layout into the sharded layout on a background thread.
+     * An interrupted migration continues where it stopped on the next start.
+     */
+    public void migrateAsync(Path... folders) {
+        if (Files.exists(markerFile)) {
+            flatFilesPending = false;
+            return;
+        }
+
+        Thread thread = new Thread(() -> migrate(folders), "SkinsRestorer-LayoutMigration");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void migrate(Path[] folders) {
+        int moved = 0;
+        int failed = 0;
+        for (Path folder : folders) {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder, MIGRATED_EXTENSIONS)) {
+                for (Path path : stream) {
+                    if (moved == 0 && failed == 0) {
+                        logger.info("Moving skin files into sub folders...");
+                    }
+
+                    Path target = resolve(folder, path.getFileName().toString());
+                    try {
+                        synchronized (lockFor(target)) {
+                            if (Files.exists(target)) {
+                                // A newer version was already written to the sharded layout
+                                Files.deleteIfExists(path);
+                            } else {
+                                Files.createDirectories(target.getParent());
+                                Files.move(path, target);
+                            }
+                        }
+                    } catch (NoSuchFileException e) {
+                        continue; // Removed in the meantime
+                    } catch (IOException e) {
+                        failed++;
+                        logger.warning("Failed to move file: " + path.getFileName(), e);
+                        continue;
+                    }
+
+                    if (++moved % 10000 == 0) {
+                        logger.info(String.format("Moved %d files into sub folders...", moved));
+                    }
+                }
+            } catch (IOException e) {
+                failed++;
+                logger.warning("Failed to move files of folder " + folder.getFileName(), e);
+            }
+        }
+
+        if (failed > 0) {
+            logger.warning(String.format("Failed to move %d files into sub folders, retrying on the next start.", failed));
+            return;
+        }
+
+        try {
+            Files.writeString(markerFile, "Skin files are stored in sub folders, do not delete this file.");
+            flatFilesPending = false;
+        } catch (IOException e) {
+            logger.warning("Failed to save layout migration state", e);
+        }
+
+        if (moved > 0) {
+            logger.info(String.format("Moved %d files into sub folders.", moved));
+        }
+    }
+
+    private Path flatPath(Path file) {
+        return file.getParent().getParent().resolveSibling(file.getFileName());
+    }
+}
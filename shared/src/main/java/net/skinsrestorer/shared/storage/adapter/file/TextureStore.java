@@ -0,0 +1,312 @@
+/*
+ * SkinsRestorer
+ * Copyright (C) 2024  SkinsRestorer Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.skinsrestorer.shared.storage.adapter.file;
+
+import net.skinsrestorer.api.property.SkinProperty;
+import net.skinsrestorer.shared.log.SRLogger;
+import net.skinsrestorer.shared.storage.adapter.cache.SegmentedLRUCache;
+import net.skinsrestorer.shared.storage.adapter.codec.RecordCodec;
+
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Content addressed store for skin textures, one file per distinct value and signature named after their hash.
+ * Skin records only keep a reference to their texture, so a texture shared by many players,
+ * URLs and custom skins is stored and cached once.
+ * <p>
+ * Every texture keeps a count of the records referencing it, raised by {@link #store(SkinProperty)}
+ * and lowered by {@link #release(SkinProperty)}. Textures whose count dropped to zero are removed by {@link #sweep()},
+ * which skips recently used files, so a texture that is just being referenced again is never removed.
+ * Storing, releasing and removing a texture hold the same lock, so a removal can't slip in between
+ * the existence check of a store and the touch that protects the file.
+ * <p>
+ * The counts are saved by {@link #close()} and the file is removed on load, like the GUI skin index.
+ * Without a cleanly saved file the counts have to be rebuilt from the records, until then nothing is removed.
+ */
+public class TextureStore {
+    private static final String REFERENCE_PREFIX = "texture:";
+    private static final String EXTENSION = "texture";
+    private static final int REFERENCES_MAGIC = 0x53525452; // "SRTR"
+    private static final long SWEEP_MIN_AGE_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final int LOCK_COUNT = 64;
+    private final Path folder;
+    private final Path referencesFile;
+    private final ShardedFileLayout layout;
+    private final boolean binaryRecords;
+    private final SRLogger logger;
+    private final SegmentedLRUCache<String, SkinProperty> cache = new SegmentedLRUCache<>(1000, TimeUnit.HOURS.toNanos(1));
+    private final Object[] locks = new Object[LOCK_COUNT];
+    private final Map<String, Integer> referenceCounts = new ConcurrentHashMap<>();
+    private final Set<String> unreferenced = ConcurrentHashMap.newKeySet();
+    private volatile boolean referencesLoaded;
+
+    public TextureStore(Path folder, ShardedFileLayout layout, boolean binaryRecords, SRLogger logger) {
+        this.folder = folder;
+        this.referencesFile = folder.resolve("references.index");
+        this.layout = layout;
+        this.binaryRecords = binaryRecords;
+        this.logger = logger;
+        for (int i = 0; i < LOCK_COUNT; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * Stores the texture if it is not stored yet and counts the new reference.
+     * The reference has to be released once the record holding it is replaced or removed.
+     *
+     * @return a property referencing the stored texture, to be written in place of the texture
+     */
+    public SkinProperty store(SkinProperty property) throws IOException {
+        String hash = HexFormat.of().formatHex(RecordCodec.hashTexture(property));
+        Path file = resolve(hash);
+        synchronized (lockFor(hash)) {
+            if (Files.exists(file)) {
+                // Keeps the texture out of a sweep that started before this reference was written
+                Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            } else {
+                Files.createDirectories(file.getParent());
+                // Written next to the target and moved, so concurrent readers never see a partial file
+                Path tempFile = Files.createTempFile(file.getParent(), hash, ".tmp");
+                try {
+                    Files.write(tempFile, RecordCodec.TEXTURE.encode(property, binaryRecords));
+                    Files.move(tempFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } finally {
+                    Files.deleteIfExists(tempFile);
+                }
+            }
+
+            referenceCounts.merge(hash, 1, Integer::sum);
+            unreferenced.remove(hash);
+        }
+
+        cache.put(hash, property, cache.getStamp(hash));
+        return SkinProperty.of(REFERENCE_PREFIX + hash, "");
+    }
+
+    /**
+     * @return the referenced texture, or the property itself if it was stored inline by an older version
+     */
+    public SkinProperty resolve(SkinProperty property) throws IOException {
+        Optional<String> hash = referencedHash(property);
+        if (hash.isEmpty()) {
+            return property;
+        }
+
+        SkinProperty cached = cache.getIfPresent(hash.get());
+        if (cached != null) {
+            return cached;
+        }
+
+        long stamp = cache.getStamp(hash.get());
+        Path file = resolve(hash.get());
+        if (!Files.exists(file)) {
+            throw new NoSuchFileException(file.toString(), null, "Referenced texture is missing");
+        }
+
+        SkinProperty texture = RecordCodec.TEXTURE.decode(file);
+        cache.put(hash.get(), texture, stamp);
+        return texture;
+    }
+
+    public static Optional<String> referencedHash(SkinProperty property) {
+        return property.getValue().startsWith(REFERENCE_PREFIX)
+                ? Optional.of(property.getValue().substring(REFERENCE_PREFIX.length())) : Optional.empty();
+    }
+
+    /**
+     * Drops a reference returned by {@link #store(SkinProperty)}, textures stored inline are ignored.
+     */
+    public void release(SkinProperty reference) {
+        referencedHash(reference).ifPresent(hash -> {
+            synchronized (lockFor(hash)) {
+                Integer count = referenceCounts.get(hash);
+                if (count == null) {
+                    // Not counted yet, other records may still reference it
+                    return;
+                }
+
+                if (count > 1) {
+                    referenceCounts.put(hash, count - 1);
+                } else {
+                    referenceCounts.put(hash, 0);
+                    unreferenced.add(hash);
+                }
+            }
+        });
+    }
+
+    /**
+     * Removes all textures that are not referenced anymore.
+     *
+     * @return the number of removed textures
+     */
+    public int sweep() throws IOException {
+        if (!referencesLoaded) {
+            return 0;
+        }
+
+        long cutoff = System.currentTimeMillis() - SWEEP_MIN_AGE_MILLIS;
+        int removed = 0;
+        for (String hash : unreferenced) {
+            synchronized (lockFor(hash)) {
+                if (referenceCounts.getOrDefault(hash, 0) > 0) {
+                    unreferenced.remove(hash);
+                    continue;
+                }
+
+                Path file = resolve(hash);
+                if (Files.exists(file)) {
+                    // Checked under the lock, a store may have touched the file just before its reference was dropped
+                    if (Files.getLastModifiedTime(file).toMillis() > cutoff) {
+                        continue;
+                    }
+
+                    Files.delete(file);
+                    cache.invalidate(hash);
+                    removed++;
+                }
+
+                referenceCounts.remove(hash);
+                unreferenced.remove(hash);
+            }
+        }
+
+        if (removed > 0) {
+            logger.debug(String.format("Removed %d unused textures", removed));
+        }
+
+        return removed;
+    }
+
+    /**
+     * Loads the reference counts saved by the last {@link #close()}.
+     *
+     * @return false if there are no usable counts and they need to be rebuilt
+     */
+    public boolean loadReferences() {
+        if (!Files.exists(referencesFile)) {
+            return false;
+        }
+
+        referenceCounts.clear();
+        unreferenced.clear();
+        try {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(referencesFile)))) {
+                if (in.readInt() != REFERENCES_MAGIC) {
+                    return false;
+                }
+
+                int size = in.readInt();
+                for (int i = 0; i < size; i++) {
+                    String hash = in.readUTF();
+                    int count = in.readInt();
+                    referenceCounts.put(hash, count);
+                    if (count == 0) {
+                        unreferenced.add(hash);
+                    }
+                }
+            } finally {
+                // Until the next clean close, a crash may leave the counts behind the records
+                Files.deleteIfExists(referencesFile);
+            }
+        } catch (IOException e) {
+            logger.warning("Failed to load texture references, rebuilding them", e);
+            referenceCounts.clear();
+            unreferenced.clear();
+            return false;
+        }
+
+        referencesLoaded = true;
+        return true;
+    }
+
+    /**
+     * Replaces all reference counts, stored textures that are not in the map are not referenced at all.
+     *
+     * @param counts the number of records referencing each texture hash
+     */
+    public void rebuildReferences(Map<String, Integer> counts) throws IOException {
+        Map<String, Integer> rebuilt = new HashMap<>(counts);
+        Set<String> rebuiltUnreferenced = ConcurrentHashMap.newKeySet();
+        if (Files.isDirectory(folder)) {
+            for (Path file : layout.list(folder, EXTENSION)) {
+                String fileName = file.getFileName().toString();
+                String hash = fileName.substring(0, fileName.length() - EXTENSION.length() - 1);
+                if (!rebuilt.containsKey(hash)) {
+                    rebuilt.put(hash, 0);
+                    rebuiltUnreferenced.add(hash);
+                }
+            }
+        }
+
+        referenceCounts.clear();
+        referenceCounts.putAll(rebuilt);
+        unreferenced.clear();
+        unreferenced.addAll(rebuiltUnreferenced);
+        referencesLoaded = true;
+    }
+
+    /**
+     * Saves the reference counts, so the next start does not have to rebuild them.
+     */
+    public void close() {
+        if (!referencesLoaded) {
+            return;
+        }
+
+        try {
+            Files.createDirectories(folder);
+            Path tempFile = Files.createTempFile(folder, "references", ".tmp");
+            try {
+                Map<String, Integer> snapshot = new HashMap<>(referenceCounts);
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                    out.writeInt(REFERENCES_MAGIC);
+                    out.writeInt(snapshot.size());
+                    for (Map.Entry<String, Integer> entry : snapshot.entrySet()) {
+                        out.writeUTF(entry.getKey());
+                        out.writeInt(entry.getValue());
+                    }
+                }
+
+                Files.move(tempFile, referencesFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+        } catch (IOException e) {
+            logger.warning("Failed to save texture references", e);
+        }
+    }
+
+    private Object lockFor(String hash) {
+        return locks[Math.floorMod(hash.hashCode(), LOCK_COUNT)];
+    }
+
+    private Path resolve(String hash) {
+        return layout.resolve(folder, hash + "." + EXTENSION);
+    }
+}
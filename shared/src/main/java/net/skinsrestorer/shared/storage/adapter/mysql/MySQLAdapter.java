@@ -19,79 +19,80 @@ package net.skinsrestorer.shared.storage.adapter.mysql;
 
 import ch.jalu.configme.SettingsManager;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
-import lombok.RequiredArgsConstructor;
 import net.skinsrestorer.api.property.SkinIdentifier;
 import net.skinsrestorer.api.property.SkinProperty;
 import net.skinsrestorer.api.property.SkinType;
 import net.skinsrestorer.api.property.SkinVariant;
 import net.skinsrestorer.shared.config.DatabaseConfig;
 import net.skinsrestorer.shared.config.GUIConfig;
+import net.skinsrestorer.shared.gui.GUISkinPage;
 import net.skinsrestorer.shared.gui.SharedGUI;
 import net.skinsrestorer.shared.log.SRLogger;
 import net.skinsrestorer.shared.plugin.SRPlugin;
 import net.skinsrestorer.shared.storage.adapter.StorageAdapter;
+import net.skinsrestorer.shared.storage.adapter.cache.Invalidation;
+import net.skinsrestorer.shared.storage.adapter.cache.InvalidationTransport;
+import net.skinsrestorer.shared.storage.adapter.codec.RecordCodec;
 import net.skinsrestorer.shared.storage.model.cache.MojangCacheData;
 import net.skinsrestorer.shared.storage.model.player.LegacyPlayerData;
 import net.skinsrestorer.shared.storage.model.player.PlayerData;
 import net.skinsrestorer.shared.storage.model.skin.*;
+import org.intellij.lang.annotations.Language;
+import org.jetbrains.annotations.Nullable;
 
 import javax.inject.Inject;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 
-@RequiredArgsConstructor(onConstructor_ = @Inject)
 public class MySQLAdapter implements StorageAdapter {
-    private final MySQLProvider mysql;
+    private static final int BULK_CHUNK_SIZE = 500;
+    private static final RowMapper<GUIRow> GUI_SKIN_MAPPER = crs -> new GUIRow(crs.getString("name"),
+            SkinType.valueOf(crs.getString("type")), crs.getString("id"), RecordCodec.decodeTexture(crs.getBytes("value")));
+    private static final RowMapper<Boolean> EXISTS_MAPPER = crs -> true;
+    // Textures referenced again during the purge are newer and therefore kept
+    private static final long TEXTURE_PURGE_MIN_AGE_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private final SQLProvider mysql;
     private final SettingsManager settings;
     private final SRLogger logger;
     private final SRPlugin plugin;
+    private volatile MySQLStatements statements;
+
+    @Inject
+    public MySQLAdapter(MySQLProvider mysql, SettingsManager settings, SRLogger logger, SRPlugin plugin) {
+        this((SQLProvider) mysql, settings, logger, plugin);
+    }
+
+    /**
+     * Runs the same schema and queries on another database, the differences are covered by the provider's {@link SQLDialect}.
+     */
+    protected MySQLAdapter(SQLProvider provider, SettingsManager settings, SRLogger logger, SRPlugin plugin) {
+        this.mysql = provider;
+        this.settings = settings;
+        this.logger = logger;
+        this.plugin = plugin;
+    }
 
     @Override
     public void init() {
-        mysql.execute("CREATE TABLE IF NOT EXISTS `" + resolveCacheTable() + "` ("
-                + "`name` VARCHAR(16) NOT NULL,"
-                + "`uuid` VARCHAR(36),"
-                + "`timestamp` BIGINT(20) NOT NULL,"
-                + "PRIMARY KEY (`name`)) ENGINE=InnoDB DEFAULT CHARSET=utf8");
+        try {
+            new MySQLSchema(mysql, statements(), logger).migrate();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to migrate database schema", e);
+        }
 
-        mysql.execute("CREATE TABLE IF NOT EXISTS `" + resolvePlayerTable() + "` ("
-                + "`uuid` VARCHAR(36) NOT NULL,"
-                + "`skin_identifier` VARCHAR(2083),"
-                + "`skin_variant` VARCHAR(20),"
-                + "`skin_type` VARCHAR(20),"
-                + "PRIMARY KEY (`uuid`)) ENGINE=InnoDB DEFAULT CHARSET=utf8");
-
-        mysql.execute("CREATE TABLE IF NOT EXISTS `" + resolvePlayerSkinTable() + "` ("
-                + "`uuid` VARCHAR(36) NOT NULL,"
-                + "`last_known_name` VARCHAR(16),"
-                + "`value` TEXT NOT NULL,"
-                + "`signature` TEXT NOT NULL,"
-                + "`timestamp` BIGINT(20) NOT NULL,"
-                + "PRIMARY KEY (`uuid`)) ENGINE=InnoDB DEFAULT CHARSET=utf8");
-
-        mysql.execute("CREATE TABLE IF NOT EXISTS `" + resolveURLSkinTable() + "` ("
-                + "`url` VARCHAR(266) NOT NULL," // Max chatbox command length
-                + "`mine_skin_id` VARCHAR(36),"
-                + "`value` TEXT NOT NULL,"
-                + "`signature` TEXT NOT NULL,"
-                + "`skin_variant` VARCHAR(20),"
-                + "PRIMARY KEY (`url`)) ENGINE=InnoDB DEFAULT CHARSET=utf8");
-
-        mysql.execute("CREATE TABLE IF NOT EXISTS `" + resolveURLSkinIndexTable() + "` ("
-                + "`url` VARCHAR(266) NOT NULL," // Max chatbox command length
-                + "`skin_variant` VARCHAR(20),"
-                + "PRIMARY KEY (`url`)) ENGINE=InnoDB DEFAULT CHARSET=utf8");
-
-        mysql.execute("CREATE TABLE IF NOT EXISTS `" + resolveCustomSkinTable() + "` ("
-                + "`name` VARCHAR(36) NOT NULL,"
-                + "`value` TEXT NOT NULL,"
-                + "`signature` TEXT NOT NULL,"
-                + "PRIMARY KEY (`name`)) ENGINE=InnoDB DEFAULT CHARSET=utf8");
+        migrateLegacyData();
+    }
 
+    /**
+     * Migrates the tables of older SkinsRestorer versions.
+     */
+    protected void migrateLegacyData() {
         try {
             // v14
             migrateLegacyPlayerTable();
@@ -104,10 +105,21 @@ public class MySQLAdapter implements StorageAdapter {
         }
     }
 
+    private MySQLStatements statements() {
+        String prefix = settings.getProperty(DatabaseConfig.MYSQL_TABLE_PREFIX);
+        MySQLStatements current = statements;
+        if (current == null || !current.prefix.equals(prefix)) {
+            current = new MySQLStatements(prefix, mysql.getDialect());
+            statements = current;
+        }
+
+        return current;
+    }
+
     private void migrateV15() {
         // Now fully replaced by missing uuid column
-        if (columnExists(resolveCacheTable(), "is_premium")) {
-            mysql.execute("ALTER TABLE `" + resolveCacheTable() + "` DROP COLUMN `is_premium`");
+        if (columnExists(statements().cacheTable, "is_premium")) {
+            mysql.execute("ALTER TABLE `" + statements().cacheTable + "` DROP COLUMN `is_premium`");
         }
     }
 
@@ -124,19 +136,16 @@ public class MySQLAdapter implements StorageAdapter {
         }
 
         logger.info("Migrating legacy player table to new format...");
-        mysql.execute("CREATE TABLE IF NOT EXISTS `" + resolveLegacyPlayerTable() + "` ("
+        MySQLStatements sql = statements();
+        mysql.execute("CREATE TABLE IF NOT EXISTS `" + sql.legacyPlayerTable + "` ("
                 + "`name` varchar(17) NOT NULL,"
                 + "`skin_name` varchar(19) NOT NULL,"
                 + "PRIMARY KEY (`name`)) ENGINE=InnoDB DEFAULT CHARSET=utf8");
 
-        try (ResultSet crs = mysql.query("SELECT * FROM " + legacyPlayerTable.get())) {
-            while (crs.next()) {
-                String name = crs.getString("Nick");
-                String skin = crs.getString("Skin");
-
-                mysql.execute("INSERT INTO " + resolveLegacyPlayerTable() + " (name, skin_name) VALUES (?, ?)",
-                        name, skin);
-            }
+        try (SQLProvider.BatchWriter players = mysql.batchWriter(sql.insertLegacyPlayer)) {
+            mysql.queryStream("SELECT `Nick`, `Skin` FROM `" + legacyPlayerTable.get() + "`",
+                    crs -> new Object[]{crs.getString("Nick"), crs.getString("Skin")},
+                    players::add);
         } catch (SQLException e) {
             logger.severe("Failed to migrate legacy player table", e);
         }
@@ -160,27 +169,35 @@ public class MySQLAdapter implements StorageAdapter {
         }
 
         logger.info("Migrating legacy skin table to new format...");
-        mysql.execute("CREATE TABLE IF NOT EXISTS `" + resolveLegacySkinTable() + "` ("
+        MySQLStatements sql = statements();
+        mysql.execute("CREATE TABLE IF NOT EXISTS `" + sql.legacySkinTable + "` ("
                 + "`name` varchar(36) NOT NULL,"
                 + "`value` text NOT NULL,"
                 + "`signature` text NOT NULL,"
                 + "PRIMARY KEY (`name`)) ENGINE=InnoDB DEFAULT CHARSET=utf8");
 
-        try (ResultSet crs = mysql.query("SELECT * FROM " + legacySkinTable.get())) {
-            while (crs.next()) {
-                String name = crs.getString("Nick");
-                String value = crs.getString("Value");
-                String signature = crs.getString("Signature");
-                String timestampString = crs.getString("timestamp");
-
-                // Remove this logic in like 50 years ;)
-                if (timestampString == null || isLegacyCustomSkinTimestamp(Long.parseLong(timestampString))) {
-                    setCustomSkinData(name, CustomSkinData.of(name, SkinProperty.of(value, signature)));
-                } else {
-                    mysql.execute("INSERT INTO " + resolveLegacySkinTable() + " (name, value, signature) VALUES (?, ?, ?)",
-                            name, value, signature);
-                }
-            }
+        long now = System.currentTimeMillis();
+        try (SQLProvider.BatchWriter textures = mysql.batchWriter(sql.upsertTexture);
+             SQLProvider.BatchWriter customSkins = mysql.batchWriter(sql.upsertCustomSkin);
+             SQLProvider.BatchWriter legacySkins = mysql.batchWriter(sql.insertLegacySkin)) {
+            mysql.queryStream("SELECT `Nick`, `Value`, `Signature`, `timestamp` FROM `" + legacySkinTable.get() + "`",
+                    crs -> new String[]{crs.getString("Nick"), crs.getString("Value"), crs.getString("Signature"), crs.getString("timestamp")},
+                    row -> {
+                        String name = row[0];
+                        String value = row[1];
+                        String signature = row[2];
+                        String timestampString = row[3];
+
+                        // Remove this logic in like 50 years ;)
+                        if (timestampString == null || isLegacyCustomSkinTimestamp(Long.parseLong(timestampString))) {
+                            SkinProperty property = SkinProperty.of(value, signature);
+                            byte[] hash = RecordCodec.hashTexture(property);
+                            textures.add(textureRow(hash, property, now));
+                            customSkins.add(new Object[]{CustomSkinData.sanitizeCustomSkinName(name), hash});
+                        } else {
+                            legacySkins.add(new Object[]{name, value, signature});
+                        }
+                    });
         } catch (SQLException e) {
             throw new IOException(e);
         }
@@ -191,9 +208,43 @@ public class MySQLAdapter implements StorageAdapter {
         logger.info("Skin migration complete!");
     }
 
+    static byte[] toBytes(UUID uuid) {
+        return ByteBuffer.allocate(16)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits())
+                .array();
+    }
+
+    static UUID fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+
+    private static SkinProperty readProperty(ResultSet crs) throws SQLException {
+        return SkinProperty.of(RecordCodec.decodeTexture(crs.getBytes("value")), RecordCodec.decodeTexture(crs.getBytes("signature")));
+    }
+
+    private static List<List<byte[]>> chunk(Collection<UUID> uuids) {
+        List<List<byte[]>> chunks = new ArrayList<>();
+        List<byte[]> current = new ArrayList<>(BULK_CHUNK_SIZE);
+        for (UUID uuid : new LinkedHashSet<>(uuids)) {
+            current.add(toBytes(uuid));
+            if (current.size() == BULK_CHUNK_SIZE) {
+                chunks.add(current);
+                current = new ArrayList<>(BULK_CHUNK_SIZE);
+            }
+        }
+
+        if (!current.isEmpty()) {
+            chunks.add(current);
+        }
+
+        return chunks;
+    }
+
     private boolean tableExists(String table) {
-        try (ResultSet rs = mysql.query("SHOW TABLES LIKE '" + table + "'")) {
-            return rs.next();
+        try {
+            return mysql.queryFirst(mysql.getDialect().tableExists(), EXISTS_MAPPER, table).isPresent();
         } catch (SQLException e) {
             logger.severe("Failed to check if table exists", e);
             return false;
@@ -201,8 +252,9 @@ public class MySQLAdapter implements StorageAdapter {
     }
 
     private boolean columnExists(String table, String column) {
-        try (ResultSet rs = mysql.query("SHOW COLUMNS FROM `" + table + "` LIKE '" + column + "'")) {
-            return rs.next();
+        try {
+            return mysql.queryFirst("SELECT 1 FROM information_schema.COLUMNS WHERE TABLE_SCHEMA=DATABASE() AND TABLE_NAME=? AND COLUMN_NAME=?",
+                    EXISTS_MAPPER, table, column).isPresent();
         } catch (SQLException e) {
             logger.severe("Failed to check if column exists", e);
             return false;
@@ -211,25 +263,40 @@ public class MySQLAdapter implements StorageAdapter {
 
     @Override
     public Optional<PlayerData> getPlayerData(UUID uuid) throws StorageException {
-        try (ResultSet crs = mysql.query("SELECT * FROM " + resolvePlayerTable() + " WHERE uuid=?", uuid.toString())) {
-            if (!crs.next()) {
-                return Optional.empty();
-            }
-
-            String skinIdentifier = crs.getString("skin_identifier");
-            String skinType = crs.getString("skin_type");
-            String skinVariant = crs.getString("skin_variant");
+        try {
+            return mysql.readFirst(uuid, statements().selectPlayer, MySQLAdapter::readPlayerData, toBytes(uuid));
+        } catch (SQLException e) {
+            throw new StorageException(e);
+        }
+    }
 
-            SkinIdentifier identifier = skinIdentifier != null && skinType != null ?
-                    SkinIdentifier.of(skinIdentifier,
-                            skinVariant == null ? null : SkinVariant.valueOf(skinVariant), SkinType.valueOf(skinType)) : null;
+    @Override
+    public Map<UUID, PlayerData> getPlayerData(Collection<UUID> uuids) throws StorageException {
+        try {
+            Map<UUID, PlayerData> result = new HashMap<>();
+            for (PlayerData data : mysql.readChunked(uuids, statements()::selectPlayers, chunk(uuids), MySQLAdapter::readPlayerData)) {
+                result.put(data.getUniqueId(), data);
+            }
 
-            return Optional.of(PlayerData.of(uuid, identifier));
+            return result;
         } catch (SQLException e) {
             throw new StorageException(e);
         }
     }
 
+    private static PlayerData readPlayerData(ResultSet crs) throws SQLException {
+        UUID uuid = fromBytes(crs.getBytes("uuid"));
+        String skinIdentifier = crs.getString("skin_identifier");
+        String skinType = crs.getString("skin_type");
+        String skinVariant = crs.getString("skin_variant");
+
+        SkinIdentifier identifier = skinIdentifier != null && skinType != null ?
+                SkinIdentifier.of(skinIdentifier,
+                        skinVariant == null ? null : SkinVariant.valueOf(skinVariant), SkinType.valueOf(skinType)) : null;
+
+        return PlayerData.of(uuid, identifier);
+    }
+
     @Override
     public void setPlayerData(UUID uuid, PlayerData data) {
         boolean hasSkin = data.getSkinIdentifier() != null;
@@ -239,11 +306,9 @@ public class MySQLAdapter implements StorageAdapter {
 
         // Variant is only present on url skins
         String skinVariant = hasSkin && identifier.getSkinVariant() != null ? identifier.getSkinVariant().name() : null;
-        mysql.execute("INSERT INTO " + resolvePlayerTable() + " (uuid, skin_identifier, skin_type, skin_variant) VALUES (?, ?, ?, ?) ON DUPLICATE KEY UPDATE skin_identifier=?, skin_type=?, skin_variant=?",
-                uuid.toString(),
-                skinIdentifierString,
-                skinType,
-                skinVariant,
+        mysql.markWritten(uuid);
+        executeLogged(Invalidation.player(uuid), statements().upsertPlayer,
+                toBytes(uuid),
                 skinIdentifierString,
                 skinType,
                 skinVariant);
@@ -251,54 +316,107 @@ public class MySQLAdapter implements StorageAdapter {
 
     @Override
     public Optional<PlayerSkinData> getPlayerSkinData(UUID uuid) throws StorageException {
-        try (ResultSet crs = mysql.query("SELECT * FROM " + resolvePlayerSkinTable() + " WHERE uuid=?", uuid.toString())) {
-            if (!crs.next()) {
-                return Optional.empty();
-            }
+        try {
+            return mysql.readFirst(uuid, statements().selectPlayerSkin, MySQLAdapter::readPlayerSkinData, toBytes(uuid));
+        } catch (SQLException e) {
+            throw new StorageException(e);
+        }
+    }
 
-            String lastKnownName = crs.getString("last_known_name");
-            String value = crs.getString("value");
-            String signature = crs.getString("signature");
-            long timestamp = crs.getLong("timestamp");
+    @Override
+    public Map<UUID, PlayerSkinData> getPlayerSkinData(Collection<UUID> uuids) throws StorageException {
+        try {
+            Map<UUID, PlayerSkinData> result = new HashMap<>();
+            for (PlayerSkinData data : mysql.readChunked(uuids, statements()::selectPlayerSkins, chunk(uuids), MySQLAdapter::readPlayerSkinData)) {
+                result.put(data.getUniqueId(), data);
+            }
 
-            return Optional.of(PlayerSkinData.of(uuid, lastKnownName, SkinProperty.of(value, signature), timestamp));
+            return result;
         } catch (SQLException e) {
             throw new StorageException(e);
         }
     }
 
+    private static PlayerSkinData readPlayerSkinData(ResultSet crs) throws SQLException {
+        UUID uuid = fromBytes(crs.getBytes("uuid"));
+        String lastKnownName = crs.getString("last_known_name");
+        long timestamp = crs.getLong("timestamp");
+
+        return PlayerSkinData.of(uuid, lastKnownName, readProperty(crs), timestamp);
+    }
+
     @Override
     public void removePlayerSkinData(UUID uuid) {
-        mysql.execute("DELETE FROM " + resolvePlayerSkinTable() + " WHERE uuid=?", uuid.toString());
+        mysql.markWritten(uuid);
+        executeLogged(Invalidation.playerSkin(uuid), statements().deletePlayerSkin, toBytes(uuid));
     }
 
     @Override
     public void setPlayerSkinData(UUID uuid, PlayerSkinData skinData) {
-        mysql.execute("INSERT INTO " + resolvePlayerSkinTable() + " (uuid, last_known_name, value, signature, timestamp) VALUES (?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE last_known_name=?, value=?, signature=?, timestamp=?",
-                uuid.toString(),
-                skinData.getLastKnownName(),
-                skinData.getProperty().getValue(),
-                skinData.getProperty().getSignature(),
-                skinData.getTimestamp(),
+        mysql.markWritten(uuid);
+        executeLogged(Invalidation.playerSkin(uuid), statements().upsertPlayerSkin, playerSkinRow(uuid, skinData, storeTexture(skinData.getProperty())));
+    }
+
+    @Override
+    public void setPlayerSkinData(Collection<PlayerSkinData> skinData) {
+        long now = System.currentTimeMillis();
+        Map<ByteBuffer, Object[]> textureRows = new LinkedHashMap<>();
+        List<Object[]> rows = new ArrayList<>(skinData.size());
+        List<Invalidation> changes = new ArrayList<>(skinData.size());
+        for (PlayerSkinData data : skinData) {
+            mysql.markWritten(data.getUniqueId());
+            changes.add(Invalidation.playerSkin(data.getUniqueId()));
+            byte[] hash = RecordCodec.hashTexture(data.getProperty());
+            textureRows.putIfAbsent(ByteBuffer.wrap(hash), textureRow(hash, data.getProperty(), now));
+            rows.add(playerSkinRow(data.getUniqueId(), data, hash));
+        }
+
+        try {
+            mysql.executeBatches(List.of(
+                    new SQLProvider.Batch(statements().upsertTexture, textureRows.values()),
+                    new SQLProvider.Batch(statements().upsertPlayerSkin, rows),
+                    changeBatch(changes)));
+        } catch (SQLException e) {
+            logger.warning("Failed to store player skins", e);
+        }
+    }
+
+    private static Object[] playerSkinRow(UUID uuid, PlayerSkinData skinData, byte[] textureHash) {
+        return new Object[]{
+                toBytes(uuid),
                 skinData.getLastKnownName(),
-                skinData.getProperty().getValue(),
-                skinData.getProperty().getSignature(),
-                skinData.getTimestamp());
+                textureHash,
+                skinData.getTimestamp()
+        };
+    }
+
+    /**
+     * Stores the texture once in the texture table, skins only reference it by the returned hash.
+     */
+    private byte[] storeTexture(SkinProperty property) {
+        byte[] hash = RecordCodec.hashTexture(property);
+        mysql.execute(statements().upsertTexture, textureRow(hash, property, System.currentTimeMillis()));
+        return hash;
+    }
+
+    private static Object[] textureRow(byte[] hash, SkinProperty property, long now) {
+        return new Object[]{
+                hash,
+                RecordCodec.encodeTexture(property.getValue()),
+                RecordCodec.encodeTexture(property.getSignature()),
+                now
+        };
     }
 
     @Override
     public Optional<URLSkinData> getURLSkinData(String url, SkinVariant skinVariant) throws StorageException {
-        try (ResultSet crs = mysql.query("SELECT * FROM " + resolveURLSkinTable() + " WHERE url=? AND skin_variant=?", url, skinVariant.name())) {
-            if (!crs.next()) {
-                return Optional.empty();
-            }
-
-            String mineSkinId = crs.getString("mine_skin_id");
-            String value = crs.getString("value");
-            String signature = crs.getString("signature");
-            SkinVariant variant = SkinVariant.valueOf(crs.getString("skin_variant"));
+        try {
+            return mysql.queryFirst(statements().selectURLSkin, crs -> {
+                String mineSkinId = crs.getString("mine_skin_id");
+                SkinVariant variant = SkinVariant.valueOf(crs.getString("skin_variant"));
 
-            return Optional.of(URLSkinData.of(url, mineSkinId, SkinProperty.of(value, signature), variant));
+                return URLSkinData.of(url, mineSkinId, readProperty(crs), variant);
+            }, url, skinVariant.name());
         } catch (SQLException e) {
             throw new StorageException(e);
         }
@@ -306,33 +424,23 @@ public class MySQLAdapter implements StorageAdapter {
 
     @Override
     public void removeURLSkinData(String url, SkinVariant skinVariant) {
-        mysql.execute("DELETE FROM " + resolveURLSkinTable() + " WHERE url=? AND skin_variant=?", url, skinVariant.name());
+        executeLogged(Invalidation.urlSkin(url, skinVariant), statements().deleteURLSkin, url, skinVariant.name());
     }
 
     @Override
     public void setURLSkinData(String url, URLSkinData skinData) {
-        mysql.execute("INSERT INTO " + resolveURLSkinTable() + " (url, mine_skin_id, value, signature, skin_variant) VALUES (?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE mine_skin_id=?, value=?, signature=?, skin_variant=?",
+        executeLogged(Invalidation.urlSkin(url, skinData.getSkinVariant()), statements().upsertURLSkin,
                 url,
                 skinData.getMineSkinId(),
-                skinData.getProperty().getValue(),
-                skinData.getProperty().getSignature(),
-                skinData.getSkinVariant().name(),
-                skinData.getMineSkinId(),
-                skinData.getProperty().getValue(),
-                skinData.getProperty().getSignature(),
+                storeTexture(skinData.getProperty()),
                 skinData.getSkinVariant().name());
     }
 
     @Override
     public Optional<URLIndexData> getURLSkinIndex(String url) throws StorageException {
-        try (ResultSet crs = mysql.query("SELECT * FROM " + resolveURLSkinIndexTable() + " WHERE url=?", url)) {
-            if (!crs.next()) {
-                return Optional.empty();
-            }
-
-            SkinVariant variant = SkinVariant.valueOf(crs.getString("skin_variant"));
-
-            return Optional.of(URLIndexData.of(url, variant));
+        try {
+            return mysql.queryFirst(statements().selectURLIndex,
+                    crs -> URLIndexData.of(url, SkinVariant.valueOf(crs.getString("skin_variant"))), url);
         } catch (SQLException e) {
             throw new StorageException(e);
         }
@@ -340,29 +448,22 @@ public class MySQLAdapter implements StorageAdapter {
 
     @Override
     public void removeURLSkinIndex(String url) {
-        mysql.execute("DELETE FROM " + resolveURLSkinIndexTable() + " WHERE url=?", url);
+        executeLogged(Invalidation.urlIndex(url), statements().deleteURLIndex, url);
     }
 
     @Override
     public void setURLSkinIndex(String url, URLIndexData skinData) {
-        mysql.execute("INSERT INTO " + resolveURLSkinIndexTable() + " (url, skin_variant) VALUES (?, ?) ON DUPLICATE KEY UPDATE skin_variant=?",
+        executeLogged(Invalidation.urlIndex(url), statements().upsertURLIndex,
                 url,
-                skinData.getSkinVariant().name(),
                 skinData.getSkinVariant().name());
     }
 
     @Override
     public Optional<CustomSkinData> getCustomSkinData(String skinName) throws StorageException {
-        skinName = CustomSkinData.sanitizeCustomSkinName(skinName);
-        try (ResultSet crs = mysql.query("SELECT * FROM " + resolveCustomSkinTable() + " WHERE name=?", skinName)) {
-            if (!crs.next()) {
-                return Optional.empty();
-            }
-
-            String value = crs.getString("value");
-            String signature = crs.getString("signature");
-
-            return Optional.of(CustomSkinData.of(skinName, SkinProperty.of(value, signature)));
+        String sanitizedName = CustomSkinData.sanitizeCustomSkinName(skinName);
+        try {
+            return mysql.queryFirst(statements().selectCustomSkin,
+                    crs -> CustomSkinData.of(sanitizedName, readProperty(crs)), sanitizedName);
         } catch (SQLException e) {
             throw new StorageException(e);
         }
@@ -371,32 +472,24 @@ public class MySQLAdapter implements StorageAdapter {
     @Override
     public void removeCustomSkinData(String skinName) {
         skinName = CustomSkinData.sanitizeCustomSkinName(skinName);
-        mysql.execute("DELETE FROM " + resolveCustomSkinTable() + " WHERE name=?", skinName);
+        executeLogged(Invalidation.customSkin(skinName), statements().deleteCustomSkin, skinName);
     }
 
     @Override
     public void setCustomSkinData(String skinName, CustomSkinData skinData) {
         skinName = CustomSkinData.sanitizeCustomSkinName(skinName);
-        mysql.execute("INSERT INTO " + resolveCustomSkinTable() + " (name, value, signature) VALUES (?, ?, ?) ON DUPLICATE KEY UPDATE value=?, signature=?",
+        executeLogged(Invalidation.customSkin(skinName), statements().upsertCustomSkin,
                 skinName,
-                skinData.getProperty().getValue(),
-                skinData.getProperty().getSignature(),
-                skinData.getProperty().getValue(),
-                skinData.getProperty().getSignature());
+                storeTexture(skinData.getProperty()));
     }
 
     @Override
     public Optional<LegacySkinData> getLegacySkinData(String skinName) throws StorageException {
-        if (tableExists(resolveLegacySkinTable())) {
-            try (ResultSet crs = mysql.query("SELECT * FROM " + resolveLegacySkinTable() + " WHERE name=?", skinName)) {
-                if (!crs.next()) {
-                    return Optional.empty();
-                }
-
-                String value = crs.getString("value");
-                String signature = crs.getString("signature");
-
-                return Optional.of(LegacySkinData.of(skinName, SkinProperty.of(value, signature)));
+        MySQLStatements sql = statements();
+        if (tableExists(sql.legacySkinTable)) {
+            try {
+                return mysql.queryFirst(sql.selectLegacySkin,
+                        crs -> LegacySkinData.of(skinName, SkinProperty.of(crs.getString("value"), crs.getString("signature"))), skinName);
             } catch (SQLException e) {
                 throw new StorageException(e);
             }
@@ -407,22 +500,19 @@ public class MySQLAdapter implements StorageAdapter {
 
     @Override
     public void removeLegacySkinData(String skinName) {
-        if (tableExists(resolveLegacySkinTable())) {
-            mysql.execute("DELETE FROM " + resolveLegacySkinTable() + " WHERE name=?", skinName);
+        MySQLStatements sql = statements();
+        if (tableExists(sql.legacySkinTable)) {
+            mysql.execute(sql.deleteLegacySkin, skinName);
         }
     }
 
     @Override
     public Optional<LegacyPlayerData> getLegacyPlayerData(String playerName) throws StorageException {
-        if (tableExists(resolveLegacyPlayerTable())) {
-            try (ResultSet crs = mysql.query("SELECT * FROM " + resolveLegacyPlayerTable() + " WHERE name=?", playerName)) {
-                if (!crs.next()) {
-                    return Optional.empty();
-                }
-
-                String skinName = crs.getString("skin_name");
-
-                return Optional.of(LegacyPlayerData.of(playerName, skinName));
+        MySQLStatements sql = statements();
+        if (tableExists(sql.legacyPlayerTable)) {
+            try {
+                return mysql.queryFirst(sql.selectLegacyPlayer,
+                        crs -> LegacyPlayerData.of(playerName, crs.getString("skin_name")), playerName);
             } catch (SQLException e) {
                 throw new StorageException(e);
             }
@@ -433,75 +523,142 @@ public class MySQLAdapter implements StorageAdapter {
 
     @Override
     public void removeLegacyPlayerData(String playerName) {
-        if (tableExists(resolveLegacyPlayerTable())) {
-            mysql.execute("DELETE FROM " + resolveLegacyPlayerTable() + " WHERE name=?", playerName);
+        MySQLStatements sql = statements();
+        if (tableExists(sql.legacyPlayerTable)) {
+            mysql.execute(sql.deleteLegacyPlayer, playerName);
         }
     }
 
     @SuppressFBWarnings(justification = "SQL injection is not possible here", value = {"SQL_PREPARED_STATEMENT_GENERATED_FROM_NONCONSTANT_STRING"})
     @Override
-    public Map<String, String> getStoredGUISkins(int offset) {
-        StringBuilder query = new StringBuilder("SELECT * FROM (");
-        query.append("SELECT 'player' as type, `last_known_name` as name, `value`, `signature`")
-                .append(" FROM ")
-                .append(resolvePlayerSkinTable());
-
-        if (settings.getProperty(GUIConfig.CUSTOM_GUI_ENABLED)) {
-            query.append(" UNION ALL ");
-
-            query.append("SELECT 'custom' as type, `name`, `value`, `signature`")
-                    .append(" FROM ")
-                    .append(resolveCustomSkinTable());
-
-            if (settings.getProperty(GUIConfig.CUSTOM_GUI_ONLY)) {
-                List<String> customSkins = settings.getProperty(GUIConfig.CUSTOM_GUI_SKINS);
-                if (!customSkins.isEmpty()) {
-                    query.append(" WHERE `name` IN (");
-                    List<String> sanitizedSkins = new ArrayList<>();
-                    for (String customSkin : customSkins) {
-                        sanitizedSkins.add("'" + CustomSkinData.sanitizeCustomSkinName(customSkin) + "'");
-                    }
-
-                    query.append(String.join(", ", sanitizedSkins));
-                    query.append(")");
+    public GUISkinPage getStoredGUISkins(@Nullable String cursor) {
+        MySQLStatements sql = statements();
+        GUISkinPage.Cursor after = GUISkinPage.Cursor.decode(cursor).orElse(null);
+        // One more than fits on a page, so the GUI knows whether there is a next page
+        int limit = SharedGUI.HEAD_COUNT_PER_PAGE + 1;
+        boolean customEnabled = settings.getProperty(GUIConfig.CUSTOM_GUI_ENABLED);
+        boolean customOnly = customEnabled && settings.getProperty(GUIConfig.CUSTOM_GUI_ONLY);
+
+        // Every branch seeks on its index and reads at most one page, no matter how deep the page is
+        List<String> branches = new ArrayList<>();
+        List<Object> vars = new ArrayList<>();
+        if (!customOnly) {
+            StringBuilder branch = new StringBuilder("SELECT `last_known_name` AS `name`, 'PLAYER' AS `type`, HEX(`uuid`) AS `id`, t.`value` FROM `")
+                    .append(sql.playerSkinTable)
+                    .append("` s")
+                    .append(sql.joinTexture())
+                    .append(" WHERE `last_known_name` IS NOT NULL");
+            appendKeyset(branch, vars, after, SkinType.PLAYER, "`last_known_name`", "HEX(`uuid`)");
+            branch.append(" ORDER BY `last_known_name`, `uuid` LIMIT ?");
+            vars.add(limit);
+            branches.add(branch.toString());
+        }
+
+        if (customEnabled) {
+            StringBuilder branch = new StringBuilder("SELECT `name`, 'CUSTOM' AS `type`, `name` AS `id`, t.`value` FROM `")
+                    .append(sql.customSkinTable)
+                    .append("` s")
+                    .append(sql.joinTexture())
+                    .append(" WHERE 1=1");
+
+            List<String> customSkins = settings.getProperty(GUIConfig.CUSTOM_GUI_SKINS);
+            if (customOnly && !customSkins.isEmpty()) {
+                branch.append(" AND `name` IN (").append(MySQLStatements.placeholders(customSkins.size())).append(")");
+                for (String customSkin : customSkins) {
+                    vars.add(CustomSkinData.sanitizeCustomSkinName(customSkin));
                 }
             }
+
+            appendKeyset(branch, vars, after, SkinType.CUSTOM, "`name`", "`name`");
+            branch.append(" ORDER BY `name` LIMIT ?");
+            vars.add(limit);
+            branches.add(branch.toString());
         }
 
-        query.append(") AS skins LIMIT ").append(offset).append(", ").append(SharedGUI.HEAD_COUNT_PER_PAGE);
+        // Each branch is wrapped in a derived table, a compound select may not contain ORDER BY or LIMIT in every database
+        StringJoiner union = new StringJoiner(" UNION ALL ");
+        for (int i = 0; i < branches.size(); i++) {
+            union.add("SELECT * FROM (" + branches.get(i) + ") AS `branch" + i + "`");
+        }
 
-        Map<String, String> skins = new LinkedHashMap<>();
-        try (ResultSet crs = mysql.query(query.toString())) {
-            while (crs.next()) {
-                String name = crs.getString("name");
-                String value = crs.getString("value");
-                String signature = crs.getString("signature");
+        String query = "SELECT `name`, `type`, `id`, `value` FROM (" + union + ") AS skins"
+                + " ORDER BY `name`, `type`, `id` LIMIT ?";
+        vars.add(limit);
 
-                skins.put(name, SkinProperty.of(value, signature).getValue());
-            }
+        try {
+            return GUISkinPage.fromEntries(mysql.queryList(query, GUI_SKIN_MAPPER, vars.toArray()),
+                    GUIRow::name, GUIRow::value, row -> new GUISkinPage.Cursor(row.name(), row.type(), row.id()));
         } catch (SQLException e) {
             logger.warning("Failed to get stored skins", e);
+            return GUISkinPage.of(Map.of(), null);
         }
-        return skins;
     }
 
-    @Override
-    public void purgeStoredOldSkins(long targetPurgeTimestamp) {
-        mysql.execute("DELETE FROM " + resolvePlayerSkinTable() + " WHERE timestamp NOT LIKE 0 AND timestamp<=?", targetPurgeTimestamp);
+    /**
+     * Only rows sorting after the cursor, compared by {@code (name, type, id)}.
+     * The type is constant within a branch, so the comparison only needs the indexed name column.
+     */
+    private static void appendKeyset(StringBuilder branch, List<Object> vars, @Nullable GUISkinPage.Cursor after,
+                                     SkinType type, String nameColumn, String idColumn) {
+        if (after == null) {
+            return;
+        }
+
+        int typeOrder = type.name().compareTo(after.type().name());
+        if (typeOrder > 0) {
+            branch.append(" AND ").append(nameColumn).append(" >= ?");
+            vars.add(after.name());
+        } else if (typeOrder < 0) {
+            branch.append(" AND ").append(nameColumn).append(" > ?");
+            vars.add(after.name());
+        } else {
+            branch.append(" AND (").append(nameColumn).append(" > ? OR (").append(nameColumn).append(" = ? AND ").append(idColumn).append(" > ?))");
+            vars.add(after.name());
+            vars.add(after.name());
+            vars.add(after.key());
+        }
     }
 
     @Override
-    public Optional<MojangCacheData> getCachedUUID(String playerName) throws StorageException {
-        try (ResultSet crs = mysql.query("SELECT * FROM " + resolveCacheTable() + " WHERE name=?", playerName)) {
-            if (!crs.next()) {
-                return Optional.empty();
+    public int purgeStoredOldSkins(long targetPurgeTimestamp, int limit) throws StorageException {
+        try {
+            int purged = mysql.update(statements().purgePlayerSkins, targetPurgeTimestamp, limit);
+            if (purged > 0) {
+                // Only known once the purge committed, a crash before this leaves remote caches until they expire
+                logChange(Invalidation.all(Invalidation.Type.PLAYER_SKIN));
             }
 
-            String uuidString = crs.getString("uuid");
-            UUID uuid = uuidString != null ? UUID.fromString(uuidString) : null;
-            long timestamp = crs.getLong("timestamp");
+            // Textures are shared, so only the last batch removes the ones no skin references anymore
+            if (purged < limit) {
+                long cutoff = System.currentTimeMillis() - TEXTURE_PURGE_MIN_AGE_MILLIS;
+                int textures = 0;
+                int removed;
+                do {
+                    removed = mysql.update(statements().purgeTextures, cutoff, limit);
+                    textures += removed;
+                } while (removed >= limit);
+
+                if (textures > 0) {
+                    logger.debug(String.format("Removed %d unused textures", textures));
+                }
+            }
 
-            return Optional.of(MojangCacheData.of(uuid, timestamp));
+            return purged;
+        } catch (SQLException e) {
+            throw new StorageException(e);
+        }
+    }
+
+    @Override
+    public Optional<MojangCacheData> getCachedUUID(String playerName) throws StorageException {
+        try {
+            return mysql.readFirst(playerName.toLowerCase(Locale.ROOT), statements().selectCache, crs -> {
+                byte[] uuidBytes = crs.getBytes("uuid");
+                UUID uuid = uuidBytes != null ? fromBytes(uuidBytes) : null;
+                long timestamp = crs.getLong("timestamp");
+
+                return MojangCacheData.of(uuid, timestamp);
+            }, playerName);
         } catch (SQLException e) {
             throw new StorageException(e);
         }
@@ -509,45 +666,69 @@ public class MySQLAdapter implements StorageAdapter {
 
     @Override
     public void setCachedUUID(String playerName, MojangCacheData mojangCacheData) {
-        String uuid = mojangCacheData.getUniqueId().map(UUID::toString).orElse(null);
-        mysql.execute("INSERT INTO " + resolveCacheTable() + " (name, uuid, timestamp) VALUES (?, ?, ?) ON DUPLICATE KEY UPDATE uuid=?, timestamp=?",
+        byte[] uuid = mojangCacheData.getUniqueId().map(MySQLAdapter::toBytes).orElse(null);
+        mysql.markWritten(playerName.toLowerCase(Locale.ROOT));
+        executeLogged(Invalidation.mojangCache(playerName), statements().upsertCache,
                 playerName,
                 uuid,
-                mojangCacheData.getTimestamp(),
-                uuid,
                 mojangCacheData.getTimestamp());
     }
 
-    private String resolveCustomSkinTable() {
-        return settings.getProperty(DatabaseConfig.MYSQL_TABLE_PREFIX) + "custom_skins";
-    }
-
-    private String resolveURLSkinTable() {
-        return settings.getProperty(DatabaseConfig.MYSQL_TABLE_PREFIX) + "url_skins";
+    /**
+     * @return whether other servers can share the database, so every change has to be written to the changelog
+     */
+    protected boolean isShared() {
+        return true;
     }
 
-    private String resolveURLSkinIndexTable() {
-        return settings.getProperty(DatabaseConfig.MYSQL_TABLE_PREFIX) + "url_index";
+    /**
+     * Polls the changelog for changes made by other servers.
+     */
+    public InvalidationTransport createChangelogTransport(long pollIntervalMillis) {
+        return new MySQLChangelog(mysql, this::statements, logger, pollIntervalMillis);
     }
 
-    private String resolvePlayerSkinTable() {
-        return settings.getProperty(DatabaseConfig.MYSQL_TABLE_PREFIX) + "player_skins";
-    }
+    /**
+     * Writes the row and its changelog entry in one transaction, so other servers can't miss a committed change.
+     */
+    private void executeLogged(Invalidation invalidation, @Language("sql") String query, Object... vars) {
+        if (!isShared()) {
+            mysql.execute(query, vars);
+            return;
+        }
 
-    private String resolvePlayerTable() {
-        return settings.getProperty(DatabaseConfig.MYSQL_TABLE_PREFIX) + "players";
+        try {
+            mysql.executeBatches(List.of(
+                    new SQLProvider.Batch(query, Collections.singletonList(vars)),
+                    changeBatch(List.of(invalidation))));
+        } catch (SQLException e) {
+            logger.warning("Database error: " + e.getMessage(), e);
+        }
     }
 
-    private String resolveCacheTable() {
-        return settings.getProperty(DatabaseConfig.MYSQL_TABLE_PREFIX) + "cache";
+    /**
+     * Runs after the write, so other servers that evict the entry load the new data.
+     * Only used where the write can't share its transaction, a crash in between leaves the change unpublished.
+     */
+    private void logChange(Invalidation invalidation) {
+        if (isShared()) {
+            mysql.execute(statements().insertChange, invalidation.type().getId(), invalidation.key(), System.currentTimeMillis());
+        }
     }
 
-    private String resolveLegacyPlayerTable() {
-        return settings.getProperty(DatabaseConfig.MYSQL_TABLE_PREFIX) + "legacy_players";
-    }
+    /**
+     * @return the changelog rows of the changes, none if the database is not shared
+     */
+    private SQLProvider.Batch changeBatch(Collection<Invalidation> invalidations) {
+        List<Object[]> rows = new ArrayList<>(invalidations.size());
+        if (isShared()) {
+            long now = System.currentTimeMillis();
+            for (Invalidation invalidation : invalidations) {
+                rows.add(new Object[]{invalidation.type().getId(), invalidation.key(), now});
+            }
+        }
 
-    private String resolveLegacySkinTable() {
-        return settings.getProperty(DatabaseConfig.MYSQL_TABLE_PREFIX) + "legacy_skins";
+        return new SQLProvider.Batch(statements().insertChange, rows);
     }
 
     private Optional<String> getLegacyPlayerTableFile() {
@@ -583,4 +764,7 @@ public class MySQLAdapter implements StorageAdapter {
     private Path getLegacySkinTableFilePath() {
         return plugin.getDataFolder().resolve("legacy_skin_table.txt");
     }
+
+    private record GUIRow(String name, SkinType type, String id, String value) {
+    }
 }
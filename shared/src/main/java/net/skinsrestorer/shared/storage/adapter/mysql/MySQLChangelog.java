@@ -0,0 +1,214 @@
+/*
+ * SkinsRestorer
+ * Copyright (C) 2024  SkinsRestorer Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.skinsrestorer.shared.storage.adapter.mysql;
+
+import net.skinsrestorer.shared.log.SRLogger;
+import net.skinsrestorer.shared.storage.adapter.cache.Invalidation;
+import net.skinsrestorer.shared.storage.adapter.cache.InvalidationTransport;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Tails the changelog table every server sharing the database writes its changes to.
+ * <p>
+ * Ids are assigned on insert but become visible on commit, so a lower id can show up after a higher one.
+ * Skipped ids are polled again for a while before they are given up as rolled back.
+ * Beyond {@value #MAX_TRACKED_GAPS} skipped ids, all caches are evicted instead of tracking more of them.
+ * Evicting an entry twice is harmless, so nothing has to be delivered exactly once.
+ */
+final class MySQLChangelog implements InvalidationTransport {
+    private static final int BATCH_SIZE = 1000;
+    private static final long GAP_TIMEOUT_MILLIS = 10_000;
+    private static final int MAX_TRACKED_GAPS = 10_000;
+    private static final long RETENTION_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final long PRUNE_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private final SQLProvider mysql;
+    private final Supplier<MySQLStatements> statements;
+    private final SRLogger logger;
+    private final long pollIntervalMillis;
+    private final TreeMap<Long, Long> gaps = new TreeMap<>();
+    private ScheduledExecutorService poller;
+    private Consumer<Invalidation> listener;
+    private long settledId;
+    private long maxSeenId;
+    private long lastPrune;
+    private long overflowNoticedAt;
+    private boolean failing;
+
+    MySQLChangelog(SQLProvider mysql, Supplier<MySQLStatements> statements, SRLogger logger, long pollIntervalMillis) {
+        this.mysql = mysql;
+        this.statements = statements;
+        this.logger = logger;
+        this.pollIntervalMillis = pollIntervalMillis;
+    }
+
+    @Override
+    public synchronized void start(Consumer<Invalidation> listener) {
+        this.listener = listener;
+        this.poller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "SkinsRestorer-Changelog");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            // The cache starts empty, so only changes from now on matter.
+            // Read before returning, otherwise writes right after start could be skipped.
+            settledId = mysql.queryFirst(statements.get().selectLatestChange, crs -> crs.getLong("id")).orElse(0L);
+            maxSeenId = settledId;
+        } catch (SQLException e) {
+            logger.warning("Failed to read the changelog, changes of other servers may show up late", e);
+        }
+
+        poller.scheduleWithFixedDelay(this::poll, pollIntervalMillis, pollIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void poll() {
+        try {
+            MySQLStatements sql = statements.get();
+            long cursor = settledId;
+            List<Change> changes;
+            do {
+                changes = mysql.queryList(sql.selectChanges,
+                        crs -> new Change(crs.getLong("id"), crs.getInt("type"), crs.getString("change_key")),
+                        cursor, BATCH_SIZE);
+                for (Change change : changes) {
+                    accept(change);
+                    cursor = change.id();
+                }
+            } while (changes.size() >= BATCH_SIZE);
+
+            settle();
+
+            long now = System.currentTimeMillis();
+            if (now - lastPrune >= PRUNE_INTERVAL_MILLIS) {
+                lastPrune = now;
+                mysql.update(sql.purgeChanges, now - RETENTION_MILLIS, BATCH_SIZE);
+            }
+
+            if (failing) {
+                failing = false;
+                logger.info("Reading the changelog works again");
+            }
+        } catch (SQLException e) {
+            if (!failing) {
+                failing = true;
+                logger.warning("Failed to read the changelog, changes of other servers may show up late", e);
+            }
+        } catch (RuntimeException e) {
+            logger.severe("Failed to apply the changelog", e);
+        }
+    }
+
+    private void accept(Change change) {
+        if (change.id() <= maxSeenId) {
+            // Already delivered, unless it is one of the ids that were missing before
+            if (gaps.remove(change.id()) == null) {
+                return;
+            }
+        } else {
+            long now = System.currentTimeMillis();
+            for (long id = maxSeenId + 1; id < change.id(); id++) {
+                if (gaps.size() >= MAX_TRACKED_GAPS) {
+                    // The untracked ids would be dropped if they show up later, so evict everything now
+                    // and once more when they would have been given up
+                    if (overflowNoticedAt == 0) {
+                        evictAll();
+                    }
+
+                    overflowNoticedAt = now;
+                    break;
+                }
+
+                gaps.put(id, now);
+            }
+
+            maxSeenId = change.id();
+        }
+
+        Invalidation.Type type = Invalidation.Type.fromId(change.type());
+        if (type == null) {
+            // Written by a newer version, evicting everything is always correct
+            evictAll();
+            return;
+        }
+
+        Invalidation invalidation = new Invalidation(type, change.key());
+        markWritten(invalidation);
+        listener.accept(invalidation);
+    }
+
+    /**
+     * The load after the eviction has to see the remote write, but the replica router only knows about local writes.
+     * Uses the same routing keys as {@link MySQLAdapter}.
+     */
+    private void markWritten(Invalidation invalidation) {
+        if (invalidation.isAll()) {
+            return;
+        }
+
+        switch (invalidation.type()) {
+            case PLAYER, PLAYER_SKIN -> {
+                try {
+                    mysql.markWritten(UUID.fromString(invalidation.key()));
+                } catch (IllegalArgumentException ignored) {
+                    // Not written by us, nothing reads it under this key
+                }
+            }
+            case MOJANG_CACHE -> mysql.markWritten(invalidation.key().toLowerCase(Locale.ROOT));
+            default -> {
+            }
+        }
+    }
+
+    private void evictAll() {
+        for (Invalidation.Type type : Invalidation.Type.values()) {
+            listener.accept(Invalidation.all(type));
+        }
+    }
+
+    private void settle() {
+        long now = System.currentTimeMillis();
+        if (overflowNoticedAt != 0 && now - overflowNoticedAt >= GAP_TIMEOUT_MILLIS) {
+            overflowNoticedAt = 0;
+            evictAll();
+        }
+
+        gaps.values().removeIf(noticedAt -> now - noticedAt >= GAP_TIMEOUT_MILLIS);
+        settledId = gaps.isEmpty() ? maxSeenId : gaps.firstKey() - 1;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (poller != null) {
+            poller.shutdownNow();
+        }
+    }
+
+    private record Change(long id, int type, String key) {
+    }
+}
@@ -18,11 +18,9 @@
 package net.skinsrestorer.shared.storage.adapter.mysql;
 
 import ch.jalu.configme.SettingsManager;
-import lombok.RequiredArgsConstructor;
 import net.skinsrestorer.shared.config.DatabaseConfig;
 import net.skinsrestorer.shared.log.SRLogger;
-import net.skinsrestorer.shared.plugin.SRPlugin;
-import org.intellij.lang.annotations.Language;
+import org.jetbrains.annotations.Nullable;
 import org.mariadb.jdbc.Configuration;
 import org.mariadb.jdbc.pool.Pool;
 import org.mariadb.jdbc.pool.Pools;
@@ -32,69 +30,131 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
-@RequiredArgsConstructor(onConstructor_ = @Inject)
-public class MySQLProvider {
-    private final SRLogger logger;
+public class MySQLProvider extends SQLProvider {
     private final SettingsManager settings;
     private Pool pool;
+    @Nullable
+    private MySQLReplicaRouter replicaRouter;
+
+    @Inject
+    public MySQLProvider(SRLogger logger, SettingsManager settings) {
+        super(logger);
+        this.settings = settings;
+    }
 
     public void initPool() throws SQLException {
         String host = settings.getProperty(DatabaseConfig.MYSQL_HOST);
+        int port = settings.getProperty(DatabaseConfig.MYSQL_PORT);
+
+        pool = createPool(host + ":" + port);
+
+        List<MySQLReplicaRouter.Replica> replicas = new ArrayList<>();
+        for (String replicaHost : settings.getProperty(DatabaseConfig.MYSQL_REPLICA_HOSTS)) {
+            String address = replicaHost.contains(":") ? replicaHost : replicaHost + ":" + port;
+            replicas.add(new MySQLReplicaRouter.Replica(address, createPool(address)));
+        }
+
+        if (!replicas.isEmpty()) {
+            logger.info(String.format("Reading from %d MySQL read replica(s)", replicas.size()));
+            replicaRouter = new MySQLReplicaRouter(replicas, logger,
+                    settings.getProperty(DatabaseConfig.MYSQL_REPLICA_READ_YOUR_WRITES_MILLIS),
+                    settings.getProperty(DatabaseConfig.MYSQL_REPLICA_MAX_LAG_SECONDS));
+        }
+    }
+
+    private Pool createPool(String address) throws SQLException {
         String username = settings.getProperty(DatabaseConfig.MYSQL_USERNAME);
         String password = settings.getProperty(DatabaseConfig.MYSQL_PASSWORD);
         String database = settings.getProperty(DatabaseConfig.MYSQL_DATABASE);
-        int port = settings.getProperty(DatabaseConfig.MYSQL_PORT);
         int maxPoolSize = settings.getProperty(DatabaseConfig.MYSQL_MAX_POOL_SIZE);
         String options = settings.getProperty(DatabaseConfig.MYSQL_CONNECTION_OPTIONS);
 
-        Configuration configuration = Configuration.parse("jdbc:mysql://" + host + ":" + port + "/" + database +
+        Configuration configuration = Configuration.parse("jdbc:mysql://" + address + "/" + database +
                 "?permitMysqlScheme" +
                 "&maxPoolSize=" + maxPoolSize +
+                "&useBulkStmts=true" +
                 "&" + options);
 
-        pool = Pools.retrievePool(configuration.clone(username, password));
+        return Pools.retrievePool(configuration.clone(username, password));
     }
 
-    public void execute(@Language("sql") final String query, final Object... vars) {
-        try (Connection connection = pool.getPoolConnection().getConnection()) {
-            try (PreparedStatement ps = connection.prepareStatement(query)) {
-                fillPreparedStatement(ps, vars);
+    @Override
+    public SQLDialect getDialect() {
+        return SQLDialect.MYSQL;
+    }
 
-                ps.execute();
-            }
-        } catch (SQLException e) {
-            if (e.getErrorCode() == 1060) {
-                return;
-            }
+    @Override
+    protected Connection getConnection(boolean write) throws SQLException {
+        return pool.getPoolConnection().getConnection();
+    }
 
-            logger.warning("MySQL error: " + e.getMessage(), e);
+    @Override
+    public void shutdown() {
+        if (replicaRouter != null) {
+            replicaRouter.close();
+        }
+    }
 
-            if (SRPlugin.isUnitTest()) {
-                throw new AssertionError(e);
-            }
+    /**
+     * Reads of these keys go to the primary for a short while, so a replica that is behind can not return stale data.
+     */
+    @Override
+    public void markWritten(Object key) {
+        if (replicaRouter != null) {
+            replicaRouter.markWritten(key);
         }
     }
 
-    public ResultSet query(@Language("sql") final String query, final Object... vars) throws SQLException {
-        try (Connection connection = pool.getPoolConnection().getConnection()) {
-            try (PreparedStatement ps = connection.prepareStatement(query)) {
-                fillPreparedStatement(ps, vars);
+    /**
+     * Uses {@code GET_LOCK}, which is held by the connection that took it.
+     * That connection is kept out of the pool until the task is done, so the task uses another one.
+     */
+    @Override
+    public void withLock(String name, int timeoutSeconds, LockedTask task) throws SQLException {
+        try (Connection connection = getConnection(true)) {
+            try (PreparedStatement ps = connection.prepareStatement("SELECT GET_LOCK(CONCAT(DATABASE(), '.', ?), ?)")) {
+                ps.setString(1, name);
+                ps.setInt(2, timeoutSeconds);
 
-                return ps.executeQuery();
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (!rs.next() || rs.getInt(1) != 1) {
+                        throw new SQLException("Timed out waiting for database lock " + name);
+                    }
+                }
+            }
+
+            try {
+                task.run();
+            } finally {
+                try (PreparedStatement ps = connection.prepareStatement("SELECT RELEASE_LOCK(CONCAT(DATABASE(), '.', ?))")) {
+                    ps.setString(1, name);
+                    ps.executeQuery().close();
+                }
             }
         }
     }
 
-    private void fillPreparedStatement(PreparedStatement ps, Object... vars) throws SQLException {
-        int i = 0;
-        for (Object obj : vars) {
-            i++;
-            try {
-                ps.setObject(i, obj);
-            } catch (SQLException e) {
-                throw new SQLException("Error while setting prepared statement variable #" + i + " (" + obj + "): " + e.getMessage());
+    /**
+     * Reads from a replica unless one of the keys was written recently.
+     */
+    @Override
+    protected <T> T read(Collection<?> routingKeys, ConnectionQuery<T> query) throws SQLException {
+        if (replicaRouter != null) {
+            Optional<MySQLReplicaRouter.Replica> replica = replicaRouter.route(routingKeys);
+            if (replica.isPresent()) {
+                try {
+                    return query.run(() -> replica.get().getPool().getPoolConnection().getConnection());
+                } catch (SQLException e) {
+                    replicaRouter.markFailed(replica.get(), e);
+                }
             }
         }
+
+        return super.read(routingKeys, query);
     }
 }
@@ -0,0 +1,177 @@
+/*
+ * SkinsRestorer
+ * Copyright (C) 2024  SkinsRestorer Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.skinsrestorer.shared.storage.adapter.mysql;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import net.skinsrestorer.shared.log.SRLogger;
+import org.mariadb.jdbc.pool.Pool;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Routes reads to healthy read replicas in turn.
+ * Keys that were written recently are read from the primary, so players always see their own changes,
+ * and replicas that fail or lag behind are skipped until a later health check passes.
+ */
+final class MySQLReplicaRouter {
+    private static final long HEALTH_CHECK_INTERVAL_SECONDS = 5;
+    private static final long FAILURE_BACKOFF_MILLIS = 30_000;
+    private static final int MAX_TRACKED_WRITES = 10_000;
+    private final List<Replica> replicas;
+    private final SRLogger logger;
+    private final long readYourWritesMillis;
+    private final long maxLagSeconds;
+    private final Map<Object, Long> recentWrites = new ConcurrentHashMap<>();
+    private final AtomicInteger next = new AtomicInteger();
+    private final ScheduledExecutorService healthChecker;
+
+    MySQLReplicaRouter(List<Replica> replicas, SRLogger logger, long readYourWritesMillis, long maxLagSeconds) {
+        this.replicas = replicas;
+        this.logger = logger;
+        this.readYourWritesMillis = readYourWritesMillis;
+        this.maxLagSeconds = maxLagSeconds;
+        this.healthChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "SkinsRestorer-ReplicaHealth");
+            thread.setDaemon(true);
+            return thread;
+        });
+        healthChecker.scheduleWithFixedDelay(this::checkHealth, 0, HEALTH_CHECK_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @return the replica to read the keys from, or empty if the primary should be used
+     */
+    Optional<Replica> route(Collection<?> keys) {
+        long now = System.currentTimeMillis();
+        for (Object key : keys) {
+            Long writtenAt = recentWrites.get(key);
+            if (writtenAt != null && now - writtenAt < readYourWritesMillis) {
+                return Optional.empty();
+            }
+        }
+
+        int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get((start + i) % replicas.size());
+            if (replica.isHealthy(now)) {
+                return Optional.of(replica);
+            }
+        }
+
+        return Optional.empty();
+    }
+
+    void markWritten(Object key) {
+        long now = System.currentTimeMillis();
+        recentWrites.put(key, now);
+
+        if (recentWrites.size() > MAX_TRACKED_WRITES) {
+            recentWrites.values().removeIf(writtenAt -> now - writtenAt >= readYourWritesMillis);
+        }
+    }
+
+    void markFailed(Replica replica, SQLException e) {
+        if (replica.isHealthy(System.currentTimeMillis())) {
+            logger.warning(String.format("Read replica %s failed, using the primary instead: %s", replica.getName(), e.getMessage()));
+        }
+
+        replica.unhealthyUntil = System.currentTimeMillis() + FAILURE_BACKOFF_MILLIS;
+    }
+
+    private void checkHealth() {
+        for (Replica replica : replicas) {
+            try (Connection connection = replica.getPool().getPoolConnection().getConnection();
+                 Statement statement = connection.createStatement()) {
+                Optional<Long> lag = readLagSeconds(statement);
+                if (lag.isPresent() && lag.get() > maxLagSeconds) {
+                    logger.debug(String.format("Read replica %s is %d seconds behind, skipping it", replica.getName(), lag.get()));
+                    replica.unhealthyUntil = Long.MAX_VALUE;
+                } else {
+                    replica.unhealthyUntil = 0;
+                }
+            } catch (SQLException e) {
+                markFailed(replica, e);
+            }
+        }
+    }
+
+    /**
+     * @return the replication lag, or empty if it can not be read, for example because of missing privileges
+     */
+    private static Optional<Long> readLagSeconds(Statement statement) throws SQLException {
+        // SHOW REPLICA STATUS on newer servers, SHOW SLAVE STATUS on older ones
+        for (String query : new String[]{"SHOW REPLICA STATUS", "SHOW SLAVE STATUS"}) {
+            try (ResultSet rs = statement.executeQuery(query)) {
+                if (!rs.next()) {
+                    return Optional.empty();
+                }
+
+                for (String column : new String[]{"Seconds_Behind_Source", "Seconds_Behind_Master"}) {
+                    try {
+                        long lag = rs.getLong(column);
+                        // Null while replication is stopped
+                        return Optional.of(rs.wasNull() ? Long.MAX_VALUE : lag);
+                    } catch (SQLException ignored) {
+                    }
+                }
+
+                return Optional.empty();
+            } catch (SQLException e) {
+                if (e.getErrorCode() == 1227) { // Access denied, only check whether the replica is reachable
+                    statement.execute("SELECT 1");
+                    return Optional.empty();
+                }
+            }
+        }
+
+        statement.execute("SELECT 1");
+        return Optional.empty();
+    }
+
+    void close() {
+        healthChecker.shutdownNow();
+        for (Replica replica : replicas) {
+            replica.getPool().close();
+        }
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    static final class Replica {
+        private final String name;
+        private final Pool pool;
+        private volatile long unhealthyUntil;
+
+        boolean isHealthy(long now) {
+            return now >= unhealthyUntil;
+        }
+    }
+}
@@ -0,0 +1,423 @@
+/*
+ * SkinsRestorer
+ * Copyright (C) 2024  SkinsRestorer Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.skinsrestorer.shared.storage.adapter.mysql;
+
+import lombok.RequiredArgsConstructor;
+import net.skinsrestorer.api.property.SkinProperty;
+import net.skinsrestorer.shared.log.SRLogger;
+import net.skinsrestorer.shared.storage.adapter.codec.RecordCodec;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * Versioned MySQL schema. The applied version is stored in the schema version table
+ * and every migration runs exactly once, in order.
+ * Servers sharing the database take a lock before migrating, so only one of them runs the migrations.
+ */
+@RequiredArgsConstructor
+final class MySQLSchema {
+    static final int LATEST_VERSION = 4;
+    private static final int MIGRATION_LOCK_TIMEOUT_SECONDS = 600;
+    private final SQLProvider mysql;
+    private final MySQLStatements sql;
+    private final SRLogger logger;
+
+    void migrate() throws SQLException {
+        mysql.update("CREATE TABLE IF NOT EXISTS `" + sql.schemaVersionTable + "` ("
+                + "`version` INT NOT NULL,"
+                + "PRIMARY KEY (`version`))" + sql.dialect.tableOptions());
+
+        if (readVersion() >= LATEST_VERSION) {
+            return;
+        }
+
+        // Another server may have migrated while this one waited for the lock
+        mysql.withLock(sql.schemaVersionTable, MIGRATION_LOCK_TIMEOUT_SECONDS, () -> migrateFrom(readVersion()));
+    }
+
+    private int readVersion() throws SQLException {
+        return mysql.queryFirst("SELECT COALESCE(MAX(`version`), 0) AS `version` FROM `" + sql.schemaVersionTable + "`",
+                crs -> crs.getInt("version")).orElse(0);
+    }
+
+    private void migrateFrom(int version) throws SQLException {
+        if (version == 0 && sql.dialect == SQLDialect.SQLITE) {
+            // A new embedded database holds no data of older versions, so it starts with the latest layout
+            createSQLiteTables();
+            setVersion(LATEST_VERSION);
+            return;
+        }
+
+        if (version < 1) {
+            createV1Tables();
+            setVersion(1);
+        }
+
+        if (version < 2) {
+            logger.info("Migrating MySQL tables to binary uuids and textures, this may take a while on large databases...");
+            migrateV2();
+            setVersion(2);
+            logger.info("MySQL table migration complete!");
+        }
+
+        if (version < 3) {
+            logger.info("Moving MySQL skin textures into a shared table, this may take a while on large databases...");
+            migrateV3();
+            setVersion(3);
+            logger.info("MySQL texture migration complete!");
+        }
+
+        if (version < 4) {
+            migrateV4();
+            setVersion(4);
+        }
+    }
+
+    private void setVersion(int version) throws SQLException {
+        mysql.update("INSERT INTO `" + sql.schemaVersionTable + "` (`version`) VALUES (?)", version);
+    }
+
+    /**
+     * The same layout the MySQL migrations end up with. Names compare case-insensitively like in MySQL,
+     * so lookups and the GUI order behave the same on both databases.
+     */
+    private void createSQLiteTables() throws SQLException {
+        mysql.update("CREATE TABLE IF NOT EXISTS `" + sql.cacheTable + "` ("
+                + "`name` VARCHAR(16) NOT NULL COLLATE NOCASE,"
+                + "`uuid` BLOB,"
+                + "`timestamp` BIGINT NOT NULL,"
+                + "PRIMARY KEY (`name`))");
+
+        mysql.update("CREATE TABLE IF NOT EXISTS `" + sql.playerTable + "` ("
+                + "`uuid` BLOB NOT NULL,"
+                + "`skin_identifier` VARCHAR(2083),"
+                + "`skin_variant` VARCHAR(20),"
+                + "`skin_type` VARCHAR(20),"
+                + "PRIMARY KEY (`uuid`))");
+
+        mysql.update("CREATE TABLE IF NOT EXISTS `" + sql.textureTable + "` ("
+                + "`hash` BLOB NOT NULL,"
+                + "`value` BLOB NOT NULL,"
+                + "`signature` BLOB NOT NULL,"
+                + "`last_used` BIGINT NOT NULL,"
+                + "PRIMARY KEY (`hash`))");
+        createSQLiteIndex(sql.textureTable, "last_used");
+
+        mysql.update("CREATE TABLE IF NOT EXISTS `" + sql.playerSkinTable + "` ("
+                + "`uuid` BLOB NOT NULL,"
+                + "`last_known_name` VARCHAR(16) COLLATE NOCASE,"
+                + "`texture_hash` BLOB NOT NULL,"
+                + "`timestamp` BIGINT NOT NULL,"
+                + "PRIMARY KEY (`uuid`))");
+        createSQLiteIndex(sql.playerSkinTable, "timestamp");
+        createSQLiteIndex(sql.playerSkinTable, "last_known_name");
+        createSQLiteIndex(sql.playerSkinTable, "texture_hash");
+
+        mysql.update("CREATE TABLE IF NOT EXISTS `" + sql.urlSkinTable + "` ("
+                + "`url` VARCHAR(266) NOT NULL,"
+                + "`mine_skin_id` VARCHAR(36),"
+                + "`texture_hash` BLOB NOT NULL,"
+                + "`skin_variant` VARCHAR(20),"
+                + "PRIMARY KEY (`url`))");
+        createSQLiteIndex(sql.urlSkinTable, "texture_hash");
+
+        mysql.update("CREATE TABLE IF NOT EXISTS `" + sql.urlIndexTable + "` ("
+                + "`url` VARCHAR(266) NOT NULL,"
+                + "`skin_variant` VARCHAR(20),"
+                + "PRIMARY KEY (`url`))");
+
+        mysql.update("CREATE TABLE IF NOT EXISTS `" + sql.customSkinTable + "` ("
+                + "`name` VARCHAR(36) NOT NULL COLLATE NOCASE,"
+                + "`texture_hash` BLOB NOT NULL,"
+                + "PRIMARY KEY (`name`))");
+        createSQLiteIndex(sql.customSkinTable, "texture_hash");
+
+        mysql.update("CREATE TABLE IF NOT EXISTS `" + sql.changelogTable + "` ("
+                + "`id` INTEGER PRIMARY KEY AUTOINCREMENT,"
+                + "`type` TINYINT NOT NULL,"
+                + "`change_key` VARCHAR(300) NOT NULL,"
+                + "`created` BIGINT NOT NULL)");
+        createSQLiteIndex(sql.changelogTable, "created");
+    }
+
+    private void createSQLiteIndex(String table, String column) throws SQLException {
+        // Index names are global in SQLite
+        mysql.update("CREATE INDEX IF NOT EXISTS `" + table + "_" + column + "` ON `" + table + "` (`" + column + "`)");
+    }
+
+    /**
+     * The original schema, existing tables are kept as they are.
+     */
+    private void createV1Tables() throws SQLException {
+        mysql.update("CREATE TABLE IF NOT EXISTS `" + sql.cacheTable + "` ("
+                + "`name` VARCHAR(16) NOT NULL,"
+                + "`uuid` VARCHAR(36),"
+                + "`timestamp` BIGINT(20) NOT NULL,"
+                + "PRIMARY KEY (`name`)) ENGINE=InnoDB DEFAULT CHARSET=utf8");
+
+        mysql.update("CREATE TABLE IF NOT EXISTS `" + sql.playerTable + "` ("
+                + "`uuid` VARCHAR(36) NOT NULL,"
+                + "`skin_identifier` VARCHAR(2083),"
+                + "`skin_variant` VARCHAR(20),"
+                + "`skin_type` VARCHAR(20),"
+                + "PRIMARY KEY (`uuid`)) ENGINE=InnoDB DEFAULT CHARSET=utf8");
+
+        mysql.update("CREATE TABLE IF NOT EXISTS `" + sql.playerSkinTable + "` ("
+                + "`uuid` VARCHAR(36) NOT NULL,"
+                + "`last_known_name` VARCHAR(16),"
+                + "`value` TEXT NOT NULL,"
+                + "`signature` TEXT NOT NULL,"
+                + "`timestamp` BIGINT(20) NOT NULL,"
+                + "PRIMARY KEY (`uuid`)) ENGINE=InnoDB DEFAULT CHARSET=utf8");
+
+        mysql.update("CREATE TABLE IF NOT EXISTS `" + sql.urlSkinTable + "` ("
+                + "`url` VARCHAR(266) NOT NULL," // Max chatbox command length
+                + "`mine_skin_id` VARCHAR(36),"
+                + "`value` TEXT NOT NULL,"
+                + "`signature` TEXT NOT NULL,"
+                + "`skin_variant` VARCHAR(20),"
+                + "PRIMARY KEY (`url`)) ENGINE=InnoDB DEFAULT CHARSET=utf8");
+
+        mysql.update("CREATE TABLE IF NOT EXISTS `" + sql.urlIndexTable + "` ("
+                + "`url` VARCHAR(266) NOT NULL," // Max chatbox command length
+                + "`skin_variant` VARCHAR(20),"
+                + "PRIMARY KEY (`url`)) ENGINE=InnoDB DEFAULT CHARSET=utf8");
+
+        mysql.update("CREATE TABLE IF NOT EXISTS `" + sql.customSkinTable + "` ("
+                + "`name` VARCHAR(36) NOT NULL,"
+                + "`value` TEXT NOT NULL,"
+                + "`signature` TEXT NOT NULL,"
+                + "PRIMARY KEY (`name`)) ENGINE=InnoDB DEFAULT CHARSET=utf8");
+    }
+
+    /**
+     * Stores uuids as BINARY(16) and textures base64 decoded, see {@link RecordCodec#encodeTexture(String)},
+     * and indexes the columns used by the GUI and purge.
+     * Each table is copied into a new table which then atomically replaces the old one,
+     * so an interrupted migration is simply repeated on the next start.
+     */
+    private void migrateV2() throws SQLException {
+        copyTable(sql.cacheTable, "uuid", "binary", "CREATE TABLE `%s` ("
+                        + "`name` VARCHAR(16) NOT NULL,"
+                        + "`uuid` BINARY(16),"
+                        + "`timestamp` BIGINT(20) NOT NULL,"
+                        + "PRIMARY KEY (`name`)) ENGINE=InnoDB DEFAULT CHARSET=utf8",
+                "SELECT `name`, `uuid`, `timestamp` FROM `%s`",
+                crs -> {
+                    String uuid = crs.getString("uuid");
+                    return new Object[]{crs.getString("name"), uuid == null ? null : MySQLAdapter.toBytes(UUID.fromString(uuid)), crs.getLong("timestamp")};
+                },
+                "INSERT INTO `%s` (`name`, `uuid`, `timestamp`) VALUES (?, ?, ?)");
+
+        copyTable(sql.playerTable, "uuid", "binary", "CREATE TABLE `%s` ("
+                        + "`uuid` BINARY(16) NOT NULL,"
+                        + "`skin_identifier` VARCHAR(2083),"
+                        + "`skin_variant` VARCHAR(20),"
+                        + "`skin_type` VARCHAR(20),"
+                        + "PRIMARY KEY (`uuid`)) ENGINE=InnoDB DEFAULT CHARSET=utf8",
+                "SELECT `uuid`, `skin_identifier`, `skin_variant`, `skin_type` FROM `%s`",
+                crs -> new Object[]{MySQLAdapter.toBytes(UUID.fromString(crs.getString("uuid"))),
+                        crs.getString("skin_identifier"), crs.getString("skin_variant"), crs.getString("skin_type")},
+                "INSERT INTO `%s` (`uuid`, `skin_identifier`, `skin_variant`, `skin_type`) VALUES (?, ?, ?, ?)");
+
+        copyTable(sql.playerSkinTable, "value", "blob", "CREATE TABLE `%s` ("
+                        + "`uuid` BINARY(16) NOT NULL,"
+                        + "`last_known_name` VARCHAR(16),"
+                        + "`value` BLOB NOT NULL,"
+                        + "`signature` VARBINARY(1024) NOT NULL,"
+                        + "`timestamp` BIGINT(20) NOT NULL,"
+                        + "PRIMARY KEY (`uuid`),"
+                        + "INDEX `idx_timestamp` (`timestamp`),"
+                        + "INDEX `idx_last_known_name` (`last_known_name`)) ENGINE=InnoDB DEFAULT CHARSET=utf8",
+                "SELECT `uuid`, `last_known_name`, `value`, `signature`, `timestamp` FROM `%s`",
+                crs -> new Object[]{MySQLAdapter.toBytes(UUID.fromString(crs.getString("uuid"))), crs.getString("last_known_name"),
+                        RecordCodec.encodeTexture(crs.getString("value")), RecordCodec.encodeTexture(crs.getString("signature")), crs.getLong("timestamp")},
+                "INSERT INTO `%s` (`uuid`, `last_known_name`, `value`, `signature`, `timestamp`) VALUES (?, ?, ?, ?, ?)");
+
+        copyTable(sql.urlSkinTable, "value", "blob", "CREATE TABLE `%s` ("
+                        + "`url` VARCHAR(266) NOT NULL," // Max chatbox command length
+                        + "`mine_skin_id` VARCHAR(36),"
+                        + "`value` BLOB NOT NULL,"
+                        + "`signature` VARBINARY(1024) NOT NULL,"
+                        + "`skin_variant` VARCHAR(20),"
+                        + "PRIMARY KEY (`url`)) ENGINE=InnoDB DEFAULT CHARSET=utf8",
+                "SELECT `url`, `mine_skin_id`, `value`, `signature`, `skin_variant` FROM `%s`",
+                crs -> new Object[]{crs.getString("url"), crs.getString("mine_skin_id"),
+                        RecordCodec.encodeTexture(crs.getString("value")), RecordCodec.encodeTexture(crs.getString("signature")), crs.getString("skin_variant")},
+                "INSERT INTO `%s` (`url`, `mine_skin_id`, `value`, `signature`, `skin_variant`) VALUES (?, ?, ?, ?, ?)");
+
+        copyTable(sql.customSkinTable, "value", "blob", "CREATE TABLE `%s` ("
+                        + "`name` VARCHAR(36) NOT NULL,"
+                        + "`value` BLOB NOT NULL,"
+                        + "`signature` VARBINARY(1024) NOT NULL,"
+                        + "PRIMARY KEY (`name`)) ENGINE=InnoDB DEFAULT CHARSET=utf8",
+                "SELECT `name`, `value`, `signature` FROM `%s`",
+                crs -> new Object[]{crs.getString("name"),
+                        RecordCodec.encodeTexture(crs.getString("value")), RecordCodec.encodeTexture(crs.getString("signature"))},
+                "INSERT INTO `%s` (`name`, `value`, `signature`) VALUES (?, ?, ?)");
+    }
+
+    /**
+     * Moves the textures of player, URL and custom skins into a texture table keyed by their hash,
+     * so a texture used by many skins is stored once. {@code last_used} lets the purge skip textures
+     * that were just referenced again while it looks for unreferenced ones.
+     */
+    private void migrateV3() throws SQLException {
+        mysql.update("CREATE TABLE IF NOT EXISTS `" + sql.textureTable + "` ("
+                + "`hash` BINARY(32) NOT NULL,"
+                + "`value` BLOB NOT NULL,"
+                + "`signature` VARBINARY(1024) NOT NULL,"
+                + "`last_used` BIGINT(20) NOT NULL,"
+                + "PRIMARY KEY (`hash`),"
+                + "INDEX `idx_last_used` (`last_used`)) ENGINE=InnoDB");
+
+        copyTexturedTable(sql.playerSkinTable, "CREATE TABLE `%s` ("
+                        + "`uuid` BINARY(16) NOT NULL,"
+                        + "`last_known_name` VARCHAR(16),"
+                        + "`texture_hash` BINARY(32) NOT NULL,"
+                        + "`timestamp` BIGINT(20) NOT NULL,"
+                        + "PRIMARY KEY (`uuid`),"
+                        + "INDEX `idx_timestamp` (`timestamp`),"
+                        + "INDEX `idx_last_known_name` (`last_known_name`),"
+                        + "INDEX `idx_texture_hash` (`texture_hash`)) ENGINE=InnoDB DEFAULT CHARSET=utf8",
+                "SELECT `uuid`, `last_known_name`, `value`, `signature`, `timestamp` FROM `%s`",
+                (crs, hash) -> new Object[]{crs.getBytes("uuid"), crs.getString("last_known_name"), hash, crs.getLong("timestamp")},
+                "INSERT INTO `%s` (`uuid`, `last_known_name`, `texture_hash`, `timestamp`) VALUES (?, ?, ?, ?)");
+
+        copyTexturedTable(sql.urlSkinTable, "CREATE TABLE `%s` ("
+                        + "`url` VARCHAR(266) NOT NULL," // Max chatbox command length
+                        + "`mine_skin_id` VARCHAR(36),"
+                        + "`texture_hash` BINARY(32) NOT NULL,"
+                        + "`skin_variant` VARCHAR(20),"
+                        + "PRIMARY KEY (`url`),"
+                        + "INDEX `idx_texture_hash` (`texture_hash`)) ENGINE=InnoDB DEFAULT CHARSET=utf8",
+                "SELECT `url`, `mine_skin_id`, `value`, `signature`, `skin_variant` FROM `%s`",
+                (crs, hash) -> new Object[]{crs.getString("url"), crs.getString("mine_skin_id"), hash, crs.getString("skin_variant")},
+                "INSERT INTO `%s` (`url`, `mine_skin_id`, `texture_hash`, `skin_variant`) VALUES (?, ?, ?, ?)");
+
+        copyTexturedTable(sql.customSkinTable, "CREATE TABLE `%s` ("
+                        + "`name` VARCHAR(36) NOT NULL,"
+                        + "`texture_hash` BINARY(32) NOT NULL,"
+                        + "PRIMARY KEY (`name`),"
+                        + "INDEX `idx_texture_hash` (`texture_hash`)) ENGINE=InnoDB DEFAULT CHARSET=utf8",
+                "SELECT `name`, `value`, `signature` FROM `%s`",
+                (crs, hash) -> new Object[]{crs.getString("name"), hash},
+                "INSERT INTO `%s` (`name`, `texture_hash`) VALUES (?, ?)");
+    }
+
+    /**
+     * Adds the changelog other servers sharing the database poll to evict changed entries from their caches.
+     * The id only grows, so every server remembers the last id it has seen.
+     */
+    private void migrateV4() throws SQLException {
+        mysql.update("CREATE TABLE IF NOT EXISTS `" + sql.changelogTable + "` ("
+                + "`id` BIGINT(20) NOT NULL AUTO_INCREMENT,"
+                + "`type` TINYINT NOT NULL,"
+                + "`change_key` VARCHAR(300) NOT NULL," // Longest key is an url skin with its variant
+                + "`created` BIGINT(20) NOT NULL,"
+                + "PRIMARY KEY (`id`),"
+                + "INDEX `idx_created` (`created`)) ENGINE=InnoDB DEFAULT CHARSET=utf8");
+    }
+
+    /**
+     * Copies all rows into a new table which then atomically replaces the old one.
+     *
+     * @param markerColumn a column whose type tells whether the table was already copied,
+     *                     in case the migration was interrupted after some of the tables were done
+     */
+    private void copyTable(String table, String markerColumn, String markerType, String create, String select,
+                           RowMapper<Object[]> mapper, String insert) throws SQLException {
+        copyTable(table, markerColumn, markerType, create, newTable -> {
+            try (SQLProvider.BatchWriter writer = mysql.batchWriter(insert.formatted(newTable))) {
+                copyRows(table, select, mapper, writer);
+            }
+        });
+    }
+
+    /**
+     * Like {@link #copyTable(String, String, String, String, String, RowMapper, String)},
+     * but moves the texture of every row into the texture table and passes its hash to the mapper.
+     */
+    private void copyTexturedTable(String table, String create, String select, TexturedRowMapper mapper, String insert) throws SQLException {
+        long now = System.currentTimeMillis();
+        copyTable(table, "texture_hash", "binary", create, newTable -> {
+            // Both writers are flushed before the tables are swapped
+            try (SQLProvider.BatchWriter textures = mysql.batchWriter(sql.upsertTexture);
+                 SQLProvider.BatchWriter writer = mysql.batchWriter(insert.formatted(newTable))) {
+                copyRows(table, select, crs -> {
+                    byte[] value = crs.getBytes("value");
+                    byte[] signature = crs.getBytes("signature");
+                    byte[] hash = RecordCodec.hashTexture(SkinProperty.of(RecordCodec.decodeTexture(value), RecordCodec.decodeTexture(signature)));
+                    textures.add(new Object[]{hash, value, signature, now});
+                    return mapper.map(crs, hash);
+                }, writer);
+            }
+        });
+    }
+
+    private void copyTable(String table, String markerColumn, String markerType, String create, TableCopy copy) throws SQLException {
+        String newTable = table + "_new";
+        String oldTable = table + "_old";
+        mysql.update("DROP TABLE IF EXISTS `" + newTable + "`");
+        mysql.update("DROP TABLE IF EXISTS `" + oldTable + "`");
+
+        if (markerType.equals(columnType(table, markerColumn))) {
+            return;
+        }
+
+        mysql.update(create.formatted(newTable));
+
+        copy.run(newTable);
+
+        mysql.update("RENAME TABLE `" + table + "` TO `" + oldTable + "`, `" + newTable + "` TO `" + table + "`");
+        mysql.update("DROP TABLE `" + oldTable + "`");
+    }
+
+    private void copyRows(String table, String select, RowMapper<Object[]> mapper, SQLProvider.BatchWriter writer) throws SQLException {
+        mysql.queryStream(select.formatted(table), crs -> {
+            try {
+                return mapper.map(crs);
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                logger.warning("Skipping invalid row in table " + table + ": " + e.getMessage());
+                return null;
+            }
+        }, row -> {
+            if (row != null) {
+                writer.add(row);
+            }
+        });
+    }
+
+    private String columnType(String table, String column) throws SQLException {
+        return mysql.queryFirst("SELECT `DATA_TYPE` FROM information_schema.COLUMNS WHERE TABLE_SCHEMA=DATABASE() AND TABLE_NAME=? AND COLUMN_NAME=?",
+                crs -> crs.getString("DATA_TYPE").toLowerCase(Locale.ROOT), table, column).orElse(null);
+    }
+
+    @FunctionalInterface
+    private interface TableCopy {
+        void run(String newTable) throws SQLException;
+    }
+
+    @FunctionalInterface
+    private interface TexturedRowMapper {
+        Object[] map(ResultSet crs, byte[] textureHash) throws SQLException;
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * SkinsRestorer
+ * Copyright (C) 2024  SkinsRestorer Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.skinsrestorer.shared.storage.adapter.mysql;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * All statements used by {@link MySQLAdapter}, built once per table prefix instead of on every call.
+ */
+final class MySQLStatements {
+    final String prefix;
+    final SQLDialect dialect;
+
+    final String schemaVersionTable;
+    final String cacheTable;
+    final String playerTable;
+    final String playerSkinTable;
+    final String urlSkinTable;
+    final String urlIndexTable;
+    final String customSkinTable;
+    final String textureTable;
+    final String changelogTable;
+    final String legacyPlayerTable;
+    final String legacySkinTable;
+
+    final String selectCache;
+    final String upsertCache;
+
+    final String selectPlayer;
+    final String upsertPlayer;
+
+    final String selectPlayerSkin;
+    final String upsertPlayerSkin;
+    final String deletePlayerSkin;
+    final String purgePlayerSkins;
+
+    final String upsertTexture;
+    final String purgeTextures;
+
+    final String selectURLSkin;
+    final String upsertURLSkin;
+    final String deleteURLSkin;
+
+    final String selectURLIndex;
+    final String upsertURLIndex;
+    final String deleteURLIndex;
+
+    final String selectCustomSkin;
+    final String upsertCustomSkin;
+    final String deleteCustomSkin;
+
+    final String insertChange;
+    final String selectChanges;
+    final String selectLatestChange;
+    final String purgeChanges;
+
+    final String selectLegacySkin;
+    final String insertLegacySkin;
+    final String deleteLegacySkin;
+
+    final String selectLegacyPlayer;
+    final String insertLegacyPlayer;
+    final String deleteLegacyPlayer;
+
+    private static final String PLAYER_COLUMNS = "`uuid`, `skin_identifier`, `skin_variant`, `skin_type`";
+    private static final String PLAYER_SKIN_COLUMNS = "s.`uuid`, s.`last_known_name`, t.`value`, t.`signature`, s.`timestamp`";
+
+    MySQLStatements(String prefix, SQLDialect dialect) {
+        this.prefix = prefix;
+        this.dialect = dialect;
+
+        schemaVersionTable = prefix + "schema_version";
+        cacheTable = prefix + "cache";
+        playerTable = prefix + "players";
+        playerSkinTable = prefix + "player_skins";
+        urlSkinTable = prefix + "url_skins";
+        urlIndexTable = prefix + "url_index";
+        customSkinTable = prefix + "custom_skins";
+        textureTable = prefix + "textures";
+        changelogTable = prefix + "changelog";
+        legacyPlayerTable = prefix + "legacy_players";
+        legacySkinTable = prefix + "legacy_skins";
+
+        selectCache = "SELECT `uuid`, `timestamp` FROM `" + cacheTable + "` WHERE `name`=?";
+        upsertCache = dialect.upsert(cacheTable, List.of("name"), List.of("name", "uuid", "timestamp"), List.of("uuid", "timestamp"));
+
+        selectPlayer = "SELECT " + PLAYER_COLUMNS + " FROM `" + playerTable + "` WHERE `uuid`=?";
+        upsertPlayer = dialect.upsert(playerTable, List.of("uuid"), List.of("uuid", "skin_identifier", "skin_type", "skin_variant"),
+                List.of("skin_identifier", "skin_type", "skin_variant"));
+
+        // Skins reference their texture by hash, see MySQLSchema#migrateV3
+        selectPlayerSkin = "SELECT " + PLAYER_SKIN_COLUMNS + " FROM `" + playerSkinTable + "` s" + joinTexture() + " WHERE s.`uuid`=?";
+        upsertPlayerSkin = dialect.upsert(playerSkinTable, List.of("uuid"), List.of("uuid", "last_known_name", "texture_hash", "timestamp"),
+                List.of("last_known_name", "texture_hash", "timestamp"));
+        deletePlayerSkin = "DELETE FROM `" + playerSkinTable + "` WHERE `uuid`=?";
+        // Range condition on the indexed column, the limit keeps each delete short
+        purgePlayerSkins = dialect.deleteLimited(playerSkinTable, "`timestamp`<>0 AND `timestamp`<?");
+
+        upsertTexture = dialect.upsert(textureTable, List.of("hash"), List.of("hash", "value", "signature", "last_used"), List.of("last_used"));
+        // Each reference check is an index lookup, last_used skips textures that are being referenced right now
+        purgeTextures = dialect.deleteLimited(textureTable, "`last_used`<?"
+                + notReferencedBy(playerSkinTable) + notReferencedBy(urlSkinTable) + notReferencedBy(customSkinTable));
+
+        selectURLSkin = "SELECT s.`mine_skin_id`, t.`value`, t.`signature`, s.`skin_variant` FROM `" + urlSkinTable + "` s" + joinTexture() + " WHERE s.`url`=? AND s.`skin_variant`=?";
+        upsertURLSkin = dialect.upsert(urlSkinTable, List.of("url"), List.of("url", "mine_skin_id", "texture_hash", "skin_variant"),
+                List.of("mine_skin_id", "texture_hash", "skin_variant"));
+        deleteURLSkin = "DELETE FROM `" + urlSkinTable + "` WHERE `url`=? AND `skin_variant`=?";
+
+        selectURLIndex = "SELECT `skin_variant` FROM `" + urlIndexTable + "` WHERE `url`=?";
+        upsertURLIndex = dialect.upsert(urlIndexTable, List.of("url"), List.of("url", "skin_variant"), List.of("skin_variant"));
+        deleteURLIndex = "DELETE FROM `" + urlIndexTable + "` WHERE `url`=?";
+
+        selectCustomSkin = "SELECT t.`value`, t.`signature` FROM `" + customSkinTable + "` s" + joinTexture() + " WHERE s.`name`=?";
+        upsertCustomSkin = dialect.upsert(customSkinTable, List.of("name"), List.of("name", "texture_hash"), List.of("texture_hash"));
+        deleteCustomSkin = "DELETE FROM `" + customSkinTable + "` WHERE `name`=?";
+
+        insertChange = "INSERT INTO `" + changelogTable + "` (`type`, `change_key`, `created`) VALUES (?, ?, ?)";
+        selectChanges = "SELECT `id`, `type`, `change_key` FROM `" + changelogTable + "` WHERE `id`>? ORDER BY `id` LIMIT ?";
+        selectLatestChange = "SELECT COALESCE(MAX(`id`), 0) AS `id` FROM `" + changelogTable + "`";
+        purgeChanges = dialect.deleteLimited(changelogTable, "`created`<?");
+
+        selectLegacySkin = "SELECT `value`, `signature` FROM `" + legacySkinTable + "` WHERE `name`=?";
+        insertLegacySkin = "INSERT INTO `" + legacySkinTable + "` (`name`, `value`, `signature`) VALUES (?, ?, ?)";
+        deleteLegacySkin = "DELETE FROM `" + legacySkinTable + "` WHERE `name`=?";
+
+        selectLegacyPlayer = "SELECT `skin_name` FROM `" + legacyPlayerTable + "` WHERE `name`=?";
+        insertLegacyPlayer = "INSERT INTO `" + legacyPlayerTable + "` (`name`, `skin_name`) VALUES (?, ?)";
+        deleteLegacyPlayer = "DELETE FROM `" + legacyPlayerTable + "` WHERE `name`=?";
+    }
+
+    String selectPlayers(int count) {
+        return "SELECT " + PLAYER_COLUMNS + " FROM `" + playerTable + "` WHERE `uuid` IN (" + placeholders(count) + ")";
+    }
+
+    String selectPlayerSkins(int count) {
+        return "SELECT " + PLAYER_SKIN_COLUMNS + " FROM `" + playerSkinTable + "` s" + joinTexture() + " WHERE s.`uuid` IN (" + placeholders(count) + ")";
+    }
+
+    /**
+     * Joins the texture of the skin table aliased as {@code s} as {@code t}.
+     */
+    String joinTexture() {
+        return " JOIN `" + textureTable + "` t ON t.`hash`=s.`texture_hash`";
+    }
+
+    private String notReferencedBy(String table) {
+        return " AND NOT EXISTS (SELECT 1 FROM `" + table + "` WHERE `texture_hash`=`" + textureTable + "`.`hash`)";
+    }
+
+    static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+}
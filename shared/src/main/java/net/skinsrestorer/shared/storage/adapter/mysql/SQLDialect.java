@@ -0,0 +1,106 @@
+/*
+ * SkinsRestorer
+ * Copyright (C) 2024  SkinsRestorer Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.skinsrestorer.shared.storage.adapter.mysql;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * The parts of the SQL used by {@link MySQLAdapter} that differ between the supported databases.
+ * Everything else is written in the subset both databases understand.
+ */
+public enum SQLDialect {
+    MYSQL {
+        @Override
+        String upsert(String table, List<String> keyColumns, List<String> columns, List<String> updateColumns) {
+            // Upserts reference the inserted row through VALUES(), so every value is only bound once
+            return insert(table, columns) + " ON DUPLICATE KEY UPDATE " + updateColumns.stream()
+                    .map(column -> quote(column) + "=VALUES(" + quote(column) + ")")
+                    .collect(Collectors.joining(", "));
+        }
+
+        @Override
+        String deleteLimited(String table, String condition) {
+            return "DELETE FROM `" + table + "` WHERE " + condition + " LIMIT ?";
+        }
+
+        @Override
+        String tableOptions() {
+            return " ENGINE=InnoDB DEFAULT CHARSET=utf8";
+        }
+
+        @Override
+        String tableExists() {
+            return "SELECT 1 FROM information_schema.TABLES WHERE TABLE_SCHEMA=DATABASE() AND TABLE_NAME=?";
+        }
+    },
+    SQLITE {
+        @Override
+        String upsert(String table, List<String> keyColumns, List<String> columns, List<String> updateColumns) {
+            return insert(table, columns) + " ON CONFLICT(" + keyColumns.stream().map(SQLDialect::quote).collect(Collectors.joining(", "))
+                    + ") DO UPDATE SET " + updateColumns.stream()
+                    .map(column -> quote(column) + "=excluded." + quote(column))
+                    .collect(Collectors.joining(", "));
+        }
+
+        @Override
+        String deleteLimited(String table, String condition) {
+            // DELETE ... LIMIT is a compile time option of SQLite, a limited rowid selection works everywhere
+            return "DELETE FROM `" + table + "` WHERE rowid IN (SELECT rowid FROM `" + table + "` WHERE " + condition + " LIMIT ?)";
+        }
+
+        @Override
+        String tableOptions() {
+            return "";
+        }
+
+        @Override
+        String tableExists() {
+            return "SELECT 1 FROM sqlite_master WHERE type='table' AND name=?";
+        }
+    };
+
+    /**
+     * Inserts a row, or updates the given columns if a row with the same key exists.
+     */
+    abstract String upsert(String table, List<String> keyColumns, List<String> columns, List<String> updateColumns);
+
+    /**
+     * Deletes at most the number of rows bound to the last parameter.
+     */
+    abstract String deleteLimited(String table, String condition);
+
+    /**
+     * Appended to every {@code CREATE TABLE} statement.
+     */
+    abstract String tableOptions();
+
+    /**
+     * Returns a row if the table bound to the only parameter exists.
+     */
+    abstract String tableExists();
+
+    private static String insert(String table, List<String> columns) {
+        return "INSERT INTO `" + table + "` (" + columns.stream().map(SQLDialect::quote).collect(Collectors.joining(", "))
+                + ") VALUES (" + MySQLStatements.placeholders(columns.size()) + ")";
+    }
+
+    private static String quote(String column) {
+        return "`" + column + "`";
+    }
+}
@@ -0,0 +1,341 @@
+/*
+ * SkinsRestorer
+ * Copyright (C) 2024  SkinsRestorer Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.skinsrestorer.shared.storage.adapter.mysql;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import net.skinsrestorer.shared.log.SRLogger;
+import net.skinsrestorer.shared.plugin.SRPlugin;
+import org.intellij.lang.annotations.Language;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+/**
+ * Query helpers shared by all SQL databases, the subclasses only provide the connections and the {@link SQLDialect}.
+ */
+@RequiredArgsConstructor(access = AccessLevel.PROTECTED)
+public abstract class SQLProvider {
+    private static final int STREAM_FETCH_SIZE = 500;
+    private static final int BATCH_SIZE = 500;
+    protected final SRLogger logger;
+
+    public abstract SQLDialect getDialect();
+
+    /**
+     * @param write whether the connection is used to change data
+     * @return a connection that is handed back when it is closed
+     */
+    protected abstract Connection getConnection(boolean write) throws SQLException;
+
+    public void shutdown() {
+    }
+
+    /**
+     * Called before a key is written, see {@link #readFirst(Object, String, RowMapper, Object...)}.
+     */
+    public void markWritten(Object key) {
+    }
+
+    /**
+     * Runs the task while holding a lock that is shared by every server using the same database.
+     * Databases that only one server can use run the task right away.
+     *
+     * @param timeoutSeconds how long to wait for the lock before failing
+     */
+    public void withLock(String name, int timeoutSeconds, LockedTask task) throws SQLException {
+        task.run();
+    }
+
+    /**
+     * Like {@link #queryFirst(String, RowMapper, Object...)}, but lets the provider pick where to read the key from.
+     */
+    public <T> Optional<T> readFirst(Object routingKey, @Language("sql") final String query, final RowMapper<T> mapper, final Object... vars) throws SQLException {
+        return read(List.of(routingKey), connections -> queryFirst(connections, query, mapper, vars));
+    }
+
+    /**
+     * Like {@link #queryChunked(IntFunction, List, RowMapper)}, but lets the provider pick where to read the keys from.
+     */
+    public <T> List<T> readChunked(Collection<?> routingKeys, final IntFunction<String> queryForSize, final List<? extends List<?>> chunks, final RowMapper<T> mapper) throws SQLException {
+        return read(routingKeys, connections -> queryChunked(connections, queryForSize, chunks, mapper));
+    }
+
+    protected <T> T read(Collection<?> routingKeys, ConnectionQuery<T> query) throws SQLException {
+        return query.run(() -> getConnection(false));
+    }
+
+    public void execute(@Language("sql") final String query, final Object... vars) {
+        try (Connection connection = getConnection(true)) {
+            try (PreparedStatement ps = connection.prepareStatement(query)) {
+                fillPreparedStatement(ps, vars);
+
+                ps.execute();
+            }
+        } catch (SQLException e) {
+            if (e.getErrorCode() == 1060) {
+                return;
+            }
+
+            logger.warning("Database error: " + e.getMessage(), e);
+
+            if (SRPlugin.isUnitTest()) {
+                throw new AssertionError(e);
+            }
+        }
+    }
+
+    /**
+     * Executes the statement once per row as a single JDBC batch in one transaction.
+     */
+    public void executeBatch(@Language("sql") final String query, final Collection<Object[]> rows) throws SQLException {
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        executeBatches(List.of(new Batch(query, rows)));
+    }
+
+    /**
+     * Executes all batches in order in one transaction, so either all of their rows are written or none.
+     */
+    public void executeBatches(final List<Batch> batches) throws SQLException {
+        try (Connection connection = getConnection(true)) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                for (Batch batch : batches) {
+                    if (batch.rows().isEmpty()) {
+                        continue;
+                    }
+
+                    try (PreparedStatement ps = connection.prepareStatement(batch.query())) {
+                        for (Object[] row : batch.rows()) {
+                            fillPreparedStatement(ps, row);
+                            ps.addBatch();
+                        }
+
+                        ps.executeBatch();
+                    }
+                }
+
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    /**
+     * Collects rows and writes them in batches of {@value BATCH_SIZE}, the rest is written on close.
+     * Once a batch failed, further rows are dropped and the failure is thrown by {@link BatchWriter#close()}.
+     */
+    public BatchWriter batchWriter(@Language("sql") final String query) {
+        return new BatchWriter(query);
+    }
+
+    /**
+     * @return the number of affected rows
+     */
+    public int update(@Language("sql") final String query, final Object... vars) throws SQLException {
+        try (Connection connection = getConnection(true)) {
+            try (PreparedStatement ps = connection.prepareStatement(query)) {
+                fillPreparedStatement(ps, vars);
+
+                return ps.executeUpdate();
+            }
+        }
+    }
+
+    /**
+     * @return the mapped first row, or empty if the query returned no rows
+     */
+    public <T> Optional<T> queryFirst(@Language("sql") final String query, final RowMapper<T> mapper, final Object... vars) throws SQLException {
+        return queryFirst(() -> getConnection(false), query, mapper, vars);
+    }
+
+    private static <T> Optional<T> queryFirst(ConnectionSource connections, String query, RowMapper<T> mapper, Object... vars) throws SQLException {
+        try (Connection connection = connections.get()) {
+            try (PreparedStatement ps = connection.prepareStatement(query)) {
+                fillPreparedStatement(ps, vars);
+                ps.setMaxRows(1);
+
+                try (ResultSet rs = ps.executeQuery()) {
+                    return rs.next() ? Optional.ofNullable(mapper.map(rs)) : Optional.empty();
+                }
+            }
+        }
+    }
+
+    public <T> List<T> queryList(@Language("sql") final String query, final RowMapper<T> mapper, final Object... vars) throws SQLException {
+        try (Connection connection = getConnection(false)) {
+            try (PreparedStatement ps = connection.prepareStatement(query)) {
+                fillPreparedStatement(ps, vars);
+
+                return mapAll(ps, mapper);
+            }
+        }
+    }
+
+    /**
+     * Runs a query once per chunk of parameters on a single connection.
+     * Chunks of the same size reuse their prepared statement.
+     *
+     * @param queryForSize builds the query for a chunk with the given number of parameters
+     */
+    public <T> List<T> queryChunked(final IntFunction<String> queryForSize, final List<? extends List<?>> chunks, final RowMapper<T> mapper) throws SQLException {
+        return queryChunked(() -> getConnection(false), queryForSize, chunks, mapper);
+    }
+
+    private static <T> List<T> queryChunked(ConnectionSource connections, IntFunction<String> queryForSize, List<? extends List<?>> chunks, RowMapper<T> mapper) throws SQLException {
+        List<T> result = new ArrayList<>();
+        if (chunks.isEmpty()) {
+            return result;
+        }
+
+        try (Connection connection = connections.get()) {
+            Map<Integer, PreparedStatement> statements = new HashMap<>();
+            try {
+                for (List<?> chunk : chunks) {
+                    PreparedStatement ps = statements.get(chunk.size());
+                    if (ps == null) {
+                        ps = connection.prepareStatement(queryForSize.apply(chunk.size()));
+                        statements.put(chunk.size(), ps);
+                    }
+
+                    fillPreparedStatement(ps, chunk.toArray());
+                    result.addAll(mapAll(ps, mapper));
+                }
+            } finally {
+                // Closed before the connection is handed back, cached statements are reused by the next user of the connection
+                for (PreparedStatement ps : statements.values()) {
+                    ps.close();
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Streams the rows of a large query to the consumer instead of buffering the full result.
+     * The connection is held until all rows were consumed, so the consumer should not block.
+     */
+    public <T> void queryStream(@Language("sql") final String query, final RowMapper<T> mapper, final Consumer<T> consumer, final Object... vars) throws SQLException {
+        try (Connection connection = getConnection(false)) {
+            try (PreparedStatement ps = connection.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                fillPreparedStatement(ps, vars);
+                ps.setFetchSize(STREAM_FETCH_SIZE);
+
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        consumer.accept(mapper.map(rs));
+                    }
+                }
+            }
+        }
+    }
+
+    private static <T> List<T> mapAll(PreparedStatement ps, RowMapper<T> mapper) throws SQLException {
+        List<T> result = new ArrayList<>();
+        try (ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                result.add(mapper.map(rs));
+            }
+        }
+
+        return result;
+    }
+
+    private static void fillPreparedStatement(PreparedStatement ps, Object... vars) throws SQLException {
+        int i = 0;
+        for (Object obj : vars) {
+            i++;
+            try {
+                ps.setObject(i, obj);
+            } catch (SQLException e) {
+                throw new SQLException("Error while setting prepared statement variable #" + i + " (" + obj + "): " + e.getMessage());
+            }
+        }
+    }
+
+    public record Batch(@Language("sql") String query, Collection<Object[]> rows) {
+    }
+
+    @FunctionalInterface
+    public interface LockedTask {
+        void run() throws SQLException;
+    }
+
+    @FunctionalInterface
+    protected interface ConnectionSource {
+        Connection get() throws SQLException;
+    }
+
+    @FunctionalInterface
+    protected interface ConnectionQuery<T> {
+        T run(ConnectionSource connections) throws SQLException;
+    }
+
+    @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+    public class BatchWriter implements AutoCloseable {
+        private final String query;
+        private final List<Object[]> rows = new ArrayList<>(BATCH_SIZE);
+        private SQLException failure;
+
+        public void add(Object[] row) {
+            if (failure != null) {
+                return;
+            }
+
+            rows.add(row);
+            if (rows.size() >= BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        private void flush() {
+            try {
+                executeBatch(query, rows);
+            } catch (SQLException e) {
+                failure = e;
+            }
+
+            rows.clear();
+        }
+
+        @Override
+        public void close() throws SQLException {
+            if (failure == null) {
+                flush();
+            }
+
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * SkinsRestorer
+ * Copyright (C) 2024  SkinsRestorer Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.skinsrestorer.shared.storage.adapter.sqlite;
+
+import ch.jalu.configme.SettingsManager;
+import net.skinsrestorer.shared.log.SRLogger;
+import net.skinsrestorer.shared.plugin.SRPlugin;
+import net.skinsrestorer.shared.storage.adapter.embedded.FileStoreImporter;
+import net.skinsrestorer.shared.storage.adapter.mysql.MySQLAdapter;
+
+import javax.inject.Inject;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Stores everything in one SQLite database file, using the same tables and queries as MySQL.
+ */
+public class SQLiteAdapter extends MySQLAdapter {
+    private final Path dataFolder;
+    private final SRLogger logger;
+
+    @Inject
+    public SQLiteAdapter(SQLiteProvider provider, SettingsManager settings, SRLogger logger, SRPlugin plugin) {
+        super(provider, settings, logger, plugin);
+        this.dataFolder = plugin.getDataFolder();
+        this.logger = logger;
+    }
+
+    /**
+     * The database file belongs to this server alone.
+     */
+    @Override
+    protected boolean isShared() {
+        return false;
+    }
+
+    /**
+     * There are no legacy tables, but skins of the file storage are imported once.
+     */
+    @Override
+    protected void migrateLegacyData() {
+        try {
+            new FileStoreImporter(dataFolder, dataFolder.resolve("sqlite-imported.txt"), this, () -> {
+            }, logger).importIfNeeded();
+        } catch (IOException e) {
+            logger.severe("Failed to import file storage", e);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * SkinsRestorer
+ * Copyright (C) 2024  SkinsRestorer Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.skinsrestorer.shared.storage.adapter.sqlite;
+
+import net.skinsrestorer.shared.log.SRLogger;
+import net.skinsrestorer.shared.plugin.SRPlugin;
+import net.skinsrestorer.shared.storage.adapter.mysql.SQLDialect;
+import net.skinsrestorer.shared.storage.adapter.mysql.SQLProvider;
+import org.sqlite.SQLiteConfig;
+
+import javax.inject.Inject;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A SQLite database file in WAL mode. SQLite allows only one writer at a time,
+ * so all writes share one connection behind a lock, while reads run concurrently on a small pool.
+ * Every connection keeps its prepared statements, so the same query is only parsed once per connection.
+ */
+public class SQLiteProvider extends SQLProvider {
+    private static final String DATABASE_FILE = "skinsrestorer.db";
+    private static final int READ_CONNECTIONS = 4;
+    private static final int STATEMENT_CACHE_SIZE = 64;
+    private static final int BUSY_TIMEOUT_MILLIS = 5000;
+    private final Path databaseFile;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final BlockingQueue<CachedConnection> readers = new LinkedBlockingQueue<>();
+    private final List<CachedConnection> connections = new ArrayList<>();
+    private CachedConnection writer;
+
+    @Inject
+    public SQLiteProvider(SRLogger logger, SRPlugin plugin) {
+        super(logger);
+        this.databaseFile = plugin.getDataFolder().resolve(DATABASE_FILE);
+    }
+
+    public synchronized void initPool() throws SQLException {
+        if (writer != null) {
+            return;
+        }
+
+        String url = "jdbc:sqlite:" + databaseFile.toAbsolutePath();
+        SQLiteConfig config = new SQLiteConfig();
+        config.setJournalMode(SQLiteConfig.JournalMode.WAL);
+        // Safe in WAL mode, a power loss can only lose the last commits, never corrupt the database
+        config.setSynchronous(SQLiteConfig.SynchronousMode.NORMAL);
+        config.setBusyTimeout(BUSY_TIMEOUT_MILLIS);
+
+        // The writer is opened first, so the database and its WAL exist before the read only connections open it
+        writer = new CachedConnection(config.createConnection(url));
+        connections.add(writer);
+
+        config.setReadOnly(true);
+        for (int i = 0; i < READ_CONNECTIONS; i++) {
+            CachedConnection reader = new CachedConnection(config.createConnection(url));
+            connections.add(reader);
+            readers.add(reader);
+        }
+    }
+
+    @Override
+    public SQLDialect getDialect() {
+        return SQLDialect.SQLITE;
+    }
+
+    @Override
+    protected Connection getConnection(boolean write) throws SQLException {
+        if (write) {
+            writeLock.lock();
+            return writer.lease(writeLock::unlock);
+        }
+
+        try {
+            CachedConnection reader = readers.take();
+            return reader.lease(() -> readers.add(reader));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection", e);
+        }
+    }
+
+    @Override
+    public synchronized void shutdown() {
+        for (CachedConnection connection : connections) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                logger.warning("Failed to close SQLite connection", e);
+            }
+        }
+
+        connections.clear();
+        readers.clear();
+        writer = null;
+    }
+
+    /**
+     * A connection whose prepared statements are kept open between leases, closing them only resets their parameters.
+     * It is only used by one thread at a time, so the cache needs no locking.
+     */
+    private static final class CachedConnection {
+        private final Connection connection;
+        private final Map<String, PreparedStatement> statements = new LinkedHashMap<>(16, 0.75F, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() <= STATEMENT_CACHE_SIZE) {
+                    return false;
+                }
+
+                try {
+                    eldest.getValue().close();
+                } catch (SQLException ignored) {
+                    // Evicted either way
+                }
+
+                return true;
+            }
+        };
+
+        private CachedConnection(Connection connection) {
+            this.connection = connection;
+        }
+
+        private Connection lease(Runnable release) {
+            AtomicBoolean released = new AtomicBoolean();
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                if (method.getName().equals("close")) {
+                    if (released.compareAndSet(false, true)) {
+                        release.run();
+                    }
+
+                    return null;
+                } else if (method.getName().equals("prepareStatement") && args.length == 1) {
+                    return prepare((String) args[0]);
+                }
+
+                return invoke(connection, method, args);
+            });
+        }
+
+        private PreparedStatement prepare(String query) throws SQLException {
+            PreparedStatement statement = statements.get(query);
+            if (statement == null) {
+                statement = connection.prepareStatement(query);
+                statements.put(query, statement);
+            }
+
+            PreparedStatement cached = statement;
+            return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(), new Class<?>[]{PreparedStatement.class}, (proxy, method, args) -> {
+                if (method.getName().equals("close")) {
+                    cached.clearParameters();
+                    cached.clearBatch();
+                    cached.setMaxRows(0);
+                    return null;
+                }
+
+                return invoke(cached, method, args);
+            });
+        }
+
+        private void close() throws SQLException {
+            for (PreparedStatement statement : statements.values()) {
+                statement.close();
+            }
+
+            statements.clear();
+            connection.close();
+        }
+
+        private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
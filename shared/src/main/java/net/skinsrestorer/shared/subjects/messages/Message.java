@@ -79,6 +79,10 @@ public enum Message {
     ADMINCOMMAND_STATUS_SUMMARY_VERSION(Message.PREFIX_FORMAT),
     ADMINCOMMAND_STATUS_SUMMARY_SERVER(Message.PREFIX_FORMAT),
     ADMINCOMMAND_STATUS_SUMMARY_PROXYMODE(Message.PREFIX_FORMAT),
+    ADMINCOMMAND_STATUS_SUMMARY_STORAGE_CACHE(Message.PREFIX_FORMAT),
+    ADMINCOMMAND_STATUS_SUMMARY_STORAGE_EXECUTOR(Message.PREFIX_FORMAT),
+    ADMINCOMMAND_STATUS_SUMMARY_REQUEST_LIMIT(Message.PREFIX_FORMAT),
+    ADMINCOMMAND_STATUS_SUMMARY_LOOKUPS(Message.PREFIX_FORMAT),
     ADMINCOMMAND_STATUS_SUMMARY_COMMIT(Message.PREFIX_FORMAT),
     ADMINCOMMAND_STATUS_SUMMARY_FINISHED(Message.PREFIX_FORMAT),
     ADMINCOMMAND_DROP_PLAYER_NOT_FOUND(Message.PREFIX_FORMAT),
@@ -93,6 +97,8 @@ public enum Message {
     ADMINCOMMAND_SETSKINALL_SUCCESS(Message.PREFIX_FORMAT),
     ADMINCOMMAND_APPLYSKINALL_PLAYER_ERROR(Message.PREFIX_FORMAT),
     ADMINCOMMAND_APPLYSKINALL_SUCCESS(Message.PREFIX_FORMAT),
+    ADMINCOMMAND_PURGEOLDDATA_STARTED(Message.PREFIX_FORMAT),
+    ADMINCOMMAND_PURGEOLDDATA_RUNNING(Message.PREFIX_FORMAT),
     ADMINCOMMAND_PURGEOLDDATA_SUCCESS(Message.PREFIX_FORMAT),
     ADMINCOMMAND_PURGEOLDDATA_ERROR(Message.PREFIX_FORMAT),
     ADMINCOMMAND_DUMP_UPLOADING(Message.PREFIX_FORMAT),
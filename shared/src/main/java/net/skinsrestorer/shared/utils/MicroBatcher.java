@@ -0,0 +1,167 @@
+/*
+ * SkinsRestorer
+ * Copyright (C) 2024  SkinsRestorer Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.skinsrestorer.shared.utils;
+
+import net.skinsrestorer.shared.storage.StorageExecutor;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects calls that arrive within a short window and answers them with one batch call.
+ * The caller that opens a batch waits for the window to pass and then runs the batch,
+ * a batch that reaches its maximum size is run right away by the caller that filled it.
+ * Callers asking for the same key in the same batch share its result.
+ * The batch runs with the highest {@link StorageExecutor#currentPriority()} of its callers,
+ * so a login waiting on a batch opened by a background task is not shed with it.
+ *
+ * @param <K> key type
+ * @param <V> result type
+ * @param <E> checked exception thrown by the batch call
+ */
+public class MicroBatcher<K, V, E extends Exception> {
+    private final int maxBatchSize;
+    private final long windowMillis;
+    private final BatchCall<K, V, E> call;
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong keys = new AtomicLong();
+    private Batch<K, V> pending;
+
+    public MicroBatcher(int maxBatchSize, long windowMillis, BatchCall<K, V, E> call) {
+        this.maxBatchSize = maxBatchSize;
+        this.windowMillis = windowMillis;
+        this.call = call;
+    }
+
+    public V get(K key) throws E {
+        Batch<K, V> batch;
+        CompletableFuture<V> future;
+        boolean leader;
+        boolean full;
+        synchronized (this) {
+            leader = pending == null;
+            if (leader) {
+                pending = new Batch<>();
+            }
+
+            batch = pending;
+            future = batch.futures.computeIfAbsent(key, k -> new CompletableFuture<>());
+            StorageExecutor.Priority priority = StorageExecutor.currentPriority();
+            if (priority.compareTo(batch.priority) < 0) {
+                batch.priority = priority;
+            }
+
+            full = batch.futures.size() >= maxBatchSize;
+            if (full) {
+                pending = null;
+            }
+        }
+
+        if (full) {
+            run(batch);
+        } else if (leader) {
+            awaitWindow(future);
+            if (take(batch)) {
+                run(batch);
+            }
+        }
+
+        return await(future);
+    }
+
+    public long getBatches() {
+        return batches.get();
+    }
+
+    public long getKeys() {
+        return keys.get();
+    }
+
+    private void awaitWindow(CompletableFuture<V> future) {
+        try {
+            // Completes early if another caller filled and ran the batch
+            future.get(windowMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            // Window passed or the batch already failed
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private synchronized boolean take(Batch<K, V> batch) {
+        if (pending != batch) {
+            return false;
+        }
+
+        pending = null;
+        return true;
+    }
+
+    private void run(Batch<K, V> batch) {
+        batches.incrementAndGet();
+        keys.addAndGet(batch.futures.size());
+        // The batch was taken, no caller changes it anymore
+        StorageExecutor.withPriority(batch.priority, () -> complete(batch)).run();
+    }
+
+    private void complete(Batch<K, V> batch) {
+        try {
+            Map<K, V> results = call.call(Collections.unmodifiableSet(batch.futures.keySet()));
+            batch.futures.forEach((key, future) -> {
+                if (results.containsKey(key)) {
+                    future.complete(results.get(key));
+                } else {
+                    future.completeExceptionally(new IllegalStateException("Batch call returned no result for " + key));
+                }
+            });
+        } catch (Throwable t) {
+            batch.futures.values().forEach(future -> future.completeExceptionally(t));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private V await(CompletableFuture<V> future) throws E {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            } else if (cause instanceof Error error) {
+                throw error;
+            }
+
+            // The call may only throw E besides unchecked exceptions
+            throw (E) cause;
+        }
+    }
+
+    public interface BatchCall<K, V, E extends Exception> {
+        /**
+         * @param keys the keys of the batch, at most the maximum batch size
+         * @return a result for every key
+         */
+        Map<K, V> call(Set<K> keys) throws E;
+    }
+
+    private static class Batch<K, V> {
+        private final Map<K, CompletableFuture<V>> futures = new LinkedHashMap<>();
+        private StorageExecutor.Priority priority = StorageExecutor.Priority.BACKGROUND;
+    }
+}
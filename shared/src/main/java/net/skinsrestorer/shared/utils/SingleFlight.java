@@ -0,0 +1,88 @@
+/*
+ * SkinsRestorer
+ * Copyright (C) 2024  SkinsRestorer Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.skinsrestorer.shared.utils;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Makes sure only one call per key is running at a time.
+ * Callers that arrive while a call for their key is in flight wait for it and share its result or exception.
+ *
+ * @param <K> key type
+ * @param <V> result type
+ * @param <E> checked exception thrown by the call
+ */
+public class SingleFlight<K, V, E extends Exception> {
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong executed = new AtomicLong();
+    private final AtomicLong deduplicated = new AtomicLong();
+
+    public V execute(K key, Call<V, E> call) throws E {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            deduplicated.incrementAndGet();
+            return await(existing);
+        }
+
+        executed.incrementAndGet();
+        try {
+            V result = call.call();
+            future.complete(result);
+            return result;
+        } catch (Throwable t) {
+            future.completeExceptionally(t);
+            throw t;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    public long getExecuted() {
+        return executed.get();
+    }
+
+    public long getDeduplicated() {
+        return deduplicated.get();
+    }
+
+    @SuppressWarnings("unchecked")
+    private V await(CompletableFuture<V> future) throws E {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            } else if (cause instanceof Error error) {
+                throw error;
+            }
+
+            // The call may only throw E besides unchecked exceptions
+            throw (E) cause;
+        }
+    }
+
+    public interface Call<V, E extends Exception> {
+        V call() throws E;
+    }
+}
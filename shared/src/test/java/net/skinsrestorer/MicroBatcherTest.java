@@ -0,0 +1,120 @@
+/*
+ * SkinsRestorer
+ * Copyright (C) 2024  SkinsRestorer Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.skinsrestorer;
+
+import net.skinsrestorer.shared.storage.StorageExecutor;
+import net.skinsrestorer.shared.utils.MicroBatcher;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class MicroBatcherTest {
+    @Test
+    public void testBatching() throws Exception {
+        MicroBatcher<String, String, IOException> batcher = new MicroBatcher<>(10, 500, keys -> {
+            Map<String, String> results = new HashMap<>();
+            keys.forEach(key -> results.put(key, key.toUpperCase(Locale.ROOT)));
+            return results;
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(12);
+        try {
+            List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < 12; i++) {
+                // Two callers share the key "a", ten different keys fill one batch
+                String key = i < 2 ? "a" : "key" + i;
+                futures.add(executor.submit(() -> batcher.get(key)));
+            }
+
+            assertEquals("A", futures.get(0).get(5, TimeUnit.SECONDS));
+            assertEquals("A", futures.get(1).get(5, TimeUnit.SECONDS));
+            for (int i = 2; i < 12; i++) {
+                assertEquals("KEY" + i, futures.get(i).get(5, TimeUnit.SECONDS));
+            }
+
+            assertEquals(11, batcher.getKeys());
+            assertEquals(2, batcher.getBatches());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testFailure() {
+        MicroBatcher<String, String, IOException> batcher = new MicroBatcher<>(10, 1, keys -> {
+            throw new IOException("down");
+        });
+
+        assertThrows(IOException.class, () -> batcher.get("key"));
+    }
+
+    @Test
+    public void testHighestPriority() throws Exception {
+        MicroBatcher<String, StorageExecutor.Priority, IOException> batcher = new MicroBatcher<>(2, 5_000, keys -> {
+            Map<String, StorageExecutor.Priority> results = new HashMap<>();
+            keys.forEach(key -> results.put(key, StorageExecutor.currentPriority()));
+            return results;
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            // The background caller opens the batch, the login caller fills it
+            Future<StorageExecutor.Priority> background = executor.submit(() -> {
+                AtomicReference<StorageExecutor.Priority> result = new AtomicReference<>();
+                StorageExecutor.withPriority(StorageExecutor.Priority.BACKGROUND, () -> {
+                    try {
+                        result.set(batcher.get("background"));
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                }).run();
+                return result.get();
+            });
+            Thread.sleep(100);
+            Future<StorageExecutor.Priority> login = executor.submit(() -> {
+                AtomicReference<StorageExecutor.Priority> result = new AtomicReference<>();
+                StorageExecutor.withPriority(StorageExecutor.Priority.LOGIN, () -> {
+                    try {
+                        result.set(batcher.get("login"));
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                }).run();
+                return result.get();
+            });
+
+            assertEquals(StorageExecutor.Priority.LOGIN, background.get(5, TimeUnit.SECONDS));
+            assertEquals(StorageExecutor.Priority.LOGIN, login.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * SkinsRestorer
+ * Copyright (C) 2024  SkinsRestorer Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.skinsrestorer;
+
+import ch.jalu.configme.SettingsManager;
+import net.skinsrestorer.shared.config.APIConfig;
+import net.skinsrestorer.shared.connections.ProviderRouter;
+import net.skinsrestorer.shared.exception.DataRequestExceptionShared;
+import net.skinsrestorer.shared.log.SRLogger;
+import net.skinsrestorer.shared.utils.MetricsCounter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class ProviderRouterTest {
+    @Mock
+    private SettingsManager settingsManager;
+    @Mock
+    private SRLogger logger;
+
+    @Test
+    public void testOrderingAndCircuitBreaker() throws Exception {
+        when(settingsManager.getProperty(APIConfig.HEDGE_REQUESTS)).thenReturn(false);
+        ProviderRouter router = new ProviderRouter(settingsManager, logger);
+        AtomicInteger failingCalls = new AtomicInteger();
+        ProviderRouter.Provider<String> failing = new ProviderRouter.Provider<>(MetricsCounter.Service.ASHCON, () -> {
+            failingCalls.incrementAndGet();
+            throw new DataRequestExceptionShared("down");
+        });
+        ProviderRouter.Provider<String> alsoFailing = new ProviderRouter.Provider<>(MetricsCounter.Service.MOJANG, () -> {
+            throw new DataRequestExceptionShared("down");
+        });
+
+        for (int i = 0; i < 5; i++) {
+            assertThrows(DataRequestExceptionShared.class, () -> router.route(List.of(failing, alsoFailing)));
+        }
+        assertEquals(5, failingCalls.get());
+
+        // Circuit is open now, so only the working provider is asked
+        List<ProviderRouter.Provider<String>> providers = List.of(failing,
+                new ProviderRouter.Provider<>(MetricsCounter.Service.MINE_TOOLS, () -> "minetools"));
+        for (int i = 0; i < 5; i++) {
+            assertEquals("minetools", router.route(providers));
+        }
+        assertEquals(5, failingCalls.get());
+    }
+
+    @Test
+    public void testHedging() throws Exception {
+        when(settingsManager.getProperty(APIConfig.HEDGE_REQUESTS)).thenReturn(true);
+        ProviderRouter router = new ProviderRouter(settingsManager, logger);
+        AtomicReference<Thread> firstThread = new AtomicReference<>();
+        AtomicInteger hedgeCalls = new AtomicInteger();
+        List<ProviderRouter.Provider<String>> providers = List.of(
+                new ProviderRouter.Provider<>(MetricsCounter.Service.ASHCON, () -> {
+                    firstThread.set(Thread.currentThread());
+                    try {
+                        Thread.sleep(2_000);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    throw new DataRequestExceptionShared("timed out");
+                }),
+                new ProviderRouter.Provider<>(MetricsCounter.Service.MOJANG, () -> {
+                    hedgeCalls.incrementAndGet();
+                    return "mojang";
+                })
+        );
+
+        // The hedge started while the first provider was still running, so it is not asked again
+        assertEquals("mojang", router.route(providers));
+        assertEquals(Thread.currentThread(), firstThread.get());
+        assertEquals(1, hedgeCalls.get());
+    }
+}
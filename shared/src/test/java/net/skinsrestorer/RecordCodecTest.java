@@ -0,0 +1,102 @@
+/*
+ * SkinsRestorer
+ * Copyright (C) 2024  SkinsRestorer Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.skinsrestorer;
+
+import net.skinsrestorer.api.property.SkinIdentifier;
+import net.skinsrestorer.api.property.SkinProperty;
+import net.skinsrestorer.api.property.SkinVariant;
+import net.skinsrestorer.shared.storage.adapter.codec.RecordCodec;
+import net.skinsrestorer.shared.storage.model.cache.MojangCacheData;
+import net.skinsrestorer.shared.storage.model.player.PlayerData;
+import net.skinsrestorer.shared.storage.model.skin.PlayerSkinData;
+import net.skinsrestorer.shared.storage.model.skin.URLSkinData;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RecordCodecTest {
+    private static final SkinProperty PROPERTY = SkinProperty.of(
+            Base64.getEncoder().encodeToString("{\"textures\":{}}".getBytes(StandardCharsets.UTF_8)),
+            Base64.getEncoder().encodeToString(new byte[512]));
+
+    @Test
+    public void testBinaryRoundTrip() {
+        UUID uuid = UUID.randomUUID();
+        PlayerSkinData skinData = PlayerSkinData.of(uuid, "Pistonmaster", PROPERTY, System.currentTimeMillis());
+        byte[] binary = RecordCodec.PLAYER_SKIN.encode(skinData, true);
+        byte[] json = RecordCodec.PLAYER_SKIN.encode(skinData, false);
+
+        assertTrue(binary.length < json.length);
+        assertPlayerSkinEquals(skinData, RecordCodec.PLAYER_SKIN.decode(binary));
+        assertPlayerSkinEquals(skinData, RecordCodec.PLAYER_SKIN.decode(json));
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(binary.length);
+        direct.put(binary).flip();
+        assertPlayerSkinEquals(skinData, RecordCodec.PLAYER_SKIN.decode(direct));
+
+        PlayerData playerData = PlayerData.of(uuid, SkinIdentifier.ofURL("https://example.com/skin.png", SkinVariant.SLIM));
+        assertEquals(playerData, RecordCodec.PLAYER.decode(RecordCodec.PLAYER.encode(playerData, true)));
+
+        PlayerData emptyPlayerData = PlayerData.of(uuid, null);
+        assertEquals(emptyPlayerData, RecordCodec.PLAYER.decode(RecordCodec.PLAYER.encode(emptyPlayerData, true)));
+
+        MojangCacheData cacheData = RecordCodec.MOJANG_CACHE.decode(RecordCodec.MOJANG_CACHE.encode(MojangCacheData.of(null, -1), true));
+        assertTrue(cacheData.getUniqueId().isEmpty());
+        assertEquals(-1, cacheData.getTimestamp());
+    }
+
+    @Test
+    public void testNonCanonicalBase64KeptAsIs() {
+        // Signatures are only valid for the exact string, so unusual base64 must survive unchanged
+        SkinProperty property = SkinProperty.of("dGVzdA", "not base64!");
+        URLSkinData skinData = URLSkinData.of("https://example.com", null, property, SkinVariant.CLASSIC);
+
+        URLSkinData decoded = RecordCodec.URL_SKIN.decode(RecordCodec.URL_SKIN.encode(skinData, true));
+        assertEquals(property, decoded.getProperty());
+        assertNull(decoded.getMineSkinId());
+        assertEquals(SkinVariant.CLASSIC, decoded.getSkinVariant());
+    }
+
+    @Test
+    public void testTextureColumnRoundTrip() {
+        byte[] signature = RecordCodec.encodeTexture(PROPERTY.getSignature());
+        assertEquals(513, signature.length);
+        assertEquals(PROPERTY.getSignature(), RecordCodec.decodeTexture(signature));
+
+        assertEquals("dGVzdA", RecordCodec.decodeTexture(RecordCodec.encodeTexture("dGVzdA")));
+    }
+
+    @Test
+    public void testWrongRecordType() {
+        byte[] binary = RecordCodec.MOJANG_CACHE.encode(MojangCacheData.of(UUID.randomUUID(), 0), true);
+
+        assertThrows(IllegalStateException.class, () -> RecordCodec.PLAYER_SKIN.decode(binary));
+    }
+
+    private static void assertPlayerSkinEquals(PlayerSkinData expected, PlayerSkinData actual) {
+        assertEquals(expected.getUniqueId(), actual.getUniqueId());
+        assertEquals(expected.getLastKnownName(), actual.getLastKnownName());
+        assertEquals(expected.getProperty(), actual.getProperty());
+        assertEquals(expected.getTimestamp(), actual.getTimestamp());
+    }
+}
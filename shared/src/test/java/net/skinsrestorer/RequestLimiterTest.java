@@ -0,0 +1,81 @@
+/*
+ * SkinsRestorer
+ * Copyright (C) 2024  SkinsRestorer Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.skinsrestorer;
+
+import ch.jalu.configme.SettingsManager;
+import net.skinsrestorer.shared.config.APIConfig;
+import net.skinsrestorer.shared.connections.RequestLimiter;
+import net.skinsrestorer.shared.storage.StorageExecutor;
+import net.skinsrestorer.shared.utils.MetricsCounter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class RequestLimiterTest {
+    @Mock
+    private SettingsManager settingsManager;
+
+    @Test
+    public void testPriorityAndShedding() throws Exception {
+        when(settingsManager.getProperty(APIConfig.RATE_LIMIT_MOJANG)).thenReturn(60);
+        when(settingsManager.getProperty(APIConfig.RATE_LIMIT_MAX_WAIT)).thenReturn(5);
+        RequestLimiter limiter = new RequestLimiter(settingsManager);
+
+        limiter.acquire(MetricsCounter.Service.MOJANG);
+        limiter.penalize(MetricsCounter.Service.MOJANG);
+
+        List<StorageExecutor.Priority> order = new CopyOnWriteArrayList<>();
+        StorageExecutor.withPriority(StorageExecutor.Priority.BACKGROUND, () ->
+                assertThrows(RequestLimiter.LimitExceededException.class, () -> limiter.acquire(MetricsCounter.Service.MOJANG))).run();
+
+        Thread command = waiter(limiter, StorageExecutor.Priority.COMMAND, order);
+        command.start();
+        while (limiter.getStats().get(MetricsCounter.Service.MOJANG).queued() == 0) {
+            Thread.onSpinWait();
+        }
+
+        Thread login = waiter(limiter, StorageExecutor.Priority.LOGIN, order);
+        login.start();
+        command.join();
+        login.join();
+
+        assertEquals(List.of(StorageExecutor.Priority.LOGIN, StorageExecutor.Priority.COMMAND), order);
+        RequestLimiter.Stats stats = limiter.getStats().get(MetricsCounter.Service.MOJANG);
+        assertEquals(3, stats.granted());
+        assertEquals(1, stats.shed());
+    }
+
+    private Thread waiter(RequestLimiter limiter, StorageExecutor.Priority priority, List<StorageExecutor.Priority> order) {
+        return new Thread(StorageExecutor.withPriority(priority, () -> {
+            try {
+                limiter.acquire(MetricsCounter.Service.MOJANG);
+                order.add(priority);
+            } catch (RequestLimiter.LimitExceededException e) {
+                throw new RuntimeException(e);
+            }
+        }));
+    }
+}
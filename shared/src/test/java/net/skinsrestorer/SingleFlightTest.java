@@ -0,0 +1,80 @@
+/*
+ * SkinsRestorer
+ * Copyright (C) 2024  SkinsRestorer Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.skinsrestorer;
+
+import net.skinsrestorer.shared.utils.SingleFlight;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class SingleFlightTest {
+    @Test
+    public void testCoalescing() throws Exception {
+        SingleFlight<String, Integer, InterruptedException> flight = new SingleFlight<>();
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<Integer> first = executor.submit(() -> flight.execute("key", () -> {
+                started.countDown();
+                release.await();
+                return calls.incrementAndGet();
+            }));
+            started.await();
+
+            Future<Integer> second = executor.submit(() -> flight.execute("key", calls::incrementAndGet));
+            Future<Integer> third = executor.submit(() -> flight.execute("key", calls::incrementAndGet));
+            while (flight.getDeduplicated() < 2) {
+                Thread.onSpinWait();
+            }
+            release.countDown();
+
+            assertEquals(1, first.get(5, TimeUnit.SECONDS));
+            assertEquals(1, second.get(5, TimeUnit.SECONDS));
+            assertEquals(1, third.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, calls.get());
+        assertEquals(1, flight.getExecuted());
+
+        // Finished calls are not reused
+        assertEquals(2, flight.execute("key", calls::incrementAndGet));
+    }
+
+    @Test
+    public void testExceptionIsPropagated() {
+        SingleFlight<String, Integer, IOException> flight = new SingleFlight<>();
+
+        assertThrows(IOException.class, () -> flight.execute("key", () -> {
+            throw new IOException("test");
+        }));
+    }
+}
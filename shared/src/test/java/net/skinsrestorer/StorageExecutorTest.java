@@ -0,0 +1,123 @@
+/*
+ * SkinsRestorer
+ * Copyright (C) 2024  SkinsRestorer Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.skinsrestorer;
+
+import ch.jalu.configme.SettingsManager;
+import net.skinsrestorer.shared.config.StorageConfig;
+import net.skinsrestorer.shared.storage.StorageExecutor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class StorageExecutorTest {
+    @Mock
+    private SettingsManager settingsManager;
+
+    @Test
+    public void testPriorityAndBackpressure() throws Exception {
+        when(settingsManager.getProperty(StorageConfig.EXECUTOR_THREADS)).thenReturn(1);
+        when(settingsManager.getProperty(StorageConfig.EXECUTOR_MAX_QUEUED)).thenReturn(2);
+        StorageExecutor executor = new StorageExecutor(settingsManager);
+        try {
+            CountDownLatch started = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            executor.supplyAsync(StorageExecutor.Priority.BACKGROUND, () -> {
+                started.countDown();
+                release.await();
+                return null;
+            });
+            started.await();
+
+            List<StorageExecutor.Priority> order = new CopyOnWriteArrayList<>();
+            CompletableFuture<?> background = executor.supplyAsync(StorageExecutor.Priority.BACKGROUND, () -> order.add(StorageExecutor.Priority.BACKGROUND));
+            CompletableFuture<?> command = executor.supplyAsync(StorageExecutor.Priority.COMMAND, () -> order.add(StorageExecutor.Priority.COMMAND));
+            CompletableFuture<?> rejected = executor.supplyAsync(StorageExecutor.Priority.COMMAND, () -> order.add(StorageExecutor.Priority.COMMAND));
+            CompletableFuture<?> login = executor.supplyAsync(StorageExecutor.Priority.LOGIN, () -> order.add(StorageExecutor.Priority.LOGIN));
+
+            ExecutionException e = assertThrows(ExecutionException.class, () -> rejected.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(RejectedExecutionException.class, e.getCause());
+            assertEquals(3, executor.getStats().queued());
+
+            release.countDown();
+            CompletableFuture.allOf(background, command, login).get(5, TimeUnit.SECONDS);
+
+            assertEquals(List.of(StorageExecutor.Priority.LOGIN, StorageExecutor.Priority.COMMAND, StorageExecutor.Priority.BACKGROUND), order);
+            assertEquals(1, executor.getStats().rejected());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testLimitPriority() throws Exception {
+        when(settingsManager.getProperty(StorageConfig.EXECUTOR_THREADS)).thenReturn(1);
+        when(settingsManager.getProperty(StorageConfig.EXECUTOR_MAX_QUEUED)).thenReturn(10);
+        StorageExecutor executor = new StorageExecutor(settingsManager);
+        try {
+            CountDownLatch started = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            Thread holder = new Thread(() -> {
+                try {
+                    executor.limit(() -> {
+                        started.countDown();
+                        release.await();
+                        return null;
+                    });
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            holder.start();
+            started.await();
+
+            List<StorageExecutor.Priority> order = new CopyOnWriteArrayList<>();
+            Thread background = limited(executor, StorageExecutor.Priority.BACKGROUND, order);
+            background.start();
+            Thread.sleep(100);
+            Thread login = limited(executor, StorageExecutor.Priority.LOGIN, order);
+            login.start();
+            Thread.sleep(100);
+
+            release.countDown();
+            holder.join();
+            background.join();
+            login.join();
+
+            assertEquals(List.of(StorageExecutor.Priority.LOGIN, StorageExecutor.Priority.BACKGROUND), order);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private Thread limited(StorageExecutor executor, StorageExecutor.Priority priority, List<StorageExecutor.Priority> order) {
+        return new Thread(StorageExecutor.withPriority(priority, () -> executor.limit(() -> order.add(priority))));
+    }
+}
@@ -17,8 +17,10 @@
  */
 package net.skinsrestorer.adapter;
 
+import net.skinsrestorer.api.property.SkinIdentifier;
 import net.skinsrestorer.api.property.SkinProperty;
 import net.skinsrestorer.api.property.SkinVariant;
+import net.skinsrestorer.shared.gui.GUISkinPage;
 import net.skinsrestorer.shared.storage.adapter.StorageAdapter;
 import net.skinsrestorer.shared.storage.model.cache.MojangCacheData;
 import net.skinsrestorer.shared.storage.model.player.PlayerData;
@@ -28,6 +30,9 @@ import net.skinsrestorer.shared.storage.model.skin.URLSkinData;
 import org.junit.Assert;
 
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 public class AdapterHelper {
@@ -41,11 +46,61 @@ public class AdapterHelper {
         adapter.setCustomSkinData("test-skin", CustomSkinData.of("test-skin", SkinProperty.of("test", "test")));
         adapter.setURLSkinData("test", URLSkinData.of("https://test.com", "test", SkinProperty.of("test", "test"), SkinVariant.CLASSIC));
 
+        testBulkLookup(adapter);
+
+        GUISkinPage page = adapter.getStoredGUISkins(null);
         if (checkCustom) {
-            // Check if offset works as well, we actually have two skins in the storage for GUI
-            Assert.assertEquals(1, adapter.getStoredGUISkins(1).size());
+            // The player skin and the custom skin
+            Assert.assertEquals(2, page.getSkins().size());
         } else {
-            Assert.assertEquals(1, adapter.getStoredGUISkins(0).size());
+            Assert.assertEquals(1, page.getSkins().size());
+        }
+        Assert.assertFalse(page.hasNext());
+
+        testPurge(adapter);
+    }
+
+    private static void testPurge(StorageAdapter adapter) {
+        List<PlayerSkinData> oldSkins = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            UUID uuid = UUID.randomUUID();
+            oldSkins.add(PlayerSkinData.of(uuid, "old" + i, SkinProperty.of("test", "test"), 1000));
+        }
+        adapter.setPlayerSkinData(oldSkins);
+
+        UUID fresh = UUID.randomUUID();
+        adapter.setPlayerSkinData(fresh, PlayerSkinData.of(fresh, "fresh", SkinProperty.of("test", "test"), 5000));
+
+        try {
+            // Three old skins plus the default one, purged in batches of three
+            Assert.assertEquals(3, adapter.purgeStoredOldSkins(2000, 3));
+            Assert.assertEquals(1, adapter.purgeStoredOldSkins(2000, 3));
+            Assert.assertEquals(0, adapter.purgeStoredOldSkins(2000, 3));
+            Assert.assertTrue(adapter.getPlayerSkinData(fresh).isPresent());
+            adapter.removePlayerSkinData(fresh);
+        } catch (StorageAdapter.StorageException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static void testBulkLookup(StorageAdapter adapter) {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        UUID missing = UUID.randomUUID();
+        adapter.setPlayerData(first, PlayerData.of(first, SkinIdentifier.ofPlayer(DEFAULT_UUID)));
+        adapter.setPlayerData(second, PlayerData.of(second, null));
+
+        try {
+            Map<UUID, PlayerData> playerData = adapter.getPlayerData(List.of(first, second, missing));
+            Assert.assertEquals(2, playerData.size());
+            Assert.assertEquals(SkinIdentifier.ofPlayer(DEFAULT_UUID), playerData.get(first).getSkinIdentifier());
+            Assert.assertNull(playerData.get(second).getSkinIdentifier());
+
+            Map<UUID, PlayerSkinData> skinData = adapter.getPlayerSkinData(List.of(DEFAULT_UUID, missing));
+            Assert.assertEquals(1, skinData.size());
+            Assert.assertEquals(DEFAULT_NAME, skinData.get(DEFAULT_UUID).getLastKnownName());
+        } catch (StorageAdapter.StorageException e) {
+            throw new AssertionError(e);
         }
     }
 }
@@ -0,0 +1,172 @@
+/*
+ * SkinsRestorer
+ * Copyright (C) 2024  SkinsRestorer Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.skinsrestorer.adapter;
+
+import ch.jalu.configme.SettingsManager;
+import ch.jalu.injector.Injector;
+import net.skinsrestorer.SRExtension;
+import net.skinsrestorer.SettingsHelper;
+import net.skinsrestorer.api.property.SkinProperty;
+import net.skinsrestorer.shared.config.GUIConfig;
+import net.skinsrestorer.shared.log.SRLogger;
+import net.skinsrestorer.shared.plugin.SRPlugin;
+import net.skinsrestorer.shared.storage.adapter.StorageAdapter;
+import net.skinsrestorer.shared.storage.adapter.embedded.EmbeddedAdapter;
+import net.skinsrestorer.shared.storage.adapter.embedded.LogStore;
+import net.skinsrestorer.shared.storage.adapter.file.FileAdapter;
+import net.skinsrestorer.shared.storage.model.skin.PlayerSkinData;
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.UUID;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@ExtendWith({MockitoExtension.class, SRExtension.class})
+public class EmbeddedAdapterTest {
+    @TempDir
+    private Path tempDir;
+    @Mock
+    private SettingsManager settingsManager;
+
+    @Test
+    public void testLoad(Injector injector) {
+        SettingsHelper.returnDefaultsForAllProperties(settingsManager);
+        injector.register(SettingsManager.class, settingsManager);
+        SRPlugin plugin = mock(SRPlugin.class);
+        when(plugin.getDataFolder()).thenReturn(tempDir);
+        injector.register(SRPlugin.class, plugin);
+
+        EmbeddedAdapter adapter = injector.getSingleton(EmbeddedAdapter.class);
+        adapter.init();
+
+        when(settingsManager.getProperty(GUIConfig.CUSTOM_GUI_ENABLED)).thenReturn(false);
+
+        AdapterHelper.testAdapter(adapter, false);
+
+        when(settingsManager.getProperty(GUIConfig.CUSTOM_GUI_ENABLED)).thenReturn(true);
+
+        AdapterHelper.testAdapter(adapter, true);
+
+        adapter.close();
+    }
+
+    @Test
+    public void testImport(Injector injector) throws StorageAdapter.StorageException {
+        SettingsHelper.returnDefaultsForAllProperties(settingsManager);
+        injector.register(SettingsManager.class, settingsManager);
+        SRPlugin plugin = mock(SRPlugin.class);
+        when(plugin.getDataFolder()).thenReturn(tempDir);
+        injector.register(SRPlugin.class, plugin);
+
+        UUID uuid = UUID.randomUUID();
+        FileAdapter fileAdapter = injector.getSingleton(FileAdapter.class);
+        fileAdapter.setPlayerSkinData(uuid, PlayerSkinData.of(uuid, "test", SkinProperty.of("value", "signature"), 1));
+
+        EmbeddedAdapter adapter = injector.getSingleton(EmbeddedAdapter.class);
+        adapter.init();
+
+        Assert.assertEquals("test", adapter.getPlayerSkinData(uuid).orElseThrow().getLastKnownName());
+
+        adapter.close();
+    }
+
+    @Test
+    public void testRecoveryAndCompaction(Injector injector) throws IOException {
+        Path directory = tempDir.resolve("embedded");
+        SRLogger logger = injector.getSingleton(SRLogger.class);
+
+        LogStore store = new LogStore(directory, 256, logger);
+        store.open();
+        for (int i = 0; i < 20; i++) {
+            store.put((byte) 1, "key", ("value" + i).getBytes(StandardCharsets.UTF_8));
+        }
+        store.put((byte) 1, "other", "other".getBytes(StandardCharsets.UTF_8));
+        store.put((byte) 1, "deleted", "deleted".getBytes(StandardCharsets.UTF_8));
+        store.delete((byte) 1, "deleted");
+
+        Assert.assertTrue(store.needsCompaction());
+        store.compact();
+        Assert.assertFalse(store.needsCompaction());
+        Assert.assertEquals("value19", new String(store.get((byte) 1, "key").orElseThrow(), StandardCharsets.UTF_8));
+
+        store.put((byte) 1, "last", "last".getBytes(StandardCharsets.UTF_8));
+        store.close();
+
+        // Simulate a crash in the middle of writing a record
+        try (var stream = Files.list(directory)) {
+            Path lastSegment = stream.filter(path -> path.getFileName().toString().endsWith(".log")).sorted().reduce((a, b) -> b).orElseThrow();
+            Files.write(lastSegment, new byte[]{0, 0, 1, 0, 1, 2}, StandardOpenOption.APPEND);
+        }
+
+        store = new LogStore(directory, 256, logger);
+        store.open();
+        Assert.assertEquals(3, store.size());
+        Assert.assertEquals("value19", new String(store.get((byte) 1, "key").orElseThrow(), StandardCharsets.UTF_8));
+        Assert.assertEquals("last", new String(store.get((byte) 1, "last").orElseThrow(), StandardCharsets.UTF_8));
+        Assert.assertTrue(store.get((byte) 1, "deleted").isEmpty());
+        store.close();
+    }
+
+    @Test
+    public void testDamagedSealedSegment(Injector injector) throws IOException {
+        Path directory = tempDir.resolve("embedded");
+        SRLogger logger = injector.getSingleton(SRLogger.class);
+
+        LogStore store = new LogStore(directory, 256, logger);
+        store.open();
+        for (int i = 0; i < 30; i++) {
+            store.put((byte) 1, "key" + i, ("value" + i).getBytes(StandardCharsets.UTF_8));
+        }
+        store.close();
+
+        List<Path> segments;
+        try (var stream = Files.list(directory)) {
+            segments = stream.filter(path -> path.getFileName().toString().endsWith(".log")).sorted().toList();
+        }
+        Assert.assertTrue(segments.size() > 1);
+        Path firstSegment = segments.get(0);
+
+        // Flip a byte in the value of the first record
+        byte[] data = Files.readAllBytes(firstSegment);
+        int firstRecordEnd = 6 + 8 + 4 + "key0".length() + "value0".length();
+        data[firstRecordEnd - 1] ^= 1;
+        Files.write(firstSegment, data);
+
+        store = new LogStore(directory, 256, logger);
+        store.open();
+        Assert.assertTrue(store.get((byte) 1, "key0").isEmpty());
+        for (int i = 1; i < 30; i++) {
+            Assert.assertEquals("value" + i, new String(store.get((byte) 1, "key" + i).orElseThrow(), StandardCharsets.UTF_8));
+        }
+        store.close();
+
+        Assert.assertEquals(data.length, Files.size(firstSegment));
+    }
+}
@@ -19,11 +19,26 @@ package net.skinsrestorer.adapter;
 
 import ch.jalu.configme.SettingsManager;
 import ch.jalu.injector.Injector;
+import com.google.gson.Gson;
 import net.skinsrestorer.SRExtension;
 import net.skinsrestorer.SettingsHelper;
+import net.skinsrestorer.api.property.SkinProperty;
+import net.skinsrestorer.shared.config.DatabaseConfig;
 import net.skinsrestorer.shared.config.GUIConfig;
+import net.skinsrestorer.shared.gui.GUISkinPage;
+import net.skinsrestorer.shared.gui.SharedGUI;
+import net.skinsrestorer.shared.log.SRLogger;
 import net.skinsrestorer.shared.plugin.SRPlugin;
+import net.skinsrestorer.shared.storage.adapter.StorageAdapter;
+import net.skinsrestorer.shared.storage.adapter.cache.CachedStorageAdapter;
+import net.skinsrestorer.shared.storage.adapter.cache.SegmentedLRUCache;
+import net.skinsrestorer.shared.storage.adapter.cache.WriteBehindStorageAdapter;
 import net.skinsrestorer.shared.storage.adapter.file.FileAdapter;
+import net.skinsrestorer.shared.storage.adapter.file.model.skin.PlayerSkinFile;
+import net.skinsrestorer.shared.storage.model.cache.MojangCacheData;
+import net.skinsrestorer.shared.storage.model.skin.CustomSkinData;
+import net.skinsrestorer.shared.storage.model.skin.PlayerSkinData;
+import org.junit.Assert;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -31,7 +46,15 @@ import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -66,4 +89,223 @@ public class FileAdapterTest {
 
         AdapterHelper.testAdapter(adapter, true);
     }
+
+    @Test
+    public void testBinaryLoad(Injector injector) {
+        injector.register(SettingsManager.class, settingsManager);
+        SRPlugin plugin = mock(SRPlugin.class);
+        when(plugin.getDataFolder()).thenReturn(tempDir);
+        injector.register(SRPlugin.class, plugin);
+
+        when(settingsManager.getProperty(DatabaseConfig.BINARY_RECORDS)).thenReturn(true);
+        FileAdapter adapter = injector.getSingleton(FileAdapter.class);
+
+        when(settingsManager.getProperty(GUIConfig.CUSTOM_GUI_ENABLED)).thenReturn(true);
+
+        AdapterHelper.testAdapter(adapter, true);
+    }
+
+    @Test
+    public void testCachedLoad(Injector injector) throws StorageAdapter.StorageException {
+        injector.register(SettingsManager.class, settingsManager);
+        SRPlugin plugin = mock(SRPlugin.class);
+        when(plugin.getDataFolder()).thenReturn(tempDir);
+        injector.register(SRPlugin.class, plugin);
+
+        FileAdapter fileAdapter = injector.getSingleton(FileAdapter.class);
+        fileAdapter.init();
+
+        CachedStorageAdapter adapter = new CachedStorageAdapter(fileAdapter, 100, 60);
+
+        when(settingsManager.getProperty(GUIConfig.CUSTOM_GUI_ENABLED)).thenReturn(false);
+
+        AdapterHelper.testAdapter(adapter, false);
+
+        SegmentedLRUCache.Stats before = adapter.getStats();
+
+        UUID uuid = UUID.randomUUID();
+        Assert.assertTrue(adapter.getPlayerSkinData(uuid).isEmpty());
+        Assert.assertTrue(adapter.getPlayerSkinData(uuid).isEmpty());
+
+        adapter.setPlayerSkinData(uuid, PlayerSkinData.of(uuid, "test", SkinProperty.of("test", "test"), -1));
+        Assert.assertEquals("test", adapter.getPlayerSkinData(uuid).orElseThrow().getLastKnownName());
+        Assert.assertEquals("test", adapter.getPlayerSkinData(uuid).orElseThrow().getLastKnownName());
+
+        SegmentedLRUCache.Stats stats = adapter.getStats();
+        Assert.assertEquals(2, stats.hits() - before.hits());
+        Assert.assertEquals(2, stats.misses() - before.misses());
+    }
+
+    @Test
+    public void testWriteBehind(Injector injector) throws StorageAdapter.StorageException {
+        injector.register(SettingsManager.class, settingsManager);
+        SRPlugin plugin = mock(SRPlugin.class);
+        when(plugin.getDataFolder()).thenReturn(tempDir);
+        injector.register(SRPlugin.class, plugin);
+
+        FileAdapter fileAdapter = injector.getSingleton(FileAdapter.class);
+        WriteBehindStorageAdapter adapter = new WriteBehindStorageAdapter(fileAdapter, injector.getSingleton(SRLogger.class), 60_000, 100);
+
+        UUID uuid = UUID.randomUUID();
+        adapter.setPlayerSkinData(uuid, PlayerSkinData.of(uuid, "first", SkinProperty.of("test", "test"), -1));
+        adapter.setPlayerSkinData(uuid, PlayerSkinData.of(uuid, "second", SkinProperty.of("test", "test"), -1));
+        adapter.setCachedUUID("Test", MojangCacheData.of(uuid, 1));
+
+        Assert.assertEquals(2, adapter.getPending());
+        Assert.assertEquals("second", adapter.getPlayerSkinData(uuid).orElseThrow().getLastKnownName());
+        Assert.assertEquals(uuid, adapter.getCachedUUID("test").orElseThrow().getUniqueId().orElseThrow());
+        Assert.assertTrue(fileAdapter.getPlayerSkinData(uuid).isEmpty());
+
+        adapter.close();
+
+        Assert.assertEquals(0, adapter.getPending());
+        Assert.assertEquals("second", fileAdapter.getPlayerSkinData(uuid).orElseThrow().getLastKnownName());
+        Assert.assertEquals(1, fileAdapter.getCachedUUID("Test").orElseThrow().getTimestamp());
+    }
+
+    @Test
+    public void testGUIIndexPersisted(Injector injector) {
+        injector.register(SettingsManager.class, settingsManager);
+        SRPlugin plugin = mock(SRPlugin.class);
+        when(plugin.getDataFolder()).thenReturn(tempDir);
+        injector.register(SRPlugin.class, plugin);
+
+        FileAdapter adapter = injector.getSingleton(FileAdapter.class);
+        when(settingsManager.getProperty(GUIConfig.CUSTOM_GUI_ENABLED)).thenReturn(true);
+
+        for (int i = 0; i < 50; i++) {
+            UUID uuid = UUID.randomUUID();
+            adapter.setPlayerSkinData(uuid, PlayerSkinData.of(uuid, "player" + i, SkinProperty.of("value" + i, "test"), -1));
+        }
+        adapter.setCustomSkinData("custom", CustomSkinData.of("custom", SkinProperty.of("custom", "test")));
+        adapter.removeCustomSkinData("custom");
+
+        FileAdapter reopened = new FileAdapter(plugin, settingsManager, injector.getSingleton(SRLogger.class));
+        GUISkinPage firstPage = reopened.getStoredGUISkins(null);
+        Assert.assertEquals(SharedGUI.HEAD_COUNT_PER_PAGE, firstPage.getSkins().size());
+        Assert.assertEquals("player0", firstPage.getSkins().keySet().iterator().next());
+        Assert.assertTrue(firstPage.hasNext());
+
+        GUISkinPage secondPage = reopened.getStoredGUISkins(firstPage.getNextCursor());
+        Assert.assertEquals(50 - SharedGUI.HEAD_COUNT_PER_PAGE, secondPage.getSkins().size());
+        Assert.assertFalse(secondPage.hasNext());
+        Assert.assertTrue(Collections.disjoint(firstPage.getSkins().keySet(), secondPage.getSkins().keySet()));
+    }
+
+    @Test
+    public void testGUIIndexRebuiltAfterCrash(Injector injector) throws Exception {
+        injector.register(SettingsManager.class, settingsManager);
+        SRPlugin plugin = mock(SRPlugin.class);
+        when(plugin.getDataFolder()).thenReturn(tempDir);
+        injector.register(SRPlugin.class, plugin);
+
+        FileAdapter adapter = injector.getSingleton(FileAdapter.class);
+        for (int i = 0; i < 3; i++) {
+            UUID uuid = UUID.randomUUID();
+            adapter.setPlayerSkinData(uuid, PlayerSkinData.of(uuid, "player" + i, SkinProperty.of("value" + i, "test"), -1));
+        }
+        adapter.close();
+
+        // Crashed after writing the skins but before they reached the index, the clean marker was removed on load
+        Path indexFile = tempDir.resolve("skins").resolve("gui.index");
+        Files.delete(indexFile.resolveSibling("gui.index.clean"));
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(indexFile))) {
+            out.writeInt(0x53524749);
+            out.writeInt(2);
+        }
+
+        FileAdapter reopened = new FileAdapter(plugin, settingsManager, injector.getSingleton(SRLogger.class));
+        Assert.assertEquals(3, reopened.getStoredGUISkins(null).getSkins().size());
+    }
+
+    @Test
+    public void testTexturesDeduplicated(Injector injector) throws Exception {
+        injector.register(SettingsManager.class, settingsManager);
+        SRPlugin plugin = mock(SRPlugin.class);
+        when(plugin.getDataFolder()).thenReturn(tempDir);
+        injector.register(SRPlugin.class, plugin);
+
+        FileAdapter adapter = injector.getSingleton(FileAdapter.class);
+        SkinProperty property = SkinProperty.of("dGV4dHVyZQ==", "c2lnbmF0dXJl");
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        adapter.setPlayerSkinData(first, PlayerSkinData.of(first, "first", property, -1));
+        adapter.setPlayerSkinData(second, PlayerSkinData.of(second, "second", property, -1));
+        adapter.setCustomSkinData("custom", CustomSkinData.of("custom", property));
+
+        try (Stream<Path> textures = Files.find(tempDir.resolve("textures"), 3, (path, attributes) -> attributes.isRegularFile())) {
+            Assert.assertEquals(1, textures.count());
+        }
+
+        Assert.assertEquals(property, adapter.getPlayerSkinData(first).orElseThrow().getProperty());
+        Assert.assertEquals(property, adapter.getPlayerSkinData(second).orElseThrow().getProperty());
+        Assert.assertEquals(property, adapter.getCustomSkinData("custom").orElseThrow().getProperty());
+    }
+
+    @Test
+    public void testUnreferencedTexturesRemoved(Injector injector) throws Exception {
+        injector.register(SettingsManager.class, settingsManager);
+        SRPlugin plugin = mock(SRPlugin.class);
+        when(plugin.getDataFolder()).thenReturn(tempDir);
+        injector.register(SRPlugin.class, plugin);
+
+        FileAdapter adapter = injector.getSingleton(FileAdapter.class);
+        SkinProperty oldProperty = SkinProperty.of("b2xk", "c2lnbmF0dXJl");
+        SkinProperty newProperty = SkinProperty.of("bmV3", "c2lnbmF0dXJl");
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        long timestamp = System.currentTimeMillis();
+        adapter.setPlayerSkinData(first, PlayerSkinData.of(first, "first", oldProperty, timestamp));
+        adapter.setPlayerSkinData(second, PlayerSkinData.of(second, "second", oldProperty, timestamp));
+        adapter.setPlayerSkinData(first, PlayerSkinData.of(first, "first", newProperty, timestamp));
+        adapter.removePlayerSkinData(second);
+        adapter.close();
+
+        // The counts are saved on close, so the reopened adapter doesn't have to count them again
+        FileAdapter reopened = new FileAdapter(plugin, settingsManager, injector.getSingleton(SRLogger.class));
+        try (Stream<Path> textures = findTextures()) {
+            for (Path texture : textures.toList()) {
+                Files.setLastModifiedTime(texture, FileTime.fromMillis(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(2)));
+            }
+        }
+
+        reopened.purgeStoredOldSkins(0, 100);
+
+        try (Stream<Path> textures = findTextures()) {
+            Assert.assertEquals(1, textures.count());
+        }
+        Assert.assertEquals(newProperty, reopened.getPlayerSkinData(first).orElseThrow().getProperty());
+    }
+
+    private Stream<Path> findTextures() throws IOException {
+        return Files.find(tempDir.resolve("textures"), 3, (path, attributes) -> path.toString().endsWith(".texture"));
+    }
+
+    @Test
+    public void testFlatLayoutMigration(Injector injector) throws Exception {
+        injector.register(SettingsManager.class, settingsManager);
+        SRPlugin plugin = mock(SRPlugin.class);
+        when(plugin.getDataFolder()).thenReturn(tempDir);
+        injector.register(SRPlugin.class, plugin);
+
+        UUID uuid = UUID.randomUUID();
+        Path skinsFolder = Files.createDirectories(tempDir.resolve("skins"));
+        Path flatFile = skinsFolder.resolve(uuid + ".playerskin");
+        Files.writeString(flatFile, new Gson().toJson(PlayerSkinFile.fromPlayerSkinData(
+                PlayerSkinData.of(uuid, "test", SkinProperty.of("test", "test"), -1))));
+
+        FileAdapter adapter = injector.getSingleton(FileAdapter.class);
+        Assert.assertEquals("test", adapter.getPlayerSkinData(uuid).orElseThrow().getLastKnownName());
+
+        Path shardedFile = skinsFolder.resolve(uuid.toString().substring(0, 2)).resolve(uuid.toString().substring(2, 4))
+                .resolve(uuid + ".playerskin");
+        for (int i = 0; i < 100 && !Files.exists(tempDir.resolve("sharded-layout.txt")); i++) {
+            Thread.sleep(50);
+        }
+
+        Assert.assertFalse(Files.exists(flatFile));
+        Assert.assertTrue(Files.exists(shardedFile));
+        Assert.assertEquals("test", adapter.getPlayerSkinData(uuid).orElseThrow().getLastKnownName());
+        Assert.assertEquals(1, adapter.getStoredGUISkins(null).getSkins().size());
+    }
 }
@@ -0,0 +1,177 @@
+/*
+ * SkinsRestorer
+ * Copyright (C) 2024  SkinsRestorer Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.skinsrestorer.adapter;
+
+import ch.jalu.configme.SettingsManager;
+import ch.jalu.injector.Injector;
+import net.skinsrestorer.SRExtension;
+import net.skinsrestorer.SettingsHelper;
+import net.skinsrestorer.api.property.SkinProperty;
+import net.skinsrestorer.shared.config.GUIConfig;
+import net.skinsrestorer.shared.log.SRLogger;
+import net.skinsrestorer.shared.plugin.SRPlugin;
+import net.skinsrestorer.shared.storage.adapter.cache.CachedStorageAdapter;
+import net.skinsrestorer.shared.storage.adapter.cache.InvalidationTransport;
+import net.skinsrestorer.shared.storage.adapter.sqlite.SQLiteAdapter;
+import net.skinsrestorer.shared.storage.adapter.sqlite.SQLiteProvider;
+import net.skinsrestorer.shared.storage.model.skin.PlayerSkinData;
+import org.junit.Assert;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@ExtendWith({MockitoExtension.class, SRExtension.class})
+public class SQLiteAdapterTest {
+    @TempDir
+    private Path tempDir;
+    @Mock
+    private SettingsManager settingsManager;
+
+    @BeforeEach
+    public void setup() {
+        SettingsHelper.returnDefaultsForAllProperties(settingsManager);
+    }
+
+    @Test
+    public void testLoad(Injector injector) throws SQLException {
+        injector.register(SettingsManager.class, settingsManager);
+        SRPlugin plugin = mock(SRPlugin.class);
+        when(plugin.getDataFolder()).thenReturn(tempDir);
+        injector.register(SRPlugin.class, plugin);
+
+        SQLiteProvider provider = injector.getSingleton(SQLiteProvider.class);
+        provider.initPool();
+        try {
+            SQLiteAdapter adapter = injector.getSingleton(SQLiteAdapter.class);
+            adapter.init();
+
+            when(settingsManager.getProperty(GUIConfig.CUSTOM_GUI_ENABLED)).thenReturn(false);
+
+            AdapterHelper.testAdapter(adapter, false);
+
+            when(settingsManager.getProperty(GUIConfig.CUSTOM_GUI_ENABLED)).thenReturn(true);
+
+            AdapterHelper.testAdapter(adapter, true);
+        } finally {
+            provider.shutdown();
+        }
+    }
+
+    @Test
+    public void testChangelogInvalidation(Injector injector) throws Exception {
+        injector.register(SettingsManager.class, settingsManager);
+        SRPlugin plugin = mock(SRPlugin.class);
+        when(plugin.getDataFolder()).thenReturn(tempDir);
+        injector.register(SRPlugin.class, plugin);
+
+        SQLiteProvider provider = injector.getSingleton(SQLiteProvider.class);
+        provider.initPool();
+        InvalidationTransport transport = null;
+        try {
+            // Two servers caching the same database
+            SQLiteAdapter adapter = new SQLiteAdapter(provider, settingsManager, injector.getSingleton(SRLogger.class), plugin) {
+                @Override
+                protected boolean isShared() {
+                    return true;
+                }
+            };
+            adapter.init();
+            CachedStorageAdapter first = new CachedStorageAdapter(adapter, 100, 60);
+            CachedStorageAdapter second = new CachedStorageAdapter(adapter, 100, 60);
+            transport = adapter.createChangelogTransport(20);
+            second.listen(transport);
+
+            UUID uuid = UUID.randomUUID();
+            first.setPlayerSkinData(uuid, PlayerSkinData.of(uuid, "before", SkinProperty.of("before", "test"), -1));
+            Assert.assertEquals("before", second.getPlayerSkinData(uuid).orElseThrow().getLastKnownName());
+
+            first.setPlayerSkinData(uuid, PlayerSkinData.of(uuid, "after", SkinProperty.of("after", "test"), -1));
+            for (int i = 0; i < 100 && !second.getPlayerSkinData(uuid).orElseThrow().getLastKnownName().equals("after"); i++) {
+                Thread.sleep(50);
+            }
+
+            Assert.assertEquals("after", second.getPlayerSkinData(uuid).orElseThrow().getLastKnownName());
+        } finally {
+            if (transport != null) {
+                transport.close();
+            }
+            provider.shutdown();
+        }
+    }
+
+    @Test
+    public void testConcurrentBulkReads(Injector injector) throws Exception {
+        injector.register(SettingsManager.class, settingsManager);
+        SRPlugin plugin = mock(SRPlugin.class);
+        when(plugin.getDataFolder()).thenReturn(tempDir);
+        injector.register(SRPlugin.class, plugin);
+
+        SQLiteProvider provider = injector.getSingleton(SQLiteProvider.class);
+        provider.initPool();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            SQLiteAdapter adapter = injector.getSingleton(SQLiteAdapter.class);
+            adapter.init();
+
+            List<UUID> uuids = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                UUID uuid = UUID.randomUUID();
+                uuids.add(uuid);
+                adapter.setPlayerSkinData(uuid, PlayerSkinData.of(uuid, "player" + i, SkinProperty.of("value" + i, "test"), -1));
+            }
+
+            // Readers share cached statements, every bulk read has to be done with them before handing the connection back
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                int offset = thread;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 2_000; i++) {
+                        List<UUID> subset = uuids.subList(0, 1 + (offset + i) % uuids.size());
+                        Map<UUID, PlayerSkinData> result = adapter.getPlayerSkinData(subset);
+                        Assert.assertEquals(subset.size(), result.size());
+                    }
+                    return null;
+                }));
+            }
+
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+            provider.shutdown();
+        }
+    }
+}
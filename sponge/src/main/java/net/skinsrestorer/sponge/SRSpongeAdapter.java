@@ -25,6 +25,7 @@ import net.kyori.adventure.text.serializer.gson.GsonComponentSerializer;
 import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
 import net.skinsrestorer.api.property.SkinProperty;
 import net.skinsrestorer.shared.commands.library.SRRegisterPayload;
+import net.skinsrestorer.shared.gui.GUISkinPage;
 import net.skinsrestorer.shared.gui.SharedGUI;
 import net.skinsrestorer.shared.info.Platform;
 import net.skinsrestorer.shared.info.PluginInfo;
@@ -143,9 +144,9 @@ public class SRSpongeAdapter implements SRServerAdapter<PluginContainer, Command
     }
 
     @Override
-    public void openProxyGUI(SRPlayer player, int page, Map<String, String> skinList) {
+    public void openProxyGUI(SRPlayer player, int page, GUISkinPage skins) {
         InventoryMenu inventory = injector.getSingleton(SkinsGUI.class)
-                .createGUI(injector.getSingleton(SharedGUI.ProxyGUIActions.class), player, page, skinList);
+                .createGUI(injector.getSingleton(SharedGUI.ProxyGUIActions.class), player, page, skins);
 
         runSyncToPlayer(player, () -> inventory.open(player.getAs(ServerPlayer.class)));
     }
@@ -24,6 +24,7 @@ import net.kyori.adventure.text.minimessage.tag.resolver.Placeholder;
 import net.kyori.adventure.text.serializer.gson.GsonComponentSerializer;
 import net.skinsrestorer.api.property.SkinProperty;
 import net.skinsrestorer.shared.gui.GUIManager;
+import net.skinsrestorer.shared.gui.GUISkinPage;
 import net.skinsrestorer.shared.gui.SharedGUI;
 import net.skinsrestorer.shared.listeners.event.ClickEventInfo;
 import net.skinsrestorer.shared.log.SRLogger;
@@ -73,7 +74,7 @@ public class SkinsGUI implements GUIManager<InventoryMenu> {
                 .build();
     }
 
-    public InventoryMenu createGUI(Consumer<ClickEventInfo> callback, SRForeign player, int page, Map<String, String> skinsList) {
+    public InventoryMenu createGUI(Consumer<ClickEventInfo> callback, SRForeign player, int page, GUISkinPage skins) {
         ViewableInventory inventory = ViewableInventory.builder()
                 .type(ContainerTypes.GENERIC_9X6)
                 .completeStructure()
@@ -86,7 +87,7 @@ public class SkinsGUI implements GUIManager<InventoryMenu> {
         ItemStack next = createGlass(GlassType.NEXT, player, locale);
 
         int skinCount = 0;
-        for (Map.Entry<String, String> entry : skinsList.entrySet()) {
+        for (Map.Entry<String, String> entry : skins.getSkins().entrySet()) {
             if (skinCount >= SharedGUI.HEAD_COUNT_PER_PAGE) {
                 logger.warning("SkinsGUI: Skin count is more than 36, skipping...");
                 break;
@@ -124,8 +125,8 @@ public class SkinsGUI implements GUIManager<InventoryMenu> {
         inventory.set(49, delete);
         inventory.set(50, delete);
 
-        // If the page is full, adding Next Page button.
-        if (page < 999 && skinCount <= SharedGUI.HEAD_COUNT_PER_PAGE) {
+        // If there is a next page, adding Next Page button.
+        if (skins.hasNext()) {
             inventory.set(51, next);
             inventory.set(52, next);
             inventory.set(53, next);
@@ -30,6 +30,7 @@ import org.spongepowered.api.event.network.ServerSideConnectionEvent;
 
 import javax.inject.Inject;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 @RequiredArgsConstructor(onConstructor_ = @Inject)
 public class LoginListener implements EventListener<ServerSideConnectionEvent.Auth> {
@@ -78,8 +79,9 @@ public class LoginListener implements EventListener<ServerSideConnectionEvent.Au
             }
 
             @Override
-            public Void runAsync(Runnable runnable) {
-                runnable.run();
+            public Void resumeWhenComplete(CompletableFuture<?> future) {
+                // Already on an async login thread, the profile must be set before we return
+                future.join();
                 return null;
             }
         };
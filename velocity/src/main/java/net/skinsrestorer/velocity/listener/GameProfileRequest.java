@@ -28,6 +28,7 @@ import net.skinsrestorer.velocity.SkinApplierVelocity;
 
 import javax.inject.Inject;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 @RequiredArgsConstructor(onConstructor_ = @Inject)
 public class GameProfileRequest {
@@ -67,8 +68,8 @@ public class GameProfileRequest {
             }
 
             @Override
-            public EventTask runAsync(Runnable runnable) {
-                return EventTask.async(runnable);
+            public EventTask resumeWhenComplete(CompletableFuture<?> future) {
+                return EventTask.resumeWhenComplete(future);
             }
         };
     }